@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.google.stub.GoogleStubServer;
+import org.dasein.cloud.google.stub.StubProviders;
+import org.dasein.cloud.google.stub.StubStore;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+
+/**
+ * Recorded API list responses under <code>/fixtures</code>, multiplied into as many distinct resources as a
+ * benchmark needs. Each item of a fixture is a template in which <code>{n}</code> stands for the copy number, so
+ * names and the links between fixtures (an instance's boot disk, a rule's network) stay consistent per copy.
+ * <p>Links to <code>https://www.googleapis.com/</code> are rewritten to the root of the stub server the copies
+ * are seeded into, so that they match the self links the stub assigns.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class Fixtures {
+    static private final String RECORDED_ROOT = "https://www.googleapis.com/";
+    static private final JsonFactory jsonFactory = JacksonFactory.getDefaultInstance();
+
+    /**
+     * The image the boot disks seeded by {@link #seedInstances(int, int)} were made from.
+     */
+    static public final String BOOT_IMAGE = RECORDED_ROOT + "compute/v1/projects/debian-cloud/global/images/debian-7-wheezy-v20150915";
+
+    /**
+     * One in this many of the VMs seeded by {@link #seedInstances(int, int)} has a reserved public address.
+     */
+    static public final int RESERVED_ADDRESS_RATIO = 50;
+
+    private final GoogleStubServer server;
+    private final String rootUrl;
+
+    /**
+     * Keeps the recorded links as they are.
+     */
+    public Fixtures() {
+        this.server = null;
+        this.rootUrl = RECORDED_ROOT;
+    }
+
+    public Fixtures(@Nonnull GoogleStubServer server) {
+        this.server = server;
+        this.rootUrl = server.getEndpoint() + "/";
+    }
+
+    /**
+     * @param fixture the fixture name, e.g. <code>instances</code>
+     * @param count the number of resources to make
+     * @return <code>count</code> resources, cycling through the fixture's templates, copy <code>i</code> made
+     * from template <code>i % templates</code> with <code>{n}</code> set to <code>i</code>
+     */
+    public @Nonnull List<Map<String, Object>> replicate(@Nonnull String fixture, int count) throws IOException {
+        return replicate(fixture, 0, count);
+    }
+
+    /**
+     * @return copies <code>first</code> to <code>first + count - 1</code> of the fixture, as {@link #replicate(String, int)}
+     */
+    public @Nonnull List<Map<String, Object>> replicate(@Nonnull String fixture, int first, int count) throws IOException {
+        List<String> templates = templates(fixture);
+        List<Map<String, Object>> copies = new ArrayList<Map<String, Object>>(count);
+
+        for( int i = first; i < first + count; i++ ) {
+            copies.add(copy(templates.get(i % templates.size()), i));
+        }
+        return copies;
+    }
+
+    /**
+     * @return one copy of every template in the fixture, all with <code>{n}</code> set to <code>n</code>
+     */
+    public @Nonnull List<Map<String, Object>> expand(@Nonnull String fixture, int n) throws IOException {
+        List<Map<String, Object>> copies = new ArrayList<Map<String, Object>>();
+
+        for( String template : templates(fixture) ) {
+            copies.add(copy(template, n));
+        }
+        return copies;
+    }
+
+    /**
+     * Seeds copies of the <code>instances</code> fixture into the stub together with what converting them looks
+     * up: a boot disk made from {@link #BOOT_IMAGE} for each and, for one in {@link #RESERVED_ADDRESS_RATIO}, a
+     * reserved address holding its public IP.
+     * @return the instances as stored, with the ids and addresses the stub assigned
+     */
+    @SuppressWarnings("unchecked")
+    public @Nonnull List<Map<String, Object>> seedInstances(int first, int count) throws IOException {
+        if( server == null ) {
+            throw new IllegalStateException("These fixtures are not bound to a stub server");
+        }
+        StubStore store = server.getStore();
+        String addresses = "compute/v1/projects/" + StubProviders.PROJECT + "/regions/" + StubProviders.REGION + "/addresses";
+        List<Map<String, Object>> seeded = new ArrayList<Map<String, Object>>(count);
+
+        for( Map<String, Object> instance : replicate("instances", first, count) ) {
+            String zone = name((String)instance.get("zone"));
+            Map<String, Object> stored = store.put(StubProviders.instances(zone), instance);
+
+            for( Map<String, Object> attached : (List<Map<String, Object>>)stored.get("disks") ) {
+                if( Boolean.TRUE.equals(attached.get("boot")) ) {
+                    Map<String, Object> boot = new LinkedHashMap<String, Object>();
+                    boot.put("name", name((String)attached.get("source")));
+                    boot.put("sourceImage", BOOT_IMAGE);
+                    store.put(StubProviders.disks(zone), boot);
+                }
+            }
+            if( seeded.size() % RESERVED_ADDRESS_RATIO == 0 ) {
+                for( Map<String, Object> nic : (List<Map<String, Object>>)stored.get("networkInterfaces") ) {
+                    for( Map<String, Object> accessConfig : (List<Map<String, Object>>)nic.get("accessConfigs") ) {
+                        Map<String, Object> address = new LinkedHashMap<String, Object>();
+                        address.put("name", "ip-" + stored.get("name"));
+                        address.put("address", accessConfig.get("natIP"));
+                        address.put("status", "IN_USE");
+                        store.put(addresses, address);
+                    }
+                }
+            }
+            seeded.add(stored);
+        }
+        return seeded;
+    }
+
+    /**
+     * Seeds copies of the <code>sqlInstances</code> fixture into the stub, each with the create and update
+     * operations the database converter reads the creation time from.
+     * @return the instances as stored
+     */
+    public @Nonnull List<Map<String, Object>> seedDatabases(int first, int count) throws IOException {
+        if( server == null ) {
+            throw new IllegalStateException("These fixtures are not bound to a stub server");
+        }
+        StubStore store = server.getStore();
+        String instances = "sql/v1beta4/projects/" + StubProviders.PROJECT + "/instances";
+        String operations = "sql/v1beta4/projects/" + StubProviders.PROJECT + "/operations";
+        List<Map<String, Object>> seeded = new ArrayList<Map<String, Object>>(count);
+
+        for( Map<String, Object> instance : replicate("sqlInstances", first, count) ) {
+            String name = (String)instance.get("name");
+
+            seeded.add(store.put(instances, instance));
+            store.put(operations, sqlOperation(name, "CREATE", "2015-09-22T18:11:04.153Z"));
+            store.put(operations, sqlOperation(name, "UPDATE", "2015-10-01T09:30:52.840Z"));
+        }
+        return seeded;
+    }
+
+    /**
+     * Converts generic resources, such as the copies returned by {@link org.dasein.cloud.google.stub.StubStore#put},
+     * to the API model class a converter takes.
+     */
+    static public @Nonnull <T> List<T> parse(@Nonnull List<Map<String, Object>> resources, @Nonnull Class<T> type) throws IOException {
+        List<T> parsed = new ArrayList<T>(resources.size());
+
+        for( Map<String, Object> resource : resources ) {
+            parsed.add(jsonFactory.fromString(jsonFactory.toString(resource), type));
+        }
+        return parsed;
+    }
+
+    /**
+     * @return the last segment of a resource link
+     */
+    static public @Nonnull String name(@Nonnull String link) {
+        return link.substring(link.lastIndexOf('/') + 1);
+    }
+
+    static private @Nonnull Map<String, Object> sqlOperation(@Nonnull String instance, @Nonnull String type, @Nonnull String endTime) {
+        Map<String, Object> operation = new LinkedHashMap<String, Object>();
+
+        operation.put("kind", "sql#operation");
+        operation.put("name", type.toLowerCase() + "-" + instance);
+        operation.put("targetId", instance);
+        operation.put("targetProject", StubProviders.PROJECT);
+        operation.put("operationType", type);
+        operation.put("status", "DONE");
+        operation.put("insertTime", endTime);
+        operation.put("endTime", endTime);
+        return operation;
+    }
+
+    private @Nonnull Map<String, Object> copy(@Nonnull String template, int n) throws IOException {
+        return jsonFactory.fromString(template.replace("{n}", String.valueOf(n)), GenericJson.class);
+    }
+
+    private @Nonnull List<String> templates(@Nonnull String fixture) throws IOException {
+        InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + fixture + ".json");
+
+        if( in == null ) {
+            throw new IOException("No such fixture: " + fixture);
+        }
+        GenericJson page;
+
+        try {
+            page = jsonFactory.fromInputStream(in, GenericJson.class);
+        }
+        finally {
+            in.close();
+        }
+        List<String> templates = new ArrayList<String>();
+
+        for( Object item : (List<?>)page.get("items") ) {
+            templates.add(jsonFactory.toString(item).replace(RECORDED_ROOT, rootUrl));
+        }
+        return templates;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+
+/**
+ * One end-to-end workflow run by {@link ScenarioRunner} through the provider's public API against a stub server.
+ * Scenarios share the server and the provider, so each one names what it seeds so as not to collide with the
+ * others.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public abstract class Scenario {
+    /**
+     * The latencies of the calls made during the measured iterations of a scenario.
+     */
+    static public class Samples {
+        private final List<Long> nanos = new ArrayList<Long>();
+
+        public synchronized void add(@Nonnegative long elapsedNanos) {
+            nanos.add(elapsedNanos);
+        }
+
+        public synchronized int size() {
+            return nanos.size();
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the nearest-rank percentile in milliseconds, 0 if there are no samples
+         */
+        public synchronized double percentile(double percentile) {
+            if( nanos.isEmpty() ) {
+                return 0.0;
+            }
+            List<Long> sorted = new ArrayList<Long>(nanos);
+            Collections.sort(sorted);
+            int rank = (int)Math.ceil(percentile / 100.0 * sorted.size());
+            return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1)) / 1000000.0;
+        }
+    }
+
+    private final String name;
+
+    protected Scenario(@Nonnull String name) {
+        this.name = name;
+    }
+
+    public @Nonnull String getName() {
+        return name;
+    }
+
+    /**
+     * Seeds what every iteration works on. Not measured.
+     */
+    public void setUp(@Nonnull GoogleStubServer server, @Nonnull Google provider) throws Exception {
+    }
+
+    /**
+     * Prepares one iteration, e.g. seeds the VMs it terminates, without going through the API. Not measured.
+     */
+    public void beforeIteration(@Nonnegative int iteration) throws Exception {
+    }
+
+    /**
+     * Runs one iteration, adding the latency of each call it makes to <code>samples</code>.
+     */
+    public abstract void run(@Nonnegative int iteration, @Nonnull Samples samples) throws Exception;
+}
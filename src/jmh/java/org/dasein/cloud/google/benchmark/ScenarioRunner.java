@@ -0,0 +1,255 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.compute.server.LaunchManyScenario;
+import org.dasein.cloud.google.compute.server.ListVirtualMachinesScenario;
+import org.dasein.cloud.google.compute.server.TerminateScenario;
+import org.dasein.cloud.google.platform.ListDatabasesScenario;
+import org.dasein.cloud.google.storage.DriveTransferScenario;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+import org.dasein.cloud.google.stub.StubProviders;
+
+/**
+ * Runs the end-to-end {@link Scenario}s against one stub server with the configured latency and writes, per
+ * scenario, the p50/p99 call latency, the requests issued per iteration and the most threads the client had
+ * alive at once. The results file lists one <code>key = value</code> per line in a fixed order, so two runs can
+ * be compared with <code>diff</code>.
+ * <p>Options are given as <code>name=value</code> arguments:</p>
+ * <ul>
+ *     <li><code>out</code> - the results file (<code>scenario-results.txt</code>)</li>
+ *     <li><code>scenarios</code> - a comma separated subset of the scenario names (all)</li>
+ *     <li><code>latency</code>, <code>jitter</code> - the stub's per request delay in ms (1, 1)</li>
+ *     <li><code>warmup</code>, <code>iterations</code> - unmeasured and measured runs of each scenario (1, 3)</li>
+ *     <li><code>vms</code>, <code>launch</code>, <code>terminate</code>, <code>objects</code>,
+ *     <code>objectSize</code>, <code>databases</code> - the scenario sizes (10000, 200, 200, 100, 262144, 500)</li>
+ * </ul>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class ScenarioRunner {
+    static private final String STUB_THREAD_PREFIX = "gce-stub-";
+
+    /**
+     * Samples the number of live threads, leaving out the stub server's, and keeps the highest count seen.
+     */
+    static private class ThreadSampler extends Thread {
+        private volatile int max;
+
+        ThreadSampler() {
+            super("scenario-thread-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while( !isInterrupted() ) {
+                int count = count();
+                if( count > max ) {
+                    max = count;
+                }
+                try {
+                    Thread.sleep(5L);
+                }
+                catch( InterruptedException e ) {
+                    return;
+                }
+            }
+        }
+
+        void reset() {
+            max = count();
+        }
+
+        int getMax() {
+            return Math.max(max, count());
+        }
+
+        private int count() {
+            ThreadGroup root = Thread.currentThread().getThreadGroup();
+            while( root.getParent() != null ) {
+                root = root.getParent();
+            }
+            Thread[] threads = new Thread[root.activeCount() * 2 + 16];
+            int n = root.enumerate(threads, true);
+            int count = 0;
+
+            for( int i = 0; i < n; i++ ) {
+                if( threads[i] != this && !threads[i].getName().startsWith(STUB_THREAD_PREFIX) ) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    static public void main(String ... args) throws Exception {
+        Map<String, String> options = options(args);
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int iterations = Integer.parseInt(options.get("iterations"));
+        List<Scenario> scenarios = new ArrayList<Scenario>();
+
+        scenarios.add(new ListVirtualMachinesScenario(Integer.parseInt(options.get("vms"))));
+        scenarios.add(new LaunchManyScenario(Integer.parseInt(options.get("launch"))));
+        scenarios.add(new TerminateScenario(Integer.parseInt(options.get("terminate"))));
+        scenarios.add(new DriveTransferScenario(Integer.parseInt(options.get("objects")), Integer.parseInt(options.get("objectSize"))));
+        scenarios.add(new ListDatabasesScenario(Integer.parseInt(options.get("databases"))));
+        if( options.get("scenarios") != null ) {
+            List<String> selected = Arrays.asList(options.get("scenarios").split(","));
+            for( int i = scenarios.size() - 1; i >= 0; i-- ) {
+                if( !selected.contains(scenarios.get(i).getName()) ) {
+                    scenarios.remove(i);
+                }
+            }
+        }
+
+        GoogleStubServer server = StubProviders.startServer();
+        server.setLatency(Long.parseLong(options.get("latency")), Long.parseLong(options.get("jitter")), TimeUnit.MILLISECONDS);
+        Google provider = StubProviders.connect(server);
+        ThreadSampler sampler = new ThreadSampler();
+        Map<String, String> results = new LinkedHashMap<String, String>();
+
+        sampler.start();
+        try {
+            for( Scenario scenario : scenarios ) {
+                System.out.println("Running " + scenario.getName());
+                results.putAll(run(scenario, server, provider, sampler, warmup, iterations));
+            }
+        }
+        finally {
+            sampler.interrupt();
+            provider.close();
+            server.stop();
+        }
+        write(new File(options.get("out")), options, results);
+    }
+
+    static private @Nonnull Map<String, String> run(@Nonnull Scenario scenario, @Nonnull GoogleStubServer server, @Nonnull Google provider, @Nonnull ThreadSampler sampler, int warmup, int iterations) {
+        Map<String, String> results = new LinkedHashMap<String, String>();
+        String name = scenario.getName();
+
+        try {
+            scenario.setUp(server, provider);
+            for( int i = 0; i < warmup; i++ ) {
+                scenario.beforeIteration(i);
+                scenario.run(i, new Scenario.Samples());
+            }
+            Scenario.Samples samples = new Scenario.Samples();
+            long wall = 0L;
+
+            server.resetCounters();
+            sampler.reset();
+            for( int i = warmup; i < warmup + iterations; i++ ) {
+                scenario.beforeIteration(i);
+                long start = System.nanoTime();
+                scenario.run(i, samples);
+                wall += System.nanoTime() - start;
+            }
+            results.put(name + ".calls", String.valueOf(samples.size()));
+            results.put(name + ".p50.ms", format(samples.percentile(50)));
+            results.put(name + ".p99.ms", format(samples.percentile(99)));
+            results.put(name + ".wall.ms", format(wall / 1000000.0 / iterations));
+            results.put(name + ".requests", format((double)server.getRequestCount() / iterations));
+            for( Map.Entry<String, Long> count : new TreeMap<String, Long>(server.getRequestCounts()).entrySet() ) {
+                results.put(name + ".requests[" + count.getKey() + "]", format((double)count.getValue() / iterations));
+            }
+            results.put(name + ".faults", String.valueOf(server.getFaultCount()));
+            results.put(name + ".threads.max", String.valueOf(sampler.getMax()));
+            results.put(name + ".concurrency.max", String.valueOf(server.getMaxConcurrentRequests()));
+        }
+        catch( Exception e ) {
+            e.printStackTrace();
+            results.put(name + ".error", String.valueOf(e.getMessage()).replaceAll("\\s+", " "));
+        }
+        return results;
+    }
+
+    static private @Nonnull Map<String, String> options(@Nonnull String[] args) {
+        Map<String, String> options = new LinkedHashMap<String, String>();
+
+        options.put("out", "scenario-results.txt");
+        options.put("latency", "1");
+        options.put("jitter", "1");
+        options.put("warmup", "1");
+        options.put("iterations", "3");
+        options.put("vms", "10000");
+        options.put("launch", "200");
+        options.put("terminate", "200");
+        options.put("objects", "100");
+        options.put("objectSize", "262144");
+        options.put("databases", "500");
+        for( String arg : args ) {
+            int i = arg.indexOf('=');
+            if( i < 1 ) {
+                throw new IllegalArgumentException("Expected name=value but got " + arg);
+            }
+            options.put(arg.substring(0, i), arg.substring(i + 1));
+        }
+        return options;
+    }
+
+    static private @Nonnull String format(double value) {
+        return String.format(Locale.US, "%.1f", value);
+    }
+
+    static private void write(@Nonnull File file, @Nonnull Map<String, String> options, @Nonnull Map<String, String> results) throws IOException {
+        StringBuilder out = new StringBuilder();
+
+        out.append("# dasein-cloud-google scenario results\n");
+        out.append("# p50/p99 are per call; wall.ms, requests and requests[type] are per measured iteration\n");
+        for( Map.Entry<String, String> option : new TreeMap<String, String>(options).entrySet() ) {
+            if( !"out".equals(option.getKey()) ) {
+                out.append("# ").append(option.getKey()).append(" = ").append(option.getValue()).append('\n');
+            }
+        }
+        for( Map.Entry<String, String> result : results.entrySet() ) {
+            out.append(result.getKey()).append(" = ").append(result.getValue()).append('\n');
+        }
+        System.out.print(out);
+
+        if( file.getAbsoluteFile().getParentFile() != null ) {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(out.toString());
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
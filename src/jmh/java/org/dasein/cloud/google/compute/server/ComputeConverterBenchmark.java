@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.compute.MachineImage;
+import org.dasein.cloud.compute.VirtualMachine;
+import org.dasein.cloud.compute.Volume;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.benchmark.Fixtures;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+import org.dasein.cloud.google.stub.StubProviders;
+import org.dasein.cloud.google.stub.StubStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.api.services.compute.model.Disk;
+import com.google.api.services.compute.model.Image;
+import com.google.api.services.compute.model.Instance;
+
+/**
+ * Cost of converting one instance, disk and image to its Dasein object. The converters' own lookups (the boot
+ * disk's image, the static address of a VM, the VMs a disk is attached to) are answered by a stub server with no
+ * added latency, so the numbers include their client-side cost but not the network. The stub runs in the same
+ * JVM, so the allocation rates reported by <code>-prof gc</code> include its share of serving those lookups.
+ * @version 2015.10
+ * @since 2015.10
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComputeConverterBenchmark {
+    @Param({ "2000" })
+    public int count;
+
+    private GoogleStubServer server;
+    private Google provider;
+    private ServerSupport servers;
+    private DiskSupport disks;
+    private ImageSupport images;
+
+    private List<Instance> instanceFixtures;
+    private List<Disk> diskFixtures;
+    private List<Image> imageFixtures;
+    private int nextInstance;
+    private int nextDisk;
+    private int nextImage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = StubProviders.startServer();
+        provider = StubProviders.connect(server);
+
+        Fixtures fixtures = new Fixtures(server);
+        StubStore store = server.getStore();
+
+        instanceFixtures = Fixtures.parse(fixtures.seedInstances(0, count), Instance.class);
+
+        List<Map<String, Object>> seededDisks = new ArrayList<Map<String, Object>>();
+        for( Map<String, Object> disk : fixtures.replicate("disks", count) ) {
+            seededDisks.add(store.put(StubProviders.disks(Fixtures.name((String)disk.get("zone"))), disk));
+        }
+        diskFixtures = Fixtures.parse(seededDisks, Disk.class);
+
+        // images are converted without any lookups, so they need not be seeded
+        imageFixtures = Fixtures.parse(new Fixtures().replicate("images", count), Image.class);
+
+        servers = new ServerSupport(provider);
+        disks = new DiskSupport(provider);
+        images = new ImageSupport(provider);
+        provider.getDataCenterServices().getRegionFromZone(StubProviders.ZONES[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        provider.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public VirtualMachine toVirtualMachine() throws CloudException, InternalException {
+        nextInstance = (nextInstance + 1) % instanceFixtures.size();
+        return servers.toVirtualMachine(instanceFixtures.get(nextInstance));
+    }
+
+    @Benchmark
+    public Volume toVolume() throws CloudException, InternalException {
+        nextDisk = (nextDisk + 1) % diskFixtures.size();
+        return disks.toVolume(diskFixtures.get(nextDisk));
+    }
+
+    @Benchmark
+    public MachineImage toMachineImage() {
+        nextImage = (nextImage + 1) % imageFixtures.size();
+        return images.toMachineImage(imageFixtures.get(nextImage));
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.compute.VMLaunchOptions;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.benchmark.Fixtures;
+import org.dasein.cloud.google.benchmark.Scenario;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+import org.dasein.cloud.google.stub.StubProviders;
+import org.dasein.cloud.google.stub.StubStore;
+
+/**
+ * Launches <code>count</code> VMs with one <code>launchMany</code> call. Each sample is the time from the call
+ * until the ID of one of the VMs comes out of the returned iterable, i.e. until its launch has completed.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class LaunchManyScenario extends Scenario {
+    /**
+     * A zone none of the other scenarios seed, so the launched VMs do not show up in their listings.
+     */
+    static private final String ZONE = StubProviders.ZONES[2];
+    static private final String MACHINE_TYPE = "n1-standard-1";
+    static private final String IMAGE_PROJECT = "debian-cloud";
+    static private final String IMAGE = "debian-7-wheezy-v20150915";
+
+    private final int count;
+    private ServerSupport servers;
+
+    public LaunchManyScenario(@Nonnegative int count) {
+        super("launchMany");
+        this.count = count;
+    }
+
+    @Override
+    public void setUp(@Nonnull GoogleStubServer server, @Nonnull Google provider) throws Exception {
+        StubStore store = server.getStore();
+        Map<String, Object> machineType = new LinkedHashMap<String, Object>();
+
+        machineType.put("name", MACHINE_TYPE);
+        machineType.put("description", "1 vCPU, 3.75 GB RAM");
+        machineType.put("guestCpus", 1);
+        machineType.put("memoryMb", 3840);
+        machineType.put("maximumPersistentDisks", 16);
+        machineType.put("maximumPersistentDisksSizeGb", "10240");
+        machineType.put("zone", ZONE);
+        store.put("compute/v1/projects/" + StubProviders.PROJECT + "/zones/" + ZONE + "/machineTypes", machineType);
+
+        Map<String, Object> image = new LinkedHashMap<String, Object>();
+        image.put("name", IMAGE);
+        image.put("description", "Debian GNU/Linux 7.9 (wheezy) amd64 with backports kernel built on 2015-09-15");
+        image.put("status", "READY");
+        image.put("diskSizeGb", "10");
+        image.put("licenses", new String[] { Fixtures.BOOT_IMAGE.replace("images/" + IMAGE, "licenses/debian-7-wheezy") });
+        store.put("compute/v1/projects/" + IMAGE_PROJECT + "/global/images", image);
+
+        servers = new ServerSupport(provider);
+    }
+
+    @Override
+    public void run(@Nonnegative int iteration, @Nonnull Samples samples) throws Exception {
+        String hostName = "launch-" + iteration;
+        VMLaunchOptions options = VMLaunchOptions.getInstance(MACHINE_TYPE, IMAGE_PROJECT + "_" + IMAGE, hostName, hostName, "Launched by the launchMany scenario").inVlan(null, ZONE, "default");
+        long start = System.nanoTime();
+        int launched = 0;
+
+        for( String vmId : servers.launchMany(options, count) ) {
+            samples.add(System.nanoTime() - start);
+            launched++;
+        }
+        if( launched < count ) {
+            throw new IllegalStateException("Launched " + launched + " of " + count + " VMs");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.benchmark.Fixtures;
+import org.dasein.cloud.google.benchmark.Scenario;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+
+/**
+ * Terminates <code>count</code> VMs, seeded afresh before each iteration, the way a client without a bulk call
+ * would: one <code>terminate</code> per VM from a pool of {@link #CLIENT_THREADS} threads. Each sample is one
+ * <code>terminate</code> call.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class TerminateScenario extends Scenario {
+    static public final int CLIENT_THREADS = 16;
+
+    /**
+     * Keeps the names of the seeded VMs clear of those of {@link ListVirtualMachinesScenario}.
+     */
+    static private final int FIRST_COPY = 1000000;
+
+    private final int count;
+    private Fixtures fixtures;
+    private ServerSupport servers;
+    private final List<String> vmIds = new ArrayList<String>();
+
+    public TerminateScenario(@Nonnegative int count) {
+        super("terminate");
+        this.count = count;
+    }
+
+    @Override
+    public void setUp(@Nonnull GoogleStubServer server, @Nonnull Google provider) throws Exception {
+        fixtures = new Fixtures(server);
+        servers = new ServerSupport(provider);
+    }
+
+    @Override
+    public void beforeIteration(@Nonnegative int iteration) throws Exception {
+        vmIds.clear();
+        for( Map<String, Object> instance : fixtures.seedInstances(FIRST_COPY + iteration * count, count) ) {
+            vmIds.add(instance.get("name") + "_" + instance.get("id"));
+        }
+    }
+
+    @Override
+    public void run(@Nonnegative int iteration, @Nonnull final Samples samples) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENT_THREADS);
+
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for( final String vmId : vmIds ) {
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        long start = System.nanoTime();
+                        servers.terminate(vmId);
+                        samples.add(System.nanoTime() - start);
+                        return null;
+                    }
+                }));
+            }
+            for( Future<Void> result : results ) {
+                result.get();
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+}
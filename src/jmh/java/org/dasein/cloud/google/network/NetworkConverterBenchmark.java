@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.benchmark.Fixtures;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+import org.dasein.cloud.google.stub.StubProviders;
+import org.dasein.cloud.google.stub.StubStore;
+import org.dasein.cloud.network.Firewall;
+import org.dasein.cloud.network.LoadBalancer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.api.services.compute.model.Network;
+import com.google.api.services.compute.model.TargetPool;
+
+/**
+ * Cost of converting one network with its rules to a firewall, and one target pool to a load balancer. The
+ * forwarding rule and region lookups of the load balancer converter are answered by an in-process stub server
+ * with no added latency.
+ * @version 2015.10
+ * @since 2015.10
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkConverterBenchmark {
+    @Param({ "2000" })
+    public int count;
+
+    private GoogleStubServer server;
+    private Google provider;
+    private FirewallSupport firewalls;
+    private LoadBalancerSupport loadBalancers;
+
+    private List<Network> networkFixtures;
+    private List<List<com.google.api.services.compute.model.Firewall>> ruleFixtures;
+    private List<TargetPool> poolFixtures;
+    private int nextNetwork;
+    private int nextPool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = StubProviders.startServer();
+        provider = StubProviders.connect(server);
+
+        Fixtures recorded = new Fixtures();
+        networkFixtures = Fixtures.parse(recorded.replicate("networks", count), Network.class);
+        ruleFixtures = new ArrayList<List<com.google.api.services.compute.model.Firewall>>(count);
+        for( int i = 0; i < count; i++ ) {
+            ruleFixtures.add(Fixtures.parse(recorded.expand("firewalls", i), com.google.api.services.compute.model.Firewall.class));
+        }
+
+        Fixtures fixtures = new Fixtures(server);
+        StubStore store = server.getStore();
+        String region = "compute/v1/projects/" + StubProviders.PROJECT + "/regions/" + StubProviders.REGION;
+        List<Map<String, Object>> seeded = new ArrayList<Map<String, Object>>();
+
+        for( int i = 0; i < count; i++ ) {
+            for( Map<String, Object> rule : fixtures.expand("forwardingRules", i) ) {
+                store.put(region + "/forwardingRules", rule);
+            }
+            for( Map<String, Object> pool : fixtures.expand("targetPools", i) ) {
+                seeded.add(store.put(region + "/targetPools", pool));
+            }
+        }
+        poolFixtures = Fixtures.parse(seeded, TargetPool.class);
+
+        firewalls = new FirewallSupport(provider);
+        loadBalancers = new LoadBalancerSupport(provider);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        provider.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public Firewall toFirewall() {
+        nextNetwork = (nextNetwork + 1) % networkFixtures.size();
+        return firewalls.toFirewall(networkFixtures.get(nextNetwork), ruleFixtures.get(nextNetwork));
+    }
+
+    @Benchmark
+    public LoadBalancer toLoadBalancer() throws CloudException, InternalException {
+        nextPool = (nextPool + 1) % poolFixtures.size();
+        return loadBalancers.toLoadBalancer(poolFixtures.get(nextPool));
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.platform;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.benchmark.Fixtures;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+import org.dasein.cloud.google.stub.StubProviders;
+import org.dasein.cloud.platform.Database;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.api.services.sqladmin.SQLAdmin;
+import com.google.api.services.sqladmin.model.DatabaseInstance;
+
+/**
+ * Cost of converting one Cloud SQL instance to a {@link Database}, including the lookup of its operation history
+ * for the creation time, answered by an in-process stub server with no added latency.
+ * @version 2015.10
+ * @since 2015.10
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseConverterBenchmark {
+    @Param({ "2000" })
+    public int count;
+
+    private GoogleStubServer server;
+    private Google provider;
+    private RDS rds;
+    private SQLAdmin sqlAdmin;
+
+    private List<DatabaseInstance> instanceFixtures;
+    private int nextInstance;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = StubProviders.startServer();
+        provider = StubProviders.connect(server);
+
+        instanceFixtures = Fixtures.parse(new Fixtures(server).seedDatabases(0, count), DatabaseInstance.class);
+
+        rds = new RDS(provider);
+        sqlAdmin = provider.getGoogleSQLAdmin();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        provider.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public Database toDatabase() throws CloudException, IOException {
+        nextInstance = (nextInstance + 1) % instanceFixtures.size();
+        return rds.toDatabase(sqlAdmin, instanceFixtures.get(nextInstance));
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.platform;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.benchmark.Fixtures;
+import org.dasein.cloud.google.benchmark.Scenario;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+import org.dasein.cloud.platform.Database;
+
+/**
+ * Lists <code>count</code> Cloud SQL instances. The list caches are dropped before each iteration, so every
+ * listing pays for the instance list and the per instance operation lookups.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class ListDatabasesScenario extends Scenario {
+    private final int count;
+    private RDS rds;
+
+    public ListDatabasesScenario(@Nonnegative int count) {
+        super("listDatabases");
+        this.count = count;
+    }
+
+    @Override
+    public void setUp(@Nonnull GoogleStubServer server, @Nonnull Google provider) throws Exception {
+        new Fixtures(server).seedDatabases(0, count);
+        rds = new RDS(provider);
+    }
+
+    @Override
+    public void beforeIteration(@Nonnegative int iteration) throws Exception {
+        rds.clearListCaches();
+    }
+
+    @Override
+    public void run(@Nonnegative int iteration, @Nonnull Samples samples) throws Exception {
+        long start = System.nanoTime();
+        int listed = 0;
+
+        for( Database database : rds.listDatabases() ) {
+            listed++;
+        }
+        samples.add(System.nanoTime() - start);
+        if( listed < count ) {
+            throw new IllegalStateException("Listed " + listed + " of " + count + " databases");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.benchmark.Scenario;
+import org.dasein.cloud.google.stub.GoogleStubServer;
+
+/**
+ * Uploads <code>objects</code> files of <code>objectSize</code> bytes with {@link DriveSupport#upload} and then
+ * fetches each of them back with {@link DriveSupport#get}. Each sample is one upload or one fetch.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class DriveTransferScenario extends Scenario {
+    static private final String BUCKET = "scenario-transfers";
+
+    private final int objects;
+    private final int objectSize;
+    private DriveSupport drive;
+    private File source;
+    private File target;
+
+    public DriveTransferScenario(@Nonnegative int objects, @Nonnegative int objectSize) {
+        super("driveTransfer");
+        this.objects = objects;
+        this.objectSize = objectSize;
+    }
+
+    @Override
+    public void setUp(@Nonnull GoogleStubServer server, @Nonnull Google provider) throws Exception {
+        drive = new DriveSupport(provider);
+        drive.createBucket(BUCKET, false);
+
+        byte[] content = new byte[objectSize];
+        new Random(42L).nextBytes(content);
+        source = File.createTempFile("scenario-upload", ".bin");
+        source.deleteOnExit();
+        target = File.createTempFile("scenario-download", ".bin");
+        target.deleteOnExit();
+        OutputStream out = new FileOutputStream(source);
+        try {
+            out.write(content);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public void run(@Nonnegative int iteration, @Nonnull Samples samples) throws Exception {
+        for( int i = 0; i < objects; i++ ) {
+            long start = System.nanoTime();
+            drive.upload(source, BUCKET, name(iteration, i));
+            samples.add(System.nanoTime() - start);
+        }
+        for( int i = 0; i < objects; i++ ) {
+            long start = System.nanoTime();
+            drive.get(BUCKET, name(iteration, i), target, null);
+            samples.add(System.nanoTime() - start);
+            if( target.length() != objectSize ) {
+                throw new IOException("Fetched " + target.length() + " of " + objectSize + " bytes of " + name(iteration, i));
+            }
+        }
+    }
+
+    static private @Nonnull String name(int iteration, int object) {
+        return "iteration-" + iteration + "/object-" + object;
+    }
+}
@@ -27,6 +27,7 @@ import java.io.IOException;
 
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.RequestTrackingStrategy;
+import org.dasein.cloud.google.metrics.ApiMetrics;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.client.http.HttpHeaders;
@@ -54,6 +55,8 @@ public class CustomHttpRequestInitializer implements HttpRequestInitializer {
             headers.put(strategy.getHeaderName(), strategy.getRequestId());
             request.setHeaders(headers);
         }
+        // last, so that the meter wraps the credential's interceptor
+        ApiMetrics.getInstance().instrument(request, String.valueOf(context.get().getAccountNumber()));
     }
 
     public void setStackedRequestInitializer(ProviderContext ctx, GoogleCredential cred) {
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs one task per key (typically per region or zone) in parallel and merges the results as they
+ * arrive. Tasks share a process-wide pool, but each call caps how many of its own tasks are in flight
+ * at once so a single listing cannot monopolize the pool or trip API rate limits.
+ * <p>Tasks run on pool threads, so they must fetch their API client (e.g. {@link Google#getGoogleCompute()})
+ * inside {@link Task#call(Object)} to bind that thread to the caller's credentials.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class FanOutExecutor {
+    static public final int DEFAULT_CONCURRENCY = 8;
+
+    static private final ExecutorService threadPool = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("gce-fan-out-%d").setDaemon(true).build());
+
+    /**
+     * Work done for a single key of a fan-out.
+     * @param <K> the key type, e.g. a region
+     * @param <T> the result type
+     */
+    public interface Task<K, T> {
+        /**
+         * @return the results for this key; <code>null</code> is treated as no results
+         */
+        @Nullable Collection<T> call(@Nonnull K key) throws Exception;
+    }
+
+    private FanOutExecutor() { }
+
+    static public @Nonnull <K, T> List<T> run(@Nonnull Collection<K> keys, @Nonnull Task<K, T> task) throws CloudException, InternalException {
+        return run(keys, DEFAULT_CONCURRENCY, task);
+    }
+
+    /**
+     * Runs the task for every key with at most <code>maxConcurrency</code> tasks in flight. If any task fails
+     * the remaining tasks are cancelled and the failure is rethrown.
+     * @return the merged results in completion order
+     */
+    static public @Nonnull <K, T> List<T> run(@Nonnull Collection<K> keys, @Nonnegative int maxConcurrency, @Nonnull final Task<K, T> task) throws CloudException, InternalException {
+        List<T> results = new ArrayList<T>();
+
+        if( keys.isEmpty() ) {
+            return results;
+        }
+        if( keys.size() == 1 || maxConcurrency <= 1 ) {
+            for( K key : keys ) {
+                try {
+                    Collection<T> items = task.call(key);
+                    if( items != null ) {
+                        results.addAll(items);
+                    }
+                }
+                catch( Exception e ) {
+                    throw rethrow(e);
+                }
+            }
+            return results;
+        }
+        CompletionService<Collection<T>> completion = new ExecutorCompletionService<Collection<T>>(threadPool);
+        List<Future<Collection<T>>> submitted = new ArrayList<Future<Collection<T>>>();
+        Iterator<K> it = keys.iterator();
+        int inFlight = 0;
+
+        try {
+            while( it.hasNext() && inFlight < maxConcurrency ) {
+                submitted.add(completion.submit(toCallable(task, it.next())));
+                inFlight++;
+            }
+            while( inFlight > 0 ) {
+                Future<Collection<T>> done = completion.take();
+
+                inFlight--;
+                Collection<T> items = done.get();
+                if( items != null ) {
+                    results.addAll(items);
+                }
+                if( it.hasNext() ) {
+                    submitted.add(completion.submit(toCallable(task, it.next())));
+                    inFlight++;
+                }
+            }
+            return results;
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        catch( ExecutionException e ) {
+            throw rethrow(e.getCause());
+        }
+        finally {
+            for( Future<Collection<T>> f : submitted ) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    static private @Nonnull <K, T> Callable<Collection<T>> toCallable(@Nonnull final Task<K, T> task, @Nonnull final K key) {
+        return new Callable<Collection<T>>() {
+            @Override
+            public Collection<T> call() throws Exception {
+                return task.call(key);
+            }
+        };
+    }
+
+    static private @Nonnull CloudException rethrow(@Nonnull Throwable t) throws InternalException {
+        if( t instanceof CloudException ) {
+            return (CloudException)t;
+        }
+        if( t instanceof InternalException ) {
+            throw (InternalException)t;
+        }
+        if( t instanceof RuntimeException ) {
+            throw (RuntimeException)t;
+        }
+        return new CloudException(t);
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Partial-response field masks for the compute API, grouped into per-use-case profiles. Pass the result to a
+ * request's <code>setFields</code>; <code>null</code> (the {@link Profile#FULL} mask) asks for the whole resource.
+ * <p>The {@link Profile#SUMMARY} masks list exactly what the matching converter reads (e.g.
+ * <code>ServerSupport.toVirtualMachine</code>), so a converter that starts reading a new field must have it
+ * added here as well.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public final class FieldMask {
+
+    public enum Profile {
+        /**
+         * Just enough to build a <code>ResourceStatus</code>.
+         */
+        STATUS,
+        /**
+         * Everything the converter to the Dasein object reads.
+         */
+        SUMMARY,
+        /**
+         * The complete resource.
+         */
+        FULL
+    }
+
+    public enum Resource {
+        INSTANCE("instances",
+                "name,id,status,statusMessage,zone",
+                "name,id,description,status,statusMessage,zone,creationTimestamp,disks(boot,source),machineType,networkInterfaces(network,networkIP,accessConfigs/natIP),metadata/items,selfLink"),
+        DISK("disks",
+                "name,status,zone",
+                "name,selfLink,description,zone,creationTimestamp,status,sizeGb,sourceSnapshotId"),
+        SNAPSHOT("snapshots",
+                "name,status",
+                "name,description,status,diskSizeGb,creationTimestamp,sourceDisk"),
+        IMAGE("images",
+                "name,status,deprecated/state",
+                "name,description,status,deprecated/state,selfLink,sourceDisk,diskSizeGb"),
+        FIREWALL("firewalls",
+                "name,network",
+                "name,network,sourceRanges,sourceTags,allowed,targetTags"),
+        NETWORK("networks",
+                "name",
+                "name,description,selfLink"),
+        ADDRESS("addresses",
+                "name,status",
+                "name,address,region,users,status"),
+        TARGET_POOL("targetPools",
+                "name,healthChecks",
+                null);
+
+        private final String aggregatedKey;
+        private final String status;
+        private final String summary;
+
+        Resource(@Nonnull String aggregatedKey, @Nonnull String status, @Nullable String summary) {
+            this.aggregatedKey = aggregatedKey;
+            this.status = status;
+            this.summary = summary;
+        }
+
+        private @Nullable String fields(@Nonnull Profile profile) {
+            switch( profile ) {
+                case STATUS: return status;
+                case SUMMARY: return summary;
+                default: return null;
+            }
+        }
+    }
+
+    /**
+     * The fields of an operation that the operation wait loops in {@link GoogleMethod} and the operation traces
+     * they record read.
+     */
+    static public final String OPERATION = "name,status,error,targetLink,operationType,progress";
+
+    /**
+     * The fields of an instance that <code>IPAddressSupport.assign</code> reads to decide which access configs
+     * to replace.
+     */
+    static public final String INSTANCE_ACCESS_CONFIGS = "name,zone,networkInterfaces(name,accessConfigs(name,natIP))";
+
+    private FieldMask() { }
+
+    /**
+     * @return the mask for a single <code>get</code> of the resource
+     */
+    static public @Nullable String get(@Nonnull Resource resource, @Nonnull Profile profile) {
+        return resource.fields(profile);
+    }
+
+    /**
+     * @return the mask for a <code>list</code> of the resource, keeping the page token
+     */
+    static public @Nullable String list(@Nonnull Resource resource, @Nonnull Profile profile) {
+        String fields = resource.fields(profile);
+        return (fields == null ? null : "items(" + fields + "),nextPageToken");
+    }
+
+    /**
+     * @return the mask for an <code>aggregatedList</code> of the resource, keeping the page token
+     */
+    static public @Nullable String aggregatedList(@Nonnull Resource resource, @Nonnull Profile profile) {
+        String fields = resource.fields(profile);
+        return (fields == null ? null : "items/*/" + resource.aggregatedKey + "(" + fields + "),nextPageToken");
+    }
+}
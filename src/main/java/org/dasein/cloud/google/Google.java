@@ -75,6 +75,7 @@ public class Google extends AbstractCloud {
 
     private static final String DSN_P12_CERT = "p12Certificate";
     private static final String DSN_SERVICE_ACCOUNT = "serviceAccount";
+    private static final String DSN_API_ROOT_URL = "apiRootUrl";
 
     public final static String ISO8601_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
     public final static String ISO8601_NO_MS_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
@@ -213,6 +214,25 @@ public class Google extends AbstractCloud {
         return (name == null ? "Google" : name);
     }
 
+    /**
+     * Google's clients go to their public endpoints unless the context explicitly sets the
+     * <code>apiRootUrl</code> configuration value, such as to a local stand-in for load and latency testing. In that
+     * case every API and the OAuth token exchange are sent to that root. The value is for test harnesses only and is
+     * deliberately not listed in {@link #getContextRequirements()}, so no console offers a field that would send
+     * credentials to an arbitrary host. The cloud endpoint alone never redirects anything.
+     * @return the root URL to use for every API, or <code>null</code> for the public Google endpoints
+     */
+    public @Nullable String getApiRootUrl() {
+        ProviderContext ctx = getContext();
+        Object value = (ctx == null ? null : ctx.getConfigurationValue(DSN_API_ROOT_URL));
+
+        if( value == null || value.toString().trim().length() == 0 ) {
+            return null;
+        }
+        String rootUrl = value.toString().trim();
+        return (rootUrl.endsWith("/") ? rootUrl : rootUrl + "/");
+    }
+
     private HttpTransport getTransport() {
         HttpTransport transport = null;
         int proxyPort = -1;
@@ -256,12 +276,15 @@ public class Google extends AbstractCloud {
         KeyStore keyStore = KeyStore.getInstance("PKCS12");
         InputStream p12AsStream = new ByteArrayInputStream(p12Bytes);
         keyStore.load(p12AsStream, p12Password.toCharArray());
-        GoogleCredential creds = new GoogleCredential.Builder().setTransport(transport)
+        GoogleCredential.Builder builder = new GoogleCredential.Builder().setTransport(transport)
                 .setJsonFactory(jsonFactory)
                 .setServiceAccountId(serviceAccountId)
                 .setServiceAccountScopes(scopes)
-                .setServiceAccountPrivateKey((PrivateKey) keyStore.getKey("privateKey", p12Password.toCharArray()))//This is always the password for p12 files
-                .build();
+                .setServiceAccountPrivateKey((PrivateKey) keyStore.getKey("privateKey", p12Password.toCharArray()));//This is always the password for p12 files
+        String rootUrl = getApiRootUrl();
+        if (rootUrl != null)
+            builder.setTokenServerEncodedUrl(rootUrl + "token");
+        GoogleCredential creds = builder.build();
 
         return creds;
     }
@@ -280,7 +303,10 @@ public class Google extends AbstractCloud {
 
             if (googleCompute == null) {
                 googleCompute = new ArrayList<Compute>();
-                googleCompute.add((Compute) new Compute.Builder(transport, jsonFactory, cachedCredential.iterator().next()).setApplicationName(ctx.getAccountNumber()).setHttpRequestInitializer(initializer).build());
+                Compute.Builder builder = new Compute.Builder(transport, jsonFactory, cachedCredential.iterator().next()).setApplicationName(ctx.getAccountNumber()).setHttpRequestInitializer(initializer);
+                if (getApiRootUrl() != null)
+                    builder.setRootUrl(getApiRootUrl());
+                googleCompute.add(builder.build());
                 computeCache.put(ctx, googleCompute);
             }
         } catch(Exception ex) {
@@ -307,7 +333,10 @@ public class Google extends AbstractCloud {
 
             if (googleDrive == null) {
                 googleDrive = new ArrayList<Storage>();
-                googleDrive.add((Storage) new Storage.Builder(transport, jsonFactory, cachedCredential.iterator().next()).setApplicationName(ctx.getAccountNumber()).setHttpRequestInitializer(initializer).build());
+                Storage.Builder builder = new Storage.Builder(transport, jsonFactory, cachedCredential.iterator().next()).setApplicationName(ctx.getAccountNumber()).setHttpRequestInitializer(initializer);
+                if (getApiRootUrl() != null)
+                    builder.setRootUrl(getApiRootUrl());
+                googleDrive.add(builder.build());
                 storageCache.put(ctx, googleDrive);
             }
         } catch(Exception ex) {
@@ -334,7 +363,10 @@ public class Google extends AbstractCloud {
 
             if (googleSql == null) {
                 googleSql = new ArrayList<SQLAdmin>();
-                googleSql.add((SQLAdmin) new SQLAdmin.Builder(transport, jsonFactory, cachedSqlCredential.iterator().next()).setApplicationName(ctx.getAccountNumber()).setHttpRequestInitializer(initializer).build());
+                SQLAdmin.Builder builder = new SQLAdmin.Builder(transport, jsonFactory, cachedSqlCredential.iterator().next()).setApplicationName(ctx.getAccountNumber()).setHttpRequestInitializer(initializer);
+                if (getApiRootUrl() != null)
+                    builder.setRootUrl(getApiRootUrl());
+                googleSql.add(builder.build());
                 sqlCache.put(ctx, googleSql);
             }
         } catch (Exception ex){
@@ -366,7 +398,10 @@ public class Google extends AbstractCloud {
 
             if (replicaPool == null) {
                 replicaPool = new ArrayList<Replicapool>();
-                replicaPool.add((Replicapool) new Replicapool.Builder(transport, jsonFactory, cachedCredential.iterator().next()).setApplicationName(ctx.getAccountNumber()).setHttpRequestInitializer(initializer).build());
+                Replicapool.Builder builder = new Replicapool.Builder(transport, jsonFactory, cachedCredential.iterator().next()).setApplicationName(ctx.getAccountNumber()).setHttpRequestInitializer(initializer);
+                if (getApiRootUrl() != null)
+                    builder.setRootUrl(getApiRootUrl());
+                replicaPool.add(builder.build());
                 replicapoolCache.put(ctx, replicaPool);
             }
         } catch (Exception ex){
@@ -398,7 +433,10 @@ public class Google extends AbstractCloud {
 
             try {
                 creds = getCreds(httpTransport2, jsonFactory2, ComputeScopes.all());
-                googleCompute = new Compute.Builder(httpTransport2, jsonFactory2, creds).setApplicationName(ctx.getAccountNumber()).build();
+                Compute.Builder builder = new Compute.Builder(httpTransport2, jsonFactory2, creds).setApplicationName(ctx.getAccountNumber());
+                if (getApiRootUrl() != null)
+                    builder.setRootUrl(getApiRootUrl());
+                googleCompute = builder.build();
                 googleCompute.networks().list(ctx.getAccountNumber()).execute();
 
                 return ctx.getAccountNumber();
@@ -20,6 +20,8 @@
 package org.dasein.cloud.google;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.annotation.Nonnull;
 
@@ -28,6 +30,8 @@ import org.dasein.cloud.CloudErrorType;
 import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.google.metrics.ApiMetrics;
+import org.dasein.cloud.google.metrics.OperationTrace;
 import org.dasein.util.CalendarWrapper;
 
 import com.google.api.services.compute.Compute;
@@ -57,16 +61,34 @@ public class GoogleMethod {
     }
 
     public @Nonnull String getOperationTarget(@Nonnull ProviderContext ctx, @Nonnull Operation job, @Nonnull GoogleOperationType operationType, String regionId, String dataCenterId, boolean getLink)throws CloudException, InternalException{
+        job = waitForOperation(ctx, job, operationType, regionId, dataCenterId);
+        if(getLink) return job.getTargetLink();
+        else return job.getTargetLink().substring(job.getTargetLink().lastIndexOf("/") + 1);
+    }
+
+    public @Nonnull boolean getOperationComplete(ProviderContext ctx, Operation job, GoogleOperationType operationType, String regionId, String dataCenterId)throws CloudException, InternalException{
+        waitForOperation(ctx, job, operationType, regionId, dataCenterId);
+        return true;
+    }
+
+    /**
+     * Polls a compute operation until it is done, tracing the wait with {@link ApiMetrics#traceOperation}.
+     * @return the operation as last polled
+     */
+    private @Nonnull Operation waitForOperation(@Nonnull ProviderContext ctx, @Nonnull Operation job, @Nonnull GoogleOperationType operationType, String regionId, String dataCenterId) throws CloudException, InternalException {
+        OperationTrace trace = traceOperation(ctx, job, operationType, regionId, dataCenterId);
         long timeout = System.currentTimeMillis() + (CalendarWrapper.MINUTE * 20L);
+
         while(timeout > System.currentTimeMillis()) {
             if(job.getError() != null){
                 for(Operation.Error.Errors error : job.getError().getErrors()){
+                    trace.done(true);
                     throw new CloudException("An error occurred: " + error.getMessage());
                 }
             }
             else if(job.getStatus().equals("DONE")){
-                if(getLink) return job.getTargetLink();
-                else return job.getTargetLink().substring(job.getTargetLink().lastIndexOf("/") + 1);
+                trace.done(false);
+                return job;
             }
 
             try{
@@ -75,39 +97,91 @@ public class GoogleMethod {
             catch(InterruptedException ignore){}
 
             try{
-                Compute gce = provider.getGoogleCompute();
-                switch(operationType){
-                    case GLOBAL_OPERATION:{
-                        job = gce.globalOperations().get(ctx.getAccountNumber(), job.getName()).execute();
-                        break;
-                    }
-                    case REGION_OPERATION:{
-                        job = gce.regionOperations().get(ctx.getAccountNumber(), regionId, job.getName()).execute();
-                        break;
-                    }
-                    case ZONE_OPERATION:{
-                        job = gce.zoneOperations().get(ctx.getAccountNumber(), dataCenterId, job.getName()).execute();
-                        break;
-                    }
-                }
+                job = getOperation(ctx, job, operationType, regionId, dataCenterId);
+                trace.polled(job.getStatus(), job.getProgress());
             }
             catch(IOException ex){
                 logger.error(ex.getMessage());
             }
         }
+        trace.timedOut();
         throw new CloudException(CloudErrorType.COMMUNICATION, 408, "", "System timed out waiting for Operation to complete");
     }
 
-    public @Nonnull boolean getOperationComplete(ProviderContext ctx, Operation job, GoogleOperationType operationType, String regionId, String dataCenterId)throws CloudException, InternalException{
+    private @Nonnull Operation getOperation(@Nonnull ProviderContext ctx, @Nonnull Operation job, @Nonnull GoogleOperationType operationType, String regionId, String dataCenterId) throws CloudException, InternalException, IOException {
+        Compute gce = provider.getGoogleCompute();
+        switch(operationType){
+            case GLOBAL_OPERATION:
+                return gce.globalOperations().get(ctx.getAccountNumber(), job.getName()).setFields(FieldMask.OPERATION).execute();
+            case REGION_OPERATION:
+                return gce.regionOperations().get(ctx.getAccountNumber(), regionId, job.getName()).setFields(FieldMask.OPERATION).execute();
+            case ZONE_OPERATION:
+                return gce.zoneOperations().get(ctx.getAccountNumber(), dataCenterId, job.getName()).setFields(FieldMask.OPERATION).execute();
+        }
+        return job;
+    }
+
+    private @Nonnull OperationTrace traceOperation(@Nonnull ProviderContext ctx, @Nonnull Operation job, @Nonnull GoogleOperationType operationType, String regionId, String dataCenterId) {
+        String location;
+
+        switch(operationType){
+            case REGION_OPERATION: location = regionId; break;
+            case ZONE_OPERATION: location = dataCenterId; break;
+            default: location = null;
+        }
+        return ApiMetrics.getInstance().traceOperation(String.valueOf(ctx.getAccountNumber()), "compute", location, job.getName(), job.getTargetLink(), job.getOperationType(), job.getStatus(), job.getProgress());
+    }
+
+    /**
+     * Waits for a group of independent operations of the same scope, polling all of the ones still pending
+     * each round, so the total wait is that of the slowest operation rather than the sum of them. Every
+     * operation is waited on even if another fails; the first failure is thrown once all have settled.
+     */
+    public void getOperationsComplete(ProviderContext ctx, List<Operation> jobs, GoogleOperationType operationType, String regionId, String dataCenterId) throws CloudException, InternalException {
+        for(CloudException failure : getOperationsOutcome(ctx, jobs, operationType, regionId, dataCenterId)){
+            if(failure != null) throw failure;
+        }
+    }
+
+    /**
+     * Waits for a group of independent operations like {@link #getOperationsComplete}, but reports how each one
+     * ended instead of throwing.
+     * @return one entry per job, in the same order: <code>null</code> if the operation succeeded, or else the
+     * error it ended with, or a timeout if it was still running when the wait gave up
+     */
+    public @Nonnull List<CloudException> getOperationsOutcome(ProviderContext ctx, List<Operation> jobs, GoogleOperationType operationType, String regionId, String dataCenterId) throws InternalException {
+        List<CloudException> outcomes = new ArrayList<CloudException>();
+        List<Integer> pending = new ArrayList<Integer>();
+        List<Operation> current = new ArrayList<Operation>(jobs);
+        List<OperationTrace> traces = new ArrayList<OperationTrace>();
         long timeout = System.currentTimeMillis() + (CalendarWrapper.MINUTE * 20L);
+
+        for(int i = 0; i < current.size(); i++){
+            outcomes.add(null);
+            pending.add(i);
+            traces.add(traceOperation(ctx, current.get(i), operationType, regionId, dataCenterId));
+        }
         while(timeout > System.currentTimeMillis()) {
-            if(job.getError() != null){
-                for(Operation.Error.Errors error : job.getError().getErrors()){
-                    throw new CloudException("An error occurred: " + error.getMessage());
+            for(int p = pending.size() - 1; p >= 0; p--){
+                int i = pending.get(p);
+                Operation job = current.get(i);
+                if(job.getError() != null){
+                    CloudException failure = new CloudException("An error occurred in operation " + job.getName());
+                    for(Operation.Error.Errors error : job.getError().getErrors()){
+                        failure = new CloudException("An error occurred: " + error.getMessage());
+                        break;
+                    }
+                    outcomes.set(i, failure);
+                    traces.get(i).done(true);
+                    pending.remove(p);
+                }
+                else if("DONE".equals(job.getStatus())){
+                    traces.get(i).done(false);
+                    pending.remove(p);
                 }
             }
-            else if(job.getStatus().equals("DONE")){
-                return true;
+            if(pending.isEmpty()){
+                return outcomes;
             }
 
             try{
@@ -115,28 +189,25 @@ public class GoogleMethod {
             }
             catch(InterruptedException ignore){}
 
-            try{
-                Compute gce = provider.getGoogleCompute();
-                switch(operationType){
-                    case GLOBAL_OPERATION:{
-                        job = gce.globalOperations().get(ctx.getAccountNumber(), job.getName()).execute();
-                        break;
-                    }
-                    case REGION_OPERATION:{
-                        job = gce.regionOperations().get(ctx.getAccountNumber(), regionId, job.getName()).execute();
-                        break;
-                    }
-                    case ZONE_OPERATION:{
-                        job = gce.zoneOperations().get(ctx.getAccountNumber(), dataCenterId, job.getName()).execute();
-                        break;
-                    }
+            for(int i : pending){
+                try{
+                    Operation job = getOperation(ctx, current.get(i), operationType, regionId, dataCenterId);
+                    current.set(i, job);
+                    traces.get(i).polled(job.getStatus(), job.getProgress());
+                }
+                catch(CloudException ex){
+                    logger.error(ex.getMessage());
+                }
+                catch(IOException ex){
+                    logger.error(ex.getMessage());
                 }
-            }
-            catch(IOException ex){
-
             }
         }
-        throw new CloudException(CloudErrorType.COMMUNICATION, 408, "", "System timed out waiting for Operation to complete");
+        for(int i : pending){
+            traces.get(i).timedOut();
+            outcomes.set(i, new CloudException(CloudErrorType.COMMUNICATION, 408, "", "System timed out waiting for Operation to complete"));
+        }
+        return outcomes;
     }
 
     /*
@@ -145,6 +216,7 @@ public class GoogleMethod {
     public void getRDSOperationComplete(ProviderContext ctx, String operation) throws CloudException, InternalException {
         SQLAdmin sqlAdmin = provider.getGoogleSQLAdmin();
 
+        OperationTrace trace = ApiMetrics.getInstance().traceOperation(String.valueOf(ctx.getAccountNumber()), "sql", null, operation, null, null, null, null);
         long timeout = System.currentTimeMillis() + (CalendarWrapper.MINUTE * 20L);
         while(timeout > System.currentTimeMillis()) {
             com.google.api.services.sqladmin.model.Operation instanceOperation = null;
@@ -154,18 +226,25 @@ public class GoogleMethod {
                 logger.warn("getRDSOperationComplete Ignoring " + e.getMessage());
             }
 
-            if (instanceOperation.getError() != null) {
-                for (OperationError error : instanceOperation.getError().getErrors()) {
-                    throw new CloudException("An error occurred: " + error.getCode() + " : " + error.getKind());
+            if (null != instanceOperation) {
+                trace.describe(instanceOperation.getTargetLink(), instanceOperation.getOperationType());
+                trace.polled(instanceOperation.getStatus(), null);
+                if (instanceOperation.getError() != null) {
+                    for (OperationError error : instanceOperation.getError().getErrors()) {
+                        trace.done(true);
+                        throw new CloudException("An error occurred: " + error.getCode() + " : " + error.getKind());
+                    }
+                } else if (instanceOperation.getStatus().equals("DONE")) {
+                    trace.done(false);
+                    return;
                 }
-            } else if (instanceOperation.getStatus().equals("DONE")) {
-                return;
             }
 
             try {
                 Thread.sleep(1000L);
             } catch (InterruptedException ignore) {}
         }
+        trace.timedOut();
         throw new CloudException(CloudErrorType.COMMUNICATION, 408, "", "System timed out waiting for Operation to complete");
     }
 
@@ -180,6 +259,7 @@ public class GoogleMethod {
             throw new InternalException("operation cannot be null");
         }
 
+        OperationTrace trace = ApiMetrics.getInstance().traceOperation(String.valueOf(ctx.getAccountNumber()), "sql", null, operation, null, null, null, null);
         long timeout = System.currentTimeMillis() + (CalendarWrapper.MINUTE * 20L);
         while (timeout > System.currentTimeMillis()) {
             com.google.api.services.sqladmin.model.Operation instanceOperation = null;
@@ -190,11 +270,15 @@ public class GoogleMethod {
             }
 
             if (null != instanceOperation) {
+                trace.describe(instanceOperation.getTargetLink(), instanceOperation.getOperationType());
+                trace.polled(instanceOperation.getStatus(), null);
                 if (null != instanceOperation.getError()) {
                     for (OperationError error : instanceOperation.getError().getErrors()) {
+                        trace.done(true);
                         throw new CloudException("An error occurred: " + error.getCode() + " : " + error.getKind());
                     }
                 } else if (instanceOperation.getStatus().equals("DONE")) {
+                    trace.done(false);
                     return;
                 }
             }
@@ -202,10 +286,12 @@ public class GoogleMethod {
                 Thread.sleep(30000L); // 30 seconds
             } catch (InterruptedException ignore) {}
         }
+        trace.timedOut();
         throw new CloudException(CloudErrorType.COMMUNICATION, 408, "", "System timed out waiting for Operation to complete");
     }
 
     public @Nonnull boolean getCIOperationComplete(ProviderContext ctx, com.google.api.services.replicapool.model.Operation job, GoogleOperationType operationType, String regionId, String dataCenterId) throws CloudException, InternalException {
+        OperationTrace trace = ApiMetrics.getInstance().traceOperation(String.valueOf(ctx.getAccountNumber()), "replicapool", dataCenterId, job.getName(), job.getTargetLink(), job.getOperationType(), job.getStatus(), job.getProgress());
         long timeout = System.currentTimeMillis() + (CalendarWrapper.MINUTE * 20L);
         Replicapool rp;
 
@@ -218,16 +304,19 @@ public class GoogleMethod {
         while (timeout > System.currentTimeMillis()) {
             try {
                 job = rp.zoneOperations().get(ctx.getAccountNumber(), dataCenterId, job.getName()).execute();
+                trace.polled(job.getStatus(), job.getProgress());
             } catch(IOException ex) { 
                 System.out.println(ex);
             }
 
             if (job.getError() != null) {
                 for (Errors error : job.getError().getErrors()) {
+                    trace.done(true);
                     throw new CloudException("An error occurred: " + error.getMessage());
                 }
             }
             else if (job.getStatus().equals("DONE")) {
+                trace.done(false);
                 return true;
             }
             try {
@@ -235,6 +324,7 @@ public class GoogleMethod {
             } catch (InterruptedException ignore) { }
 
         }
+        trace.timedOut();
         throw new CloudException(CloudErrorType.COMMUNICATION, 408, "", "System timed out waiting for Operation to complete");
     }
 }
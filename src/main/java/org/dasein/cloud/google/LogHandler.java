@@ -20,44 +20,34 @@
 
 package org.dasein.cloud.google;
 
-import java.util.logging.Handler;
-import java.util.logging.LogRecord;
-
 import javax.annotation.Nonnull;
 import org.apache.log4j.Logger;
+import org.dasein.cloud.google.metrics.ApiMetrics;
+import org.dasein.cloud.google.metrics.WireTrace;
 
 import com.google.api.client.http.HttpTransport;
 
+/**
+ * Turns on the wire log, <code>dasein.cloud.google.wire.http.HttpTransport</code>, once it is enabled at
+ * <code>DEBUG</code>. The log gets one structured line per API call from a {@link WireTrace} fed by the
+ * request meters, configured through the <code>dasein.google.wire*</code> system properties, rather than the
+ * HTTP transport's own request and response dumps.
+ */
 public class LogHandler {
-    private static java.util.logging.Logger logger;
+    static private final Logger wire = getWireLogger(HttpTransport.class);
+    static private volatile boolean initialized;
+
     private LogHandler() { }
 
     static public void verifyInitialized() {
-
-        if (null == logger) {
-            final Logger wire = getWireLogger(HttpTransport.class);
-            if (wire.isDebugEnabled()) {
-                logger = java.util.logging.Logger.getLogger(HttpTransport.class.getName());
-                logger.setLevel(java.util.logging.Level.CONFIG);
-                logger.addHandler(new Handler() {
-                    @Override public void publish( LogRecord record ) {
-                        String msg = record.getMessage();
-                        if (msg.startsWith("-------------- REQUEST")) {
-                            String [] lines = msg.split("[\n\r]+");
-                            for (String line : lines)
-                                if ((line.contains("https")) || (line.contains("Content-Length")))
-                                    wire.debug("--> REQUEST: " + line);
-                        } else if (msg.startsWith("{"))
-                            wire.debug(msg);
-                        else if (msg.startsWith("Total"))
-                            wire.debug("<-- RESPONSE: " + record.getMessage());
-                    }
-                    @Override public void flush() {}
-                    @Override public void close() throws SecurityException {}
-                });
+        if( !initialized && wire.isDebugEnabled() ) {
+            synchronized( LogHandler.class ) {
+                if( !initialized ) {
+                    ApiMetrics.getInstance().setWireTrace(WireTrace.fromSystemProperties(wire));
+                    initialized = true;
+                }
             }
         }
-
     }
 
     static private @Nonnull String getLastItem(@Nonnull String name) {
@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Creates a set of dependent cloud resources, running every resource as soon as the resources it depends on
+ * exist, so independent siblings are created in parallel and the total time follows the critical path. If any
+ * resource fails, or the calling thread is interrupted, the resources still in flight are allowed to finish and
+ * every resource that was created is deleted again, dependents before their dependencies.
+ * <p>Resources run on pool threads, so they must fetch their API client (e.g. {@link Google#getGoogleCompute()})
+ * inside {@link Resource#create()} and {@link Resource#delete()}.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class ResourceGraph {
+    static private final Logger logger = Google.getLogger(ResourceGraph.class);
+
+    static public final int DEFAULT_CONCURRENCY = 8;
+
+    static private final ExecutorService threadPool = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("gce-resource-graph-%d").setDaemon(true).build());
+
+    /**
+     * A single resource in the graph.
+     */
+    public interface Resource {
+        /**
+         * Creates the resource and waits until it is usable by its dependents. A create that fails part way must
+         * clean up what it created itself before throwing; the graph never deletes a resource whose create failed,
+         * since it may be someone else's resource of the same name.
+         */
+        void create() throws Exception;
+
+        /**
+         * Deletes the resource again while rolling back a failed graph. Only called once {@link #create()} has
+         * returned.
+         */
+        void delete() throws Exception;
+    }
+
+    static private class Node {
+        private final String key;
+        private final Resource resource;
+        private final String[] dependsOn;
+        private final List<Node> dependents = new ArrayList<Node>();
+        private int waitingOn;
+
+        Node(String key, Resource resource, String[] dependsOn) {
+            this.key = key;
+            this.resource = resource;
+            this.dependsOn = dependsOn;
+        }
+    }
+
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+
+    /**
+     * Adds a resource to the graph. Dependencies on keys that are not part of the graph are treated as
+     * resources that already exist.
+     * @param key a key unique within this graph, e.g. <code>"backendService:web"</code>
+     * @param resource the resource to create
+     * @param dependsOn the keys of the resources that must exist before this one is created
+     */
+    public @Nonnull ResourceGraph add(@Nonnull String key, @Nonnull Resource resource, @Nonnull String ... dependsOn) throws InternalException {
+        if( nodes.containsKey(key) ) {
+            throw new InternalException("Duplicate resource " + key);
+        }
+        nodes.put(key, new Node(key, resource, dependsOn));
+        return this;
+    }
+
+    public void execute() throws CloudException, InternalException {
+        execute(DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Creates every resource in the graph with at most <code>maxConcurrency</code> creations in flight.
+     * @throws CloudException the first failure, after the resources in flight have finished and every resource
+     * that was created has been rolled back
+     */
+    public void execute(@Nonnegative int maxConcurrency) throws CloudException, InternalException {
+        LinkedList<Node> ready = new LinkedList<Node>();
+
+        for( Node node : nodes.values() ) {
+            node.waitingOn = 0;
+            node.dependents.clear();
+        }
+        for( Node node : nodes.values() ) {
+            for( String key : node.dependsOn ) {
+                Node dependency = nodes.get(key);
+
+                if( dependency != null ) {
+                    dependency.dependents.add(node);
+                    node.waitingOn++;
+                }
+            }
+        }
+        for( Node node : nodes.values() ) {
+            if( node.waitingOn == 0 ) {
+                ready.add(node);
+            }
+        }
+
+        CompletionService<Node> completion = new ExecutorCompletionService<Node>(threadPool);
+        List<Node> created = new ArrayList<Node>();
+        Throwable failure = null;
+        boolean interrupted = false;
+        int inFlight = 0;
+
+        while( true ) {
+            while( failure == null && !ready.isEmpty() && inFlight < Math.max(1, maxConcurrency) ) {
+                completion.submit(toCallable(ready.removeFirst()));
+                inFlight++;
+            }
+            if( inFlight == 0 ) {
+                break;
+            }
+            // after a failure or an interrupt nothing new is submitted, but the loop keeps draining what is in flight
+            try {
+                Future<Node> done = completion.take();
+
+                inFlight--;
+                try {
+                    Node node = done.get();
+
+                    created.add(node);
+                    for( Node dependent : node.dependents ) {
+                        if( --dependent.waitingOn == 0 ) {
+                            ready.add(dependent);
+                        }
+                    }
+                }
+                catch( ExecutionException e ) {
+                    if( failure == null ) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+            catch( InterruptedException e ) {
+                interrupted = true;
+                if( failure == null ) {
+                    failure = e;
+                }
+            }
+        }
+        if( failure == null && created.size() < nodes.size() ) {
+            failure = new InternalException("Resource graph has a dependency cycle");
+        }
+        if( failure != null ) {
+            rollback(created);
+        }
+        if( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        if( failure != null ) {
+            throw rethrow(failure);
+        }
+    }
+
+    /*
+     * A resource is only started once its dependencies have been created, so completion order is a valid
+     * creation order and walking it backwards removes dependents first.
+     */
+    private void rollback(@Nonnull List<Node> created) {
+        for( int i = created.size() - 1; i >= 0; i-- ) {
+            Node node = created.get(i);
+
+            try {
+                node.resource.delete();
+            }
+            catch( Exception e ) {
+                logger.warn("Unable to roll back " + node.key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    static private @Nonnull Callable<Node> toCallable(@Nonnull final Node node) {
+        return new Callable<Node>() {
+            @Override
+            public Node call() throws Exception {
+                node.resource.create();
+                return node;
+            }
+        };
+    }
+
+    static private @Nonnull CloudException rethrow(@Nonnull Throwable t) throws InternalException {
+        if( t instanceof CloudException ) {
+            return (CloudException)t;
+        }
+        if( t instanceof InternalException ) {
+            throw (InternalException)t;
+        }
+        if( t instanceof RuntimeException ) {
+            throw (RuntimeException)t;
+        }
+        return new CloudException(t);
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+
+/**
+ * Reads list and aggregated list responses straight off the wire with the client's streaming JSON parser and
+ * hands each resource to a callback as soon as it has been parsed, following page tokens. The response
+ * envelope (<code>InstanceAggregatedList</code>, <code>FirewallList</code>, ...) is never built, so only one
+ * resource is held at a time; combined with a <code>setFields</code> mask on the request each resource carries
+ * only the fields its converter reads.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public final class StreamingListReader {
+
+    /**
+     * Receives each resource of a list. It is called while the response is still being read, so it should only
+     * collect or cheaply transform the resource; anything that calls the API belongs after the read returns.
+     * @param <T> the resource model class
+     */
+    public interface Handler<T> {
+        /**
+         * @param scope the key of the scoped list the item came from (e.g. <code>zones/us-central1-a</code>),
+         *              or <code>null</code> for plain lists
+         */
+        void handle(@Nullable String scope, @Nonnull T item) throws CloudException, InternalException;
+    }
+
+    private StreamingListReader() { }
+
+    /**
+     * Streams a plain list response, e.g. <code>gce.firewalls().list(project)</code>.
+     */
+    static public <T> void readList(@Nonnull AbstractGoogleJsonClientRequest<?> request, @Nonnull Class<T> itemClass, @Nonnull Handler<T> handler) throws IOException, CloudException, InternalException {
+        read(request, null, itemClass, handler);
+    }
+
+    /**
+     * Streams an aggregated list response, e.g. <code>gce.instances().aggregatedList(project)</code>.
+     * @param itemsKey the name of the array inside each scoped list, e.g. <code>instances</code> or <code>disks</code>
+     */
+    static public <T> void readAggregatedList(@Nonnull AbstractGoogleJsonClientRequest<?> request, @Nonnull String itemsKey, @Nonnull Class<T> itemClass, @Nonnull Handler<T> handler) throws IOException, CloudException, InternalException {
+        read(request, itemsKey, itemClass, handler);
+    }
+
+    static private <T> void read(@Nonnull AbstractGoogleJsonClientRequest<?> request, @Nullable String itemsKey, @Nonnull Class<T> itemClass, @Nonnull Handler<T> handler) throws IOException, CloudException, InternalException {
+        JsonFactory factory = request.getAbstractGoogleClient().getJsonFactory();
+        String pageToken = null;
+
+        do {
+            request.set("pageToken", pageToken);
+            HttpResponse response = request.executeUnparsed();
+            try {
+                JsonParser parser = factory.createJsonParser(response.getContent(), response.getContentCharset());
+                try {
+                    pageToken = readPage(parser, itemsKey, itemClass, handler);
+                }
+                finally {
+                    parser.close();
+                }
+            }
+            finally {
+                response.disconnect();
+            }
+        } while( pageToken != null );
+    }
+
+    /*
+     * Walks one page, returning its nextPageToken. Anything other than the items and the token is skipped
+     * without being built.
+     */
+    static private @Nullable <T> String readPage(@Nonnull JsonParser parser, @Nullable String itemsKey, @Nonnull Class<T> itemClass, @Nonnull Handler<T> handler) throws IOException, CloudException, InternalException {
+        String nextPageToken = null;
+
+        if( parser.nextToken() != JsonToken.START_OBJECT ) {
+            throw new IOException("Expected a JSON object in the list response");
+        }
+        while( parser.nextToken() == JsonToken.FIELD_NAME ) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if( "nextPageToken".equals(field) ) {
+                nextPageToken = parser.getText();
+            }
+            else if( "items".equals(field) && itemsKey == null && value == JsonToken.START_ARRAY ) {
+                readItems(parser, null, itemClass, handler);
+            }
+            else if( "items".equals(field) && itemsKey != null && value == JsonToken.START_OBJECT ) {
+                while( parser.nextToken() == JsonToken.FIELD_NAME ) {
+                    String scope = parser.getCurrentName();
+
+                    if( parser.nextToken() != JsonToken.START_OBJECT ) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    while( parser.nextToken() == JsonToken.FIELD_NAME ) {
+                        String key = parser.getCurrentName();
+
+                        if( parser.nextToken() == JsonToken.START_ARRAY && itemsKey.equals(key) ) {
+                            readItems(parser, scope, itemClass, handler);
+                        }
+                        else {
+                            parser.skipChildren(); // e.g. the "warning" of an empty scope
+                        }
+                    }
+                }
+            }
+            else {
+                parser.skipChildren();
+            }
+        }
+        return nextPageToken;
+    }
+
+    static private <T> void readItems(@Nonnull JsonParser parser, @Nullable String scope, @Nonnull Class<T> itemClass, @Nonnull Handler<T> handler) throws IOException, CloudException, InternalException {
+        while( parser.nextToken() == JsonToken.START_OBJECT ) {
+            handler.handle(scope, parser.parse(itemClass));
+        }
+    }
+}
@@ -40,7 +40,9 @@ import org.dasein.cloud.google.GoogleOperationType;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.capabilities.GCEVolumeCapabilities;
+import org.dasein.cloud.google.FieldMask;
 import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.StreamingListReader;
 import org.dasein.cloud.util.APITrace;
 import org.dasein.util.uom.storage.Gigabyte;
 import org.dasein.util.uom.storage.Storage;
@@ -285,15 +287,32 @@ public class DiskSupport extends AbstractVolumeSupport {
 
 	@Override
 	public @Nonnull Iterable<ResourceStatus> listVolumeStatus() throws InternalException, CloudException {
-		List<ResourceStatus> status = new ArrayList<ResourceStatus>();
-
-		Iterable<Volume> volumes = listVolumes();
-		for (Volume volume: volumes) {
-			VolumeState state = volume.getCurrentState();
-			ResourceStatus resStatus = new ResourceStatus(volume.getProviderVolumeId(), state);
-			status.add(resStatus);
-		}
-		return status;
+        APITrace.begin(getProvider(), "Volume.listVolumeStatus");
+        try{
+            // status only: no attachment lookups and no Volume objects
+            final List<ResourceStatus> status = new ArrayList<ResourceStatus>();
+            Compute gce = provider.getGoogleCompute();
+            try{
+                Compute.Disks.AggregatedList request = gce.disks().aggregatedList(provider.getContext().getAccountNumber()).setFields(FieldMask.aggregatedList(FieldMask.Resource.DISK, FieldMask.Profile.STATUS));
+                StreamingListReader.readAggregatedList(request, "disks", Disk.class, new StreamingListReader.Handler<Disk>() {
+                    @Override
+                    public void handle(String zone, @Nonnull Disk disk) {
+                        status.add(new ResourceStatus(disk.getName(), toVolumeState(disk.getStatus())));
+                    }
+                });
+                return status;
+            } catch (IOException ex) {
+                logger.error(ex.getMessage());
+                if (ex.getClass() == GoogleJsonResponseException.class) {
+                    GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                    throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+                } else
+                    throw new CloudException("An error occurred listing Volume status: " + ex.getMessage());
+            }
+        }
+        finally{
+            APITrace.end();
+        }
 	}
 
 	@Override
@@ -302,23 +321,25 @@ public class DiskSupport extends AbstractVolumeSupport {
 	}
 
 	@Override
-	public @Nonnull Iterable<Volume> listVolumes(VolumeFilterOptions options) throws InternalException, CloudException {
+	public @Nonnull Iterable<Volume> listVolumes(final VolumeFilterOptions options) throws InternalException, CloudException {
         APITrace.begin(getProvider(), "Volume.listVolumes");
         try{
             ArrayList<Volume> volumes = new ArrayList<Volume>();
+            final List<Disk> disks = new ArrayList<Disk>();
             Compute gce = provider.getGoogleCompute();
             try{
-                DiskAggregatedList diskList = gce.disks().aggregatedList(provider.getContext().getAccountNumber()).execute();
-                Iterator<String> zones = diskList.getItems().keySet().iterator();
-                while(zones.hasNext()){
-                    String zone = zones.next();
-                    if(diskList.getItems().get(zone) != null && diskList.getItems().get(zone).getDisks() != null){
-                        for(Disk disk : diskList.getItems().get(zone).getDisks()){
-                            Volume volume = toVolume(disk);
-                            if( volume != null && (options == null || options.matches(volume)) ) {
-                                volumes.add(volume);
-                            }
-                        }
+                Compute.Disks.AggregatedList request = gce.disks().aggregatedList(provider.getContext().getAccountNumber()).setFields(FieldMask.aggregatedList(FieldMask.Resource.DISK, FieldMask.Profile.SUMMARY));
+                StreamingListReader.readAggregatedList(request, "disks", Disk.class, new StreamingListReader.Handler<Disk>() {
+                    @Override
+                    public void handle(String zone, @Nonnull Disk disk) {
+                        disks.add(disk);
+                    }
+                });
+                // toVolume looks up attachments through the API, so it runs once the stream is closed
+                for( Disk disk : disks ) {
+                    Volume volume = toVolume(disk);
+                    if( volume != null && (options == null || options.matches(volume)) ) {
+                        volumes.add(volume);
                     }
                 }
                 return volumes;
@@ -369,6 +390,16 @@ public class DiskSupport extends AbstractVolumeSupport {
         }
     }
 
+    static private @Nonnull VolumeState toVolumeState(@Nonnull String status) {
+        if (status.equals("DONE") || status.equals("READY")) {
+            return VolumeState.AVAILABLE;
+        } else if (status.equals("FAILED")) {
+            return VolumeState.ERROR;
+        } else {
+            return VolumeState.PENDING;
+        }
+    }
+
     public Volume toVolume(Disk disk) throws InternalException, CloudException{
         Volume volume = new Volume();
         volume.setProviderVolumeId(disk.getName());
@@ -382,13 +413,7 @@ public class DiskSupport extends AbstractVolumeSupport {
         DateTime dt = DateTime.parse(disk.getCreationTimestamp(), fmt);
         volume.setCreationTimestamp(dt.toDate().getTime());
         volume.setProviderDataCenterId(disk.getZone().substring(disk.getZone().lastIndexOf("/") + 1));
-        if (disk.getStatus().equals("DONE") || disk.getStatus().equals("READY")) {
-            volume.setCurrentState(VolumeState.AVAILABLE);
-        } else if (disk.getStatus().equals("FAILED")) {
-            volume.setCurrentState(VolumeState.ERROR);
-        } else {
-            volume.setCurrentState(VolumeState.PENDING);
-        }
+        volume.setCurrentState(toVolumeState(disk.getStatus()));
         volume.setType(VolumeType.HDD);
         volume.setFormat(VolumeFormat.BLOCK);
         volume.setSize(new Storage<Gigabyte>(disk.getSizeGb(), Storage.GIGABYTE));
@@ -399,7 +424,7 @@ public class DiskSupport extends AbstractVolumeSupport {
         Compute gce = provider.getGoogleCompute();
         try{
             //We only care about instances in the same zone as the disk
-            InstanceList list = gce.instances().list(provider.getContext().getAccountNumber(), disk.getZone().substring(disk.getZone().lastIndexOf("/") + 1)).execute();
+            InstanceList list = gce.instances().list(provider.getContext().getAccountNumber(), disk.getZone().substring(disk.getZone().lastIndexOf("/") + 1)).setFields("items(name,id,disks(source,deviceName))").execute();
             if(list.getItems() != null){
                 for(Instance instance : list.getItems()){
                     for(AttachedDisk attachedDisk : instance.getDisks()){
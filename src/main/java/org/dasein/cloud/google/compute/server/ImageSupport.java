@@ -40,6 +40,7 @@ import org.dasein.cloud.compute.*;
 import org.dasein.cloud.google.GoogleOperationType;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
+import org.dasein.cloud.google.FieldMask;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.google.capabilities.GCEImageCapabilities;
 import org.dasein.cloud.util.APITrace;
@@ -127,7 +128,7 @@ public class ImageSupport extends AbstractImageSupport<Google> {
             Image image;
             try{
                 String[] parts = providerImageId.split("_");
-                image = gce.images().get(parts[0], parts[1]).execute();
+                image = gce.images().get(parts[0], parts[1]).setFields(FieldMask.get(FieldMask.Resource.IMAGE, FieldMask.Profile.SUMMARY)).execute();
             } catch (IOException ex) {
                 if (ex.getMessage().contains("was not found")) // could use 404, but in theory 404 could appear in a image name.
                     return null;
@@ -170,7 +171,7 @@ public class ImageSupport extends AbstractImageSupport<Google> {
             ArrayList<MachineImage> images = new ArrayList<MachineImage>();
             try{
                 Compute gce = provider.getGoogleCompute();
-                ImageList imgList = gce.images().list(provider.getContext().getAccountNumber()).execute();
+                ImageList imgList = gce.images().list(provider.getContext().getAccountNumber()).setFields(FieldMask.list(FieldMask.Resource.IMAGE, FieldMask.Profile.SUMMARY)).execute();
                 //TODO: Add filter options
                 if(imgList.getItems() != null){
                     for(Image img : imgList.getItems()){
@@ -366,7 +367,7 @@ public class ImageSupport extends AbstractImageSupport<Google> {
                 ImageList imgList;
                 if (platform != null) {
                     String imageProject = ImageProject.getImageProject(platform);
-                    imgList = gce.images().list(imageProject).execute();
+                    imgList = gce.images().list(imageProject).setFields(FieldMask.list(FieldMask.Resource.IMAGE, FieldMask.Profile.SUMMARY)).execute();
                     if (imgList != null && imgList.getItems() != null) {
                         for (Image img : imgList.getItems()) {
                             MachineImage image = toMachineImage(img);
@@ -379,7 +380,7 @@ public class ImageSupport extends AbstractImageSupport<Google> {
                 } else {
                     for (ImageProject imageProject : ImageProject.values()) {
                         try{
-                            imgList = gce.images().list(imageProject.projectName).execute();
+                            imgList = gce.images().list(imageProject.projectName).setFields(FieldMask.list(FieldMask.Resource.IMAGE, FieldMask.Profile.SUMMARY)).execute();
                             if (imgList != null && imgList.getItems() != null) {
                                 for (Image img : imgList.getItems()) {
                                     MachineImage image = toMachineImage(img);
@@ -426,7 +427,7 @@ public class ImageSupport extends AbstractImageSupport<Google> {
 		throw new OperationNotSupportedException ("Google image does not have meta data");
 	}
 
-    private MachineImage toMachineImage(Image img){
+    MachineImage toMachineImage(Image img){
         if(img.getDeprecated() != null && (img.getDeprecated().getState().equals("DELETED") || img.getDeprecated().getState().equals("DEPRECATED"))){
             return null;
         }
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import com.google.api.client.repackaged.org.apache.commons.codec.binary.Base64;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+
+import javax.annotation.Nonnull;
+import javax.crypto.Cipher;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Crypto used for GCE Windows password resets. The BouncyCastle provider is registered once, the
+ * RSA/OAEP cipher is kept per thread, and a few RSA key pairs are generated ahead of time on a
+ * background thread, starting as soon as the class is loaded, so 2048-bit key generation stays off
+ * the launch path.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public final class PasswordCrypto {
+    static private final Logger logger = Google.getLogger(PasswordCrypto.class);
+
+    static private final int KEY_SIZE  = 2048;
+    static private final int POOL_SIZE = 4;
+
+    static private final BlockingQueue<KeyPair> keyPool = new ArrayBlockingQueue<KeyPair>(POOL_SIZE);
+    static private final AtomicBoolean refilling = new AtomicBoolean(false);
+    static private final ExecutorService refiller = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("gce-rsa-keygen-%d").setDaemon(true).build());
+
+    static {
+        if( Security.getProvider("BC") == null ) {
+            Security.addProvider(new org.bouncycastle.jce.provider.BouncyCastleProvider());
+        }
+    }
+
+    static private final ThreadLocal<Cipher> rsaOAEPPadding = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance("RSA/NONE/OAEPPadding", "BC");
+            } catch ( Exception e ) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    static {
+        refill();
+    }
+
+    private PasswordCrypto() { }
+
+    /**
+     * Makes sure the pool is being filled. Launching a Windows instance calls this before the instance is
+     * created, so the key pair is ready by the time its password is reset.
+     */
+    static public void warm() {
+        refill();
+    }
+
+    /**
+     * Hands out a pre-generated key pair, generating one inline only if the pool is empty, and
+     * schedules the pool to be topped up.
+     */
+    static public @Nonnull KeyPair takeKeyPair() throws InternalException {
+        KeyPair keys = keyPool.poll();
+
+        if( keys == null ) {
+            try {
+                keys = generate();
+            } catch ( NoSuchAlgorithmException e ) {
+                throw new InternalException(e);
+            }
+        }
+        refill();
+        return keys;
+    }
+
+    static public @Nonnull String decrypt(@Nonnull String encryptedPassword, @Nonnull PrivateKey key) throws InternalException {
+        try {
+            Cipher cipher = rsaOAEPPadding.get();
+
+            cipher.init(Cipher.DECRYPT_MODE, key);
+            return new String(cipher.doFinal(Base64.decodeBase64(encryptedPassword)), "UTF8");
+        } catch ( Exception e ) {
+            throw new InternalException(e);
+        }
+    }
+
+    static private @Nonnull KeyPair generate() throws NoSuchAlgorithmException {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+
+        keyGen.initialize(KEY_SIZE);
+        return keyGen.genKeyPair();
+    }
+
+    static private void refill() {
+        if( keyPool.remainingCapacity() == 0 || !refilling.compareAndSet(false, true) ) {
+            return;
+        }
+        refiller.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while( keyPool.remainingCapacity() > 0 ) {
+                        keyPool.offer(generate());
+                    }
+                } catch ( Exception e ) {
+                    logger.warn("Unable to pre-generate RSA key pairs: " + e.getMessage());
+                } finally {
+                    refilling.set(false);
+                }
+            }
+        });
+    }
+}
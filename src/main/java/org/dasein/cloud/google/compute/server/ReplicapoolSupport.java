@@ -21,11 +21,15 @@ package org.dasein.cloud.google.compute.server;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import org.dasein.cloud.google.FanOutExecutor;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
@@ -43,6 +47,7 @@ import org.dasein.cloud.dc.DataCenter;
 import org.dasein.cloud.dc.Region;
 import org.dasein.cloud.util.APITrace;
 
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.compute.Compute;
 import com.google.api.services.compute.model.Instance;
 import com.google.api.services.compute.model.InstanceList;
@@ -60,6 +65,10 @@ import com.google.api.services.replicapool.model.Operation;
  */
 public class ReplicapoolSupport extends AbstractConvergedInfrastructureSupport <Google> {
     static private final Logger logger = Google.getLogger(ReplicapoolSupport.class);
+
+    // "account:ciName" -> zone, filled in by zone sweeps and provisioning
+    static private final ConcurrentHashMap<String, String> ciZones = new ConcurrentHashMap<String, String>();
+
     private Google provider = null;
 
     public ReplicapoolSupport(Google provider) {
@@ -89,58 +98,118 @@ public class ReplicapoolSupport extends AbstractConvergedInfrastructureSupport <
     @Override
     public Iterable<ConvergedInfrastructure> listConvergedInfrastructures(CIFilterOptions options) throws CloudException, InternalException {
         APITrace.begin(getProvider(), "GoogleConvergedInfrastructure.listConvergedInfrastructures");
-        List<ConvergedInfrastructure> convergedInfrastrutures = new ArrayList<ConvergedInfrastructure>();
         try {
-             Replicapool rp = provider.getGoogleReplicapool();
-
-             InstanceGroupManagerList result = null;
-             try {
-                 for (Region region : provider.getDataCenterServices().listRegions()) {
-                     String regionName = region.getProviderRegionId();
-                     for (DataCenter dataCenter : provider.getDataCenterServices().listDataCenters(regionName)) {
-                         String dataCenterId = dataCenter.getProviderDataCenterId();
-                         result = rp.instanceGroupManagers().list(provider.getContext().getAccountNumber(), dataCenterId).execute(); //provider.getContext().getRegionId()
-                         if (null != result.getItems()) {
-                             for (InstanceGroupManager item : result.getItems()) {
-                                 ConvergedInfrastructure ci = ConvergedInfrastructure.getInstance(provider.getContext().getAccountNumber(), 
-                                         regionName, dataCenterId, item.getId().toString(), ConvergedInfrastructureState.RUNNING, item.getName(), item.getDescription(), item.getSelfLink());
-
-                                 convergedInfrastrutures.add(ci);
-                             }
-                         }
-                     }
-                 }
-             } catch ( IOException e ) {
-                 e.printStackTrace();
-             }
+            List<DataCenter> zones = new ArrayList<DataCenter>();
+            for (Region region : provider.getDataCenterServices().listRegions()) {
+                zones.addAll(provider.getDataCenterServices().listDataCenters(region.getProviderRegionId()));
+            }
+            return FanOutExecutor.run(zones, new FanOutExecutor.Task<DataCenter, ConvergedInfrastructure>() {
+                @Override
+                public Collection<ConvergedInfrastructure> call(@Nonnull DataCenter dataCenter) throws Exception {
+                    return listConvergedInfrastructures(dataCenter.getRegionId(), dataCenter.getProviderDataCenterId());
+                }
+            });
         } finally{
             APITrace.end();
         }
+    }
+
+    private List<ConvergedInfrastructure> listConvergedInfrastructures(String regionName, String dataCenterId) throws CloudException, InternalException {
+        List<ConvergedInfrastructure> convergedInfrastrutures = new ArrayList<ConvergedInfrastructure>();
+        Replicapool rp = provider.getGoogleReplicapool();
+        String account = provider.getContext().getAccountNumber();
+        String pageToken = null;
+
+        try {
+            do {
+                InstanceGroupManagerList result = rp.instanceGroupManagers().list(account, dataCenterId).setPageToken(pageToken).execute();
+                if (null != result.getItems()) {
+                    for (InstanceGroupManager item : result.getItems()) {
+                        ConvergedInfrastructure ci = ConvergedInfrastructure.getInstance(account,
+                                regionName, dataCenterId, item.getId().toString(), ConvergedInfrastructureState.RUNNING, item.getName(), item.getDescription(), item.getSelfLink());
+
+                        convergedInfrastrutures.add(ci);
+                        ciZones.put(account + ":" + item.getName(), dataCenterId);
+                    }
+                }
+                pageToken = result.getNextPageToken();
+            } while (null != pageToken);
+        } catch ( IOException e ) {
+            logger.error("Failed to list instance group managers in " + dataCenterId + ": " + e.getMessage());
+        }
         return convergedInfrastrutures;
     }
 
+    /*
+     * Finds the zone of a CI from the index, sweeping all zones only when the CI has not been seen yet.
+     */
+    private @Nullable String getZone(@Nonnull String ciId) throws CloudException, InternalException {
+        String key = provider.getContext().getAccountNumber() + ":" + ciId;
+        String zone = ciZones.get(key);
+
+        if (null == zone) {
+            listConvergedInfrastructures(null);
+            zone = ciZones.get(key);
+        }
+        return zone;
+    }
+
+    /*
+     * Loads the instance group manager for a CI, re-sweeping once if the indexed zone turns out to be stale.
+     */
+    private @Nullable InstanceGroupManager getInstanceGroupManager(@Nonnull String ciId) throws CloudException, InternalException, IOException {
+        Replicapool rp = provider.getGoogleReplicapool();
+        String account = provider.getContext().getAccountNumber();
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            String zone = getZone(ciId);
+            if (null == zone) {
+                return null;
+            }
+            try {
+                return rp.instanceGroupManagers().get(account, zone, ciId).execute();
+            } catch ( GoogleJsonResponseException e ) {
+                if (404 != e.getStatusCode()) {
+                    throw e;
+                }
+                ciZones.remove(account + ":" + ciId);
+            }
+        }
+        return null;
+    }
+
+    private List<Instance> listPoolInstances(@Nonnull InstanceGroupManager pool) throws CloudException, InternalException, IOException {
+        Compute gce = provider.getGoogleCompute();
+        String zone = pool.getZone().replaceAll(".*/", "");
+        String prefix = pool.getBaseInstanceName() + "-";
+        List<Instance> instances = new ArrayList<Instance>();
+        String pageToken = null;
+
+        do {
+            InstanceList result = gce.instances().list(provider.getContext().getAccountNumber(), zone).setFilter("name eq " + prefix + ".*").setPageToken(pageToken).execute();
+            if (null != result.getItems()) {
+                for (Instance instance : result.getItems()) {
+                    if (instance.getName().startsWith(prefix)) {
+                        instances.add(instance);
+                    }
+                }
+            }
+            pageToken = result.getNextPageToken();
+        } while (null != pageToken);
+        return instances;
+    }
+
     @Override
     public Iterable<String> listVirtualMachines(String inCIId) throws InternalException, CloudException {
         APITrace.begin(getProvider(), "GoogleConvergedInfrastructure.listVirtualMachines");
         List<String> vms = new ArrayList<String>();
         try {
-            Replicapool rp = provider.getGoogleReplicapool();
-            Compute gce = provider.getGoogleCompute();
-            String datacenterId = null;
-            Iterable<ConvergedInfrastructure> cis = listConvergedInfrastructures(null);
-            for (ConvergedInfrastructure ci : cis) {
-                if (ci.getName().equals(inCIId)) {
-                    datacenterId = ci.getProviderDataCenterId();
-                }
+            InstanceGroupManager pool = getInstanceGroupManager(inCIId);
+            if (null == pool) {
+                return vms;
             }
-            
-            InstanceGroupManager pool = rp.instanceGroupManagers().get(provider.getContext().getAccountNumber(), datacenterId, inCIId).execute();
-            String baseInstanceName = pool.getBaseInstanceName();
-            InstanceList result = gce.instances().list(provider.getContext().getAccountNumber(), datacenterId).execute();
-            for (Instance instance : result.getItems()) {
-                if (instance.getName().startsWith(baseInstanceName + "-")) {
-                    vms.add(instance.getName());
-                }
+            for (Instance instance : listPoolInstances(pool)) {
+                vms.add(instance.getName());
             }
             return vms;
         } catch ( IOException e ) {
@@ -156,26 +225,14 @@ public class ReplicapoolSupport extends AbstractConvergedInfrastructureSupport <
         APITrace.begin(getProvider(), "GoogleConvergedInfrastructure.listVLANs");
         List<String> nets = new ArrayList<String>();
         try {
-            Replicapool rp = provider.getGoogleReplicapool();
-            Compute gce = provider.getGoogleCompute();
-
-            String datacenterId = null;
-            Iterable<ConvergedInfrastructure> cis = listConvergedInfrastructures(null);
-            for (ConvergedInfrastructure ci : cis) {
-                if (ci.getName().equals(inCIId)) {
-                    datacenterId = ci.getProviderDataCenterId();
-                }
+            InstanceGroupManager pool = getInstanceGroupManager(inCIId);
+            if (null == pool) {
+                return nets;
             }
-            
-            InstanceGroupManager pool = rp.instanceGroupManagers().get(provider.getContext().getAccountNumber(), datacenterId, inCIId).execute();
-            String baseInstanceName = pool.getBaseInstanceName();
-            InstanceList result = gce.instances().list(provider.getContext().getAccountNumber(), datacenterId).execute();
-            for (Instance instance : result.getItems()) {
-                if (instance.getName().startsWith(baseInstanceName + "-")) {
-                    if (null != instance.getNetworkInterfaces()) {
-                        for (NetworkInterface net : instance.getNetworkInterfaces()) {
-                            nets.add(net.getNetwork().replaceAll(".*/", ""));
-                        }
+            for (Instance instance : listPoolInstances(pool)) {
+                if (null != instance.getNetworkInterfaces()) {
+                    for (NetworkInterface net : instance.getNetworkInterfaces()) {
+                        nets.add(net.getNetwork().replaceAll(".*/", ""));
                     }
                 }
             }
@@ -208,6 +265,7 @@ public class ReplicapoolSupport extends AbstractConvergedInfrastructureSupport <
             Operation job = rp.instanceGroupManagers().insert(ctx.getAccountNumber(), options.getZone(), options.getSize(), content).execute();
             GoogleMethod method = new GoogleMethod(provider);
             method.getCIOperationComplete(ctx, job, GoogleOperationType.ZONE_OPERATION, region, options.getZone());
+            ciZones.put(ctx.getAccountNumber() + ":" + content.getName(), options.getZone());
             return ConvergedInfrastructure.getInstance(ctx.getAccountNumber(), region, options.getZone(), options.getBaseInstanceName(), ConvergedInfrastructureState.RUNNING, options.getName(), options.getDescription(), options.getInstanceTemplate());
         } catch ( IOException e ) {
             // TODO Auto-generated catch block
@@ -225,12 +283,13 @@ public class ReplicapoolSupport extends AbstractConvergedInfrastructureSupport <
 
         try {
              Replicapool rp = provider.getGoogleReplicapool();
-             for (ConvergedInfrastructure ci : listConvergedInfrastructures(null)) {
-                 if (ci.getName().equals(ciId)) {
-                     Operation job = rp.instanceGroupManagers().delete(provider.getContext().getAccountNumber(), ci.getProviderDataCenterId(), ciId).execute();
-                     GoogleMethod method = new GoogleMethod(provider);
-                     method.getCIOperationComplete(ctx, job, GoogleOperationType.ZONE_OPERATION, ctx.getRegionId(), ci.getProviderDataCenterId());
-                 }
+             InstanceGroupManager pool = getInstanceGroupManager(ciId);
+             if (null != pool) {
+                 String zone = pool.getZone().replaceAll(".*/", "");
+                 Operation job = rp.instanceGroupManagers().delete(ctx.getAccountNumber(), zone, ciId).execute();
+                 GoogleMethod method = new GoogleMethod(provider);
+                 method.getCIOperationComplete(ctx, job, GoogleOperationType.ZONE_OPERATION, ctx.getRegionId(), zone);
+                 ciZones.remove(ctx.getAccountNumber() + ":" + ciId);
              }
         } catch ( IOException e ) {
             e.printStackTrace();
@@ -44,9 +44,6 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.Security;
 import java.security.spec.RSAPublicKeySpec;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -56,11 +53,14 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -68,7 +68,6 @@ import java.util.regex.Pattern;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import javax.crypto.Cipher;
 
 import org.apache.log4j.Logger;
 import org.dasein.cloud.CloudErrorType;
@@ -91,7 +90,9 @@ import org.dasein.cloud.compute.VirtualMachineProductFilterOptions;
 import org.dasein.cloud.compute.VmState;
 import org.dasein.cloud.compute.VolumeAttachment;
 import org.dasein.cloud.compute.VolumeCreateOptions;
+import org.dasein.cloud.google.FieldMask;
 import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.StreamingListReader;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
@@ -115,10 +116,8 @@ import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.json.simple.parser.JSONParser;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.api.client.repackaged.org.apache.commons.codec.binary.Base64;
 import com.google.api.services.compute.Compute;
 import com.google.api.services.compute.model.AccessConfig;
 import com.google.api.services.compute.model.AttachedDisk;
@@ -143,6 +142,11 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 
 	private Google provider;
 	static private final Logger logger = Google.getLogger(ServerSupport.class);
+
+    /**
+     * The account the Windows agent creates for the password we publish; "administrator" appears to be reserved.
+     */
+    static private final String WINDOWS_ADMIN_USER = "Admin";
 	private Cache<MachineTypeAggregatedList> machineTypesCache;
 	public ServerSupport(Google provider){
         super(provider);
@@ -366,6 +370,9 @@ public class ServerSupport extends AbstractVMSupport<Google> {
                 Image img = gce.images().get(parts[0], parts[1]).execute();
 
                 windows = guessWindows(img);
+                if (windows) {
+                    PasswordCrypto.warm();
+                }
 
                 Long size = img.getDiskSizeGb();
                 String diskSizeGb = size.toString();
@@ -501,44 +508,30 @@ public class ServerSupport extends AbstractVMSupport<Google> {
                 VirtualMachine vm = getVirtualMachine(vmId);
 
                 if (windows) {
-                    // Generate the public/private key pair for encryption and decryption.
-                    KeyPair keys = null;
-                    try {
-                        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-                        keyGen.initialize(2048); 
-
-                        keys = keyGen.genKeyPair();
-                    } catch ( NoSuchAlgorithmException e ) { 
-                        throw new InternalException(e);
-                    }
-
-                    resetPassword(vmId, withLaunchOptions.getDataCenterId(), keys);
-
-                    int retryCount = 20;
-                    while (retryCount-- > 0) {
-                        SerialPortOutput output = null;
-                        try {
-                            output = gce.instances().getSerialPortOutput(provider.getContext().getAccountNumber(), withLaunchOptions.getDataCenterId(), vmId).setPort(4).execute();
-                        } catch ( IOException e ) { 
-                            throw new CloudException(e);
+                    // Take a pre-generated public/private key pair for encryption and decryption.
+                    final KeyPair keys = PasswordCrypto.takeKeyPair();
+                    final String name = vmId;
+
+                    String modulus = resetPassword(vmId, withLaunchOptions.getDataCenterId(), keys);
+                    final Future<WindowsPasswordRetriever.PasswordRecord> password = new WindowsPasswordRetriever(provider, withLaunchOptions.getDataCenterId(), vmId, modulus).start();
+
+                    // the agent takes minutes to report the password, so launch returns now and the password is
+                    // resolved when it is first read
+                    vm.setRootUser(WINDOWS_ADMIN_USER);
+                    vm.setPasswordCallback(new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            try {
+                                return decryptPassword(password.get().getEncryptedPassword(), keys);
+                            } catch ( ExecutionException e ) {
+                                logger.warn("Unable to retrieve the password for " + name + ": " + e.getCause().getMessage());
+                                return null;
+                            } catch ( InterruptedException e ) {
+                                password.cancel(true);
+                                throw e;
+                            }
                         }
-                        // Get the last line - this will be a JSON string corresponding to the most recent password reset attempt.
-                        String[] entries = output.getContents().split("\n");
-                        String outputEntry = entries[entries.length - 1];
-
-                        // Parse output using the json-simple library.
-                        JSONParser parser = new JSONParser();
-                        try {
-                            org.json.simple.JSONObject passwordDict = (org.json.simple.JSONObject)parser.parse(outputEntry);
-                            vm.setRootUser(passwordDict.get("userName").toString());
-                            vm.setRootPassword(decryptPassword(passwordDict.get("encryptedPassword").toString(), keys));
-                            break;
-                        } catch ( Exception e ) { } // ignore exception, just means metadata not yet avail.
-
-                        try {
-                            Thread.sleep(10000);
-                        } catch ( InterruptedException e ) { }
-                    }
+                    });
                 }
                 return vm;
             } else {
@@ -567,15 +560,7 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 
     @Override
     public @Nonnull Iterable<String> listFirewalls(@Nonnull String vmId) throws InternalException, CloudException {
-        ArrayList<String> firewalls = new ArrayList<String>();
-        for(org.dasein.cloud.network.Firewall firewall : provider.getNetworkServices().getFirewallSupport().list()){
-            for(String key : firewall.getTags().keySet()){
-                if (firewall.getTags().get(key).equals(getVmNameFromId(vmId))) {
-                    firewalls.add(firewall.getName());
-                }
-            }
-        }
-        return firewalls;
+        return provider.getNetworkServices().getFirewallSupport().listFirewallsTargeting(getVmNameFromId(vmId));
     }
 
     @Override
@@ -650,23 +635,22 @@ public class ServerSupport extends AbstractVMSupport<Google> {
     }
 
 	@Override
-	public @Nonnull Iterable<VirtualMachine> listVirtualMachines(VMFilterOptions options)throws InternalException, CloudException {
+	public @Nonnull Iterable<VirtualMachine> listVirtualMachines(final VMFilterOptions options)throws InternalException, CloudException {
         APITrace.begin(getProvider(), "listVirtualMachines");
         try{
             try{
                 ArrayList<VirtualMachine> vms = new ArrayList<VirtualMachine>();
+                String regionId = getContext().getRegionId();
                 Compute gce = provider.getGoogleCompute();
-                InstanceAggregatedList instances = gce.instances().aggregatedList(provider.getContext().getAccountNumber()).execute();
-                Iterator<String> it = instances.getItems().keySet().iterator();
-                while(it.hasNext()){
-                    String zone = it.next();
-                    if(getContext().getRegionId().equals(provider.getDataCenterServices().getRegionFromZone(zone))){
-                        if(instances.getItems() != null && instances.getItems().get(zone) != null && instances.getItems().get(zone).getInstances() != null){
-                            for(Instance instance : instances.getItems().get(zone).getInstances()){
-                                VirtualMachine vm = toVirtualMachine(instance);
-                                if (options == null || options.matches(vm)) {
-                                    vms.add(vm);
-                                }
+                Compute.Instances.AggregatedList request = gce.instances().aggregatedList(provider.getContext().getAccountNumber()).setFields(FieldMask.aggregatedList(FieldMask.Resource.INSTANCE, FieldMask.Profile.SUMMARY));
+                // toVirtualMachine and the region lookup may call the API, so they run once the stream is closed
+                Map<String, List<Instance>> instancesByZone = readInstancesByZone(request);
+                for(Map.Entry<String, List<Instance>> entry : instancesByZone.entrySet()){
+                    if(regionId.equals(provider.getDataCenterServices().getRegionFromZone(entry.getKey()))){
+                        for(Instance instance : entry.getValue()){
+                            VirtualMachine vm = toVirtualMachine(instance);
+                            if (vm != null && (options == null || options.matches(vm))) {
+                                vms.add(vm);
                             }
                         }
                     }
@@ -686,6 +670,27 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         }
 	}
 
+    /*
+     * Streams an instance aggregated list into the raw instances of each zone. The handler only collects, so
+     * the response is closed before any caller converts an instance or looks up its region.
+     */
+    private @Nonnull Map<String, List<Instance>> readInstancesByZone(@Nonnull Compute.Instances.AggregatedList request) throws IOException, CloudException, InternalException {
+        final Map<String, List<Instance>> instancesByZone = new LinkedHashMap<String, List<Instance>>();
+
+        StreamingListReader.readAggregatedList(request, "instances", Instance.class, new StreamingListReader.Handler<Instance>() {
+            @Override
+            public void handle(String zone, @Nonnull Instance instance) {
+                List<Instance> instances = instancesByZone.get(zone);
+                if(instances == null){
+                    instances = new ArrayList<Instance>();
+                    instancesByZone.put(zone, instances);
+                }
+                instances.add(instance);
+            }
+        });
+        return instancesByZone;
+    }
+
     @Override
     public @Nonnull Iterable<VirtualMachine> listVirtualMachines()throws InternalException, CloudException {
         VMFilterOptions options = VMFilterOptions.getInstance();
@@ -694,12 +699,35 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 
     @Override
     public @Nonnull Iterable<ResourceStatus> listVirtualMachineStatus() throws InternalException, CloudException {
-        ArrayList<ResourceStatus> vmStatuses = new ArrayList<ResourceStatus>();
-        for(VirtualMachine vm : listVirtualMachines()){
-            ResourceStatus status = new ResourceStatus(vm.getProviderVirtualMachineId(), vm.getCurrentState());
-            vmStatuses.add(status);
+        APITrace.begin(getProvider(), "listVirtualMachineStatus");
+        try{
+            try{
+                // status only: no boot disk lookups and no VirtualMachine objects
+                ArrayList<ResourceStatus> vmStatuses = new ArrayList<ResourceStatus>();
+                String regionId = getContext().getRegionId();
+                Compute gce = provider.getGoogleCompute();
+                Compute.Instances.AggregatedList request = gce.instances().aggregatedList(provider.getContext().getAccountNumber()).setFields(FieldMask.aggregatedList(FieldMask.Resource.INSTANCE, FieldMask.Profile.STATUS));
+                Map<String, List<Instance>> instancesByZone = readInstancesByZone(request);
+                for(Map.Entry<String, List<Instance>> entry : instancesByZone.entrySet()){
+                    if(regionId.equals(provider.getDataCenterServices().getRegionFromZone(entry.getKey()))){
+                        for(Instance instance : entry.getValue()){
+                            vmStatuses.add(new ResourceStatus(instance.getName() + "_" + instance.getId().toString(), toVmState(instance.getStatus(), instance.getStatusMessage())));
+                        }
+                    }
+                }
+                return vmStatuses;
+            } catch (IOException ex) {
+                logger.error(ex.getMessage());
+                if (ex.getClass() == GoogleJsonResponseException.class) {
+                    GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                    throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+                } else
+                    throw new CloudException("An error occurred while listing Virtual Machine status.");
+            }
+        }
+        finally{
+            APITrace.end();
         }
-        return vmStatuses;
     }
 
 	@Override
@@ -892,7 +920,24 @@ public class ServerSupport extends AbstractVMSupport<Google> {
 		throw new OperationNotSupportedException("Google does not support removing meta data from vms");
 	}
 
-    private VirtualMachine toVirtualMachine(Instance instance) throws InternalException, CloudException{
+    static private @Nonnull VmState toVmState(@Nonnull String status, @Nullable String statusMessage) {
+        if (status.equalsIgnoreCase("provisioning") || 
+            status.equalsIgnoreCase("staging")) {
+            if ((null != statusMessage) && (statusMessage.contains("failed"))) {
+                return VmState.ERROR;
+            } else {
+                return VmState.PENDING;
+            }
+        } else if (status.equalsIgnoreCase("stopping")) {
+            return VmState.STOPPING;
+        } else if (status.equalsIgnoreCase("terminated")) {
+            return VmState.STOPPED;
+        } else {
+            return VmState.RUNNING;
+        }
+    }
+
+    VirtualMachine toVirtualMachine(Instance instance) throws InternalException, CloudException{
         VirtualMachine vm = new VirtualMachine();
         vm.setProviderVirtualMachineId(instance.getName() + "_" + instance.getId().toString());
         vm.setName(instance.getName());
@@ -903,22 +948,7 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         }
         vm.setProviderOwnerId(provider.getContext().getAccountNumber());
 
-        VmState vmState = null;
-        if (instance.getStatus().equalsIgnoreCase("provisioning") || 
-            instance.getStatus().equalsIgnoreCase("staging")) {
-            if ((null != instance.getStatusMessage()) && (instance.getStatusMessage().contains("failed"))) {
-                vmState = VmState.ERROR;
-            } else {
-                vmState = VmState.PENDING;
-            }
-        } else if (instance.getStatus().equalsIgnoreCase("stopping")) {
-            vmState = VmState.STOPPING;
-        } else if (instance.getStatus().equalsIgnoreCase("terminated")) {
-            vmState = VmState.STOPPED;
-        } else {
-            vmState = VmState.RUNNING;
-        }
-        vm.setCurrentState(vmState);
+        vm.setCurrentState(toVmState(instance.getStatus(), instance.getStatusMessage()));
         String regionId = "";
         try {
             regionId = provider.getDataCenterServices().getRegionFromZone(instance.getZone().substring(instance.getZone().lastIndexOf("/") + 1));
@@ -942,7 +972,7 @@ public class ServerSupport extends AbstractVMSupport<Google> {
                     String diskName = disk.getSource().substring(disk.getSource().lastIndexOf("/") + 1);
                     Compute gce = provider.getGoogleCompute();
                     try {
-                        Disk sourceDisk = gce.disks().get(provider.getContext().getAccountNumber(), zone, diskName).execute();
+                        Disk sourceDisk = gce.disks().get(provider.getContext().getAccountNumber(), zone, diskName).setFields("sourceImage").execute();
                         if (sourceDisk != null && sourceDisk.getSourceImage() != null) {
                             String project = "";
                             Pattern p = Pattern.compile("/projects/(.*?)/");
@@ -1146,7 +1176,11 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         }
     }
 
-    private void resetPassword(String vmId, String dataCenterId, KeyPair keys) throws InternalException, CloudException {
+    /**
+     * Publishes a new windows-keys entry and waits for the metadata update to be applied.
+     * @return the base64 modulus of the published key, as echoed back in the agent's password record
+     */
+    private String resetPassword(String vmId, String dataCenterId, KeyPair keys) throws InternalException, CloudException {
         Compute gce = provider.getGoogleCompute();
         Instance inst;
         try {
@@ -1156,30 +1190,27 @@ public class ServerSupport extends AbstractVMSupport<Google> {
         }
         Metadata metadata = inst.getMetadata();
 
-        replaceMetadata(metadata, buildKeyMetadata(keys, "Admin", "")); // administrator appears to be reserved
+        JSONObject keyMetadata = buildKeyMetadata(keys, WINDOWS_ADMIN_USER, "");
+        replaceMetadata(metadata, keyMetadata);
 
         // Tell Compute Engine to update the instance metadata with our changes.
+        Operation job;
         try {
-            gce.instances().setMetadata(provider.getContext().getAccountNumber(), dataCenterId, vmId, metadata).execute();
+            job = gce.instances().setMetadata(provider.getContext().getAccountNumber(), dataCenterId, vmId, metadata).execute();
         } catch ( IOException e ) {
             throw new CloudException(e); 
         }
+        GoogleMethod method = new GoogleMethod(provider);
+        method.getOperationComplete(provider.getContext(), job, GoogleOperationType.ZONE_OPERATION, null, dataCenterId);
         try {
-            Thread.sleep(30000);
-        } catch ( InterruptedException e ) { }
+            return keyMetadata.getString("modulus");
+        } catch ( JSONException e ) {
+            return null;
+        }
     }
 
     private String decryptPassword(String message, KeyPair keys) throws InternalException {
-        try {
-            Security.addProvider(new org.bouncycastle.jce.provider.BouncyCastleProvider());
-
-            Cipher rsaOAEPPadding = Cipher.getInstance("RSA/NONE/OAEPPadding", "BC");
-            rsaOAEPPadding.init(Cipher.DECRYPT_MODE, keys.getPrivate());
-
-            return new String(rsaOAEPPadding.doFinal(Base64.decodeBase64(message)), "UTF8");
-        } catch (Exception e) {
-            throw new InternalException(e);
-        }
+        return PasswordCrypto.decrypt(message, keys.getPrivate());
     }
 
     private void replaceMetadata(Metadata metadata, JSONObject newMetadataItem) {
@@ -30,6 +30,7 @@ import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
 import org.dasein.cloud.google.capabilities.GCESnapshotCapabilities;
+import org.dasein.cloud.google.FieldMask;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.util.APITrace;
 import org.joda.time.DateTime;
@@ -127,7 +128,7 @@ public class SnapshotSupport extends AbstractSnapshotSupport{
         try{
             Compute gce = provider.getGoogleCompute();
             try{
-                com.google.api.services.compute.model.Snapshot snapshot = gce.snapshots().get(provider.getContext().getAccountNumber(), snapshotId).execute();
+                com.google.api.services.compute.model.Snapshot snapshot = gce.snapshots().get(provider.getContext().getAccountNumber(), snapshotId).setFields(FieldMask.get(FieldMask.Resource.SNAPSHOT, FieldMask.Profile.SUMMARY)).execute();
                 return toSnapshot(snapshot);
     	    } catch (IOException ex) {
     	        if ((ex.getMessage() != null) && (ex.getMessage().contains("404 Not Found"))) // not found.
@@ -167,7 +168,7 @@ public class SnapshotSupport extends AbstractSnapshotSupport{
             ArrayList<ResourceStatus> statuses = new ArrayList<ResourceStatus>();
             Compute gce = provider.getGoogleCompute();
             try{
-                SnapshotList list = gce.snapshots().list(provider.getContext().getAccountNumber()).execute();
+                SnapshotList list = gce.snapshots().list(provider.getContext().getAccountNumber()).setFields(FieldMask.list(FieldMask.Resource.SNAPSHOT, FieldMask.Profile.STATUS)).execute();
                 if(list != null && list.size() > 0){
                     for(com.google.api.services.compute.model.Snapshot googleSnapshot : list.getItems()){
                         ResourceStatus status = toStatus(googleSnapshot);
@@ -196,7 +197,7 @@ public class SnapshotSupport extends AbstractSnapshotSupport{
             ArrayList<Snapshot> snapshots = new ArrayList<Snapshot>();
             Compute gce = provider.getGoogleCompute();
             try{
-                SnapshotList list = gce.snapshots().list(provider.getContext().getAccountNumber()).execute();
+                SnapshotList list = gce.snapshots().list(provider.getContext().getAccountNumber()).setFields(FieldMask.list(FieldMask.Resource.SNAPSHOT, FieldMask.Profile.SUMMARY)).execute();
                 if(list != null && list.getItems() != null && list.getItems().size() > 0){
                     for(com.google.api.services.compute.model.Snapshot googleSnapshot : list.getItems()){
                         Snapshot snapshot = toSnapshot(googleSnapshot);
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.compute.server;
+
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.SerialPortOutput;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.google.Google;
+import org.dasein.util.CalendarWrapper;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the serial port the GCE Windows agent reports on and completes a future as soon as the
+ * encrypted password record for our key appears. Each poll asks only for output past the last offset
+ * seen; polling is quick while the port is producing output and backs off while it is idle. Polls run
+ * on a small shared scheduler, so no thread is held while waiting between them.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class WindowsPasswordRetriever implements Runnable {
+    static private final Logger logger = Google.getLogger(WindowsPasswordRetriever.class);
+
+    static private final int  SERIAL_PORT = 4;
+    static private final long MIN_DELAY   = 2000L;
+    static private final long MAX_DELAY   = 10000L;
+    static private final long TIMEOUT     = CalendarWrapper.MINUTE * 5L;
+
+    static private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+            new ThreadFactoryBuilder().setNameFormat("gce-windows-password-%d").setDaemon(true).build());
+
+    /**
+     * The password record written by the Windows agent; the password is still encrypted with our public key.
+     */
+    static public class PasswordRecord {
+        private final String userName;
+        private final String encryptedPassword;
+
+        PasswordRecord(@Nonnull String userName, @Nonnull String encryptedPassword) {
+            this.userName = userName;
+            this.encryptedPassword = encryptedPassword;
+        }
+
+        public @Nonnull String getUserName() {
+            return userName;
+        }
+
+        public @Nonnull String getEncryptedPassword() {
+            return encryptedPassword;
+        }
+    }
+
+    private final Google provider;
+    private final String dataCenterId;
+    private final String vmName;
+    private final String modulus;
+    private final SettableFuture<PasswordRecord> result = SettableFuture.create();
+    private final StringBuilder partialLine = new StringBuilder();
+
+    private long offset   = 0L;
+    private long delay    = MIN_DELAY;
+    private long deadline = 0L;
+
+    /**
+     * @param modulus the base64 modulus published in the <code>windows-keys</code> metadata, used to skip
+     *                records left over from earlier resets; <code>null</code> accepts any record
+     */
+    public WindowsPasswordRetriever(@Nonnull Google provider, @Nonnull String dataCenterId, @Nonnull String vmName, @Nullable String modulus) {
+        this.provider = provider;
+        this.dataCenterId = dataCenterId;
+        this.vmName = vmName;
+        this.modulus = modulus;
+    }
+
+    public @Nonnull Future<PasswordRecord> start() {
+        deadline = System.currentTimeMillis() + TIMEOUT;
+        scheduler.schedule(this, MIN_DELAY, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    @Override
+    public void run() {
+        if( result.isDone() ) {
+            return; // cancelled by the caller
+        }
+        try {
+            Compute gce = provider.getGoogleCompute();
+            Compute.Instances.GetSerialPortOutput request = gce.instances().getSerialPortOutput(provider.getContext().getAccountNumber(), dataCenterId, vmName).setPort(SERIAL_PORT);
+
+            request.set("start", offset);
+            SerialPortOutput output = request.execute();
+            String contents = (output.getContents() == null ? "" : output.getContents());
+            Object next = output.get("next");
+            String fresh;
+
+            if( next != null ) {
+                fresh = contents;
+                offset = Long.parseLong(next.toString());
+            }
+            else {
+                // the endpoint ignored "start" and returned the whole buffer; only look at the tail we have not seen
+                fresh = (contents.length() > offset ? contents.substring((int)offset) : "");
+                offset = contents.length();
+            }
+            if( fresh.length() > 0 ) {
+                delay = MIN_DELAY;
+                PasswordRecord record = scan(fresh);
+
+                if( record != null ) {
+                    result.set(record);
+                    return;
+                }
+            }
+            else {
+                delay = Math.min(delay * 3 / 2, MAX_DELAY);
+            }
+        }
+        catch( Exception e ) {
+            logger.debug("Serial port poll for " + vmName + " failed: " + e.getMessage());
+            delay = Math.min(delay * 3 / 2, MAX_DELAY);
+        }
+        if( System.currentTimeMillis() + delay > deadline ) {
+            result.setException(new CloudException(CloudErrorType.COMMUNICATION, 408, "", "Timed out waiting for the Windows password of " + vmName));
+        }
+        else {
+            scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private @Nullable PasswordRecord scan(@Nonnull String fresh) {
+        partialLine.append(fresh);
+        int start = 0;
+        int end;
+
+        while( (end = partialLine.indexOf("\n", start)) >= 0 ) {
+            PasswordRecord record = parse(partialLine.substring(start, end));
+
+            start = end + 1;
+            if( record != null ) {
+                partialLine.setLength(0);
+                return record;
+            }
+        }
+        partialLine.delete(0, start);
+        return null;
+    }
+
+    private @Nullable PasswordRecord parse(@Nonnull String line) {
+        if( !line.contains("encryptedPassword") ) {
+            return null;
+        }
+        try {
+            JSONObject passwordDict = (JSONObject)new JSONParser().parse(line.trim());
+            Object user = passwordDict.get("userName");
+            Object password = passwordDict.get("encryptedPassword");
+            Object recordModulus = passwordDict.get("modulus");
+
+            if( user == null || password == null ) {
+                return null;
+            }
+            if( modulus != null && recordModulus != null && !modulus.equals(recordModulus.toString()) ) {
+                return null; // answer to an earlier reset
+            }
+            return new PasswordRecord(user.toString(), password.toString());
+        }
+        catch( Exception e ) {
+            return null; // not a complete JSON record
+        }
+    }
+}
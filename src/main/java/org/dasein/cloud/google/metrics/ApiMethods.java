@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Names API calls the way Google's discovery documents do, e.g. <code>compute.instances.list</code> or
+ * <code>storage.objects.insert</code>, from the HTTP method and URL of a request, so that calls are grouped by
+ * what they do rather than by the project, zone or resource they touch.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class ApiMethods {
+    private ApiMethods() { }
+
+    /**
+     * @param httpMethod the HTTP method of the request
+     * @param path the path of the request URL, without the query
+     * @param media true for a request whose query asks for <code>alt=media</code>, which reads an object's
+     * content rather than its metadata; named <code>storage.objects.media</code> so downloads are told apart
+     * @return the method name, <code>unknown</code> for paths that do not look like a Google API
+     */
+    static public @Nonnull String of(@Nonnull String httpMethod, @Nonnull String path, boolean media) {
+        String[] segments = trim(path).split("/");
+        int i = 0;
+
+        if( segments.length > 0 && ("upload".equals(segments[0]) || "download".equals(segments[0])) ) {
+            i++;
+        }
+        // service/version/...
+        if( segments.length < i + 3 ) {
+            return "unknown";
+        }
+        String service = segments[i];
+        i += 2;
+
+        String resource = null;
+        boolean hasId = false;
+        boolean aggregated = false;
+        String action = null;
+
+        while( i < segments.length ) {
+            String segment = segments[i];
+
+            if( "global".equals(segment) ) {
+                i++;
+            }
+            else if( "aggregated".equals(segment) ) {
+                aggregated = true;
+                i++;
+            }
+            else if( resource != null && hasId && !isScope(resource) ) {
+                // instances/{name}/setMetadata
+                action = segment;
+                break;
+            }
+            else {
+                resource = segment;
+                hasId = (i + 1 < segments.length);
+                i += 2;
+            }
+        }
+        if( resource == null ) {
+            return service + ".unknown";
+        }
+        String verb;
+
+        if( action != null ) {
+            verb = action;
+        }
+        else if( "GET".equals(httpMethod) ) {
+            verb = (hasId ? (media ? "media" : "get") : (aggregated ? "aggregatedList" : "list"));
+        }
+        else if( "POST".equals(httpMethod) ) {
+            verb = (hasId ? "post" : "insert");
+        }
+        else {
+            verb = httpMethod.toLowerCase(Locale.ENGLISH);
+        }
+        return service + "." + collection(resource) + "." + verb;
+    }
+
+    /**
+     * Names the call that started a long-running operation from the operation itself.
+     * @param service the API the operation belongs to, e.g. <code>compute</code>
+     * @param targetLink the link to the resource the operation works on, if known
+     * @param operationType the operation type, e.g. <code>insert</code> or <code>CREATE</code>
+     * @return the method name, e.g. <code>compute.instances.insert</code>
+     */
+    static public @Nonnull String ofOperation(@Nonnull String service, @Nullable String targetLink, @Nullable String operationType) {
+        String resource = "unknown";
+
+        if( targetLink != null ) {
+            String[] segments = trim(targetLink).split("/");
+            if( segments.length >= 2 ) {
+                resource = collection(segments[segments.length - 2]);
+            }
+        }
+        String verb = (operationType == null ? "unknown" : operationType);
+        if( verb.equals(verb.toUpperCase(Locale.ENGLISH)) ) {
+            verb = verb.toLowerCase(Locale.ENGLISH);
+        }
+        return service + "." + resource + "." + verb;
+    }
+
+    /**
+     * Zones, regions and buckets hold collections rather than having actions of their own.
+     */
+    static private boolean isScope(@Nonnull String resource) {
+        return "zones".equals(resource) || "regions".equals(resource) || "projects".equals(resource) || "b".equals(resource);
+    }
+
+    static private @Nonnull String collection(@Nonnull String resource) {
+        if( "b".equals(resource) ) {
+            return "buckets";
+        }
+        else if( "o".equals(resource) ) {
+            return "objects";
+        }
+        return resource;
+    }
+
+    static private @Nonnull String trim(@Nonnull String path) {
+        int scheme = path.indexOf("://");
+        if( scheme > -1 ) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = (slash < 0 ? "" : path.substring(slash));
+        }
+        int query = path.indexOf('?');
+        if( query > -1 ) {
+            path = path.substring(0, query);
+        }
+        while( path.startsWith("/") ) {
+            path = path.substring(1);
+        }
+        return path;
+    }
+}
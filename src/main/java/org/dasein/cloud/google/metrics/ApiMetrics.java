@@ -0,0 +1,294 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.google.Google;
+
+import com.google.api.client.http.HttpRequest;
+
+/**
+ * Collects {@link CallMetrics} per account and API method for every request the provider sends. Requests are
+ * metered by {@link #instrument(HttpRequest, String)}, which the provider's request initializer applies to each
+ * of them. The waits in {@link org.dasein.cloud.google.GoogleMethod} trace each long-running operation with
+ * {@link #traceOperation}, which adds the wait to the metrics of the call that started it and keeps
+ * {@link OperationStats} per method and location.
+ * <p>Metrics are kept for the life of the class loader. Publish them by adding an exporter, e.g.
+ * <code>ApiMetrics.getInstance().addExporter(new JmxMetricsExporter())</code>, or read them with
+ * {@link #getMetrics()} and {@link #getOperationStats()}. Operation events go to the
+ * {@link OperationListener}s added, including a {@link SlowOperationLog} if the
+ * <code>dasein.google.slowOperationMillis</code> system property is set.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class ApiMetrics {
+    static private final Logger logger = Google.getLogger(ApiMetrics.class);
+    static private final ApiMetrics instance = new ApiMetrics();
+
+    static public @Nonnull ApiMetrics getInstance() {
+        return instance;
+    }
+
+    private final ConcurrentMap<String, CallMetrics> metrics = new ConcurrentHashMap<String, CallMetrics>();
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<String, OperationStats>();
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<MetricsExporter>();
+    private final List<OperationListener> listeners = new CopyOnWriteArrayList<OperationListener>();
+    private volatile WireTrace wireTrace;
+
+    private ApiMetrics() {
+        String threshold = System.getProperty("dasein.google.slowOperationMillis");
+
+        if( threshold != null ) {
+            try {
+                listeners.add(new SlowOperationLog(Long.parseLong(threshold.trim())));
+            }
+            catch( NumberFormatException e ) {
+                logger.warn("Ignoring dasein.google.slowOperationMillis=" + threshold + ": not a number");
+            }
+        }
+    }
+
+    /**
+     * Adds an exporter and tells it about the metrics collected so far.
+     */
+    public void addExporter(@Nonnull MetricsExporter exporter) {
+        exporters.add(exporter);
+        for( CallMetrics m : metrics.values() ) {
+            exporter.added(m);
+        }
+        for( OperationStats stats : operations.values() ) {
+            exporter.added(stats);
+        }
+    }
+
+    public void removeExporter(@Nonnull MetricsExporter exporter) {
+        if( exporters.remove(exporter) ) {
+            for( CallMetrics m : metrics.values() ) {
+                exporter.removed(m);
+            }
+            for( OperationStats stats : operations.values() ) {
+                exporter.removed(stats);
+            }
+        }
+    }
+
+    public void addOperationListener(@Nonnull OperationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOperationListener(@Nonnull OperationListener listener) {
+        listeners.remove(listener);
+    }
+
+    public @Nullable WireTrace getWireTrace() {
+        return wireTrace;
+    }
+
+    /**
+     * Sets where each metered call is traced to, closing the previous trace, if any.
+     * @param wireTrace the new trace, <code>null</code> to stop tracing
+     */
+    public synchronized void setWireTrace(@Nullable WireTrace wireTrace) {
+        WireTrace previous = this.wireTrace;
+
+        this.wireTrace = wireTrace;
+        if( previous != null && previous != wireTrace ) {
+            previous.close();
+        }
+    }
+
+    /**
+     * @return the metrics of every account and method called so far
+     */
+    public @Nonnull Collection<CallMetrics> getMetrics() {
+        return new ArrayList<CallMetrics>(metrics.values());
+    }
+
+    public @Nullable CallMetrics getMetrics(@Nonnull String account, @Nonnull String method) {
+        return metrics.get(key(account, method));
+    }
+
+    /**
+     * @return the stats of the operations of every account, method and location waited for so far
+     */
+    public @Nonnull Collection<OperationStats> getOperationStats() {
+        return new ArrayList<OperationStats>(operations.values());
+    }
+
+    /**
+     * Drops everything collected so far, e.g. between test runs.
+     */
+    public void reset() {
+        for( String key : new ArrayList<String>(metrics.keySet()) ) {
+            CallMetrics m = metrics.remove(key);
+            if( m != null ) {
+                for( MetricsExporter exporter : exporters ) {
+                    exporter.removed(m);
+                }
+            }
+        }
+        for( String key : new ArrayList<String>(operations.keySet()) ) {
+            OperationStats stats = operations.remove(key);
+            if( stats != null ) {
+                for( MetricsExporter exporter : exporters ) {
+                    exporter.removed(stats);
+                }
+            }
+        }
+    }
+
+    /**
+     * Meters one request, chaining to the interceptors and handlers already set on it. Call this after
+     * everything else that installs interceptors on the request, e.g. the credential.
+     */
+    public void instrument(@Nonnull HttpRequest request, @Nonnull String account) {
+        RequestMeter meter = new RequestMeter(this, account, request.getInterceptor(), request.getResponseInterceptor(), request.getIOExceptionHandler());
+
+        request.setInterceptor(meter);
+        request.setResponseInterceptor(meter);
+        request.setIOExceptionHandler(meter);
+    }
+
+    /**
+     * Starts tracing the wait for a long-running operation just submitted.
+     * @param service the API the operation belongs to, e.g. <code>compute</code>
+     * @param location the zone or region the operation runs in, <code>null</code> if global
+     * @param name the operation name
+     * @param targetLink the link to the resource it works on, if known yet
+     * @param operationType its type, e.g. <code>insert</code>, if known yet
+     * @param status its status as submitted, if known
+     * @param progress its progress as submitted, if known
+     */
+    public @Nonnull OperationTrace traceOperation(@Nonnull String account, @Nonnull String service, @Nullable String location, @Nonnull String name, @Nullable String targetLink, @Nullable String operationType, @Nullable String status, @Nullable Integer progress) {
+        OperationTrace trace = new OperationTrace(this, account, service, location, name, targetLink, operationType);
+
+        for( OperationListener listener : listeners ) {
+            try {
+                listener.submitted(trace);
+            }
+            catch( RuntimeException e ) {
+                logger.warn("Operation listener failed on " + trace + ": " + e.getMessage());
+            }
+        }
+        trace.observe(status, progress);
+        return trace;
+    }
+
+    void operationProgressed(@Nonnull OperationTrace trace) {
+        for( OperationListener listener : listeners ) {
+            try {
+                listener.firstProgress(trace);
+            }
+            catch( RuntimeException e ) {
+                logger.warn("Operation listener failed on " + trace + ": " + e.getMessage());
+            }
+        }
+    }
+
+    void operationDone(@Nonnull OperationTrace trace) {
+        get(trace.getAccount(), trace.getMethod()).recordOperationWait(trace.getElapsedNanos());
+        getOperationStats(trace).record(trace);
+        for( OperationListener listener : listeners ) {
+            try {
+                listener.done(trace);
+            }
+            catch( RuntimeException e ) {
+                logger.warn("Operation listener failed on " + trace + ": " + e.getMessage());
+            }
+        }
+    }
+
+    void operationTimedOut(@Nonnull OperationTrace trace) {
+        get(trace.getAccount(), trace.getMethod()).recordOperationWait(trace.getElapsedNanos());
+        getOperationStats(trace).record(trace);
+        for( OperationListener listener : listeners ) {
+            try {
+                listener.timedOut(trace);
+            }
+            catch( RuntimeException e ) {
+                logger.warn("Operation listener failed on " + trace + ": " + e.getMessage());
+            }
+        }
+    }
+
+    void recordCall(@Nonnull String account, @Nonnull String method, @Nonnegative long nanos, int status, @Nonnegative int retries, long sent, long received) {
+        get(account, method).recordCall(nanos, status, retries, sent, received);
+    }
+
+    private @Nonnull CallMetrics get(@Nonnull String account, @Nonnull String method) {
+        String key = key(account, method);
+        CallMetrics m = metrics.get(key);
+
+        if( m == null ) {
+            CallMetrics created = new CallMetrics(account, method);
+            m = metrics.putIfAbsent(key, created);
+            if( m == null ) {
+                m = created;
+                for( MetricsExporter exporter : exporters ) {
+                    try {
+                        exporter.added(m);
+                    }
+                    catch( RuntimeException e ) {
+                        logger.warn("Unable to export metrics for " + key + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return m;
+    }
+
+    private @Nonnull OperationStats getOperationStats(@Nonnull OperationTrace trace) {
+        String method = trace.getMethod();
+        String key = key(trace.getAccount(), method) + " " + trace.getLocation();
+        OperationStats stats = operations.get(key);
+
+        if( stats == null ) {
+            OperationStats created = new OperationStats(trace.getAccount(), method, trace.getLocation());
+            stats = operations.putIfAbsent(key, created);
+            if( stats == null ) {
+                stats = created;
+                for( MetricsExporter exporter : exporters ) {
+                    try {
+                        exporter.added(stats);
+                    }
+                    catch( RuntimeException e ) {
+                        logger.warn("Unable to export operation stats for " + key + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return stats;
+    }
+
+    static private @Nonnull String key(@Nonnull String account, @Nonnull String method) {
+        return account + " " + method;
+    }
+}
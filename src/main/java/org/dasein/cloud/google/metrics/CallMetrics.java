@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * What the calls of one API method made for one account cost: their latency from sending the request to
+ * receiving the response headers, including retries, their status codes, the bytes they moved and, for calls
+ * that start a long-running operation, the time spent waiting for it.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class CallMetrics implements CallMetricsMXBean {
+    /**
+     * The status recorded for a call that failed without a response.
+     */
+    static public final int NO_RESPONSE = 0;
+
+    private final String account;
+    private final String method;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram operationWaits = new LatencyHistogram();
+    private final ConcurrentMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    CallMetrics(@Nonnull String account, @Nonnull String method) {
+        this.account = account;
+        this.method = method;
+    }
+
+    /**
+     * @param status the final HTTP status, {@link #NO_RESPONSE} if there was none
+     * @param retries the attempts made beyond the first
+     * @param sent the request body size, -1 if unknown
+     * @param received the response body size, -1 if unknown
+     */
+    void recordCall(@Nonnegative long nanos, int status, @Nonnegative int retries, long sent, long received) {
+        latency.record(nanos);
+        AtomicLong count = statuses.get(status);
+        if( count == null ) {
+            AtomicLong created = new AtomicLong();
+            count = statuses.putIfAbsent(status, created);
+            if( count == null ) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+        if( status == NO_RESPONSE || status >= 400 ) {
+            failures.incrementAndGet();
+        }
+        if( retries > 0 ) {
+            this.retries.addAndGet(retries);
+        }
+        if( sent > 0L ) {
+            bytesSent.addAndGet(sent);
+        }
+        if( received > 0L ) {
+            bytesReceived.addAndGet(received);
+        }
+    }
+
+    void recordOperationWait(@Nonnegative long nanos) {
+        operationWaits.record(nanos);
+    }
+
+    @Override
+    public @Nonnull String getAccount() {
+        return account;
+    }
+
+    @Override
+    public @Nonnull String getMethod() {
+        return method;
+    }
+
+    @Override
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public double getLatencyMeanMillis() {
+        return latency.getMeanMillis();
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latency.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latency.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latency.getMaxMillis();
+    }
+
+    @Override
+    public @Nonnull Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+
+        for( Map.Entry<Integer, AtomicLong> entry : statuses.entrySet() ) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    @Override
+    public long getOperationWaits() {
+        return operationWaits.getCount();
+    }
+
+    @Override
+    public double getOperationWaitP50Millis() {
+        return operationWaits.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getOperationWaitP99Millis() {
+        return operationWaits.getPercentileMillis(99);
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return account + " " + method + " calls=" + getCalls() + " failures=" + getFailures() + " retries=" + getRetries()
+                + " p50=" + getLatencyP50Millis() + "ms p99=" + getLatencyP99Millis() + "ms max=" + getLatencyMaxMillis()
+                + "ms sent=" + getBytesSent() + " received=" + getBytesReceived() + " statuses=" + getStatusCounts()
+                + " operationWaits=" + getOperationWaits() + " operationWaitP99=" + getOperationWaitP99Millis() + "ms";
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of one {@link CallMetrics}.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public interface CallMetricsMXBean {
+    String getAccount();
+
+    String getMethod();
+
+    long getCalls();
+
+    long getFailures();
+
+    long getRetries();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    double getLatencyMeanMillis();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyMaxMillis();
+
+    /**
+     * @return the number of calls per HTTP status, <code>0</code> for calls that got no response
+     */
+    Map<Integer, Long> getStatusCounts();
+
+    long getOperationWaits();
+
+    double getOperationWaitP50Millis();
+
+    double getOperationWaitP99Millis();
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.google.Google;
+
+/**
+ * Registers each {@link CallMetrics} as an MXBean named
+ * <code>org.dasein.cloud.google:type=ApiCall,account="...",method="..."</code> and each {@link OperationStats}
+ * as one named <code>org.dasein.cloud.google:type=Operation,account="...",method="...",location="..."</code>.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class JmxMetricsExporter implements MetricsExporter {
+    static private final Logger logger = Google.getLogger(JmxMetricsExporter.class);
+    static public final String DOMAIN = "org.dasein.cloud.google";
+
+    private final MBeanServer server;
+
+    public JmxMetricsExporter() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JmxMetricsExporter(@Nonnull MBeanServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public void added(@Nonnull CallMetrics metrics) {
+        register(metrics, "type=ApiCall,account=" + ObjectName.quote(metrics.getAccount()) + ",method=" + ObjectName.quote(metrics.getMethod()));
+    }
+
+    @Override
+    public void removed(@Nonnull CallMetrics metrics) {
+        unregister("type=ApiCall,account=" + ObjectName.quote(metrics.getAccount()) + ",method=" + ObjectName.quote(metrics.getMethod()));
+    }
+
+    @Override
+    public void added(@Nonnull OperationStats stats) {
+        register(stats, "type=Operation,account=" + ObjectName.quote(stats.getAccount()) + ",method=" + ObjectName.quote(stats.getMethod()) + ",location=" + ObjectName.quote(stats.getLocation()));
+    }
+
+    @Override
+    public void removed(@Nonnull OperationStats stats) {
+        unregister("type=Operation,account=" + ObjectName.quote(stats.getAccount()) + ",method=" + ObjectName.quote(stats.getMethod()) + ",location=" + ObjectName.quote(stats.getLocation()));
+    }
+
+    private void register(@Nonnull Object bean, @Nonnull String properties) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if( !server.isRegistered(name) ) {
+                server.registerMBean(bean, name);
+            }
+        }
+        catch( JMException e ) {
+            logger.warn("Unable to register " + properties + ": " + e.getMessage());
+        }
+    }
+
+    private void unregister(@Nonnull String properties) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if( server.isRegistered(name) ) {
+                server.unregisterMBean(name);
+            }
+        }
+        catch( JMException e ) {
+            logger.warn("Unable to unregister " + properties + ": " + e.getMessage());
+        }
+    }
+}
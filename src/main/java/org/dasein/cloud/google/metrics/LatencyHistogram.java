@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnegative;
+
+/**
+ * A fixed-size, lock-free histogram of durations. Values are kept in microseconds in log-linear buckets: four
+ * buckets per power of two, so a percentile read back is at most 25% above the true value. Recording is a few
+ * atomic increments and never allocates, so it can sit on every API call.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class LatencyHistogram {
+    static private final int SUB_BUCKET_BITS = 2;
+    static private final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Values below this many microseconds get a bucket each.
+     */
+    static private final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    static private final int BUCKETS = LINEAR_LIMIT + (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(@Nonnegative long nanos) {
+        long micros = Math.max(0L, nanos / 1000L);
+
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while( micros > max && !maxMicros.compareAndSet(max, micros) ) {
+            max = maxMicros.get();
+        }
+    }
+
+    public @Nonnegative long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMillis() {
+        long n = count.get();
+        return (n == 0L ? 0.0 : totalMicros.get() / 1000.0 / n);
+    }
+
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Reads the buckets without stopping writers, so a percentile taken while calls complete may be off by the
+     * calls recorded during the read.
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the nearest-rank percentile, in milliseconds, 0 if empty
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0L;
+
+        for( int i = 0; i < BUCKETS; i++ ) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if( total == 0L ) {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long)Math.ceil(percentile / 100.0 * total));
+        long seen = 0L;
+
+        for( int i = 0; i < BUCKETS; i++ ) {
+            seen += snapshot[i];
+            if( seen >= rank ) {
+                return Math.min(upperBound(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    static int bucket(long micros) {
+        if( micros < LINEAR_LIMIT ) {
+            return (int)micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int)(micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return LINEAR_LIMIT + (exponent - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if( bucket < LINEAR_LIMIT ) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+
+        return (1L << exponent) + ((long)(sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1L;
+    }
+}
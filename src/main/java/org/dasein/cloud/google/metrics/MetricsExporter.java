@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Publishes API call metrics somewhere they can be read, e.g. {@link JmxMetricsExporter}. An exporter added to
+ * {@link ApiMetrics} is told about every account and method pair once, when its first call is recorded, and
+ * about every account, method and location once, when its first operation ends, and reads the live
+ * {@link CallMetrics} and {@link OperationStats} from then on; a pull endpoint can instead read
+ * {@link ApiMetrics#getMetrics()} and {@link ApiMetrics#getOperationStats()} on each request.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public interface MetricsExporter {
+    void added(@Nonnull CallMetrics metrics);
+
+    void removed(@Nonnull CallMetrics metrics);
+
+    void added(@Nonnull OperationStats stats);
+
+    void removed(@Nonnull OperationStats stats);
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Told about the life of each long-running operation the provider waits for. Called on the waiting thread, so
+ * implementations should return quickly.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public interface OperationListener {
+    /**
+     * The provider started waiting for the operation, right after submitting it.
+     */
+    void submitted(@Nonnull OperationTrace trace);
+
+    /**
+     * The operation was first seen running or with some progress.
+     */
+    void firstProgress(@Nonnull OperationTrace trace);
+
+    /**
+     * The operation finished, successfully or not, see {@link OperationTrace#isFailed()}.
+     */
+    void done(@Nonnull OperationTrace trace);
+
+    /**
+     * The provider gave up waiting for the operation.
+     */
+    void timedOut(@Nonnull OperationTrace trace);
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+/**
+ * How long the operations started by one API method for one account took in one zone or region, from the start
+ * of the wait to first progress and to done, and how many polls they needed. Comparing the polls per operation
+ * with the time to done shows whether the polling interval suits the operation; comparing locations shows
+ * regional slowness.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class OperationStats implements OperationStatsMXBean {
+    private final String account;
+    private final String method;
+    private final String location;
+
+    private final LatencyHistogram firstProgress = new LatencyHistogram();
+    private final LatencyHistogram done = new LatencyHistogram();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong maxPolls = new AtomicLong();
+
+    OperationStats(@Nonnull String account, @Nonnull String method, @Nonnull String location) {
+        this.account = account;
+        this.method = method;
+        this.location = location;
+    }
+
+    void record(@Nonnull OperationTrace trace) {
+        int n = trace.getPolls();
+
+        polls.addAndGet(n);
+        long max = maxPolls.get();
+        while( n > max && !maxPolls.compareAndSet(max, n) ) {
+            max = maxPolls.get();
+        }
+        if( trace.isTimedOut() ) {
+            timedOut.incrementAndGet();
+            return;
+        }
+        if( trace.isFailed() ) {
+            failed.incrementAndGet();
+        }
+        firstProgress.record(trace.getFirstProgressNanos());
+        done.record(trace.getElapsedNanos());
+    }
+
+    @Override
+    public @Nonnull String getAccount() {
+        return account;
+    }
+
+    @Override
+    public @Nonnull String getMethod() {
+        return method;
+    }
+
+    @Override
+    public @Nonnull String getLocation() {
+        return location;
+    }
+
+    @Override
+    public long getCompleted() {
+        return done.getCount();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    @Override
+    public double getPollsPerOperation() {
+        long n = done.getCount() + timedOut.get();
+        return (n == 0L ? 0.0 : (double)polls.get() / n);
+    }
+
+    @Override
+    public long getMaxPolls() {
+        return maxPolls.get();
+    }
+
+    @Override
+    public double getFirstProgressP50Millis() {
+        return firstProgress.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getFirstProgressP99Millis() {
+        return firstProgress.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getDoneP50Millis() {
+        return done.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getDoneP99Millis() {
+        return done.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getDoneMaxMillis() {
+        return done.getMaxMillis();
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return account + " " + method + " " + location + " completed=" + getCompleted() + " failed=" + getFailed()
+                + " timedOut=" + getTimedOut() + " polls=" + getPollsPerOperation() + " firstProgressP50=" + getFirstProgressP50Millis()
+                + "ms doneP50=" + getDoneP50Millis() + "ms doneP99=" + getDoneP99Millis() + "ms";
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+/**
+ * The JMX view of one {@link OperationStats}.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public interface OperationStatsMXBean {
+    String getAccount();
+
+    String getMethod();
+
+    String getLocation();
+
+    long getCompleted();
+
+    long getFailed();
+
+    long getTimedOut();
+
+    double getPollsPerOperation();
+
+    long getMaxPolls();
+
+    double getFirstProgressP50Millis();
+
+    double getFirstProgressP99Millis();
+
+    double getDoneP50Millis();
+
+    double getDoneP99Millis();
+
+    double getDoneMaxMillis();
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The life of one long-running operation as seen by the thread waiting for it: when the wait started, how many
+ * polls it took and when the operation was first seen making progress and done. Created by
+ * {@link ApiMetrics#traceOperation} and not thread safe.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class OperationTrace {
+    private final ApiMetrics metrics;
+    private final String account;
+    private final String service;
+    private final String location;
+    private final String name;
+    private String targetLink;
+    private String operationType;
+
+    private final long start = System.nanoTime();
+    private long firstProgressNanos = -1L;
+    private long endNanos = -1L;
+    private int polls;
+    private boolean failed;
+    private boolean timedOut;
+
+    OperationTrace(@Nonnull ApiMetrics metrics, @Nonnull String account, @Nonnull String service, @Nullable String location, @Nonnull String name, @Nullable String targetLink, @Nullable String operationType) {
+        this.metrics = metrics;
+        this.account = account;
+        this.service = service;
+        this.location = (location == null ? "global" : location);
+        this.name = name;
+        this.targetLink = targetLink;
+        this.operationType = operationType;
+    }
+
+    /**
+     * Fills in what the operation works on, for APIs whose wait starts from the operation name alone.
+     */
+    public void describe(@Nullable String targetLink, @Nullable String operationType) {
+        if( this.targetLink == null ) {
+            this.targetLink = targetLink;
+        }
+        if( this.operationType == null ) {
+            this.operationType = operationType;
+        }
+    }
+
+    /**
+     * Records one poll of the operation.
+     * @param status the status it returned, e.g. <code>PENDING</code>, <code>RUNNING</code> or <code>DONE</code>
+     * @param progress the progress it returned, if the API reports one
+     */
+    public void polled(@Nullable String status, @Nullable Integer progress) {
+        polls++;
+        observe(status, progress);
+    }
+
+    /**
+     * Ends the trace of an operation that is done, recording it in the operation stats.
+     */
+    public void done(boolean failed) {
+        if( endNanos < 0L ) {
+            endNanos = System.nanoTime();
+            this.failed = failed;
+            if( firstProgressNanos < 0L ) {
+                firstProgressNanos = endNanos;
+            }
+            metrics.operationDone(this);
+        }
+    }
+
+    /**
+     * Ends the trace of an operation the provider gave up waiting for.
+     */
+    public void timedOut() {
+        if( endNanos < 0L ) {
+            endNanos = System.nanoTime();
+            timedOut = true;
+            metrics.operationTimedOut(this);
+        }
+    }
+
+    void observe(@Nullable String status, @Nullable Integer progress) {
+        if( firstProgressNanos < 0L && ("RUNNING".equals(status) || "DONE".equals(status) || (progress != null && progress > 0)) ) {
+            firstProgressNanos = System.nanoTime();
+            metrics.operationProgressed(this);
+        }
+    }
+
+    public @Nonnull String getAccount() {
+        return account;
+    }
+
+    /**
+     * @return the API call that started the operation, e.g. <code>compute.instances.insert</code>
+     */
+    public @Nonnull String getMethod() {
+        return ApiMethods.ofOperation(service, targetLink, operationType);
+    }
+
+    /**
+     * @return the zone or region the operation runs in, <code>global</code> for global operations
+     */
+    public @Nonnull String getLocation() {
+        return location;
+    }
+
+    public @Nonnull String getName() {
+        return name;
+    }
+
+    public @Nullable String getTargetLink() {
+        return targetLink;
+    }
+
+    public @Nullable String getOperationType() {
+        return operationType;
+    }
+
+    public @Nonnegative int getPolls() {
+        return polls;
+    }
+
+    /**
+     * @return the time from the start of the wait until the operation was first seen making progress, -1 if it
+     * has not been yet
+     */
+    public long getFirstProgressNanos() {
+        return (firstProgressNanos < 0L ? -1L : firstProgressNanos - start);
+    }
+
+    /**
+     * @return the time from the start of the wait until it ended, or until now if it has not
+     */
+    public @Nonnegative long getElapsedNanos() {
+        return (endNanos < 0L ? System.nanoTime() : endNanos) - start;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public @Nonnull String toString() {
+        return getMethod() + " " + name + " in " + location + " on " + targetLink;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+
+/**
+ * Meters one {@link HttpRequest}. The request runs the execute interceptor once per attempt and the response
+ * interceptor once, after its last attempt, so the time between the first of the former and the latter is the
+ * latency of the call including its retries. A call that ends without a response is recorded when its I/O
+ * exception is not retried. Calls are also handed to the {@link WireTrace}, if one is set.
+ * <p>The method name is only worked out on the first attempt, as the request initializer runs before the
+ * request's URL and HTTP method are set.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+class RequestMeter implements HttpExecuteInterceptor, HttpResponseInterceptor, HttpIOExceptionHandler {
+    private final ApiMetrics metrics;
+    private final String account;
+    private final HttpExecuteInterceptor interceptor;
+    private final HttpResponseInterceptor responseInterceptor;
+    private final HttpIOExceptionHandler ioExceptionHandler;
+
+    // a request executes on one thread at a time
+    private String method;
+    private String httpMethod;
+    private GenericUrl url;
+    private long start;
+    private int attempts;
+    private long sent;
+
+    RequestMeter(@Nonnull ApiMetrics metrics, @Nonnull String account, @Nullable HttpExecuteInterceptor interceptor, @Nullable HttpResponseInterceptor responseInterceptor, @Nullable HttpIOExceptionHandler ioExceptionHandler) {
+        this.metrics = metrics;
+        this.account = account;
+        this.interceptor = interceptor;
+        this.responseInterceptor = responseInterceptor;
+        this.ioExceptionHandler = ioExceptionHandler;
+    }
+
+    @Override
+    public void intercept(HttpRequest request) throws IOException {
+        if( attempts == 0 ) {
+            url = request.getUrl();
+            httpMethod = request.getRequestMethod();
+            method = ApiMethods.of(httpMethod, url.getRawPath(), "media".equals(url.getFirst("alt")));
+            start = System.nanoTime();
+        }
+        attempts++;
+        HttpContent content = request.getContent();
+        sent = (content == null ? 0L : content.getLength());
+        if( interceptor != null ) {
+            interceptor.intercept(request);
+        }
+    }
+
+    @Override
+    public void interceptResponse(HttpResponse response) throws IOException {
+        Long length = response.getHeaders().getContentLength();
+
+        record(response.getStatusCode(), (length == null ? -1L : length));
+        if( responseInterceptor != null ) {
+            responseInterceptor.interceptResponse(response);
+        }
+    }
+
+    @Override
+    public boolean handleIOException(HttpRequest request, boolean supportsRetry) throws IOException {
+        boolean retry = (ioExceptionHandler != null && ioExceptionHandler.handleIOException(request, supportsRetry));
+
+        if( !retry ) {
+            record(CallMetrics.NO_RESPONSE, -1L);
+        }
+        return retry;
+    }
+
+    private void record(int status, long received) {
+        if( attempts == 0 ) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+
+        metrics.recordCall(account, method, nanos, status, attempts - 1, sent, received);
+        WireTrace trace = metrics.getWireTrace();
+        if( trace != null && trace.sample(status) ) {
+            trace.offer(account, method, httpMethod, url, status, nanos, attempts - 1, sent, received);
+        }
+        attempts = 0;
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.google.Google;
+
+/**
+ * Logs each operation that takes longer than a threshold, or times out, with its name and target link, at
+ * <code>WARN</code> on <code>dasein.cloud.google.std.metrics.SlowOperationLog</code>. {@link ApiMetrics}
+ * installs one when the <code>dasein.google.slowOperationMillis</code> system property is set.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class SlowOperationLog implements OperationListener {
+    static private final Logger logger = Google.getLogger(SlowOperationLog.class);
+
+    private final long thresholdNanos;
+
+    public SlowOperationLog(@Nonnegative long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1000000L;
+    }
+
+    @Override
+    public void submitted(@Nonnull OperationTrace trace) {
+    }
+
+    @Override
+    public void firstProgress(@Nonnull OperationTrace trace) {
+    }
+
+    @Override
+    public void done(@Nonnull OperationTrace trace) {
+        if( trace.getElapsedNanos() >= thresholdNanos ) {
+            logger.warn("Slow operation " + describe(trace) + (trace.isFailed() ? " failed" : " done") + " after " + trace.getElapsedNanos() / 1000000L
+                    + " ms (first progress after " + trace.getFirstProgressNanos() / 1000000L + " ms, " + trace.getPolls() + " polls)");
+        }
+    }
+
+    @Override
+    public void timedOut(@Nonnull OperationTrace trace) {
+        logger.warn("Operation " + describe(trace) + " timed out after " + trace.getElapsedNanos() / 1000000L + " ms (" + trace.getPolls() + " polls)");
+    }
+
+    static private @Nonnull String describe(@Nonnull OperationTrace trace) {
+        return trace.getName() + " (" + trace.getMethod() + " in " + trace.getLocation() + ") on " + trace.getTargetLink();
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.metrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+
+import com.google.api.client.http.GenericUrl;
+
+/**
+ * Writes one line per API call to the wire log: account, method, HTTP method, URL, status, latency, retries and
+ * bytes, as <code>key=value</code> pairs. Calls are handed to a background thread through a bounded queue, so
+ * the calling thread only takes a copy of the URL and never formats or writes a line, and a call is dropped
+ * rather than waited on when the queue is full; the number dropped is logged with the next line written.
+ * <p>One in {@link #getSampleEvery()} successful calls is traced; failed calls always are. URLs longer than the
+ * configured maximum are cut short. Bodies are not logged.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class WireTrace {
+    static public final int DEFAULT_SAMPLE_EVERY = 1;
+    static public final int DEFAULT_QUEUE_SIZE = 10000;
+    static public final int DEFAULT_MAX_URL_LENGTH = 512;
+
+    /**
+     * Creates a trace to the given logger configured by the <code>dasein.google.wireSampleEvery</code>,
+     * <code>dasein.google.wireQueueSize</code> and <code>dasein.google.wireMaxUrlLength</code> system
+     * properties, if set.
+     */
+    static public @Nonnull WireTrace fromSystemProperties(@Nonnull Logger out) {
+        return new WireTrace(out, intProperty("dasein.google.wireSampleEvery", DEFAULT_SAMPLE_EVERY), intProperty("dasein.google.wireQueueSize", DEFAULT_QUEUE_SIZE), intProperty("dasein.google.wireMaxUrlLength", DEFAULT_MAX_URL_LENGTH));
+    }
+
+    static private int intProperty(@Nonnull String name, int defaultValue) {
+        String value = System.getProperty(name);
+
+        if( value != null ) {
+            try {
+                int n = Integer.parseInt(value.trim());
+                if( n > 0 ) {
+                    return n;
+                }
+            }
+            catch( NumberFormatException ignore ) {
+                // fall through to the default
+            }
+        }
+        return defaultValue;
+    }
+
+    static private class Entry {
+        String account;
+        String method;
+        String httpMethod;
+        String url;
+        int status;
+        long nanos;
+        int retries;
+        long sent;
+        long received;
+    }
+
+    private final Logger out;
+    private final int sampleEvery;
+    private final int maxUrlLength;
+    private final BlockingQueue<Entry> queue;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    public WireTrace(@Nonnull Logger out, @Nonnegative int sampleEvery, @Nonnegative int queueSize, @Nonnegative int maxUrlLength) {
+        this.out = out;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.maxUrlLength = Math.max(16, maxUrlLength);
+        this.queue = new ArrayBlockingQueue<Entry>(Math.max(1, queueSize));
+        this.writer = new Thread("dasein-google-wire-trace") {
+            @Override
+            public void run() {
+                write();
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public @Nonnegative int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * @return the number of traced calls dropped so far because the queue was full
+     */
+    public @Nonnegative long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops the writer thread, dropping whatever is still queued.
+     */
+    public void close() {
+        writer.interrupt();
+    }
+
+    /**
+     * @return true if a call that ended with <code>status</code> should be traced
+     */
+    boolean sample(int status) {
+        if( status == CallMetrics.NO_RESPONSE || status >= 400 ) {
+            return true;
+        }
+        return (sampleEvery == 1 || calls.incrementAndGet() % sampleEvery == 0L);
+    }
+
+    void offer(@Nonnull String account, @Nonnull String method, @Nonnull String httpMethod, @Nonnull GenericUrl url, int status, @Nonnegative long nanos, @Nonnegative int retries, long sent, long received) {
+        Entry entry = new Entry();
+
+        entry.account = account;
+        entry.method = method;
+        entry.httpMethod = httpMethod;
+        entry.url = url.build(); // the request may reuse and change its GenericUrl once this returns
+        entry.status = status;
+        entry.nanos = nanos;
+        entry.retries = retries;
+        entry.sent = sent;
+        entry.received = received;
+        if( !queue.offer(entry) ) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void write() {
+        StringBuilder line = new StringBuilder(256);
+        long reportedDrops = 0L;
+
+        while( !Thread.currentThread().isInterrupted() ) {
+            Entry entry;
+
+            try {
+                entry = queue.take();
+            }
+            catch( InterruptedException e ) {
+                return;
+            }
+            try {
+                line.setLength(0);
+                line.append("account=").append(entry.account);
+                line.append(" method=").append(entry.method);
+                line.append(" http=").append(entry.httpMethod);
+                line.append(" url=");
+                if( entry.url.length() > maxUrlLength ) {
+                    line.append(entry.url, 0, maxUrlLength).append("...");
+                }
+                else {
+                    line.append(entry.url);
+                }
+                line.append(" status=").append(entry.status);
+                line.append(" ms=").append(entry.nanos / 1000000L).append('.').append((entry.nanos / 100000L) % 10L);
+                line.append(" retries=").append(entry.retries);
+                line.append(" sent=").append(entry.sent);
+                line.append(" received=").append(entry.received);
+                long drops = dropped.get();
+                if( drops > reportedDrops ) {
+                    line.append(" dropped=").append(drops - reportedDrops);
+                    reportedDrops = drops;
+                }
+                out.debug(line.toString());
+            }
+            catch( RuntimeException e ) {
+                // a broken appender must not stop the trace for the rest of the process
+                try {
+                    out.warn("Unable to write a wire trace line: " + e.getMessage());
+                }
+                catch( RuntimeException ignore ) {
+                    // the appender itself is failing; drop the line
+                }
+            }
+        }
+    }
+}
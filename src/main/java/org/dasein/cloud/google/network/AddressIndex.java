@@ -0,0 +1,445 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.google.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.FieldMask;
+import org.dasein.cloud.google.StreamingListReader;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Address;
+
+/**
+ * The reserved addresses of one account, indexed per region by name and by IP. A region is listed once, a page
+ * of {@link #PAGE_SIZE} at a time, and then answers lookups from memory for {@link #TTL} ms; an aggregated list
+ * refreshes every region at once. In between, the addresses changed through {@link IPAddressSupport} are
+ * re-read one by one and updated in the index in place, so the index does not need to be rebuilt after every
+ * request, assignment or release.
+ * <p>Each region has its own lock, which is held only to swap a snapshot in or change one address, never across
+ * a listing. Concurrent lookups of a stale region share a single listing; changes made while it runs are
+ * applied again to the new snapshot before it is installed.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+class AddressIndex {
+    static private final long TTL = 10000L;
+    static private final long PAGE_SIZE = 500L;
+
+    static private final ConcurrentHashMap<String, AddressIndex> indexes = new ConcurrentHashMap<String, AddressIndex>();
+
+    static private final class Snapshot {
+        private final long builtAt;
+        private final ConcurrentHashMap<String, Address> byName;
+        private final ConcurrentHashMap<String, Address> byIp = new ConcurrentHashMap<String, Address>();
+
+        private Snapshot(long builtAt, @Nonnull Map<String, Address> byName) {
+            this.builtAt = builtAt;
+            this.byName = new ConcurrentHashMap<String, Address>(byName);
+            for( Address address : byName.values() ) {
+                if( address.getAddress() != null ) {
+                    byIp.put(address.getAddress(), address);
+                }
+            }
+        }
+
+        private boolean isFresh() {
+            return System.currentTimeMillis() - builtAt < TTL;
+        }
+
+        /*
+         * Called with the region's lock held.
+         */
+        private void put(@Nonnull String name, @Nullable Address address) {
+            Address previous = (address == null ? byName.remove(name) : byName.put(name, address));
+
+            if( previous != null && previous.getAddress() != null ) {
+                byIp.remove(previous.getAddress(), previous);
+            }
+            if( address != null && address.getAddress() != null ) {
+                byIp.put(address.getAddress(), address);
+            }
+        }
+    }
+
+    /*
+     * The state of one region; every field is guarded by the region itself.
+     */
+    static private final class Region {
+        private volatile Snapshot snapshot;
+        private FutureTask<Snapshot> loading;
+        private int loads;
+        private Map<String, Address> changedWhileLoading;
+    }
+
+    /**
+     * @return the index of the account's addresses
+     */
+    static @Nonnull AddressIndex forAccount(@Nonnull String account) {
+        AddressIndex index = indexes.get(account);
+
+        if( index == null ) {
+            AddressIndex created = new AddressIndex(account);
+            index = indexes.putIfAbsent(account, created);
+            if( index == null ) {
+                index = created;
+            }
+        }
+        return index;
+    }
+
+    private final String project;
+    private final ConcurrentHashMap<String, Region> regions = new ConcurrentHashMap<String, Region>();
+    private volatile long allRegionsBuiltAt;
+    private FutureTask<Void> loadingAll; // guarded by this
+
+    private AddressIndex(@Nonnull String project) {
+        this.project = project;
+    }
+
+    /**
+     * @return the addresses of the region, listing them if the region has not been indexed within the TTL
+     */
+    @Nonnull Collection<Address> list(@Nonnull Compute gce, @Nonnull String regionId) throws IOException, CloudException, InternalException {
+        return new ArrayList<Address>(getRegion(gce, regionId).byName.values());
+    }
+
+    /**
+     * @return the addresses of every region, from one aggregated list unless all regions were indexed that way
+     * within the TTL
+     */
+    @Nonnull List<Address> listAll(@Nonnull final Compute gce) throws IOException, CloudException, InternalException {
+        if( System.currentTimeMillis() - allRegionsBuiltAt >= TTL ) {
+            FutureTask<Void> task = null;
+            boolean owner = false;
+
+            synchronized( this ) {
+                if( System.currentTimeMillis() - allRegionsBuiltAt >= TTL ) {
+                    if( loadingAll == null ) {
+                        loadingAll = new FutureTask<Void>(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                buildAllRegions(gce);
+                                return null;
+                            }
+                        });
+                        owner = true;
+                    }
+                    task = loadingAll;
+                }
+            }
+            if( task != null ) {
+                try {
+                    await(task, owner);
+                }
+                finally {
+                    if( owner ) {
+                        synchronized( this ) {
+                            loadingAll = null;
+                        }
+                    }
+                }
+            }
+        }
+        List<Address> addresses = new ArrayList<Address>();
+        for( Region region : regions.values() ) {
+            Snapshot snapshot = region.snapshot;
+            if( snapshot != null ) {
+                addresses.addAll(snapshot.byName.values());
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * @return the address holding the IP in the region, or <code>null</code> if there is none, as for an
+     * ephemeral IP
+     */
+    @Nullable Address getByIp(@Nonnull Compute gce, @Nonnull String regionId, @Nonnull String ip) throws IOException, CloudException, InternalException {
+        return getRegion(gce, regionId).byIp.get(ip);
+    }
+
+    /**
+     * Looks the address up in the region's index if that is fresh, or else reads just this address.
+     * @return the address, or <code>null</code> if the region has no address of that name
+     */
+    @Nullable Address get(@Nonnull Compute gce, @Nonnull String regionId, @Nonnull String name) throws IOException {
+        Region region = regions.get(regionId);
+        Snapshot snapshot = (region == null ? null : region.snapshot);
+
+        if( snapshot != null && snapshot.isFresh() ) {
+            Address address = snapshot.byName.get(name);
+            if( address != null ) {
+                return address;
+            }
+        }
+        return refresh(gce, regionId, name);
+    }
+
+    /**
+     * Re-reads one address after a change to it, updating the index in place.
+     * @return the address as it is now, or <code>null</code> if it no longer exists
+     */
+    @Nullable Address refresh(@Nonnull Compute gce, @Nonnull String regionId, @Nonnull String name) throws IOException {
+        try {
+            Address address = gce.addresses().get(project, regionId, name).setFields(FieldMask.get(FieldMask.Resource.ADDRESS, FieldMask.Profile.SUMMARY)).execute();
+            update(regionId, name, address);
+            return address;
+        }
+        catch( GoogleJsonResponseException e ) {
+            if( e.getStatusCode() != 404 ) {
+                throw e;
+            }
+            update(regionId, name, null);
+            return null;
+        }
+    }
+
+    /**
+     * Drops one address from the index after it has been released.
+     */
+    void remove(@Nonnull String regionId, @Nonnull String name) {
+        update(regionId, name, null);
+    }
+
+    /**
+     * Drops the region, so the next lookup in it lists it again.
+     */
+    void invalidate(@Nonnull String regionId) {
+        Region region = regions.get(regionId);
+
+        if( region != null ) {
+            region.snapshot = null;
+        }
+        allRegionsBuiltAt = 0L;
+    }
+
+    private @Nonnull Region region(@Nonnull String regionId) {
+        Region region = regions.get(regionId);
+
+        if( region == null ) {
+            Region created = new Region();
+            region = regions.putIfAbsent(regionId, created);
+            if( region == null ) {
+                region = created;
+            }
+        }
+        return region;
+    }
+
+    private @Nonnull Snapshot getRegion(@Nonnull final Compute gce, @Nonnull final String regionId) throws IOException, CloudException, InternalException {
+        final Region region = region(regionId);
+        Snapshot snapshot = region.snapshot;
+
+        if( snapshot != null && snapshot.isFresh() ) {
+            return snapshot;
+        }
+        FutureTask<Snapshot> task;
+        boolean owner = false;
+
+        synchronized( region ) {
+            snapshot = region.snapshot;
+            if( snapshot != null && snapshot.isFresh() ) {
+                return snapshot;
+            }
+            if( region.loading == null ) {
+                region.loading = new FutureTask<Snapshot>(new Callable<Snapshot>() {
+                    @Override
+                    public Snapshot call() throws Exception {
+                        return listRegion(gce, regionId, region);
+                    }
+                });
+                owner = true;
+            }
+            task = region.loading;
+        }
+        try {
+            return await(task, owner);
+        }
+        finally {
+            if( owner ) {
+                synchronized( region ) {
+                    region.loading = null;
+                }
+            }
+        }
+    }
+
+    private @Nonnull Snapshot listRegion(@Nonnull Compute gce, @Nonnull String regionId, @Nonnull Region region) throws IOException, CloudException, InternalException {
+        long builtAt = System.currentTimeMillis();
+        final Map<String, Address> byName = new HashMap<String, Address>();
+
+        beginLoad(region);
+        try {
+            StreamingListReader.readList(gce.addresses().list(project, regionId).setMaxResults(PAGE_SIZE).setFields(FieldMask.list(FieldMask.Resource.ADDRESS, FieldMask.Profile.SUMMARY)), Address.class, new StreamingListReader.Handler<Address>() {
+                @Override
+                public void handle(String scope, @Nonnull Address address) {
+                    byName.put(address.getName(), address);
+                }
+            });
+            return install(region, new Snapshot(builtAt, byName));
+        }
+        finally {
+            endLoad(region);
+        }
+    }
+
+    private void buildAllRegions(@Nonnull Compute gce) throws IOException, CloudException, InternalException {
+        long builtAt = System.currentTimeMillis();
+        final Map<String, Map<String, Address>> byRegion = new HashMap<String, Map<String, Address>>();
+        List<Region> known = new ArrayList<Region>(regions.values());
+
+        for( Region region : known ) {
+            beginLoad(region);
+        }
+        try {
+            StreamingListReader.readAggregatedList(gce.addresses().aggregatedList(project).setMaxResults(PAGE_SIZE).setFields(FieldMask.aggregatedList(FieldMask.Resource.ADDRESS, FieldMask.Profile.SUMMARY)), "addresses", Address.class, new StreamingListReader.Handler<Address>() {
+                @Override
+                public void handle(String scope, @Nonnull Address address) {
+                    String regionId = address.getRegion().substring(address.getRegion().lastIndexOf("/") + 1);
+                    Map<String, Address> byName = byRegion.get(regionId);
+                    if( byName == null ) {
+                        byName = new HashMap<String, Address>();
+                        byRegion.put(regionId, byName);
+                    }
+                    byName.put(address.getName(), address);
+                }
+            });
+            for( String regionId : regions.keySet() ) {
+                if( !byRegion.containsKey(regionId) ) {
+                    byRegion.put(regionId, new HashMap<String, Address>());
+                }
+            }
+            for( Map.Entry<String, Map<String, Address>> entry : byRegion.entrySet() ) {
+                install(region(entry.getKey()), new Snapshot(builtAt, entry.getValue()));
+            }
+            allRegionsBuiltAt = builtAt;
+        }
+        finally {
+            for( Region region : known ) {
+                endLoad(region);
+            }
+        }
+    }
+
+    /*
+     * While a region is being listed, the changes made to it are recorded so the new snapshot, which may have been
+     * read before them, does not undo them.
+     */
+    static private void beginLoad(@Nonnull Region region) {
+        synchronized( region ) {
+            if( region.loads++ == 0 ) {
+                region.changedWhileLoading = new HashMap<String, Address>();
+            }
+        }
+    }
+
+    static private void endLoad(@Nonnull Region region) {
+        synchronized( region ) {
+            if( --region.loads == 0 ) {
+                region.changedWhileLoading = null;
+            }
+        }
+    }
+
+    static private @Nonnull Snapshot install(@Nonnull Region region, @Nonnull Snapshot snapshot) {
+        synchronized( region ) {
+            if( region.changedWhileLoading != null ) {
+                for( Map.Entry<String, Address> change : region.changedWhileLoading.entrySet() ) {
+                    snapshot.put(change.getKey(), change.getValue());
+                }
+            }
+            region.snapshot = snapshot;
+            return snapshot;
+        }
+    }
+
+    /*
+     * Replaces the one address in the region's snapshot, keeping the region's age. A region that is not indexed is
+     * left alone; it will pick the change up when it is listed.
+     */
+    private void update(@Nonnull String regionId, @Nonnull String name, @Nullable Address address) {
+        Region region = regions.get(regionId);
+
+        if( region == null ) {
+            return;
+        }
+        synchronized( region ) {
+            if( region.changedWhileLoading != null ) {
+                region.changedWhileLoading.put(name, address);
+            }
+            if( region.snapshot != null ) {
+                region.snapshot.put(name, address);
+            }
+        }
+    }
+
+    /*
+     * Runs the listing in the calling thread if it is the one that started it, or else waits for the thread that
+     * did, without holding any lock either way.
+     */
+    static private <T> T await(@Nonnull FutureTask<T> task, boolean owner) throws IOException, CloudException, InternalException {
+        if( owner ) {
+            task.run();
+        }
+        try {
+            return task.get();
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if( cause instanceof IOException ) {
+                throw (IOException)cause;
+            }
+            if( cause instanceof CloudException ) {
+                throw (CloudException)cause;
+            }
+            if( cause instanceof InternalException ) {
+                throw (InternalException)cause;
+            }
+            if( cause instanceof RuntimeException ) {
+                throw (RuntimeException)cause;
+            }
+            if( cause instanceof Error ) {
+                throw (Error)cause;
+            }
+            throw new InternalException(cause);
+        }
+    }
+}
@@ -2,11 +2,14 @@ package org.dasein.cloud.google.network;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -19,12 +22,15 @@ import org.dasein.cloud.Tag;
 import org.dasein.cloud.ci.AbstractConvergedHttpLoadBalancer;
 import org.dasein.cloud.ci.ConvergedHttpLoadBalancer;
 import org.dasein.cloud.ci.HttpLoadBalancerCapabilities;
+import org.dasein.cloud.google.FanOutExecutor;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
+import org.dasein.cloud.google.ResourceGraph;
 import org.dasein.cloud.google.capabilities.GCEHttpLoadBalancerCapabilities;
 import org.dasein.cloud.identity.ServiceAction;
+import org.dasein.cloud.util.NamingConstraints;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.compute.Compute;
@@ -43,6 +49,9 @@ import com.google.api.services.compute.model.UrlMap;
 import com.google.api.services.compute.model.UrlMapList;
 public class CIHttpLoadBalancerSupport extends AbstractConvergedHttpLoadBalancer<Google> {
 
+    // "account:urlMap" -> target proxy -> forwarding rules targeting it
+    static private final ConcurrentHashMap<String, Map<String, List<String>>> frontEnds = new ConcurrentHashMap<String, Map<String, List<String>>>();
+
     private Google provider;
     private ProviderContext ctx;
 
@@ -294,54 +303,158 @@ public class CIHttpLoadBalancerSupport extends AbstractConvergedHttpLoadBalancer
         }
     }
 
+    /*
+     * Finds the target proxies serving a url map and the forwarding rules pointing at each of them. A mapping
+     * remembered from an earlier create or teardown is confirmed with targeted gets; only when it is missing
+     * or stale are the project-wide lists walked. An empty mapping is never cached, since there would be nothing
+     * to confirm it with.
+     */
+    private Map<String, List<String>> getFrontEnds(@Nonnull final String urlMap, boolean useCache) throws CloudException, InternalException, IOException {
+        String key = ctx.getAccountNumber() + ":" + urlMap;
+        final Map<String, List<String>> cached = frontEnds.get(key);
+
+        if (useCache && null != cached && !cached.isEmpty()) {
+            List<Boolean> checks = FanOutExecutor.run(cached.keySet(), new FanOutExecutor.Task<String, Boolean>() {
+                @Override
+                public Collection<Boolean> call(@Nonnull String proxyName) throws Exception {
+                    Compute gce = provider.getGoogleCompute();
+                    try {
+                        TargetHttpProxy proxy = gce.targetHttpProxies().get(ctx.getAccountNumber(), proxyName).execute();
+                        boolean current = urlMap.equals(proxy.getUrlMap().replaceAll(".*/", ""));
+                        for (String ruleName : cached.get(proxyName)) {
+                            ForwardingRule rule = gce.globalForwardingRules().get(ctx.getAccountNumber(), ruleName).execute();
+                            current = current && proxyName.equals(rule.getTarget().replaceAll(".*/", ""));
+                        }
+                        return Collections.singletonList(current);
+                    } catch (GoogleJsonResponseException e) {
+                        if (404 == e.getStatusCode()) {
+                            return Collections.singletonList(false);
+                        }
+                        throw e;
+                    }
+                }
+            });
+            if (!checks.contains(false)) {
+                return cached;
+            }
+        }
+
+        Compute gce = provider.getGoogleCompute();
+        Map<String, List<String>> mapping = new HashMap<String, List<String>>();
+        String pageToken = null;
+        do {
+            TargetHttpProxyList targetHttpProxyList = gce.targetHttpProxies().list(ctx.getAccountNumber()).setPageToken(pageToken).execute();
+            if (null != targetHttpProxyList.getItems()) {
+                for (TargetHttpProxy targetProxy : targetHttpProxyList.getItems()) {
+                    if (urlMap.equals(targetProxy.getUrlMap().replaceAll(".*/", ""))) {
+                        mapping.put(targetProxy.getName(), new ArrayList<String>());
+                    }
+                }
+            }
+            pageToken = targetHttpProxyList.getNextPageToken();
+        } while (null != pageToken);
+
+        if (!mapping.isEmpty()) {
+            do {
+                ForwardingRuleList forwardingRuleList = gce.globalForwardingRules().list(ctx.getAccountNumber()).setPageToken(pageToken).execute();
+                if (null != forwardingRuleList.getItems()) {
+                    for (ForwardingRule forwardingRule : forwardingRuleList.getItems()) {
+                        List<String> rules = mapping.get(forwardingRule.getTarget().replaceAll(".*/", ""));
+                        if (null != rules) {
+                            rules.add(forwardingRule.getName());
+                        }
+                    }
+                }
+                pageToken = forwardingRuleList.getNextPageToken();
+            } while (null != pageToken);
+        }
+        if (mapping.isEmpty()) {
+            frontEnds.remove(key);
+        } else {
+            frontEnds.put(key, mapping);
+        }
+        return mapping;
+    }
+
+    private void removeFrontEnds(@Nonnull Map<String, List<String>> mapping) throws CloudException, InternalException {
+        List<String> forwardingRules = new ArrayList<String>();
+        for (List<String> rules : mapping.values()) {
+            forwardingRules.addAll(rules);
+        }
+        FanOutExecutor.run(forwardingRules, new FanOutExecutor.Task<String, Void>() {
+            @Override
+            public Collection<Void> call(@Nonnull String forwardingRule) throws Exception {
+                removeGlobalForwardingRule(forwardingRule);
+                return null;
+            }
+        });
+        FanOutExecutor.run(mapping.keySet(), new FanOutExecutor.Task<String, Void>() {
+            @Override
+            public Collection<Void> call(@Nonnull String targetProxy) throws Exception {
+                removeTargetHttpProxy(targetProxy);
+                return null;
+            }
+        });
+    }
+
+    /*
+     * Tears the load balancer down one layer at a time (forwarding rules, target proxies, url map, backend
+     * services, health checks), deleting the members of each layer concurrently.
+     */
     @Override
     public void removeConvergedHttpLoadBalancers(@Nonnull String urlMap) throws CloudException, InternalException {
         Compute gce = provider.getGoogleCompute();
 
         urlMap = urlMap.replaceAll(".*/", "");
         try {
-            ForwardingRuleList forwardingRuleList = gce.globalForwardingRules().list(ctx.getAccountNumber()).execute();
-            TargetHttpProxyList targetHttpProxyList = gce.targetHttpProxies().list(ctx.getAccountNumber()).execute();
+            UrlMap um = gce.urlMaps().get(ctx.getAccountNumber(), urlMap).execute();
 
-            for (TargetHttpProxy targetProxy: targetHttpProxyList.getItems()) {
-                if (targetProxy.getUrlMap().endsWith(urlMap)) {
-                    for (ForwardingRule forwardingRule: forwardingRuleList.getItems()) {
-                        if (forwardingRule.getTarget().endsWith(targetProxy.getName())) {
-                            removeGlobalForwardingRule(forwardingRule.getName());
+            List<String> backendServices = new ArrayList<String>();
+            backendServices.add(um.getDefaultService().replaceAll(".*/", ""));
+            List<PathMatcher> pathMatchers = um.getPathMatchers();
+            if (null != pathMatchers) {
+                for (PathMatcher pathMatcher: pathMatchers) {
+                    backendServices.add(pathMatcher.getDefaultService().replaceAll(".*/", ""));
+                    if (null != pathMatcher.getPathRules()) {
+                        for (PathRule pathRule: pathMatcher.getPathRules()) {
+                            backendServices.add(pathRule.getService().replaceAll(".*/", ""));
                         }
                     }
-                    removeTargetHttpProxy(targetProxy.getName());
                 }
             }
 
-            UrlMap um = gce.urlMaps().get(ctx.getAccountNumber(), urlMap).execute(); 
-
-            List<String> backendServices = new ArrayList<String>();
-            backendServices.add(um.getDefaultService().replaceAll(".*/", ""));
-            List<PathMatcher> pathMatchers = um.getPathMatchers();
-            for (PathMatcher pathMatcher: pathMatchers) {
-                backendServices.add(pathMatcher.getDefaultService().replaceAll(".*/", ""));
-                if (null != pathMatcher.getPathRules()) {
-                    for (PathRule pathRule: pathMatcher.getPathRules()) { 
-                        backendServices.add(pathRule.getService().replaceAll(".*/", ""));
-                    }
+            // read the health checks up front, they can't be found once the backend services are gone
+            List<String> healthChecks = FanOutExecutor.run(new HashSet<String>(backendServices), new FanOutExecutor.Task<String, String>() {
+                @Override
+                public Collection<String> call(@Nonnull String backendService) throws Exception {
+                    return provider.getGoogleCompute().backendServices().get(ctx.getAccountNumber(), backendService).execute().getHealthChecks();
                 }
+            });
+
+            try {
+                removeFrontEnds(getFrontEnds(urlMap, true));
+            } catch (CloudException e) {
+                // a rule we did not know about may still hold a proxy; retry from the full listing
+                removeFrontEnds(getFrontEnds(urlMap, false));
             }
+            frontEnds.remove(ctx.getAccountNumber() + ":" + urlMap);
 
             removeUrlMap(um.getName());
 
-            List<String> healthChecks = new ArrayList<String>();
-            for (String backendService : new HashSet<String>(backendServices)) { // use HashSet to make it unique list
-                BackendService bes = gce.backendServices().get(ctx.getAccountNumber(), backendService).execute();
-                for (String healthCheck : bes.getHealthChecks()) {
-                    healthChecks.add(healthCheck);
+            FanOutExecutor.run(new HashSet<String>(backendServices), new FanOutExecutor.Task<String, Void>() {
+                @Override
+                public Collection<Void> call(@Nonnull String backendService) throws Exception {
+                    removeBackendService(backendService);
+                    return null;
                 }
-                removeBackendService(backendService);
-            }
-
-            for (String healthCheck : new HashSet<String>(healthChecks)) { // use HashSet to make it unique list
-                removeHttpHealthCheck(healthCheck);
-            }
+            });
+            FanOutExecutor.run(new HashSet<String>(healthChecks), new FanOutExecutor.Task<String, Void>() {
+                @Override
+                public Collection<Void> call(@Nonnull String healthCheck) throws Exception {
+                    removeHttpHealthCheck(healthCheck);
+                    return null;
+                }
+            });
         } catch ( IOException ex ) {
             if (ex.getClass() == GoogleJsonResponseException.class) {
                 GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
@@ -354,50 +467,54 @@ public class CIHttpLoadBalancerSupport extends AbstractConvergedHttpLoadBalancer
     }
 
     public void createBackendService(ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions) throws CloudException, InternalException {
-        Compute gce = provider.getGoogleCompute();
-        GoogleMethod method = new GoogleMethod(provider);
-
         List<ConvergedHttpLoadBalancer.BackendService> backendServices = withConvergedHttpLoadBalancerOptions.getBackendServices();
         for (ConvergedHttpLoadBalancer.BackendService backendService : backendServices) {
             if (null == backendService.getSelfLink()) {
-                BackendService beContent = new BackendService();
-                beContent.setName(getCapabilities().getConvergedHttpLoadBalancerNamingConstraints().convertToValidName(backendService.getName(), Locale.US));
-                beContent.setDescription(backendService.getDescription());
-                beContent.setPort(backendService.getPort());
-                beContent.setPortName(backendService.getPortName());
-                beContent.setTimeoutSec(backendService.getTimeoutSec());
-
-                List<String> healthCheckSelfUrls = new ArrayList<String>();
-                for (String healthCheckName : backendService.getHealthChecks()) {
-                    healthCheckSelfUrls.add(withConvergedHttpLoadBalancerOptions.getHealthCheckSelfUrl(healthCheckName));
-                }
-                beContent.setHealthChecks(healthCheckSelfUrls);
+                createBackendService(withConvergedHttpLoadBalancerOptions, backendService);
+            }
+        }
+    }
 
-                List<Backend> backends = new ArrayList<Backend>();
+    private void createBackendService(ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions, ConvergedHttpLoadBalancer.BackendService backendService) throws CloudException, InternalException {
+        Compute gce = provider.getGoogleCompute();
+        GoogleMethod method = new GoogleMethod(provider);
 
-                for (String backendServiceInstranceGroupSelfUrl : backendService.getBackendServiceBackends()) {
-                    Backend backend = new Backend();
-                    backend.setGroup(backendServiceInstranceGroupSelfUrl);
-                    backends.add(backend);
-                }
+        BackendService beContent = new BackendService();
+        beContent.setName(getCapabilities().getConvergedHttpLoadBalancerNamingConstraints().convertToValidName(backendService.getName(), Locale.US));
+        beContent.setDescription(backendService.getDescription());
+        beContent.setPort(backendService.getPort());
+        beContent.setPortName(backendService.getPortName());
+        beContent.setTimeoutSec(backendService.getTimeoutSec());
 
-                beContent.setBackends(backends);
-
-                try {
-                    Operation foo = gce.backendServices().insert(ctx.getAccountNumber(), beContent ).execute();
-                    method.getOperationComplete(provider.getContext(), foo, GoogleOperationType.GLOBAL_OPERATION, null, null);
-                } catch ( IOException ex ) {
-                    if (ex.getClass() == GoogleJsonResponseException.class) {
-                        GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-                        throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-                    } else
-                        throw new CloudException("An error occurred listing convergedHttpLoadBalancers " + ex.getMessage());
-                } catch ( Exception ex ) {
-                    throw new CloudException("Error removing Converged Http Load Balancer " + ex.getMessage());
-                }
-                backendService.setServiceUrl(gce.getBaseUrl() + ctx.getAccountNumber() + "/global/backendServices/" + backendService.getName());
-            }
+        List<String> healthCheckSelfUrls = new ArrayList<String>();
+        for (String healthCheckName : backendService.getHealthChecks()) {
+            healthCheckSelfUrls.add(withConvergedHttpLoadBalancerOptions.getHealthCheckSelfUrl(healthCheckName));
+        }
+        beContent.setHealthChecks(healthCheckSelfUrls);
+
+        List<Backend> backends = new ArrayList<Backend>();
+
+        for (String backendServiceInstranceGroupSelfUrl : backendService.getBackendServiceBackends()) {
+            Backend backend = new Backend();
+            backend.setGroup(backendServiceInstranceGroupSelfUrl);
+            backends.add(backend);
         }
+
+        beContent.setBackends(backends);
+
+        try {
+            Operation foo = gce.backendServices().insert(ctx.getAccountNumber(), beContent ).execute();
+            method.getOperationComplete(provider.getContext(), foo, GoogleOperationType.GLOBAL_OPERATION, null, null);
+        } catch ( IOException ex ) {
+            if (ex.getClass() == GoogleJsonResponseException.class) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            } else
+                throw new CloudException("An error occurred listing convergedHttpLoadBalancers " + ex.getMessage());
+        } catch ( Exception ex ) {
+            throw new CloudException("Error removing Converged Http Load Balancer " + ex.getMessage());
+        }
+        backendService.setServiceUrl(gce.getBaseUrl() + ctx.getAccountNumber() + "/global/backendServices/" + backendService.getName());
     }
 
     public void createURLMap(ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions) throws CloudException, InternalException {
@@ -478,20 +595,24 @@ public class CIHttpLoadBalancerSupport extends AbstractConvergedHttpLoadBalancer
     }
 
     public void createTargetProxy(ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions) throws CloudException, InternalException {
+        List<ConvergedHttpLoadBalancer.TargetHttpProxy> targetHttpProxies = withConvergedHttpLoadBalancerOptions.getTargetHttpProxies();
+        for (ConvergedHttpLoadBalancer.TargetHttpProxy targetHttpProxy : targetHttpProxies) {
+            createTargetProxy(withConvergedHttpLoadBalancerOptions, targetHttpProxy);
+        }
+    }
+
+    private void createTargetProxy(ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions, ConvergedHttpLoadBalancer.TargetHttpProxy targetHttpProxy) throws CloudException, InternalException {
         Compute gce = provider.getGoogleCompute();
         GoogleMethod method = new GoogleMethod(provider);
         TargetHttpProxy content = new TargetHttpProxy();
 
-        List<ConvergedHttpLoadBalancer.TargetHttpProxy> targetHttpProxies = withConvergedHttpLoadBalancerOptions.getTargetHttpProxies();
         try {
-            for (ConvergedHttpLoadBalancer.TargetHttpProxy targetHttpProxy : targetHttpProxies) {
-                content.setName(getCapabilities().getConvergedHttpLoadBalancerNamingConstraints().convertToValidName(targetHttpProxy.getName(), Locale.US));
-                content.setDescription(targetHttpProxy.getDescription());
-                content.setUrlMap(withConvergedHttpLoadBalancerOptions.getSelfLink());
-                Operation job = gce.targetHttpProxies().insert(ctx.getAccountNumber(), content ).execute();
-                method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, null, null);
-                targetHttpProxy.setTargetProxySelfUrl(gce.getBaseUrl() + ctx.getAccountNumber() + "/global/targetHttpProxies/" + targetHttpProxy.getName());
-            }
+            content.setName(getCapabilities().getConvergedHttpLoadBalancerNamingConstraints().convertToValidName(targetHttpProxy.getName(), Locale.US));
+            content.setDescription(targetHttpProxy.getDescription());
+            content.setUrlMap(withConvergedHttpLoadBalancerOptions.getSelfLink());
+            Operation job = gce.targetHttpProxies().insert(ctx.getAccountNumber(), content ).execute();
+            method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, null, null);
+            targetHttpProxy.setTargetProxySelfUrl(gce.getBaseUrl() + ctx.getAccountNumber() + "/global/targetHttpProxies/" + targetHttpProxy.getName());
         } catch (IOException ex) {
             if (ex.getClass() == GoogleJsonResponseException.class) {
                 GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
@@ -504,25 +625,29 @@ public class CIHttpLoadBalancerSupport extends AbstractConvergedHttpLoadBalancer
     }
 
     public void createGlobalForwardingRule(ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions) throws CloudException, InternalException {
+        List<ConvergedHttpLoadBalancer.ForwardingRule> forwardingRules = withConvergedHttpLoadBalancerOptions.getForwardingRules();
+        for (ConvergedHttpLoadBalancer.ForwardingRule forwardingRule : forwardingRules) {
+            createGlobalForwardingRule(withConvergedHttpLoadBalancerOptions, forwardingRule);
+        }
+    }
+
+    private void createGlobalForwardingRule(ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions, ConvergedHttpLoadBalancer.ForwardingRule forwardingRule) throws CloudException, InternalException {
         Compute gce = provider.getGoogleCompute();
         GoogleMethod method = new GoogleMethod(provider);
         ForwardingRule gfwContent = new ForwardingRule();
 
-        List<ConvergedHttpLoadBalancer.ForwardingRule> forwardingRules = withConvergedHttpLoadBalancerOptions.getForwardingRules();
         try {
-            for (ConvergedHttpLoadBalancer.ForwardingRule forwardingRule : forwardingRules) {
-                gfwContent.setName(getCapabilities().getConvergedHttpLoadBalancerNamingConstraints().convertToValidName(forwardingRule.getName(), Locale.US));
-                gfwContent.setDescription(forwardingRule.getDescription());
-                if (null != forwardingRule.getIpAddress()) {
-                    gfwContent.setIPAddress(forwardingRule.getIpAddress());
-                }
-                gfwContent.setIPProtocol(forwardingRule.getIpProtocol());
-                gfwContent.setPortRange(forwardingRule.getPortRange());
-                gfwContent.setTarget(withConvergedHttpLoadBalancerOptions.getTargetProxySelfUrl(forwardingRule.getTarget()));
-                Operation job = gce.globalForwardingRules().insert(ctx.getAccountNumber(), gfwContent ).execute();
-                method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, null, null);
-                forwardingRule.setGlobalForwardingRuleSelfUrl(gce.getBaseUrl() + ctx.getAccountNumber() + "/global/httpHealthChecks/" + forwardingRule.getName());
+            gfwContent.setName(getCapabilities().getConvergedHttpLoadBalancerNamingConstraints().convertToValidName(forwardingRule.getName(), Locale.US));
+            gfwContent.setDescription(forwardingRule.getDescription());
+            if (null != forwardingRule.getIpAddress()) {
+                gfwContent.setIPAddress(forwardingRule.getIpAddress());
             }
+            gfwContent.setIPProtocol(forwardingRule.getIpProtocol());
+            gfwContent.setPortRange(forwardingRule.getPortRange());
+            gfwContent.setTarget(withConvergedHttpLoadBalancerOptions.getTargetProxySelfUrl(forwardingRule.getTarget()));
+            Operation job = gce.globalForwardingRules().insert(ctx.getAccountNumber(), gfwContent ).execute();
+            method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, null, null);
+            forwardingRule.setGlobalForwardingRuleSelfUrl(gce.getBaseUrl() + ctx.getAccountNumber() + "/global/httpHealthChecks/" + forwardingRule.getName());
         } catch (IOException ex) {
             if (ex.getClass() == GoogleJsonResponseException.class) {
                 GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
@@ -534,60 +659,131 @@ public class CIHttpLoadBalancerSupport extends AbstractConvergedHttpLoadBalancer
         }
     }
 
+    /*
+     * Health checks, backend services, the url map, target proxies and forwarding rules are created as a
+     * resource graph, so siblings (e.g. several backend services) are created together and a failure
+     * part way through removes what was already created.
+     */
     @Override
-    public String createConvergedHttpLoadBalancer(@Nonnull ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions) throws CloudException, InternalException {
-        try {
-            createHttpHealthChecks(withConvergedHttpLoadBalancerOptions);
-        } catch (Exception ex) {
-            throw new CloudException("Error creating Converged Http Load Balancer " + ex.getMessage());
+    public String createConvergedHttpLoadBalancer(@Nonnull final ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions) throws CloudException, InternalException {
+        final NamingConstraints naming = getCapabilities().getConvergedHttpLoadBalancerNamingConstraints();
+        ResourceGraph graph = new ResourceGraph();
+
+        for (final ConvergedHttpLoadBalancer.HealthCheck healthCheck : withConvergedHttpLoadBalancerOptions.getHealthChecks()) {
+            if (null == healthCheck.getSelfLink()) {
+                graph.add("healthCheck:" + healthCheck.getName(), new ResourceGraph.Resource() {
+                    @Override
+                    public void create() throws Exception {
+                        createHttpHealthCheck(healthCheck);
+                    }
+                    @Override
+                    public void delete() throws Exception {
+                        removeHttpHealthCheck(naming.convertToValidName(healthCheck.getName(), Locale.US));
+                    }
+                });
+            }
         }
-        try {
-            createBackendService(withConvergedHttpLoadBalancerOptions);
-        } catch (Exception ex) {
-            throw new CloudException("Error creating Converged Http Load Balancer " + ex.getMessage());
+
+        List<String> backendServiceKeys = new ArrayList<String>();
+        for (final ConvergedHttpLoadBalancer.BackendService backendService : withConvergedHttpLoadBalancerOptions.getBackendServices()) {
+            if (null == backendService.getSelfLink()) {
+                List<String> dependsOn = new ArrayList<String>();
+                for (String healthCheckName : backendService.getHealthChecks()) {
+                    dependsOn.add("healthCheck:" + healthCheckName);
+                }
+                String key = "backendService:" + backendService.getName();
+                graph.add(key, new ResourceGraph.Resource() {
+                    @Override
+                    public void create() throws Exception {
+                        createBackendService(withConvergedHttpLoadBalancerOptions, backendService);
+                    }
+                    @Override
+                    public void delete() throws Exception {
+                        removeBackendService(naming.convertToValidName(backendService.getName(), Locale.US));
+                    }
+                }, dependsOn.toArray(new String[dependsOn.size()]));
+                backendServiceKeys.add(key);
+            }
         }
-        try {
-            createURLMap(withConvergedHttpLoadBalancerOptions);
-        } catch (Exception ex) {
-            throw new CloudException("Error creating Converged Http Load Balancer " + ex.getMessage());
+
+        graph.add("urlMap", new ResourceGraph.Resource() {
+            @Override
+            public void create() throws Exception {
+                createURLMap(withConvergedHttpLoadBalancerOptions);
+            }
+            @Override
+            public void delete() throws Exception {
+                removeUrlMap(naming.convertToValidName(withConvergedHttpLoadBalancerOptions.getName(), Locale.US));
+            }
+        }, backendServiceKeys.toArray(new String[backendServiceKeys.size()]));
+
+        for (final ConvergedHttpLoadBalancer.TargetHttpProxy targetHttpProxy : withConvergedHttpLoadBalancerOptions.getTargetHttpProxies()) {
+            graph.add("targetProxy:" + targetHttpProxy.getName(), new ResourceGraph.Resource() {
+                @Override
+                public void create() throws Exception {
+                    createTargetProxy(withConvergedHttpLoadBalancerOptions, targetHttpProxy);
+                }
+                @Override
+                public void delete() throws Exception {
+                    removeTargetHttpProxy(naming.convertToValidName(targetHttpProxy.getName(), Locale.US));
+                }
+            }, "urlMap");
         }
-        try {
-            createTargetProxy(withConvergedHttpLoadBalancerOptions);
-        } catch (Exception ex) {
-            throw new CloudException("Error creating Converged Http Load Balancer " + ex.getMessage());
+
+        for (final ConvergedHttpLoadBalancer.ForwardingRule forwardingRule : withConvergedHttpLoadBalancerOptions.getForwardingRules()) {
+            graph.add("forwardingRule:" + forwardingRule.getName(), new ResourceGraph.Resource() {
+                @Override
+                public void create() throws Exception {
+                    createGlobalForwardingRule(withConvergedHttpLoadBalancerOptions, forwardingRule);
+                }
+                @Override
+                public void delete() throws Exception {
+                    removeGlobalForwardingRule(naming.convertToValidName(forwardingRule.getName(), Locale.US));
+                }
+            }, "urlMap", "targetProxy:" + forwardingRule.getTarget());
         }
+
         try {
-            createGlobalForwardingRule(withConvergedHttpLoadBalancerOptions);
+            graph.execute();
         } catch (Exception ex) {
             throw new CloudException("Error creating Converged Http Load Balancer " + ex.getMessage());
         }
 
+        Map<String, List<String>> mapping = new HashMap<String, List<String>>();
+        for (ConvergedHttpLoadBalancer.TargetHttpProxy targetHttpProxy : withConvergedHttpLoadBalancerOptions.getTargetHttpProxies()) {
+            mapping.put(naming.convertToValidName(targetHttpProxy.getName(), Locale.US), new ArrayList<String>());
+        }
+        for (ConvergedHttpLoadBalancer.ForwardingRule forwardingRule : withConvergedHttpLoadBalancerOptions.getForwardingRules()) {
+            List<String> rules = mapping.get(naming.convertToValidName(forwardingRule.getTarget(), Locale.US));
+            if (null != rules) {
+                rules.add(naming.convertToValidName(forwardingRule.getName(), Locale.US));
+            }
+        }
+        if (!mapping.isEmpty()) {
+            frontEnds.put(ctx.getAccountNumber() + ":" + naming.convertToValidName(withConvergedHttpLoadBalancerOptions.getName(), Locale.US), mapping);
+        }
+
         return withConvergedHttpLoadBalancerOptions.getSelfLink();
     }
 
-    private void createHttpHealthChecks(ConvergedHttpLoadBalancer withConvergedHttpLoadBalancerOptions) throws CloudException, InternalException {
+    private void createHttpHealthCheck(ConvergedHttpLoadBalancer.HealthCheck healthCheck) throws CloudException, InternalException {
         Compute gce = provider.getGoogleCompute();
 
         GoogleMethod method = new GoogleMethod(provider);
         try {
-            List<ConvergedHttpLoadBalancer.HealthCheck> healthChecks = withConvergedHttpLoadBalancerOptions.getHealthChecks();
-            for  (ConvergedHttpLoadBalancer.HealthCheck healthCheck : healthChecks) {
-                if (null == healthCheck.getSelfLink()) {
-                    HttpHealthCheck httpHealthCheck = new HttpHealthCheck();
-                    httpHealthCheck.setName(getCapabilities().getConvergedHttpLoadBalancerNamingConstraints().convertToValidName(healthCheck.getName(), Locale.US));
-                    httpHealthCheck.setDescription(healthCheck.getDescription());
-                    httpHealthCheck.setCheckIntervalSec(healthCheck.getCheckIntervalSec());
-                    httpHealthCheck.setHealthyThreshold(healthCheck.getHealthyThreshold());
-                    httpHealthCheck.setUnhealthyThreshold(healthCheck.getUnHealthyThreshold());
-                    httpHealthCheck.setTimeoutSec(healthCheck.getTimeoutSec());
-                    httpHealthCheck.setHost(healthCheck.getHost()); // optional i think
-                    httpHealthCheck.setPort(healthCheck.getPort());
-                    httpHealthCheck.setRequestPath(healthCheck.getRequestPath());
-                    Operation job = gce.httpHealthChecks().insert(ctx.getAccountNumber(), httpHealthCheck).execute();
-                    method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, null, null);
-                    healthCheck.setSelfLink(gce.getBaseUrl() + ctx.getAccountNumber() + "/global/httpHealthChecks/" + healthCheck.getName());
-                }
-            }
+            HttpHealthCheck httpHealthCheck = new HttpHealthCheck();
+            httpHealthCheck.setName(getCapabilities().getConvergedHttpLoadBalancerNamingConstraints().convertToValidName(healthCheck.getName(), Locale.US));
+            httpHealthCheck.setDescription(healthCheck.getDescription());
+            httpHealthCheck.setCheckIntervalSec(healthCheck.getCheckIntervalSec());
+            httpHealthCheck.setHealthyThreshold(healthCheck.getHealthyThreshold());
+            httpHealthCheck.setUnhealthyThreshold(healthCheck.getUnHealthyThreshold());
+            httpHealthCheck.setTimeoutSec(healthCheck.getTimeoutSec());
+            httpHealthCheck.setHost(healthCheck.getHost()); // optional i think
+            httpHealthCheck.setPort(healthCheck.getPort());
+            httpHealthCheck.setRequestPath(healthCheck.getRequestPath());
+            Operation job = gce.httpHealthChecks().insert(ctx.getAccountNumber(), httpHealthCheck).execute();
+            method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, null, null);
+            healthCheck.setSelfLink(gce.getBaseUrl() + ctx.getAccountNumber() + "/global/httpHealthChecks/" + healthCheck.getName());
         } catch ( IOException ex ) {
             if (ex.getClass() == GoogleJsonResponseException.class) {
                 GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
@@ -0,0 +1,431 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.google.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.conn.util.InetAddressUtils;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.OperationNotSupportedException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.google.FanOutExecutor;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.google.GoogleMethod;
+import org.dasein.cloud.google.GoogleOperationType;
+import org.dasein.cloud.network.Direction;
+import org.dasein.cloud.network.FirewallRuleCreateOptions;
+import org.dasein.cloud.network.Permission;
+import org.dasein.cloud.network.Protocol;
+import org.dasein.cloud.network.RuleTarget;
+import org.dasein.cloud.network.RuleTargetType;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Firewall;
+import com.google.api.services.compute.model.Firewall.Allowed;
+import com.google.api.services.compute.model.Network;
+import com.google.api.services.compute.model.Operation;
+
+/**
+ * Brings the GCE rules of one network to a desired set of Dasein rules in a single pass. Dasein rules that differ
+ * only in their source are grouped into one GCE rule per shape (protocol, ports, target tag and kind of source),
+ * and each shape is matched against the current rule of the same shape, so the diff is computed from one listing
+ * and costs one write per changed shape:
+ * <ul>
+ *     <li>a shape with no current rule is inserted;</li>
+ *     <li>a shape whose current rule has other sources is patched to the desired sources;</li>
+ *     <li>further rules of a desired shape and rules of shapes that are not desired are deleted;</li>
+ *     <li>rules no shape can represent, with more than one protocol, port range or target tag or with mixed
+ *     sources (such as the <code>default-allow-internal</code> rule GCE creates with a network), are left alone.</li>
+ * </ul>
+ * The inserts and patches are issued concurrently and their operations are then awaited together. The deletes
+ * follow the same way only once all of them have succeeded, so traffic a replaced rule allowed stays allowed until
+ * its replacement is in place.
+ * No write is cancelled because another failed; a failure is reported once every write has ended.
+ * @version 2015.10
+ * @since 2015.10
+ */
+class FirewallReconciler {
+    static private final Logger logger = Google.getLogger(FirewallReconciler.class);
+
+    /**
+     * The most rule writes in flight at once.
+     */
+    static private final int WRITE_CONCURRENCY = 16;
+
+    static private final class Shape {
+        private final String protocol;
+        private final String ports;
+        private final String targetTag;
+        private final boolean tagSources;
+        private final Set<String> sources = new LinkedHashSet<String>();
+
+        private Shape(@Nonnull String protocol, @Nullable String ports, @Nullable String targetTag, boolean tagSources) {
+            this.protocol = protocol;
+            this.ports = ports;
+            this.targetTag = targetTag;
+            this.tagSources = tagSources;
+        }
+
+        private @Nonnull String getKey() {
+            return key(protocol, ports, targetTag, tagSources);
+        }
+    }
+
+    static private enum Action { INSERT, PATCH, DELETE }
+
+    static private final class Write {
+        private final Action action;
+        private final String ruleName;
+        private final Firewall body;
+
+        private Write(@Nonnull Action action, @Nonnull String ruleName, @Nullable Firewall body) {
+            this.action = action;
+            this.ruleName = ruleName;
+            this.body = body;
+        }
+    }
+
+    static private final class Outcome {
+        private final Write write;
+        private final Operation job;
+        private final Exception failure;
+
+        private Outcome(@Nonnull Write write, @Nullable Operation job, @Nullable Exception failure) {
+            this.write = write;
+            this.job = job;
+            this.failure = failure;
+        }
+    }
+
+    private final Google provider;
+
+    FirewallReconciler(@Nonnull Google provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * @param network the network the firewall stands for
+     * @param current the network's rules as listed, with at least the fields of the firewall summary mask
+     * @param desired every rule the firewall should have once done
+     */
+    @Nonnull FirewallReconciliation reconcile(@Nonnull Network network, @Nonnull List<Firewall> current, @Nonnull Collection<FirewallRuleCreateOptions> desired) throws CloudException, InternalException {
+        ProviderContext ctx = provider.getContext();
+        if( ctx == null ) {
+            throw new InternalException("No context was established");
+        }
+        Map<String, Shape> shapes = toShapes(desired);
+        Map<String, List<Firewall>> currentByShape = new LinkedHashMap<String, List<Firewall>>();
+        List<String> created = new ArrayList<String>();
+        List<String> updated = new ArrayList<String>();
+        List<String> deleted = new ArrayList<String>();
+        List<String> unmanaged = new ArrayList<String>();
+        List<Write> upserts = new ArrayList<Write>();
+        List<Write> deletes = new ArrayList<Write>();
+
+        for( Firewall rule : current ) {
+            String key = key(rule);
+            if( key == null ) {
+                unmanaged.add(rule.getName());
+                continue;
+            }
+            if( !shapes.containsKey(key) ) {
+                deletes.add(new Write(Action.DELETE, rule.getName(), null));
+                continue;
+            }
+            List<Firewall> same = currentByShape.get(key);
+            if( same == null ) {
+                same = new ArrayList<Firewall>();
+                currentByShape.put(key, same);
+            }
+            same.add(rule);
+        }
+        for( Shape shape : shapes.values() ) {
+            List<Firewall> same = currentByShape.get(shape.getKey());
+
+            if( same == null ) {
+                Firewall rule = toRule(shape);
+                rule.setNetwork(network.getSelfLink());
+                upserts.add(new Write(Action.INSERT, rule.getName(), rule));
+                continue;
+            }
+            Firewall kept = same.get(0);
+            if( !normalize(shape.sources).equals(normalize(shape.tagSources ? kept.getSourceTags() : kept.getSourceRanges())) ) {
+                Firewall patch = new Firewall();
+                if( shape.tagSources ) {
+                    patch.setSourceTags(new ArrayList<String>(shape.sources));
+                }
+                else {
+                    patch.setSourceRanges(new ArrayList<String>(shape.sources));
+                }
+                upserts.add(new Write(Action.PATCH, kept.getName(), patch));
+            }
+            for( int i = 1; i < same.size(); i++ ) {
+                deletes.add(new Write(Action.DELETE, same.get(i).getName(), null));
+            }
+        }
+        Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+        List<String> notAttempted = new ArrayList<String>();
+
+        record(apply(ctx, upserts), created, updated, deleted, failures);
+        if( failures.isEmpty() ) {
+            record(apply(ctx, deletes), created, updated, deleted, failures);
+        }
+        else {
+            for( Write write : deletes ) {
+                notAttempted.add(write.ruleName);
+            }
+        }
+        FirewallReconciliation result = new FirewallReconciliation(created, updated, deleted, unmanaged);
+
+        if( !failures.isEmpty() ) {
+            StringBuilder message = new StringBuilder("Failed to reconcile the rules of " + network.getName() + ":");
+            for( Map.Entry<String, Exception> failure : failures.entrySet() ) {
+                message.append(" ").append(failure.getKey()).append(" (").append(failure.getValue().getMessage()).append(")");
+            }
+            if( !notAttempted.isEmpty() ) {
+                message.append("; deletes not attempted: ").append(notAttempted);
+            }
+            message.append("; applied: ").append(result);
+            CloudException e = new CloudException(message.toString());
+            e.initCause(failures.values().iterator().next());
+            throw e;
+        }
+        if( !result.isUnchanged() ) {
+            logger.debug("Reconciled " + network.getName() + ": " + result);
+        }
+        return result;
+    }
+
+    static private void record(@Nonnull List<Outcome> outcomes, @Nonnull List<String> created, @Nonnull List<String> updated, @Nonnull List<String> deleted, @Nonnull Map<String, Exception> failures) {
+        for( Outcome outcome : outcomes ) {
+            if( outcome.failure != null ) {
+                failures.put(outcome.write.ruleName, outcome.failure);
+                continue;
+            }
+            switch( outcome.write.action ) {
+                case INSERT: created.add(outcome.write.ruleName); break;
+                case PATCH: updated.add(outcome.write.ruleName); break;
+                default: deleted.add(outcome.write.ruleName); break;
+            }
+        }
+    }
+
+    /*
+     * Issues the writes concurrently, then awaits all of their operations together. A failed write is recorded in
+     * its outcome rather than thrown, so the fan-out never cancels the writes still in flight.
+     */
+    private @Nonnull List<Outcome> apply(@Nonnull final ProviderContext ctx, @Nonnull List<Write> writes) throws CloudException, InternalException {
+        List<Outcome> submitted = FanOutExecutor.run(writes, WRITE_CONCURRENCY, new FanOutExecutor.Task<Write, Outcome>() {
+            @Override
+            public Collection<Outcome> call(@Nonnull Write write) {
+                try {
+                    return Collections.singletonList(new Outcome(write, write(ctx, write), null));
+                }
+                catch( Exception e ) {
+                    return Collections.singletonList(new Outcome(write, null, e));
+                }
+            }
+        });
+        List<Outcome> outcomes = new ArrayList<Outcome>();
+        List<Outcome> pending = new ArrayList<Outcome>();
+        List<Operation> jobs = new ArrayList<Operation>();
+
+        for( Outcome outcome : submitted ) {
+            if( outcome.job == null ) {
+                outcomes.add(outcome);
+            }
+            else {
+                pending.add(outcome);
+                jobs.add(outcome.job);
+            }
+        }
+        if( !jobs.isEmpty() ) {
+            List<CloudException> failures = new GoogleMethod(provider).getOperationsOutcome(ctx, jobs, GoogleOperationType.GLOBAL_OPERATION, "", "");
+            for( int i = 0; i < pending.size(); i++ ) {
+                outcomes.add(new Outcome(pending.get(i).write, pending.get(i).job, failures.get(i)));
+            }
+        }
+        return outcomes;
+    }
+
+    /*
+     * Submits the write and returns its operation without waiting for it.
+     */
+    private @Nonnull Operation write(@Nonnull ProviderContext ctx, @Nonnull Write write) throws CloudException, InternalException {
+        Compute gce = provider.getGoogleCompute();
+        Operation job;
+
+        try {
+            switch( write.action ) {
+                case INSERT: job = gce.firewalls().insert(ctx.getAccountNumber(), write.body).execute(); break;
+                case PATCH: job = gce.firewalls().patch(ctx.getAccountNumber(), write.ruleName, write.body).execute(); break;
+                default: job = gce.firewalls().delete(ctx.getAccountNumber(), write.ruleName).execute(); break;
+            }
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            throw new CloudException("An error occurred writing the firewall rule " + write.ruleName + ": " + ex.getMessage());
+        }
+        return job;
+    }
+
+    /*
+     * Groups the desired rules by shape, rejecting what GCE firewall rules cannot express the same way authorize does.
+     */
+    private @Nonnull Map<String, Shape> toShapes(@Nonnull Collection<FirewallRuleCreateOptions> desired) throws CloudException, InternalException {
+        Map<String, Shape> shapes = new LinkedHashMap<String, Shape>();
+
+        for( FirewallRuleCreateOptions options : desired ) {
+            if( Permission.DENY.equals(options.getPermission()) ) {
+                throw new OperationNotSupportedException("GCE does not support DENY rules");
+            }
+            if( Direction.EGRESS.equals(options.getDirection()) ) {
+                throw new OperationNotSupportedException("GCE does not support EGRESS rules");
+            }
+            RuleTarget source = options.getSourceEndpoint();
+            String sourceValue;
+            boolean tagSources;
+
+            if( RuleTargetType.VM.equals(source.getRuleTargetType()) ) {
+                sourceValue = provider.getComputeServices().getVirtualMachineSupport().getVmNameFromId(source.getProviderVirtualMachineId());
+                tagSources = true;
+            }
+            else if( RuleTargetType.CIDR.equals(source.getRuleTargetType()) ) {
+                sourceValue = source.getCidr();
+                tagSources = false;
+            }
+            else {
+                throw new OperationNotSupportedException("GCE does not support VLAN or GLOBAL as valid source types");
+            }
+            Protocol protocol = options.getProtocol();
+            String ports = null;
+            if( protocol != Protocol.ICMP ) {
+                int begin = options.getPortRangeStart();
+                int end = options.getPortRangeEnd();
+                ports = (begin == end ? String.valueOf(begin) : begin + "-" + end);
+            }
+            RuleTarget destination = options.getDestinationEndpoint();
+            String targetTag = null;
+            if( destination != null && RuleTargetType.VM.equals(destination.getRuleTargetType()) ) {
+                targetTag = provider.getComputeServices().getVirtualMachineSupport().getVmNameFromId(destination.getProviderVirtualMachineId());
+            }
+            String key = key(protocol.name(), ports, targetTag, tagSources);
+            Shape shape = shapes.get(key);
+            if( shape == null ) {
+                shape = new Shape(protocol.name(), ports, targetTag, tagSources);
+                shapes.put(key, shape);
+            }
+            shape.sources.add(sourceValue);
+        }
+        return shapes;
+    }
+
+    static private @Nonnull Firewall toRule(@Nonnull Shape shape) {
+        Firewall rule = new Firewall();
+        char c = (char)(new Random().nextInt(26) + 'a');
+
+        rule.setName(c + UUID.randomUUID().toString());
+        rule.setDescription(shape.protocol + (shape.ports == null ? "" : ":" + shape.ports));
+
+        Allowed allowed = new Allowed();
+        allowed.setIPProtocol(shape.protocol);
+        if( shape.ports != null ) {
+            allowed.setPorts(Collections.singletonList(shape.ports));
+        }
+        rule.setAllowed(Collections.singletonList(allowed));
+        if( shape.tagSources ) {
+            rule.setSourceTags(new ArrayList<String>(shape.sources));
+        }
+        else {
+            rule.setSourceRanges(new ArrayList<String>(shape.sources));
+        }
+        if( shape.targetTag != null ) {
+            rule.setTargetTags(Collections.singletonList(shape.targetTag));
+        }
+        return rule;
+    }
+
+    /**
+     * @return the shape key of a current rule, or <code>null</code> if the rule has more than one protocol, port
+     * range or target tag, or mixes source ranges with source tags, and so matches no single shape and is left alone
+     */
+    static private @Nullable String key(@Nonnull Firewall rule) {
+        List<Allowed> allowed = rule.getAllowed();
+        boolean ranges = rule.getSourceRanges() != null && !rule.getSourceRanges().isEmpty();
+        boolean tags = rule.getSourceTags() != null && !rule.getSourceTags().isEmpty();
+
+        if( allowed == null || allowed.size() != 1 || ranges == tags ) {
+            return null;
+        }
+        List<String> ports = allowed.get(0).getPorts();
+        List<String> targetTags = rule.getTargetTags();
+        if( (ports != null && ports.size() > 1) || (targetTags != null && targetTags.size() > 1) ) {
+            return null;
+        }
+        String protocol = allowed.get(0).getIPProtocol().toUpperCase();
+        String port = null;
+        if( !Protocol.ICMP.name().equals(protocol) && ports != null && !ports.isEmpty() ) {
+            port = ports.get(0);
+        }
+        return key(protocol, port, (targetTags == null || targetTags.isEmpty() ? null : targetTags.get(0)), tags);
+    }
+
+    static private @Nonnull String key(@Nonnull String protocol, @Nullable String ports, @Nullable String targetTag, boolean tagSources) {
+        return protocol + "|" + (ports == null ? "" : ports) + "|" + (targetTag == null ? "" : targetTag) + "|" + (tagSources ? "tags" : "ranges");
+    }
+
+    /*
+     * GCE keeps single addresses as given, so 10.0.0.1 and 10.0.0.1/32 name the same source.
+     */
+    static private @Nonnull Set<String> normalize(@Nullable Collection<String> sources) {
+        Set<String> normalized = new HashSet<String>();
+
+        if( sources != null ) {
+            for( String source : sources ) {
+                normalized.add(InetAddressUtils.isIPv4Address(source) ? source + "/32" : source);
+            }
+        }
+        return normalized;
+    }
+}
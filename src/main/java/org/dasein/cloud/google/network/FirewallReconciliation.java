@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+
+package org.dasein.cloud.google.network;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The changes {@link FirewallSupport#reconcile(String, java.util.Collection)} made to bring a firewall to the
+ * desired rule set, as the names of the GCE firewall rules created, updated and deleted, and of the rules left
+ * alone because no Dasein rule can represent them.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class FirewallReconciliation {
+    private final List<String> created;
+    private final List<String> updated;
+    private final List<String> deleted;
+    private final List<String> unmanaged;
+
+    FirewallReconciliation(@Nonnull List<String> created, @Nonnull List<String> updated, @Nonnull List<String> deleted, @Nonnull List<String> unmanaged) {
+        this.created = Collections.unmodifiableList(created);
+        this.updated = Collections.unmodifiableList(updated);
+        this.deleted = Collections.unmodifiableList(deleted);
+        this.unmanaged = Collections.unmodifiableList(unmanaged);
+    }
+
+    public @Nonnull List<String> getCreated() {
+        return created;
+    }
+
+    public @Nonnull List<String> getUpdated() {
+        return updated;
+    }
+
+    public @Nonnull List<String> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return the rules with more than one protocol, port range or target tag, or with mixed sources, which
+     * reconciling neither matches nor deletes
+     */
+    public @Nonnull List<String> getUnmanaged() {
+        return unmanaged;
+    }
+
+    /**
+     * @return true if the firewall already had the desired rules and nothing was written
+     */
+    public boolean isUnchanged() {
+        return created.isEmpty() && updated.isEmpty() && deleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "created=" + created + ", updated=" + updated + ", deleted=" + deleted + ", unmanaged=" + unmanaged;
+    }
+}
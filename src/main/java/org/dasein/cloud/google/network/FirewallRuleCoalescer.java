@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+import org.dasein.cloud.google.GoogleMethod;
+import org.dasein.cloud.google.GoogleOperationType;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Firewall;
+import com.google.api.services.compute.model.Operation;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Applies changes to the source ranges of GCE firewall rules in batches, one read-modify-write per rule for all
+ * the changes pending on it. GCE firewall rules carry no fingerprint to make an update conditional on, so
+ * instead each rule has a single writer in this process: the first caller with a change for a rule that is not
+ * being written applies every change queued for it, re-reading the rule for each batch, while callers arriving
+ * during the write queue theirs for the next batch and wait on their future. No change made through this class
+ * is lost to a concurrent one.
+ * @version 2015.10
+ * @since 2015.10
+ */
+class FirewallRuleCoalescer {
+    static private final Logger logger = Google.getLogger(FirewallRuleCoalescer.class);
+
+    static private final ConcurrentHashMap<String, RuleQueue> queues = new ConcurrentHashMap<String, RuleQueue>();
+
+    static final class Change {
+        private final String sourceRange;
+        private final boolean add;
+        private final SettableFuture<Void> result = SettableFuture.create();
+
+        private Change(@Nonnull String sourceRange, boolean add) {
+            this.sourceRange = sourceRange;
+            this.add = add;
+        }
+    }
+
+    static Change addSourceRange(@Nonnull String sourceRange) {
+        return new Change(sourceRange, true);
+    }
+
+    static Change removeSourceRange(@Nonnull String sourceRange) {
+        return new Change(sourceRange, false);
+    }
+
+    static private final class RuleQueue {
+        private final List<Change> pending = new ArrayList<Change>();
+        private boolean applying;
+        private boolean retired;
+    }
+
+    private final Google provider;
+
+    FirewallRuleCoalescer(@Nonnull Google provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Applies the changes to the rule, together with any other changes queued for it.
+     * @throws CloudException if the batch holding the changes failed
+     */
+    void apply(@Nonnull String ruleName, @Nonnull List<Change> changes) throws CloudException, InternalException {
+        for( Future<Void> result : submit(ruleName, changes) ) {
+            try {
+                result.get();
+            }
+            catch( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                if( cause instanceof CloudException ) {
+                    throw (CloudException)cause;
+                }
+                if( cause instanceof InternalException ) {
+                    throw (InternalException)cause;
+                }
+                throw new InternalException(cause);
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new InternalException(e);
+            }
+        }
+    }
+
+    /**
+     * Queues the changes for the rule. If no other caller is writing the rule, this caller applies them and
+     * whatever else gets queued meanwhile before returning; otherwise it returns at once.
+     * @return a future per change, completed once the batch holding the change is applied
+     */
+    @Nonnull List<Future<Void>> submit(@Nonnull String ruleName, @Nonnull List<Change> changes) throws InternalException {
+        ProviderContext ctx = provider.getContext();
+        if( ctx == null ) {
+            throw new InternalException("No context was established");
+        }
+        String key = ctx.getAccountNumber() + "/" + ruleName;
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        RuleQueue queue;
+        boolean lead;
+
+        for( Change change : changes ) {
+            results.add(change.result);
+        }
+        while( true ) {
+            queue = queues.get(key);
+            if( queue == null ) {
+                RuleQueue created = new RuleQueue();
+                queue = queues.putIfAbsent(key, created);
+                if( queue == null ) {
+                    queue = created;
+                }
+            }
+            synchronized( queue ) {
+                if( queue.retired ) {
+                    continue;
+                }
+                queue.pending.addAll(changes);
+                lead = !queue.applying;
+                queue.applying = true;
+            }
+            break;
+        }
+        if( lead ) {
+            drain(key, queue, ruleName);
+        }
+        return results;
+    }
+
+    private void drain(@Nonnull String key, @Nonnull RuleQueue queue, @Nonnull String ruleName) {
+        while( true ) {
+            List<Change> batch;
+
+            synchronized( queue ) {
+                if( queue.pending.isEmpty() ) {
+                    queue.applying = false;
+                    queue.retired = true;
+                    queues.remove(key, queue);
+                    return;
+                }
+                batch = new ArrayList<Change>(queue.pending);
+                queue.pending.clear();
+            }
+            try {
+                write(ruleName, batch);
+                for( Change change : batch ) {
+                    change.result.set(null);
+                }
+            }
+            catch( Throwable t ) {
+                for( Change change : batch ) {
+                    change.result.setException(t);
+                }
+            }
+        }
+    }
+
+    private void write(@Nonnull String ruleName, @Nonnull List<Change> batch) throws CloudException, InternalException {
+        ProviderContext ctx = provider.getContext();
+        Compute gce = provider.getGoogleCompute();
+
+        try {
+            Firewall rule = gce.firewalls().get(ctx.getAccountNumber(), ruleName).execute();
+            List<String> original = (rule.getSourceRanges() == null ? Collections.<String>emptyList() : rule.getSourceRanges());
+            List<String> ranges = new ArrayList<String>(original);
+
+            for( Change change : batch ) {
+                if( change.add ) {
+                    if( !ranges.contains(change.sourceRange) ) {
+                        ranges.add(change.sourceRange);
+                    }
+                }
+                else if( !ranges.remove(change.sourceRange) && change.sourceRange.endsWith("/32") ) {
+                    // rules list single addresses as /32 but GCE keeps them bare
+                    ranges.remove(change.sourceRange.substring(0, change.sourceRange.length() - 3));
+                }
+            }
+            if( ranges.equals(original) ) {
+                return;
+            }
+            Operation job;
+            if( ranges.isEmpty() && (rule.getSourceTags() == null || rule.getSourceTags().isEmpty()) ) {
+                // a rule without sources would admit any source
+                job = gce.firewalls().delete(ctx.getAccountNumber(), ruleName).execute();
+            }
+            else {
+                rule.setSourceRanges(ranges);
+                job = gce.firewalls().update(ctx.getAccountNumber(), ruleName, rule).execute();
+            }
+            GoogleMethod method = new GoogleMethod(provider);
+            if( !method.getOperationComplete(ctx, job, GoogleOperationType.GLOBAL_OPERATION, "", "") ) {
+                throw new CloudException("An error occurred updating the rule " + ruleName + ": Operation Timed Out");
+            }
+            if( batch.size() > 1 ) {
+                logger.debug("Applied " + batch.size() + " source range changes to " + ruleName + " in one update");
+            }
+        }
+        catch( IOException ex ) {
+            logger.error(ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            else {
+                throw new CloudException("An error occurred updating the rule " + ruleName + ": " + ex.getMessage());
+            }
+        }
+    }
+}
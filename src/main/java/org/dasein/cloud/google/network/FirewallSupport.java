@@ -24,11 +24,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -42,7 +44,9 @@ import org.dasein.cloud.OperationNotSupportedException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.ResourceStatus;
 import org.dasein.cloud.VisibleScope;
+import org.dasein.cloud.google.FieldMask;
 import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.StreamingListReader;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
@@ -53,6 +57,7 @@ import org.dasein.cloud.network.Firewall;
 import org.dasein.cloud.network.FirewallConstraints;
 import org.dasein.cloud.network.FirewallCreateOptions;
 import org.dasein.cloud.network.FirewallRule;
+import org.dasein.cloud.network.FirewallRuleCreateOptions;
 import org.dasein.cloud.network.Permission;
 import org.dasein.cloud.network.Protocol;
 import org.dasein.cloud.network.RuleTarget;
@@ -63,9 +68,7 @@ import org.dasein.cloud.util.APITrace;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.compute.Compute;
 import com.google.api.services.compute.model.Firewall.Allowed;
-import com.google.api.services.compute.model.FirewallList;
 import com.google.api.services.compute.model.Network;
-import com.google.api.services.compute.model.NetworkList;
 import com.google.api.services.compute.model.Operation;
 
 /**
@@ -77,11 +80,32 @@ import com.google.api.services.compute.model.Operation;
 public class FirewallSupport extends AbstractFirewallSupport<Google> {
     static private final Logger logger = Google.getLogger(org.dasein.cloud.network.FirewallSupport.class);
 
+    /*
+     * Rules rarely change between the calls of one reconcile pass, so list, getFirewall, getRules and
+     * ServerSupport.listFirewalls share one index per account for a few seconds. Rule changes made through this
+     * class drop the index; changes made elsewhere show up once it expires.
+     */
+    static private final long RULE_INDEX_TTL = 10000L;
+    static private final ConcurrentHashMap<String, RuleIndex> ruleIndexes = new ConcurrentHashMap<String, RuleIndex>();
+
+    static private final class RuleIndex {
+        private final long builtAt = System.currentTimeMillis();
+        private final List<Network> networks = new ArrayList<Network>();
+        private final Map<String, List<com.google.api.services.compute.model.Firewall>> rulesByNetwork = new HashMap<String, List<com.google.api.services.compute.model.Firewall>>();
+
+        private @Nonnull List<com.google.api.services.compute.model.Firewall> getRules(@Nonnull String networkName) {
+            List<com.google.api.services.compute.model.Firewall> rules = rulesByNetwork.get(networkName);
+            return (rules == null ? Collections.<com.google.api.services.compute.model.Firewall>emptyList() : rules);
+        }
+    }
+
     private Google provider = null;
+    private final FirewallRuleCoalescer ruleChanges;
 
     FirewallSupport(Google provider) {
         super(provider);
         this.provider = provider;
+        this.ruleChanges = new FirewallRuleCoalescer(provider);
     }
     @Override
     public @Nonnull String authorize(@Nonnull String firewallId, @Nonnull Direction direction, @Nonnull Permission permission, @Nonnull RuleTarget sourceEndpoint, @Nonnull Protocol protocol, @Nonnull RuleTarget destinationEndpoint, int beginPort, int endPort, int precedence) throws CloudException, InternalException {
@@ -167,8 +191,14 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
 
                 try {
                     Operation job = gce.firewalls().insert(provider.getContext().getAccountNumber(), googleFirewall).execute();
-                    GoogleMethod method = new GoogleMethod(provider);
-                    return method.getOperationTarget(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "", false);
+                    try {
+                        GoogleMethod method = new GoogleMethod(provider);
+                        return method.getOperationTarget(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "", false);
+                    }
+                    finally {
+                        // only once the insert has landed, or a concurrent listing could cache the old rules again
+                        invalidateRuleIndex();
+                    }
                 } catch (IOException ex) {
                     logger.error(ex.getMessage());
                     if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -213,15 +243,9 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
 
         Compute gce = provider.getGoogleCompute();
         try {
-            Network firewall = gce.networks().get(ctx.getAccountNumber(), firewallId.split("fw-")[1]).execute();
-
-            FirewallList firewallList = gce.firewalls().list(ctx.getAccountNumber()).setFilter("network eq .*/" + firewall.getName()).execute();
-            if (null != firewallList) {
-                List<com.google.api.services.compute.model.Firewall> rules = firewallList.getItems();
-                return toFirewall(firewall, rules);
-            } else {
-                throw new CloudException("Firewall Not Found.");
-            }
+            Network firewall = gce.networks().get(ctx.getAccountNumber(), firewallId.split("fw-")[1]).setFields(FieldMask.get(FieldMask.Resource.NETWORK, FieldMask.Profile.SUMMARY)).execute();
+
+            return toFirewall(firewall, getRuleIndex().getRules(firewall.getName()));
         } catch (IOException ex) {
             logger.error("An error occurred while getting firewall " + firewallId + ": " + ex.getMessage());
             if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -243,22 +267,12 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
             throw new CloudException("Context for this request lacks a account number");
         }
 
-        Compute gce = provider.getGoogleCompute();
-        try{
-            firewallId = firewallId.replaceFirst("^fw-", "");  // remove 'fw-' if its present, if not... then see if whats there works
-            FirewallList rules = gce.firewalls().list(ctx.getAccountNumber()).setFilter("network eq .*" + firewallId).execute();
-            if ((rules != null) && (null != rules.getItems())) {
-                return toFirewallRules(rules.getItems());
-            } else {
-                return Collections.emptyList();
-            }
-        } catch (IOException ex) {
-            logger.error("An error occurred while getting firewall " + firewallId + ": " + ex.getMessage());
-            if (ex.getClass() == GoogleJsonResponseException.class) {
-               GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-               throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-            } else
-                throw new CloudException(ex.getMessage());
+        firewallId = firewallId.replaceFirst("^fw-", "");  // remove 'fw-' if its present, if not... then see if whats there works
+        List<com.google.api.services.compute.model.Firewall> rules = getRuleIndex().getRules(firewallId);
+        if (!rules.isEmpty()) {
+            return toFirewallRules(rules);
+        } else {
+            return Collections.emptyList();
         }
     }
 
@@ -270,57 +284,39 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
     @Override
     public @Nonnull Collection<Firewall> list() throws InternalException, CloudException{
         //GCE has a defacto Firewall for every network so will simply map a fake firewall to networks.
+        ArrayList<Firewall> firewalls = new ArrayList<Firewall>();
+        RuleIndex index = getRuleIndex();
+        for (Network network : index.networks) {
+            Firewall firewall = toFirewall(network, index.getRules(network.getName()));
+            if (firewall != null)
+                firewalls.add(firewall);
+        }
+        return firewalls;
+    }
+
+    @Override
+    public @Nonnull Iterable<ResourceStatus> listFirewallStatus() throws InternalException, CloudException {
         ProviderContext ctx = provider.getContext();
         if ( ctx == null )
             throw new InternalException("No context was established");
 
-        ArrayList<Firewall> firewalls = new ArrayList<Firewall>();
+        // one firewall per network and every firewall is active, so the network names are all that is needed
+        final ArrayList<ResourceStatus> statuses = new ArrayList<ResourceStatus>();
         try {
             Compute gce = provider.getGoogleCompute();
-
-            NetworkList networkList = gce.networks().list(ctx.getAccountNumber()).execute();
-            if (null != networkList) {
-                List<Network> networks = networkList.getItems();
-
-                FirewallList firewallList = gce.firewalls().list(ctx.getAccountNumber()).execute();
-                if (null != firewallList) {
-                    List<com.google.api.services.compute.model.Firewall> rules = firewallList.getItems();
-
-                    if (networks != null && networks.size() > 0) {
-                        for (Network network : networks) {
-                            List<com.google.api.services.compute.model.Firewall> rulesSubset = new ArrayList <com.google.api.services.compute.model.Firewall>();
-                            if (null != rules) {
-                                for (com.google.api.services.compute.model.Firewall rule : rules)
-                                    if (rule.getNetwork().equals(network.getSelfLink()))
-                                        rulesSubset.add(rule);
-                            }
-                            if (network != null) {
-                                Firewall firewall = toFirewall(network, rulesSubset);
-                                if (firewall != null)
-                                    firewalls.add(firewall);
-                            }
-                        }
-                    }
+            StreamingListReader.readList(gce.networks().list(ctx.getAccountNumber()).setFields(FieldMask.list(FieldMask.Resource.NETWORK, FieldMask.Profile.STATUS)), Network.class, new StreamingListReader.Handler<Network>() {
+                @Override
+                public void handle(String scope, @Nonnull Network network) {
+                    statuses.add(new ResourceStatus("fw-" + network.getName(), true));
                 }
-            }
+            });
         } catch (IOException ex) {
             logger.error(ex.getMessage());
             if (ex.getClass() == GoogleJsonResponseException.class) {
                 GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
                 throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
             } else
-                throw new CloudException("An error occurred while listing Firewalls: " + ex.getMessage());
-        }
-        return firewalls;
-    }
-
-    @Override
-    public @Nonnull Iterable<ResourceStatus> listFirewallStatus() throws InternalException, CloudException {
-        ArrayList<ResourceStatus> statuses = new ArrayList<ResourceStatus>();
-        Collection<Firewall> firewalls = list();
-        for (Firewall firewall : firewalls) {
-            ResourceStatus status = new ResourceStatus(firewall.getProviderFirewallId(), true);
-            statuses.add(status);
+                throw new CloudException("An error occurred while listing Firewall status: " + ex.getMessage());
         }
         return statuses;
     }
@@ -365,27 +361,24 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
             try {
                 Compute gce = provider.getGoogleCompute();
                 if (providerFirewallRuleId.contains("--")) {
+                    // one source range of a GCE rule with several; concurrent revokes of the same rule share one update
                     String[] parts = providerFirewallRuleId.split("\\-\\-");
-                    String firewall = parts[0];
-                    com.google.api.services.compute.model.Firewall fw = gce.firewalls().get(provider.getContext().getAccountNumber(), firewall).execute();
-                    List<String> sourceRanges = fw.getSourceRanges();
-                    for (String sourceRange : sourceRanges) {
-                        if (parts[1].equals(sourceRange)) {
-                            sourceRanges.remove(sourceRange);
-                            break;
-                        }
+                    try {
+                        ruleChanges.apply(parts[0], Collections.singletonList(FirewallRuleCoalescer.removeSourceRange(parts[1])));
                     }
-                    fw.setSourceRanges(sourceRanges);
-                    Operation job = gce.firewalls().update(provider.getContext().getAccountNumber(), firewall, fw).execute();
-                    GoogleMethod method = new GoogleMethod(provider);
-                    if (!method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "")) {
-                        throw new CloudException("An error occurred deleting the rule: Operation Timed Out");
+                    finally {
+                        invalidateRuleIndex();
                     }
                 } else {
                     Operation job = gce.firewalls().delete(provider.getContext().getAccountNumber(), providerFirewallRuleId).execute();
-                    GoogleMethod method = new GoogleMethod(provider);
-                    if(!method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "")) {
-                        throw new CloudException("An error occurred deleting the rule: Operation Timed Out");
+                    try {
+                        GoogleMethod method = new GoogleMethod(provider);
+                        if(!method.getOperationComplete(provider.getContext(), job, GoogleOperationType.GLOBAL_OPERATION, "", "")) {
+                            throw new CloudException("An error occurred deleting the rule: Operation Timed Out");
+                        }
+                    }
+                    finally {
+                        invalidateRuleIndex();
                     }
                 }
             } catch (IOException ex) {
@@ -402,6 +395,91 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
         }
     }
 
+    /**
+     * Revokes a set of rules, removing all the revoked source ranges of one GCE rule with a single update
+     * rather than one read-modify-write per rule ID.
+     * @param providerFirewallRuleIds the IDs of the rules to revoke, as from {@link #getRules(String)}
+     */
+    public void revokeAll(@Nonnull Collection<String> providerFirewallRuleIds) throws InternalException, CloudException {
+        APITrace.begin(provider, "Firewall.revokeAll");
+        try {
+            Map<String, List<FirewallRuleCoalescer.Change>> changes = new LinkedHashMap<String, List<FirewallRuleCoalescer.Change>>();
+            List<String> deletes = new ArrayList<String>();
+
+            for (String ruleId : providerFirewallRuleIds) {
+                if (ruleId.contains("--")) {
+                    String[] parts = ruleId.split("\\-\\-");
+                    List<FirewallRuleCoalescer.Change> forRule = changes.get(parts[0]);
+                    if (forRule == null) {
+                        forRule = new ArrayList<FirewallRuleCoalescer.Change>();
+                        changes.put(parts[0], forRule);
+                    }
+                    forRule.add(FirewallRuleCoalescer.removeSourceRange(parts[1]));
+                } else if (!deletes.contains(ruleId)) {
+                    deletes.add(ruleId);
+                }
+            }
+            try {
+                for (Map.Entry<String, List<FirewallRuleCoalescer.Change>> entry : changes.entrySet()) {
+                    if (!deletes.contains(entry.getKey())) {
+                        ruleChanges.apply(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            finally {
+                invalidateRuleIndex();
+            }
+            for (String ruleId : deletes) {
+                revoke(ruleId);
+            }
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    /**
+     * Brings the rules of a firewall to exactly the desired set, diffing it against one fresh listing of the
+     * network's rules. The inserts and updates are applied concurrently, and the deletes only once they have all
+     * succeeded. Rules that differ only in their source share one GCE rule. Every current rule of the network
+     * that the desired set does not call for is deleted, except rules with several protocols, port ranges or
+     * target tags, such as <code>default-allow-internal</code>, which are left alone.
+     * @param firewallId the firewall, as <code>fw-</code> followed by the network name
+     * @param desiredRules every rule the firewall should have
+     * @return the GCE rules created, updated, deleted and left alone
+     * @throws OperationNotSupportedException if a desired rule is one {@link #authorize} would reject
+     * @throws CloudException once every write has ended, if any failed; the message names each failed rule and
+     * the changes that were applied
+     */
+    public @Nonnull FirewallReconciliation reconcile(@Nonnull String firewallId, @Nonnull Collection<FirewallRuleCreateOptions> desiredRules) throws CloudException, InternalException {
+        APITrace.begin(provider, "Firewall.reconcile");
+        try {
+            String networkName = (firewallId.startsWith("fw-") ? firewallId.substring(3) : firewallId);
+            invalidateRuleIndex();
+            RuleIndex index = getRuleIndex();
+            Network network = null;
+
+            for (Network candidate : index.networks) {
+                if (candidate.getName().equals(networkName)) {
+                    network = candidate;
+                    break;
+                }
+            }
+            if (network == null) {
+                throw new CloudException("No such firewall: " + firewallId);
+            }
+            try {
+                return new FirewallReconciler(provider).reconcile(network, index.getRules(networkName), desiredRules);
+            }
+            finally {
+                invalidateRuleIndex();
+            }
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
     @Override
     public void revoke(@Nonnull String firewallId, @Nonnull String source, @Nonnull Protocol protocol, int beginPort, int endPort) throws CloudException, InternalException {
         revoke(firewallId, Direction.INGRESS, source, protocol, beginPort, endPort);
@@ -473,7 +551,80 @@ public class FirewallSupport extends AbstractFirewallSupport<Google> {
         revoke(rule.getProviderRuleId());
     }
 
-    private @Nullable Firewall toFirewall(@Nonnull Network googleFirewall, @Nullable List<com.google.api.services.compute.model.Firewall> rules){
+    /**
+     * Lists the firewalls with a rule that targets the given instance through its tag.
+     * @param vmName the name of the instance, which GCE uses as its tag
+     * @return the names of the matching firewalls
+     */
+    public @Nonnull Collection<String> listFirewallsTargeting(@Nonnull String vmName) throws InternalException, CloudException {
+        ArrayList<String> firewalls = new ArrayList<String>();
+        RuleIndex index = getRuleIndex();
+        for (Network network : index.networks) {
+            for (com.google.api.services.compute.model.Firewall rule : index.getRules(network.getName())) {
+                if (rule.getTargetTags() != null && rule.getTargetTags().contains(vmName)) {
+                    firewalls.add(network.getName() + " Firewall");
+                    break;
+                }
+            }
+        }
+        return firewalls;
+    }
+
+    /*
+     * Returns the account's networks and their rules grouped by network name, built in one pass over each
+     * paginated list unless a recent enough index exists.
+     */
+    private @Nonnull RuleIndex getRuleIndex() throws InternalException, CloudException {
+        ProviderContext ctx = provider.getContext();
+        if ( ctx == null )
+            throw new InternalException("No context was established");
+
+        RuleIndex index = ruleIndexes.get(ctx.getAccountNumber());
+        if (index != null && System.currentTimeMillis() - index.builtAt < RULE_INDEX_TTL) {
+            return index;
+        }
+        final RuleIndex fresh = new RuleIndex();
+        try {
+            Compute gce = provider.getGoogleCompute();
+
+            StreamingListReader.readList(gce.firewalls().list(ctx.getAccountNumber()).setFields(FieldMask.list(FieldMask.Resource.FIREWALL, FieldMask.Profile.SUMMARY)), com.google.api.services.compute.model.Firewall.class, new StreamingListReader.Handler<com.google.api.services.compute.model.Firewall>() {
+                @Override
+                public void handle(String scope, @Nonnull com.google.api.services.compute.model.Firewall rule) {
+                    String network = rule.getNetwork().substring(rule.getNetwork().lastIndexOf("/") + 1);
+                    List<com.google.api.services.compute.model.Firewall> rules = fresh.rulesByNetwork.get(network);
+                    if (null == rules) {
+                        rules = new ArrayList<com.google.api.services.compute.model.Firewall>();
+                        fresh.rulesByNetwork.put(network, rules);
+                    }
+                    rules.add(rule);
+                }
+            });
+            StreamingListReader.readList(gce.networks().list(ctx.getAccountNumber()).setFields(FieldMask.list(FieldMask.Resource.NETWORK, FieldMask.Profile.SUMMARY)), Network.class, new StreamingListReader.Handler<Network>() {
+                @Override
+                public void handle(String scope, @Nonnull Network network) {
+                    fresh.networks.add(network);
+                }
+            });
+        } catch (IOException ex) {
+            logger.error(ex.getMessage());
+            if (ex.getClass() == GoogleJsonResponseException.class) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            } else
+                throw new CloudException("An error occurred while listing Firewalls: " + ex.getMessage());
+        }
+        ruleIndexes.put(ctx.getAccountNumber(), fresh);
+        return fresh;
+    }
+
+    private void invalidateRuleIndex() {
+        ProviderContext ctx = provider.getContext();
+        if (ctx != null) {
+            ruleIndexes.remove(ctx.getAccountNumber());
+        }
+    }
+
+    @Nullable Firewall toFirewall(@Nonnull Network googleFirewall, @Nullable List<com.google.api.services.compute.model.Firewall> rules){
         Firewall firewall = new Firewall();
         //firewall.setProviderFirewallId(googleFirewall.getId() + "");// - GCE uses name as ID
         firewall.setProviderFirewallId("fw-" + googleFirewall.getName());
@@ -21,11 +21,14 @@ package org.dasein.cloud.google.network;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -43,10 +46,11 @@ import org.dasein.cloud.OperationNotSupportedException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.Requirement;
 import org.dasein.cloud.ResourceStatus;
-import org.dasein.cloud.compute.VirtualMachine;
+import org.dasein.cloud.google.FanOutExecutor;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
+import org.dasein.cloud.google.FieldMask;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.google.capabilities.GCEIPAddressCapabilities;
 import org.dasein.cloud.identity.ServiceAction;
@@ -65,6 +69,10 @@ import com.google.api.services.compute.model.AccessConfig;
 import com.google.api.services.compute.model.Address;
 import com.google.api.services.compute.model.AddressAggregatedList;
 import com.google.api.services.compute.model.AddressList;
+import com.google.api.services.compute.model.Instance;
+import com.google.api.services.compute.model.InstanceAggregatedList;
+import com.google.api.services.compute.model.InstancesScopedList;
+import com.google.api.services.compute.model.NetworkInterface;
 import com.google.api.services.compute.model.Operation;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -78,39 +86,75 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
     static private final ExecutorService threadPool = Executors.newFixedThreadPool(10);
     static private final Logger logger = Google.getLogger(IPAddressSupport.class);
 
+    // "account:addressName" -> region and "account:vmName" -> zone, as last seen by lookups
+    static private final ConcurrentHashMap<String, String> addressRegions = new ConcurrentHashMap<String, String>();
+    static private final ConcurrentHashMap<String, String> instanceZones = new ConcurrentHashMap<String, String>();
+    static private final int ASSIGN_CONCURRENCY = 16;
+
     protected IPAddressSupport(Google provider) {
         super(provider);
     }
 
     @Override
     public void assign(@Nonnull String addressId, @Nonnull String serverId) throws InternalException, CloudException {
+        assign(addressId, serverId, null);
+    }
+
+    /**
+     * Assigns the address to the first interface of the server, replacing whatever external address it has. The
+     * address is looked up in the region it was last seen in, or the context region, and the server in the given
+     * zone or the zone it was last seen in, falling back to project-wide lookups only if those miss. If the server
+     * already has the address nothing is written.
+     * @param addressId the name of the address
+     * @param serverId the ID of the server
+     * @param dataCenterId the zone of the server, if known
+     */
+    public void assign(@Nonnull String addressId, @Nonnull String serverId, @Nullable String dataCenterId) throws InternalException, CloudException {
         APITrace.begin(getProvider(), "IpAddress.assign");
 
         try{
             Compute gce = getProvider().getGoogleCompute();
-            IpAddress ipAddress = getIpAddress(addressId);
-            serverId = serverId.replaceAll("_[0-9]+$", "");  // Cope with vmName_vmId
-            VirtualMachine vm = getProvider().getComputeServices().getVirtualMachineSupport().getVirtualMachine(serverId);
-
-            AccessConfig accessConfig = new AccessConfig();
-            accessConfig.setName("External NAT");
-            accessConfig.setKind("compute#accessConfig");
-            accessConfig.setType("ONE_TO_ONE_NAT");
-            accessConfig.setNatIP(ipAddress.getRawAddress().getIpAddress());
+            ProviderContext ctx = getContext();
+            String vmName = getProvider().getComputeServices().getVirtualMachineSupport().getVmNameFromId(serverId);
+
             try{
-                GoogleMethod method = new GoogleMethod(getProvider());
-                //need to try and delete the existing access config if an ephemeral one exists
-                try{
-                    Operation job = gce.instances().deleteAccessConfig(getContext().getAccountNumber(), vm.getProviderDataCenterId(), vm.getName(), "External NAT", "nic0").execute();
-                    method.getOperationComplete(getContext(), job, GoogleOperationType.ZONE_OPERATION, "", vm.getProviderDataCenterId());
+                IpAddress ipAddress = getIpAddress(addressId);
+                String natIP = ipAddress.getRawAddress().getIpAddress();
+                Instance instance = getInstanceAccessConfigs(gce, ctx, vmName, dataCenterId);
+                if(instance == null || instance.getNetworkInterfaces() == null || instance.getNetworkInterfaces().isEmpty()){
+                    throw new CloudException("An error occurred assigning the IP: " + addressId + ": No such server: " + serverId);
                 }
-                catch(Exception ex){/* Don't care if there's an exception here */}
-                Operation job = gce.instances().addAccessConfig(getContext().getAccountNumber(), vm.getProviderDataCenterId(), serverId, "nic0", accessConfig).execute();
+                String zone = instance.getZone().substring(instance.getZone().lastIndexOf("/") + 1);
+                NetworkInterface nic = instance.getNetworkInterfaces().get(0);
+                String nicName = (nic.getName() == null ? "nic0" : nic.getName());
+                GoogleMethod method = new GoogleMethod(getProvider());
 
-                if(!method.getOperationComplete(getContext(), job, GoogleOperationType.ZONE_OPERATION, "", vm.getProviderDataCenterId())){
+                // an interface has at most one access config, so any other address has to go first
+                if(nic.getAccessConfigs() != null){
+                    for(AccessConfig existing : nic.getAccessConfigs()){
+                        if(natIP.equals(existing.getNatIP())){
+                            return;
+                        }
+                    }
+                    for(AccessConfig existing : nic.getAccessConfigs()){
+                        Operation job = gce.instances().deleteAccessConfig(ctx.getAccountNumber(), zone, vmName, existing.getName(), nicName).execute();
+                        if(!method.getOperationComplete(ctx, job, GoogleOperationType.ZONE_OPERATION, "", zone)){
+                            throw new CloudException("An error occurred assigning the IP: " + addressId + ": Operation timed out");
+                        }
+                    }
+                }
+                AccessConfig accessConfig = new AccessConfig();
+                accessConfig.setName("External NAT");
+                accessConfig.setKind("compute#accessConfig");
+                accessConfig.setType("ONE_TO_ONE_NAT");
+                accessConfig.setNatIP(natIP);
+                Operation job = gce.instances().addAccessConfig(ctx.getAccountNumber(), zone, vmName, nicName, accessConfig).execute();
+
+                if(!method.getOperationComplete(ctx, job, GoogleOperationType.ZONE_OPERATION, "", zone)){
                     throw new CloudException("An error occurred assigning the IP: " + addressId + ": Operation timed out");
                 }
-    	    } catch (Exception ex) {
+                refreshIndex(gce, ctx, ipAddress.getRegionId(), addressId);
+    	    } catch (IOException ex) {
 	            logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
     				GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
@@ -124,6 +168,84 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
         }
     }
 
+    /**
+     * Assigns many addresses at once, as when moving the addresses of failed servers to their standbys. The
+     * assignments run concurrently, each as {@link #assign(String, String, String)}, and a failed assignment
+     * does not stop the others.
+     * @param serverIdsByAddressId the server ID to assign each address to, by address name
+     * @param dataCenterId the zone of the servers, if known and shared by all of them
+     * @throws CloudException once every assignment has ended, naming each address that could not be assigned;
+     * the cause is the first of those failures
+     */
+    public void assignAll(@Nonnull Map<String, String> serverIdsByAddressId, @Nullable final String dataCenterId) throws InternalException, CloudException {
+        APITrace.begin(getProvider(), "IpAddress.assignAll");
+        try{
+            // each task reports its failure instead of throwing it, so the fan-out never cancels the others
+            List<Map.Entry<String, Exception>> failures = FanOutExecutor.run(serverIdsByAddressId.entrySet(), ASSIGN_CONCURRENCY, new FanOutExecutor.Task<Map.Entry<String, String>, Map.Entry<String, Exception>>() {
+                @Override
+                public Collection<Map.Entry<String, Exception>> call(@Nonnull Map.Entry<String, String> assignment) {
+                    try{
+                        assign(assignment.getKey(), assignment.getValue(), dataCenterId);
+                        return null;
+                    }
+                    catch(Exception e){
+                        return Collections.<Map.Entry<String, Exception>>singletonList(new AbstractMap.SimpleImmutableEntry<String, Exception>(assignment.getKey(), e));
+                    }
+                }
+            });
+            if(!failures.isEmpty()){
+                StringBuilder message = new StringBuilder("Failed to assign ").append(failures.size()).append(" of ").append(serverIdsByAddressId.size()).append(" addresses:");
+                for(Map.Entry<String, Exception> failure : failures){
+                    message.append(" ").append(failure.getKey()).append(" (").append(failure.getValue().getMessage()).append(")");
+                }
+                CloudException e = new CloudException(message.toString());
+                e.initCause(failures.get(0).getValue());
+                throw e;
+            }
+        }
+        finally {
+            APITrace.end();
+        }
+    }
+
+    /*
+     * Reads the access configs of the instance from the given zone or the zone it was last seen in, before
+     * resorting to a project-wide search.
+     */
+    private @Nullable Instance getInstanceAccessConfigs(@Nonnull Compute gce, @Nonnull ProviderContext ctx, @Nonnull String vmName, @Nullable String zoneHint) throws IOException {
+        String key = ctx.getAccountNumber() + ":" + vmName;
+        String zone = (zoneHint == null ? instanceZones.get(key) : zoneHint);
+
+        if(zone != null){
+            try{
+                Instance instance = gce.instances().get(ctx.getAccountNumber(), zone, vmName).setFields(FieldMask.INSTANCE_ACCESS_CONFIGS).execute();
+                instanceZones.put(key, zone);
+                return instance;
+            }
+            catch(GoogleJsonResponseException ex){
+                if(ex.getStatusCode() != 404){
+                    throw ex;
+                }
+                instanceZones.remove(key);
+            }
+        }
+        InstanceAggregatedList instances = gce.instances().aggregatedList(ctx.getAccountNumber()).setFilter("name eq " + vmName).setFields("items/*/instances(" + FieldMask.INSTANCE_ACCESS_CONFIGS + ")").execute();
+        if(instances.getItems() != null){
+            for(InstancesScopedList scoped : instances.getItems().values()){
+                if(scoped.getInstances() == null){
+                    continue;
+                }
+                for(Instance instance : scoped.getInstances()){
+                    if(vmName.equals(instance.getName())){
+                        instanceZones.put(key, instance.getZone().substring(instance.getZone().lastIndexOf("/") + 1));
+                        return instance;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
     @Override
     public void assignToNetworkInterface(@Nonnull String addressId, @Nonnull String nicId) throws InternalException, CloudException {
         throw new OperationNotSupportedException("GCE does not support NICs");
@@ -152,14 +274,32 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
         try{
             try{
                 Compute gce = getProvider().getGoogleCompute();
-                AddressAggregatedList addressList = gce.addresses().aggregatedList(getContext().getAccountNumber()).setFilter("name eq " + addressId).execute();
+                ProviderContext ctx = getContext();
+                String key = ctx.getAccountNumber() + ":" + addressId;
+                String regionId = addressRegions.get(key);
+                if(regionId == null){
+                    regionId = ctx.getRegionId();
+                }
+                if(regionId != null){
+                    Address address = AddressIndex.forAccount(ctx.getAccountNumber()).get(gce, regionId, addressId);
+                    if(address != null){
+                        addressRegions.put(key, regionId);
+                        return toIpAddress(address);
+                    }
+                    addressRegions.remove(key);
+                }
+                AddressAggregatedList addressList = gce.addresses().aggregatedList(getContext().getAccountNumber()).setFilter("name eq " + addressId).setFields(FieldMask.aggregatedList(FieldMask.Resource.ADDRESS, FieldMask.Profile.SUMMARY)).execute();
                 if(addressList != null && addressList.getItems() != null && !addressList.getItems().isEmpty())        {
                     Iterator<String> regions = addressList.getItems().keySet().iterator();
                     while(regions.hasNext()){
                         String region = regions.next();
                         if(addressList.getItems() != null && addressList.getItems().get(region) != null && addressList.getItems().get(region).getAddresses() != null && !addressList.getItems().get(region).getAddresses().isEmpty()){
                             for(Address address : addressList.getItems().get(region).getAddresses()){
-                                if(address.getName().equals(addressId))return toIpAddress(address);
+                                if(address.getName().equals(addressId)){
+                                    IpAddress ipAddress = toIpAddress(address);
+                                    addressRegions.put(key, ipAddress.getRegionId());
+                                    return ipAddress;
+                                }
                             }
                         }
                     }
@@ -183,11 +323,9 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
     public String getIpAddressIdFromIP(@Nonnull String ipAddress, @Nonnull String regionId)throws InternalException, CloudException{
         try{
             Compute gce = getProvider().getGoogleCompute();
-            AddressList addressList = gce.addresses().list(getContext().getAccountNumber(), regionId).execute();
-            if(addressList != null && addressList.getItems() != null && !addressList.getItems().isEmpty()){
-                for(Address address : addressList.getItems()){
-                    if(ipAddress.equals(address.getAddress()))return address.getName();
-                }
+            Address address = AddressIndex.forAccount(getContext().getAccountNumber()).getByIp(gce, regionId, ipAddress);
+            if(address != null){
+                return address.getName();
             }
             throw new InternalException("An address could not be found matching " + ipAddress + " in " + regionId);
 	    } catch (IOException ex) {
@@ -286,12 +424,9 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
             List<IpAddress> addresses = new ArrayList<IpAddress>();
             try{
                 Compute gce = getProvider().getGoogleCompute();
-                AddressList addressList = gce.addresses().list(getContext().getAccountNumber(), getContext().getRegionId()).execute();
-                if(addressList != null && addressList.getItems() != null && !addressList.getItems().isEmpty()){
-                    for(Address address : addressList.getItems()){
-                        IpAddress ipAddress = toIpAddress(address);
-                        if(ipAddress != null)addresses.add(ipAddress);
-                    }
+                for(Address address : AddressIndex.forAccount(getContext().getAccountNumber()).list(gce, getContext().getRegionId())){
+                    IpAddress ipAddress = toIpAddress(address);
+                    if(ipAddress != null)addresses.add(ipAddress);
                 }
                 return addresses;
     	    } catch (IOException ex) {
@@ -319,21 +454,10 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
             List<ResourceStatus> statuses = new ArrayList<ResourceStatus>();
             try{
                 Compute gce = getProvider().getGoogleCompute();
-                AddressAggregatedList addressList = gce.addresses().aggregatedList(getContext().getAccountNumber()).execute();
-                Iterator<String> regions = addressList.getItems().keySet().iterator();
-                while(regions.hasNext()){
-                    String region = regions.next();
-
-                    if ((null != addressList) &&
-                        (null != addressList.getItems()) &&
-                        (null != addressList.getItems().get(region)) &&
-                        (null != addressList.getItems().get(region).getAddresses())) {
-                        for(Address address : addressList.getItems().get(region).getAddresses()){
-                            ResourceStatus status = toStatus(address);
-                            if (status != null) {
-                                statuses.add(status);
-                            }
-                        }
+                for(Address address : AddressIndex.forAccount(getContext().getAccountNumber()).listAll(gce)){
+                    ResourceStatus status = toStatus(address);
+                    if (status != null) {
+                        statuses.add(status);
                     }
                 }
                 return statuses;
@@ -370,6 +494,8 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
                 if(!method.getOperationComplete(getContext(), job, GoogleOperationType.REGION_OPERATION, ipAddress.getRegionId(), "")){
                     throw new CloudException("An error occurred releasing address: " + addressId + ": Operation timed out");
                 }
+                AddressIndex.forAccount(getContext().getAccountNumber()).remove(ipAddress.getRegionId(), addressId);
+                addressRegions.remove(getContext().getAccountNumber() + ":" + addressId);
     	    } catch (IOException ex) {
 	            logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -413,6 +539,7 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
                 if(!method.getOperationComplete(getContext(), job, GoogleOperationType.ZONE_OPERATION, "", zone)){
                     throw new CloudException("An error occurred releasing the address from the server: Operation timed out");
                 }
+                refreshIndex(gce, getContext(), getContext().getRegionId(), addressId);
     	    } catch (IOException ex) {
 	            logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -453,7 +580,9 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
                     Operation job = gce.addresses().insert(getContext().getAccountNumber(), getContext().getRegionId(), address).execute();
 
                     GoogleMethod method = new GoogleMethod(getProvider());
-                    return method.getOperationTarget(getContext(), job, GoogleOperationType.REGION_OPERATION, getContext().getRegionId(), "", false);
+                    String addressId = method.getOperationTarget(getContext(), job, GoogleOperationType.REGION_OPERATION, getContext().getRegionId(), "", false);
+                    refreshIndex(gce, getContext(), getContext().getRegionId(), addressId);
+                    return addressId;
         	    } catch (IOException ex) {
     	            logger.error(ex.getMessage());
         			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -494,6 +623,21 @@ public class IPAddressSupport extends AbstractIpAddressSupport<Google> {
         return false;
     }
 
+    /*
+     * Brings the indexed copy of an address up to date after a change to it. If that fails the region is dropped
+     * from the index instead, since the change itself went through.
+     */
+    private void refreshIndex(@Nonnull Compute gce, @Nonnull ProviderContext ctx, @Nonnull String regionId, @Nonnull String addressId){
+        AddressIndex index = AddressIndex.forAccount(ctx.getAccountNumber());
+        try{
+            index.refresh(gce, regionId, addressId);
+        }
+        catch(IOException ex){
+            logger.warn("Could not re-read address " + addressId + ": " + ex.getMessage());
+            index.invalidate(regionId);
+        }
+    }
+
     private IpAddress toIpAddress(Address address){
         IpAddress ipAddress = new IpAddress();
 
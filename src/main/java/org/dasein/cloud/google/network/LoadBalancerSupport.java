@@ -39,6 +39,7 @@ import org.dasein.cloud.compute.VirtualMachine;
 import org.dasein.cloud.google.GoogleException;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
+import org.dasein.cloud.google.FieldMask;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.google.capabilities.GCELoadBalancerCapabilities;
 import org.dasein.cloud.network.AbstractLoadBalancerSupport;
@@ -323,10 +324,10 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
             tp.setName(getCapabilities().getLoadBalancerNamingConstraints().convertToValidName(options.getName(), Locale.US));
             tp.setInstances(null);
 
+            GoogleMethod method = new GoogleMethod(provider);
+            Operation poolJob;
             try {
-                GoogleMethod method = new GoogleMethod(provider);
-                Operation job = gce.targetPools().insert(ctx.getAccountNumber(), ctx.getRegionId(), tp).execute();
-                method.getOperationComplete(ctx, job, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+                poolJob = gce.targetPools().insert(ctx.getAccountNumber(), ctx.getRegionId(), tp).execute();
             } catch (IOException e) {
                 if (e.getClass() == GoogleJsonResponseException.class) {
                     GoogleJsonResponseException gjre = (GoogleJsonResponseException)e;
@@ -334,14 +335,42 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
                 } else
                     throw new CloudException(e);
             }
-            HealthCheckOptions hco = options.getHealthCheckOptions();
 
-            if (hco != null) {
-                LoadBalancerHealthCheck hc = createLoadBalancerHealthCheck(hco.getName(), hco.getDescription(), hco.getHost(), hco.getProtocol(), hco.getPort(), hco.getPath(), hco.getInterval(), hco.getTimeout(), hco.getHealthyCount(), hco.getUnhealthyCount());
-                attachHealthCheckToLoadBalancer(options.getName(), options.getHealthCheckOptions().getName());
-            }
+            // the health check and the address do not need the target pool, so create them while it is being built;
+            // if any step fails, everything created so far is removed again
+            String healthCheckName = null;
+            String requestedAddressId = null;
+            try {
+                HealthCheckOptions hco = options.getHealthCheckOptions();
+                if (hco != null) {
+                    createLoadBalancerHealthCheck(hco.getName(), hco.getDescription(), hco.getHost(), hco.getProtocol(), hco.getPort(), hco.getPath(), hco.getInterval(), hco.getTimeout(), hco.getHealthyCount(), hco.getUnhealthyCount());
+                    // only once it is ours; a failed create may have collided with an existing health check
+                    healthCheckName = getCapabilities().getLoadBalancerNamingConstraints().convertToValidName(hco.getName(), Locale.US);
+                }
+                String ipAddress = options.getProviderIpAddressId();
+                if ((ipAddress == null) || (ipAddress.equals(""))) {
+                    IPAddressSupport ipSupport = provider.getNetworkServices().getIpAddressSupport();
+                    requestedAddressId = ipSupport.request(IPVersion.IPV4);
+                    ipAddress = ipSupport.getIpAddress(requestedAddressId).getRawAddress().getIpAddress();
+                }
 
-            createLoadBalancerForwardingRule(options);
+                method.getOperationComplete(ctx, poolJob, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+
+                if (hco != null) {
+                    attachHealthCheckToLoadBalancer(options.getName(), hco.getName());
+                }
+
+                createLoadBalancerForwardingRule(options, ipAddress);
+            } catch (CloudException e) {
+                rollBackCreate(poolJob, tp.getName(), healthCheckName, requestedAddressId);
+                throw e;
+            } catch (InternalException e) {
+                rollBackCreate(poolJob, tp.getName(), healthCheckName, requestedAddressId);
+                throw e;
+            } catch (RuntimeException e) {
+                rollBackCreate(poolJob, tp.getName(), healthCheckName, requestedAddressId);
+                throw e;
+            }
 
             return options.getName();
         }
@@ -379,6 +408,7 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
                 ipAddress = provider.getNetworkServices().getIpAddressSupport().getIpAddress(provider.getNetworkServices().getIpAddressSupport().request(IPVersion.IPV4)).getRawAddress().getIpAddress();
 
             String targetPoolSelfLink = tp.getSelfLink();
+            List<ForwardingRule> forwardingRules = new ArrayList<ForwardingRule>();
 
             for ( LbListener listener : listeners) {
                 ForwardingRule forwardingRule = new ForwardingRule();
@@ -391,10 +421,9 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
                 forwardingRule.setRegion(ctx.getRegionId());
                 forwardingRule.setTarget(targetPoolSelfLink);
 
-                GoogleMethod method = new GoogleMethod(provider);
-                Operation job = gce.forwardingRules().insert(ctx.getAccountNumber(), ctx.getRegionId(), forwardingRule).execute();
-                method.getOperationComplete(ctx, job, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+                forwardingRules.add(forwardingRule);
             }
+            insertForwardingRules(forwardingRules);
         } catch (IOException e) {
             if (e.getClass() == GoogleJsonResponseException.class) {
                 GoogleJsonResponseException gjre = (GoogleJsonResponseException)e;
@@ -407,7 +436,7 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
     }
 
 
-    void createLoadBalancerForwardingRule(@Nonnull LoadBalancerCreateOptions options)  throws CloudException, InternalException {
+    void createLoadBalancerForwardingRule(@Nonnull LoadBalancerCreateOptions options, @Nonnull String ipAddress)  throws CloudException, InternalException {
         APITrace.begin(provider, "LB.createLoadBalancerForwardingRule");
         gce = provider.getGoogleCompute();
 
@@ -420,11 +449,7 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
                 throw new CloudException("Target Pool " + options.getName() + " not found.");
 
             targetPoolSelfLink = tp.getSelfLink();
-
-            // Create an IP address for the load balancer if it is not specified.
-            String ipAddress = options.getProviderIpAddressId();
-            if ((options.getProviderIpAddressId() == null) || (options.getProviderIpAddressId().equals(""))) 
-                ipAddress = provider.getNetworkServices().getIpAddressSupport().getIpAddress(provider.getNetworkServices().getIpAddressSupport().request(IPVersion.IPV4)).getRawAddress().getIpAddress();
+            List<ForwardingRule> forwardingRules = new ArrayList<ForwardingRule>();
 
             if (listeners.length > 0) {
                 // listeners specified
@@ -444,10 +469,7 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
                     forwardingRule.setPortRange("" + listener.getPublicPort());
                     forwardingRule.setRegion(ctx.getRegionId());
                     forwardingRule.setTarget(targetPoolSelfLink);
-
-                    GoogleMethod method = new GoogleMethod(provider);
-                    Operation job = gce.forwardingRules().insert(ctx.getAccountNumber(), ctx.getRegionId(), forwardingRule).execute();
-                    method.getOperationComplete(ctx, job, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+                    forwardingRules.add(forwardingRule);
                 }
             } else {
                 // no listeners specified, default to ephemeral, port 80, TCP
@@ -460,11 +482,9 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
                 forwardingRule.setPortRange( "80");
                 forwardingRule.setRegion(ctx.getRegionId());
                 forwardingRule.setTarget(targetPoolSelfLink);
-
-                GoogleMethod method = new GoogleMethod(provider);
-                Operation job = gce.forwardingRules().insert(ctx.getAccountNumber(), ctx.getRegionId(), forwardingRule).execute();
-                method.getOperationComplete(ctx, job, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+                forwardingRules.add(forwardingRule);
             }
+            insertForwardingRules(forwardingRules);
         } catch (IOException e) {
             if (e.getClass() == GoogleJsonResponseException.class) {
                 GoogleJsonResponseException gjre = (GoogleJsonResponseException)e;
@@ -479,6 +499,99 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
         }
     }
 
+    /*
+     * Forwarding rules on a pool are independent of each other, so submit all of the inserts up front
+     * and wait for the operations together. If an insert cannot be submitted or any of them fails, every
+     * submitted operation is awaited and the rules they created are deleted before the failure is rethrown.
+     */
+    private void insertForwardingRules(@Nonnull List<ForwardingRule> forwardingRules) throws CloudException, InternalException, IOException {
+        List<Operation> jobs = new ArrayList<Operation>();
+        GoogleMethod method = new GoogleMethod(provider);
+
+        try {
+            for (ForwardingRule forwardingRule : forwardingRules) {
+                jobs.add(gce.forwardingRules().insert(ctx.getAccountNumber(), ctx.getRegionId(), forwardingRule).execute());
+            }
+            method.getOperationsComplete(ctx, jobs, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+        } catch (IOException e) {
+            removeInsertedForwardingRules(jobs, forwardingRules);
+            throw e;
+        } catch (CloudException e) {
+            removeInsertedForwardingRules(jobs, forwardingRules);
+            throw e;
+        } catch (InternalException e) {
+            removeInsertedForwardingRules(jobs, forwardingRules);
+            throw e;
+        }
+    }
+
+    /*
+     * Best-effort cleanup after a failed insertForwardingRules: waits out the inserts that were submitted, the
+     * first jobs.size() of the rules, then deletes the rules whose insert succeeded. A rule whose insert failed is
+     * left alone, since the name may belong to an existing rule. Failures are only logged, since the error that
+     * caused the cleanup is the one reported.
+     */
+    private void removeInsertedForwardingRules(@Nonnull List<Operation> jobs, @Nonnull List<ForwardingRule> forwardingRules) {
+        GoogleMethod method = new GoogleMethod(provider);
+        List<Operation> deletes = new ArrayList<Operation>();
+
+        for (int i = 0; i < jobs.size(); i++) {
+            String name = forwardingRules.get(i).getName();
+            try {
+                method.getOperationComplete(ctx, jobs.get(i), GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+            } catch (Exception ignore) {
+                continue; // this insert failed, so there is nothing of ours to remove
+            }
+            try {
+                deletes.add(gce.forwardingRules().delete(ctx.getAccountNumber(), ctx.getRegionId(), name).execute());
+            } catch (Exception e) {
+                logger.warn("Unable to remove forwarding rule " + name + " after a failed create: " + e.getMessage());
+            }
+        }
+        try {
+            method.getOperationsComplete(ctx, deletes, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+        } catch (Exception e) {
+            logger.warn("Unable to remove forwarding rules after a failed create: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Best-effort cleanup after a failed createLoadBalancer: waits out the pool insert, then deletes the pool if that
+     * insert succeeded, and the health check and the address that createLoadBalancer made. Failures are only logged.
+     */
+    private void rollBackCreate(@Nonnull Operation poolJob, @Nonnull String poolName, @Nullable String healthCheckName, @Nullable String requestedAddressId) {
+        GoogleMethod method = new GoogleMethod(provider);
+        boolean poolCreated = false;
+
+        try {
+            poolCreated = method.getOperationComplete(ctx, poolJob, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+        } catch (Exception ignore) {
+            // the insert failed, and a pool of that name may be someone else's
+        }
+        if (poolCreated) {
+            try {
+                Operation job = gce.targetPools().delete(ctx.getAccountNumber(), ctx.getRegionId(), poolName).execute();
+                method.getOperationComplete(ctx, job, GoogleOperationType.REGION_OPERATION, ctx.getRegionId(), "");
+            } catch (Exception e) {
+                logger.warn("Unable to remove target pool " + poolName + " after a failed create: " + e.getMessage());
+            }
+        }
+        if (healthCheckName != null) {
+            try {
+                removeLoadBalancerHealthCheck(healthCheckName);
+            } catch (Exception e) {
+                logger.warn("Unable to remove health check " + healthCheckName + " after a failed create: " + e.getMessage());
+            }
+        }
+        if (requestedAddressId != null) {
+            try {
+                provider.getNetworkServices().getIpAddressSupport().releaseFromPool(requestedAddressId);
+            } catch (Exception e) {
+                logger.warn("Unable to release address " + requestedAddressId + " after a failed create: " + e.getMessage());
+            }
+        }
+    }
+
     @Override
     public LoadBalancerHealthCheck createLoadBalancerHealthCheck(@Nonnull HealthCheckOptions options) throws CloudException, InternalException{
         return createLoadBalancerHealthCheck(
@@ -888,7 +1001,7 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
         ArrayList<ResourceStatus> list = new ArrayList<ResourceStatus>();
 
         try {
-            TargetPoolList tpl = gce.targetPools().list(ctx.getAccountNumber(), ctx.getRegionId()).execute();
+            TargetPoolList tpl = gce.targetPools().list(ctx.getAccountNumber(), ctx.getRegionId()).setFields(FieldMask.list(FieldMask.Resource.TARGET_POOL, FieldMask.Profile.STATUS)).execute();
             if ((tpl != null) && (tpl.getItems() != null)) { 
                 Iterator<TargetPool> loadBalancers = tpl.getItems().iterator();
 
@@ -955,7 +1068,7 @@ public class LoadBalancerSupport extends AbstractLoadBalancerSupport<Google>  {
         }
     }
 
-    private LoadBalancer toLoadBalancer(TargetPool tp) throws CloudException, InternalException {
+    LoadBalancer toLoadBalancer(TargetPool tp) throws CloudException, InternalException {
         gce = provider.getGoogleCompute();
         List<String> hcl = tp.getHealthChecks();
         String healthCheckName = null;
@@ -3,17 +3,21 @@ package org.dasein.cloud.google.network;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.apache.log4j.Logger;
 import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.OperationNotSupportedException;
 import org.dasein.cloud.Requirement;
 import org.dasein.cloud.ResourceStatus;
 import org.dasein.cloud.dc.Region;
+import org.dasein.cloud.google.FanOutExecutor;
 import org.dasein.cloud.google.Google;
 import org.dasein.cloud.google.GoogleMethod;
 import org.dasein.cloud.google.GoogleOperationType;
@@ -46,6 +50,7 @@ import com.google.api.services.compute.model.VpnTunnel;
 import com.google.api.services.compute.model.VpnTunnelList;
 
 public class VpnSupport extends AbstractVpnSupport<Google> {
+    static private final Logger logger = Google.getLogger(VpnSupport.class);
 
     private Google provider;
     private VpnCapabilities capabilities;
@@ -74,6 +79,10 @@ public class VpnSupport extends AbstractVpnSupport<Google> {
             vpn.setName(vpnLaunchOptions.getName());
             vpn.setDescription(vpnLaunchOptions.getDescription());
             Compute gce = getProvider().getGoogleCompute();
+            Operation gatewayOp = null;
+            String addressId = null;
+            List<String> ruleNames = new ArrayList<String>();
+            List<Operation> ruleOps = new ArrayList<Operation>();
             try {
                 GoogleMethod method = new GoogleMethod(getProvider());
 
@@ -83,21 +92,29 @@ public class VpnSupport extends AbstractVpnSupport<Google> {
                 Network net = gce.networks().get(getContext().getAccountNumber(), vpnLaunchOptions.getProviderVlanId()).execute();
                 vpnGatewayContent.setNetwork(net.getSelfLink());
 
-                Operation op = gce.targetVpnGateways().insert(getContext().getAccountNumber(), getContext().getRegionId(), vpnGatewayContent).execute();
-                method.getOperationComplete(getContext(), op, GoogleOperationType.REGION_OPERATION, getContext().getRegionId(), null);
+                // the gateway and the address do not depend on each other, so reserve the address while the gateway is created
+                gatewayOp = gce.targetVpnGateways().insert(getContext().getAccountNumber(), getContext().getRegionId(), vpnGatewayContent).execute();
 
                 vpn.setName(vpnLaunchOptions.getName());
                 vpn.setDescription(vpnLaunchOptions.getDescription());
                 vpn.setProtocol(vpnLaunchOptions.getProtocol());
                 vpn.setProviderVpnId(vpnLaunchOptions.getProviderVlanId());
-                String ipAddress = getProvider().getNetworkServices().getIpAddressSupport().request(IPVersion.IPV4);
-                vpn.setProviderVpnIP(getProvider().getNetworkServices().getIpAddressSupport().getIpAddress(ipAddress).getRawAddress().getIpAddress());
+                addressId = getProvider().getNetworkServices().getIpAddressSupport().request(IPVersion.IPV4);
+                vpn.setProviderVpnIP(getProvider().getNetworkServices().getIpAddressSupport().getIpAddress(addressId).getRawAddress().getIpAddress());
+
+                method.getOperationComplete(getContext(), gatewayOp, GoogleOperationType.REGION_OPERATION, getContext().getRegionId(), null);
 
-                createForwardingRule(vpnLaunchOptions.getName(), "-rule-esp", vpn.getProviderVpnIp(), "ESP", null);
-                createForwardingRule(vpnLaunchOptions.getName(), "-rule-udp500", vpn.getProviderVpnIp(), "UDP", "500");
-                createForwardingRule(vpnLaunchOptions.getName(), "-rule-udp4500", vpn.getProviderVpnIp(), "UDP", "4500");
+                // the three rules only need the gateway and the address
+                ruleOps.add(insertForwardingRule(vpnLaunchOptions.getName(), "-rule-esp", vpn.getProviderVpnIp(), "ESP", null));
+                ruleNames.add(vpnLaunchOptions.getName() + "-rule-esp");
+                ruleOps.add(insertForwardingRule(vpnLaunchOptions.getName(), "-rule-udp500", vpn.getProviderVpnIp(), "UDP", "500"));
+                ruleNames.add(vpnLaunchOptions.getName() + "-rule-udp500");
+                ruleOps.add(insertForwardingRule(vpnLaunchOptions.getName(), "-rule-udp4500", vpn.getProviderVpnIp(), "UDP", "4500"));
+                ruleNames.add(vpnLaunchOptions.getName() + "-rule-udp4500");
+                method.getOperationsComplete(getContext(), ruleOps, GoogleOperationType.REGION_OPERATION, getContext().getRegionId(), null);
 
             } catch ( Exception e ) {
+                rollBackCreateVpn(gce, vpnLaunchOptions.getName(), gatewayOp, addressId, ruleNames, ruleOps);
                 throw new CloudException(e);
             }
         } finally {
@@ -148,8 +165,64 @@ public class VpnSupport extends AbstractVpnSupport<Google> {
         }
     }
 
-    private void createForwardingRule(@Nonnull String targetVpnGatewayId, @Nonnull String ruleName, @Nonnull String ipAddress, @Nonnull String protocol, @Nullable String portRange) throws CloudException, InternalException {
+    /*
+     * Best-effort cleanup after a failed createVpn. It first waits out every operation that was submitted, then
+     * deletes the forwarding rules, the gateway and the reserved address, in that order. A rule or gateway whose
+     * insert failed is left alone, since the name may belong to an existing resource. Failures are only logged,
+     * since the error that caused the cleanup is the one reported.
+     */
+    private void rollBackCreateVpn(@Nonnull Compute gce, @Nonnull String gatewayName, @Nullable Operation gatewayOp, @Nullable String addressId, @Nonnull List<String> ruleNames, @Nonnull List<Operation> ruleOps) {
         GoogleMethod method = new GoogleMethod(getProvider());
+        String project = getContext().getAccountNumber();
+        String regionId = getContext().getRegionId();
+
+        if (!ruleOps.isEmpty()) {
+            List<Operation> deletes = new ArrayList<Operation>();
+            for (int i = 0; i < ruleOps.size(); i++) {
+                String ruleName = ruleNames.get(i);
+                try {
+                    method.getOperationComplete(getContext(), ruleOps.get(i), GoogleOperationType.REGION_OPERATION, regionId, null);
+                } catch (Exception ignore) {
+                    continue; // this insert failed, so there is nothing of ours to remove
+                }
+                try {
+                    deletes.add(gce.forwardingRules().delete(project, regionId, ruleName).execute());
+                } catch (Exception e) {
+                    logger.warn("Unable to remove forwarding rule " + ruleName + " after a failed create: " + e.getMessage());
+                }
+            }
+            try {
+                method.getOperationsComplete(getContext(), deletes, GoogleOperationType.REGION_OPERATION, regionId, null);
+            } catch (Exception e) {
+                logger.warn("Unable to remove the forwarding rules of " + gatewayName + " after a failed create: " + e.getMessage());
+            }
+        }
+        boolean gatewayCreated = false;
+        if (gatewayOp != null) {
+            try {
+                gatewayCreated = method.getOperationComplete(getContext(), gatewayOp, GoogleOperationType.REGION_OPERATION, regionId, null);
+            } catch (Exception ignore) {
+                // the insert failed, and a gateway of that name may be someone else's
+            }
+        }
+        if (gatewayCreated) {
+            try {
+                Operation op = gce.targetVpnGateways().delete(project, regionId, gatewayName).execute();
+                method.getOperationComplete(getContext(), op, GoogleOperationType.REGION_OPERATION, regionId, null);
+            } catch (Exception e) {
+                logger.warn("Unable to remove VPN gateway " + gatewayName + " after a failed create: " + e.getMessage());
+            }
+        }
+        if (addressId != null) {
+            try {
+                getProvider().getNetworkServices().getIpAddressSupport().releaseFromPool(addressId);
+            } catch (Exception e) {
+                logger.warn("Unable to release address " + addressId + " after a failed create: " + e.getMessage());
+            }
+        }
+    }
+
+    private Operation insertForwardingRule(@Nonnull String targetVpnGatewayId, @Nonnull String ruleName, @Nonnull String ipAddress, @Nonnull String protocol, @Nullable String portRange) throws CloudException, InternalException {
         Compute gce = getProvider().getGoogleCompute();
 
         ForwardingRule frContent = new ForwardingRule();
@@ -161,14 +234,11 @@ public class VpnSupport extends AbstractVpnSupport<Google> {
             frContent.setPortRange(portRange);
         }
         frContent.setTarget(gce.getBaseUrl() + getContext().getAccountNumber() + "/regions/" + getContext().getRegionId() +"/targetVpnGateways/" + targetVpnGatewayId);
-        Operation op;
         try {
-            op = gce.forwardingRules().insert(getContext().getAccountNumber(), getContext().getRegionId(), frContent ).execute();
+            return gce.forwardingRules().insert(getContext().getAccountNumber(), getContext().getRegionId(), frContent ).execute();
         } catch (Exception e ) {
             throw new CloudException(e);
         }
-        method.getOperationComplete(getContext(), op, GoogleOperationType.REGION_OPERATION, getContext().getRegionId(), null);
-
     }
 
     @Override
@@ -305,27 +375,22 @@ public class VpnSupport extends AbstractVpnSupport<Google> {
     }
 
     @Override
-    public Vpn getVpn(String providerTargetVpnGatewayId) throws CloudException, InternalException {
+    public Vpn getVpn(final String providerTargetVpnGatewayId) throws CloudException, InternalException {
         APITrace.begin(provider, "getVpn");
         try {
-            Compute gce = getProvider().getGoogleCompute();
-
-            Collection<Region> regions = getProvider().getDataCenterServices().listRegions();
-            for (Region region : regions) {
-                TargetVpnGatewayList tunnels = gce.targetVpnGateways().list(getContext().getAccountNumber(), region.getName()).execute();
-
-                if ((null != tunnels) && (null != tunnels.getItems())) {
-                    List<TargetVpnGateway> targetVpnGatewayItems = tunnels.getItems();
-                    for (TargetVpnGateway targetVpnGateway : targetVpnGatewayItems) {
+            List<Vpn> matches = FanOutExecutor.run(getProvider().getDataCenterServices().listRegions(), new FanOutExecutor.Task<Region, Vpn>() {
+                @Override
+                public Collection<Vpn> call(@Nonnull Region region) throws Exception {
+                    List<Vpn> found = new ArrayList<Vpn>();
+                    for (TargetVpnGateway targetVpnGateway : listTargetVpnGateways(region.getName())) {
                         if (providerTargetVpnGatewayId.equals(targetVpnGateway.getName())) {
-                            return toVpn(targetVpnGateway);
+                            found.add(toVpn(targetVpnGateway));
                         }
                     }
+                    return found;
                 }
-            }
-            return null;
-        } catch (IOException e) {
-            throw new CloudException(e);
+            });
+            return (matches.isEmpty() ? null : matches.get(0));
         } finally {
             APITrace.end();
         }
@@ -361,24 +426,15 @@ public class VpnSupport extends AbstractVpnSupport<Google> {
     }
 
     @Override
-    public Iterable<VpnConnection> listVpnConnections(String toVpnId) throws CloudException, InternalException {
+    public Iterable<VpnConnection> listVpnConnections(final String toVpnId) throws CloudException, InternalException {
         APITrace.begin(provider, "listVpnConnections");
-        Vpn vpn = getVpn(toVpnId);
-        List<VpnConnection> vpnConnections = new ArrayList<VpnConnection>();
         try {
-            Compute gce = getProvider().getGoogleCompute();
-
-            Collection<Region> regions = getProvider().getDataCenterServices().listRegions();
-            for (Region region : regions) {
-                VpnTunnelList tunnels;
-                try {
-                    tunnels = gce.vpnTunnels().list(getContext().getAccountNumber(), region.getName()).execute();
-                } catch ( IOException e ) {
-                    throw new CloudException(e);
-                }
-
-                if ((null != tunnels) && (null != tunnels.getItems())) {
-                    for (VpnTunnel vpnTunnel : tunnels.getItems()) {
+            final Vpn vpn = getVpn(toVpnId);
+            return FanOutExecutor.run(getProvider().getDataCenterServices().listRegions(), new FanOutExecutor.Task<Region, VpnConnection>() {
+                @Override
+                public Collection<VpnConnection> call(@Nonnull Region region) throws Exception {
+                    List<VpnConnection> vpnConnections = new ArrayList<VpnConnection>();
+                    for (VpnTunnel vpnTunnel : listVpnTunnels(region.getName())) {
                         if (toVpnId.equals(vpnTunnel.getTargetVpnGateway().replaceAll(".*/", ""))) {
                             VpnConnection vpnConnection = new VpnConnection();
 
@@ -400,99 +456,159 @@ public class VpnSupport extends AbstractVpnSupport<Google> {
                             vpnConnections.add(vpnConnection);
                         }
                     }
+                    return vpnConnections;
                 }
-            }
+            });
         } finally {
             APITrace.end();
         }
-        return vpnConnections;
     }
 
 
     @Override
     public Iterable<ResourceStatus> listVpnStatus() throws CloudException, InternalException {
         APITrace.begin(provider, "listVpnStatus");
-        List<ResourceStatus> statusList = new ArrayList<ResourceStatus>();
         try {
-            Compute gce = getProvider().getGoogleCompute();
-
-            Collection<Region> regions = getProvider().getDataCenterServices().listRegions();
-            for (Region region : regions) {
-                VpnTunnelList tunnels = null;
-                try {
-                    tunnels = gce.vpnTunnels().list(getContext().getAccountNumber(), region.getName()).execute();
-                } catch ( IOException e ) {
-                    throw new CloudException(e);
-                }
-                if ((null != tunnels) && (null != tunnels.getItems())) {
-                    for (VpnTunnel tunnel : tunnels.getItems()) {
+            return FanOutExecutor.run(getProvider().getDataCenterServices().listRegions(), new FanOutExecutor.Task<Region, ResourceStatus>() {
+                @Override
+                public Collection<ResourceStatus> call(@Nonnull Region region) throws Exception {
+                    List<ResourceStatus> statusList = new ArrayList<ResourceStatus>();
+                    for (VpnTunnel tunnel : listVpnTunnels(region.getName())) {
                         if (tunnel.getStatus().equals("ESTABLISHED")) {
-                            ResourceStatus status = new ResourceStatus(tunnel.getName(), VpnState.AVAILABLE);
-                            statusList.add(status);
+                            statusList.add(new ResourceStatus(tunnel.getName(), VpnState.AVAILABLE));
                         } else {
-                            ResourceStatus status = new ResourceStatus(tunnel.getName(), VpnState.PENDING);
-                            statusList.add(status);
+                            statusList.add(new ResourceStatus(tunnel.getName(), VpnState.PENDING));
                         }
                     }
+                    return statusList;
                 }
-            }
+            });
         } finally {
             APITrace.end();
         }
-        return statusList;
     }
 
     @Override
     public Iterable<Vpn> listVpns() throws CloudException, InternalException {
         APITrace.begin(provider, "listVpns");
-        List<Vpn> vpns = new ArrayList<Vpn>();
         try {
-            Compute gce = getProvider().getGoogleCompute();
-
-            Collection<Region> regions = getProvider().getDataCenterServices().listRegions();
-            for (Region region : regions) {
-                VpnTunnelList tunnels = gce.vpnTunnels().list(getContext().getAccountNumber(), region.getName()).execute();
-                if (null != tunnels.getItems()) {
-                    for (VpnTunnel tunnel : tunnels.getItems()) {
-                        Vpn vpn = new Vpn();
-                        vpn.setName(tunnel.getName());
-                        vpn.setDescription(tunnel.getDescription());
-                        vpn.setProviderVpnId(tunnel.getId().toString());
-                        if (1 == tunnel.getIkeVersion()) {
-                            vpn.setProtocol(VpnProtocol.IKE_V1);
-                        } else if (2 == tunnel.getIkeVersion()) {
-                            vpn.setProtocol(VpnProtocol.IKE_V2);
-                        }
-                        if (tunnel.getStatus().equals("ESTABLISHED")) {
-                            vpn.setCurrentState(VpnState.AVAILABLE);
-                        } else {
-                            vpn.setCurrentState(VpnState.PENDING); // TODO does it have more states?
-                        }
-
-                        TargetVpnGateway gateway = gce.targetVpnGateways().get(getContext().getAccountNumber(), region.getName(), tunnel.getTargetVpnGateway().replaceAll(".*/", "")).execute();
-                        String[] networks = {gateway.getNetwork().replaceAll(".*/", "")};
-                        vpn.setProviderVlanIds(networks);
-
-                        ForwardingRuleList frl = gce.forwardingRules().list(getContext().getAccountNumber(), region.getName()).execute();
-                        if (null != frl.getItems()) {
-                            for (ForwardingRule fr : frl.getItems()) {
-                                if (fr.getTarget().equals(gateway.getSelfLink())) {
-                                    vpn.setProviderVpnIP(fr.getIPAddress());
-                                }
-                            }
-                        }
-                        vpns.add(vpn);
-                    }
+            return FanOutExecutor.run(getProvider().getDataCenterServices().listRegions(), new FanOutExecutor.Task<Region, Vpn>() {
+                @Override
+                public Collection<Vpn> call(@Nonnull Region region) throws Exception {
+                    return listVpns(region.getName());
                 }
-            }
+            });
+        } catch ( CloudException e ) {
+            throw e;
         } catch ( Exception e ) {
             throw new CloudException(e);
         } finally {
             APITrace.end();
         }
+    }
+
+    private List<Vpn> listVpns(String regionId) throws CloudException, InternalException, IOException {
+        List<Vpn> vpns = new ArrayList<Vpn>();
+        List<VpnTunnel> tunnels = listVpnTunnels(regionId);
+        if (tunnels.isEmpty()) {
+            return vpns;
+        }
+        Compute gce = getProvider().getGoogleCompute();
+        Map<String, TargetVpnGateway> gateways = new HashMap<String, TargetVpnGateway>();
+        List<ForwardingRule> forwardingRules = null;
+
+        for (VpnTunnel tunnel : tunnels) {
+            Vpn vpn = new Vpn();
+            vpn.setName(tunnel.getName());
+            vpn.setDescription(tunnel.getDescription());
+            vpn.setProviderVpnId(tunnel.getId().toString());
+            if (1 == tunnel.getIkeVersion()) {
+                vpn.setProtocol(VpnProtocol.IKE_V1);
+            } else if (2 == tunnel.getIkeVersion()) {
+                vpn.setProtocol(VpnProtocol.IKE_V2);
+            }
+            if (tunnel.getStatus().equals("ESTABLISHED")) {
+                vpn.setCurrentState(VpnState.AVAILABLE);
+            } else {
+                vpn.setCurrentState(VpnState.PENDING); // TODO does it have more states?
+            }
+
+            String gatewayName = tunnel.getTargetVpnGateway().replaceAll(".*/", "");
+            TargetVpnGateway gateway = gateways.get(gatewayName);
+            if (null == gateway) {
+                gateway = gce.targetVpnGateways().get(getContext().getAccountNumber(), regionId, gatewayName).execute();
+                gateways.put(gatewayName, gateway);
+            }
+            String[] networks = {gateway.getNetwork().replaceAll(".*/", "")};
+            vpn.setProviderVlanIds(networks);
+
+            if (null == forwardingRules) {
+                forwardingRules = listForwardingRules(regionId);
+            }
+            for (ForwardingRule fr : forwardingRules) {
+                if (fr.getTarget().equals(gateway.getSelfLink())) {
+                    vpn.setProviderVpnIP(fr.getIPAddress());
+                }
+            }
+            vpns.add(vpn);
+        }
         return vpns;
     }
 
+    private List<VpnTunnel> listVpnTunnels(String regionId) throws CloudException, InternalException {
+        Compute gce = getProvider().getGoogleCompute();
+        List<VpnTunnel> result = new ArrayList<VpnTunnel>();
+        String pageToken = null;
+        try {
+            do {
+                VpnTunnelList tunnels = gce.vpnTunnels().list(getContext().getAccountNumber(), regionId).setPageToken(pageToken).execute();
+                if ((null != tunnels) && (null != tunnels.getItems())) {
+                    result.addAll(tunnels.getItems());
+                }
+                pageToken = (null == tunnels ? null : tunnels.getNextPageToken());
+            } while (null != pageToken);
+        } catch ( IOException e ) {
+            throw new CloudException(e);
+        }
+        return result;
+    }
+
+    private List<TargetVpnGateway> listTargetVpnGateways(String regionId) throws CloudException, InternalException {
+        Compute gce = getProvider().getGoogleCompute();
+        List<TargetVpnGateway> result = new ArrayList<TargetVpnGateway>();
+        String pageToken = null;
+        try {
+            do {
+                TargetVpnGatewayList gateways = gce.targetVpnGateways().list(getContext().getAccountNumber(), regionId).setPageToken(pageToken).execute();
+                if ((null != gateways) && (null != gateways.getItems())) {
+                    result.addAll(gateways.getItems());
+                }
+                pageToken = (null == gateways ? null : gateways.getNextPageToken());
+            } while (null != pageToken);
+        } catch ( IOException e ) {
+            throw new CloudException(e);
+        }
+        return result;
+    }
+
+    private List<ForwardingRule> listForwardingRules(String regionId) throws CloudException, InternalException {
+        Compute gce = getProvider().getGoogleCompute();
+        List<ForwardingRule> result = new ArrayList<ForwardingRule>();
+        String pageToken = null;
+        try {
+            do {
+                ForwardingRuleList rules = gce.forwardingRules().list(getContext().getAccountNumber(), regionId).setPageToken(pageToken).execute();
+                if ((null != rules) && (null != rules.getItems())) {
+                    result.addAll(rules.getItems());
+                }
+                pageToken = (null == rules ? null : rules.getNextPageToken());
+            } while (null != pageToken);
+        } catch ( IOException e ) {
+            throw new CloudException(e);
+        }
+        return result;
+    }
+
     @Override
     public Iterable<VpnProtocol> listSupportedVpnProtocols() throws CloudException, InternalException {
         return getCapabilities().listSupportedVpnProtocols();
@@ -0,0 +1,442 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.platform;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.util.CalendarWrapper;
+import org.json.JSONObject;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.sqladmin.model.Tier;
+import com.google.api.services.sqladmin.model.TiersListResponse;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Process-wide catalog of the inputs to {@link RDS#listDatabaseProducts}: the Cloud SQL section of the public
+ * price list and the tiers of each project. Nothing is fetched until the first lookup. After that, entries are
+ * served stale while a background refresh runs, and every successful fetch is written to a snapshot on disk so
+ * a new process starts from the last known catalog instead of going back to the network. A lookup never waits
+ * on the network: in a process with no usable snapshot, lookups return an empty catalog until the first fetch,
+ * started by the first lookup, has completed.
+ * <p>Only data is kept across calls: each refresh runs with the provider of the lookup that triggered it, so no
+ * provider or credentials outlive the caller. A provider with an API root URL (see {@link Google#getApiRootUrl()})
+ * also fetches the price list from under that root, and its entries are kept apart from those of the public
+ * endpoints.</p>
+ * <p>Snapshots live in <code>${user.home}/.dasein-google-catalog</code>, readable by the owner only, unless the
+ * <code>dasein.google.catalogDir</code> system property names another directory. A snapshot is only used if it
+ * has the expected layout and is no older than {@link #SNAPSHOT_MAX_AGE}, and it is written to a temporary file
+ * that is then renamed into place.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public final class ProductCatalog {
+    static private final Logger logger = Google.getLogger(ProductCatalog.class);
+
+    static public final String PRICE_LIST_ROOT = "https://cloudpricingcalculator.appspot.com/";
+    static public final String PRICE_LIST_PATH = "static/data/pricelist.json";
+
+    static private final int  CONNECT_TIMEOUT  = 10000;
+    static private final int  READ_TIMEOUT     = 30000;
+    static private final long PRICES_FRESH     = CalendarWrapper.HOUR * 6L;
+    static private final long TIERS_FRESH      = CalendarWrapper.DAY;
+    static private final long SNAPSHOT_MAX_AGE = CalendarWrapper.DAY * 7L;
+    static private final int  SNAPSHOT_VERSION = 1;
+
+    static private final ExecutorService refresher = Executors.newFixedThreadPool(2,
+            new ThreadFactoryBuilder().setNameFormat("gce-product-catalog-%d").setDaemon(true).build());
+
+    static private final ConcurrentHashMap<String, Entry<JSONObject>> prices = new ConcurrentHashMap<String, Entry<JSONObject>>();
+    static private final ConcurrentHashMap<String, Entry<List<Tier>>> tiers = new ConcurrentHashMap<String, Entry<List<Tier>>>();
+
+    private ProductCatalog() { }
+
+    /**
+     * @return where the provider fetches the price list from
+     */
+    static public @Nonnull String getPriceListUrl(@Nonnull Google provider) {
+        String root = provider.getApiRootUrl();
+        return (root == null ? PRICE_LIST_ROOT : root) + PRICE_LIST_PATH;
+    }
+
+    /**
+     * @return the Cloud SQL entries of the price list, shaped like the published list (<code>gcp_price_list</code>);
+     * the list has no entries while the first fetch is still running
+     */
+    static public @Nonnull JSONObject getPriceList(@Nonnull Google provider) throws CloudException, InternalException {
+        return getPriceEntry(provider).get(provider);
+    }
+
+    /**
+     * @return the tiers of the provider's project; none while the first fetch is still running
+     */
+    static public @Nonnull List<Tier> getTiers(@Nonnull Google provider) throws CloudException, InternalException {
+        return getTierEntry(provider).get(provider);
+    }
+
+    static private @Nonnull Entry<JSONObject> getPriceEntry(@Nonnull Google provider) {
+        final String url = getPriceListUrl(provider);
+        Entry<JSONObject> entry = prices.get(url);
+
+        if( entry == null ) {
+            String snapshotName = (provider.getApiRootUrl() == null ? "cloudsql-prices.json" : "cloudsql-prices-" + Integer.toHexString(url.hashCode()) + ".json");
+            entry = new Entry<JSONObject>(snapshotName, PRICES_FRESH) {
+                @Override
+                JSONObject fetch(@Nonnull Google provider) throws Exception {
+                    String jsonString = readUrl(url);
+                    jsonString = jsonString.replaceFirst("CP-APP-ENGINE-CLOUD-STORAGE", "CP-APP-ENGINE-CLOUD-STORAGE-DUP"); // fix a dup error
+                    jsonString = jsonString.replaceFirst("CP-APP-ENGINE-MEMCACHE", "CP-APP-ENGINE-MEMCACHE-DUP"); // fix a dup error
+                    return cloudSqlOnly(new JSONObject(jsonString));
+                }
+
+                @Override
+                JSONObject empty() throws Exception {
+                    JSONObject value = new JSONObject();
+                    value.put("gcp_price_list", new JSONObject());
+                    return value;
+                }
+
+                @Override
+                String serialize(JSONObject value) {
+                    return value.toString();
+                }
+
+                @Override
+                JSONObject deserialize(String text) throws Exception {
+                    JSONObject value = new JSONObject(text);
+                    value.getJSONObject("gcp_price_list");
+                    return value;
+                }
+            };
+            Entry<JSONObject> existing = prices.putIfAbsent(url, entry);
+            if( existing != null ) {
+                entry = existing;
+            }
+        }
+        return entry;
+    }
+
+    static private @Nonnull Entry<List<Tier>> getTierEntry(@Nonnull Google provider) {
+        final String account = provider.getContext().getAccountNumber();
+        String root = provider.getApiRootUrl();
+        String key = (root == null ? account : root + account);
+        Entry<List<Tier>> entry = tiers.get(key);
+
+        if( entry == null ) {
+            String snapshotName = "cloudsql-tiers-" + account.replaceAll("[^A-Za-z0-9_.-]", "_") + (root == null ? "" : "-" + Integer.toHexString(root.hashCode())) + ".json";
+            entry = new Entry<List<Tier>>(snapshotName, TIERS_FRESH) {
+                @Override
+                List<Tier> fetch(@Nonnull Google provider) throws Exception {
+                    TiersListResponse response = provider.getGoogleSQLAdmin().tiers().list(account).execute();
+                    return (response.getItems() == null ? Collections.<Tier>emptyList() : response.getItems());
+                }
+
+                @Override
+                List<Tier> empty() {
+                    return Collections.emptyList();
+                }
+
+                @Override
+                String serialize(List<Tier> value) throws Exception {
+                    return JacksonFactory.getDefaultInstance().toString(new TiersListResponse().setItems(value));
+                }
+
+                @Override
+                List<Tier> deserialize(String text) throws Exception {
+                    List<Tier> items = JacksonFactory.getDefaultInstance().fromString(text, TiersListResponse.class).getItems();
+                    if( items == null ) {
+                        return Collections.emptyList();
+                    }
+                    for( Tier tier : items ) {
+                        if( tier.getTier() == null || tier.getRAM() == null || tier.getDiskQuota() == null ) {
+                            throw new IOException("Incomplete tier in snapshot");
+                        }
+                    }
+                    return items;
+                }
+            };
+            Entry<List<Tier>> existing = tiers.putIfAbsent(key, entry);
+            if( existing != null ) {
+                entry = existing;
+            }
+        }
+        return entry;
+    }
+
+    static private @Nonnull JSONObject cloudSqlOnly(@Nonnull JSONObject priceList) throws Exception {
+        JSONObject all = priceList.getJSONObject("gcp_price_list");
+        JSONObject cloudSql = new JSONObject();
+        Iterator<?> keys = all.keys();
+
+        while( keys.hasNext() ) {
+            String k = (String)keys.next();
+            if( k.contains("CLOUDSQL") ) {
+                cloudSql.put(k, all.get(k));
+            }
+        }
+        JSONObject trimmed = new JSONObject();
+        trimmed.put("gcp_price_list", cloudSql);
+        return trimmed;
+    }
+
+    static private @Nonnull String readUrl(@Nonnull String urlString) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL(urlString).openConnection();
+
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        try {
+            if( connection.getResponseCode() != HttpURLConnection.HTTP_OK ) {
+                throw new IOException("HTTP " + connection.getResponseCode() + " fetching " + urlString);
+            }
+            return read(connection.getInputStream());
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+
+    static private @Nonnull String read(@Nonnull InputStream input) throws IOException {
+        Reader reader = new InputStreamReader(input, "UTF-8");
+        try {
+            StringBuilder buffer = new StringBuilder(64 * 1024);
+            char[] chars = new char[8192];
+            int read;
+
+            while( (read = reader.read(chars)) != -1 ) {
+                buffer.append(chars, 0, read);
+            }
+            return buffer.toString();
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    static private @Nonnull File getSnapshotDirectory() {
+        String dir = System.getProperty("dasein.google.catalogDir");
+
+        if( dir == null ) {
+            dir = System.getProperty("user.home") + File.separator + ".dasein-google-catalog";
+        }
+        return new File(dir);
+    }
+
+    /*
+     * Creates the snapshot directory if need be, with access for the owner only.
+     */
+    static private boolean ensurePrivateDirectory(@Nonnull File dir) {
+        if( !dir.isDirectory() ) {
+            if( !dir.mkdirs() ) {
+                return false;
+            }
+            dir.setReadable(false, false);
+            dir.setWritable(false, false);
+            dir.setExecutable(false, false);
+            dir.setReadable(true, true);
+            dir.setWritable(true, true);
+            dir.setExecutable(true, true);
+        }
+        return dir.canWrite();
+    }
+
+    /*
+     * One catalog value with single-flight background refresh and a disk snapshot. The entry holds data only; the
+     * provider to fetch with is passed in by each caller.
+     */
+    static private abstract class Entry<T> {
+        private final String snapshotName;
+        private final long freshFor;
+
+        private volatile T value;
+        private volatile long fetchedAt;
+        private volatile boolean snapshotChecked;
+        private Future<T> inFlight;
+
+        Entry(@Nonnull String snapshotName, long freshFor) {
+            this.snapshotName = snapshotName;
+            this.freshFor = freshFor;
+        }
+
+        abstract T fetch(@Nonnull Google provider) throws Exception;
+
+        /**
+         * @return the value served while nothing has been fetched yet
+         */
+        abstract T empty() throws Exception;
+
+        abstract String serialize(T value) throws Exception;
+
+        /**
+         * @throws Exception if the text is not a value of the expected shape
+         */
+        abstract T deserialize(String text) throws Exception;
+
+        @Nonnull T get(@Nonnull Google provider) throws CloudException, InternalException {
+            if( value == null ) {
+                loadSnapshot();
+            }
+            T current = value;
+
+            if( current != null ) {
+                if( isStale() ) {
+                    refresh(provider);
+                }
+                return current;
+            }
+            // nothing cached anywhere: start the shared fetch, bounded by the HTTP timeouts, and answer without it
+            refresh(provider);
+            logger.info("The catalog " + snapshotName + " is still loading; returning no entries until the first fetch completes");
+            try {
+                return empty();
+            }
+            catch( Exception e ) {
+                throw new InternalException(e);
+            }
+        }
+
+        private boolean isStale() {
+            return System.currentTimeMillis() - fetchedAt > freshFor;
+        }
+
+        private synchronized @Nonnull Future<T> refresh(@Nonnull final Google provider) {
+            if( inFlight == null || inFlight.isDone() ) {
+                inFlight = refresher.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        try {
+                            T fresh = fetch(provider);
+                            value = fresh;
+                            fetchedAt = System.currentTimeMillis();
+                            saveSnapshot(fresh, fetchedAt);
+                            return fresh;
+                        }
+                        catch( Exception e ) {
+                            logger.warn("Unable to refresh " + snapshotName + ": " + e.getMessage());
+                            throw e;
+                        }
+                    }
+                });
+            }
+            return inFlight;
+        }
+
+        /*
+         * A snapshot is an envelope of {version, fetchedAt, data}; anything else, or one from the future or older
+         * than SNAPSHOT_MAX_AGE, is ignored.
+         */
+        private synchronized void loadSnapshot() {
+            if( snapshotChecked ) {
+                return;
+            }
+            snapshotChecked = true;
+            File file = new File(getSnapshotDirectory(), snapshotName);
+            if( !file.isFile() ) {
+                return;
+            }
+            try {
+                JSONObject envelope = new JSONObject(read(new FileInputStream(file)));
+                long savedAt = envelope.getLong("fetchedAt");
+                long age = System.currentTimeMillis() - savedAt;
+
+                if( envelope.getInt("version") != SNAPSHOT_VERSION ) {
+                    logger.debug("Ignoring catalog snapshot " + file + " of another version");
+                    return;
+                }
+                if( age < 0L || age > SNAPSHOT_MAX_AGE ) {
+                    logger.debug("Ignoring catalog snapshot " + file + " saved at " + savedAt);
+                    return;
+                }
+                T loaded = deserialize(envelope.getString("data"));
+                value = loaded;
+                fetchedAt = savedAt;
+            }
+            catch( Exception e ) {
+                logger.warn("Ignoring unreadable catalog snapshot " + file + ": " + e.getMessage());
+            }
+        }
+
+        private void saveSnapshot(@Nullable T fresh, long savedAt) {
+            if( fresh == null ) {
+                return;
+            }
+            File dir = getSnapshotDirectory();
+            File tmp = null;
+            try {
+                if( !ensurePrivateDirectory(dir) ) {
+                    return;
+                }
+                JSONObject envelope = new JSONObject();
+                envelope.put("version", SNAPSHOT_VERSION);
+                envelope.put("fetchedAt", savedAt);
+                envelope.put("data", serialize(fresh));
+
+                tmp = File.createTempFile(snapshotName, ".tmp", dir);
+                tmp.setReadable(false, false);
+                tmp.setReadable(true, true);
+                Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+                try {
+                    writer.write(envelope.toString());
+                }
+                finally {
+                    writer.close();
+                }
+                File target = new File(dir, snapshotName);
+                if( !tmp.renameTo(target) ) {
+                    // rename does not replace on every platform
+                    target.delete();
+                    if( !tmp.renameTo(target) ) {
+                        tmp.delete();
+                    }
+                }
+            }
+            catch( Exception e ) {
+                logger.debug("Unable to write catalog snapshot " + snapshotName + ": " + e.getMessage());
+                if( tmp != null ) {
+                    tmp.delete();
+                }
+            }
+        }
+    }
+}
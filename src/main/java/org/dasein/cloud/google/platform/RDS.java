@@ -19,10 +19,7 @@
 
 package org.dasein.cloud.google.platform;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -67,7 +64,6 @@ import org.dasein.cloud.util.APITrace;
 import org.dasein.cloud.util.Cache;
 import org.dasein.cloud.util.CacheLevel;
 import org.dasein.util.uom.time.Day;
-import org.dasein.util.uom.time.Hour;
 import org.dasein.util.uom.time.Second;
 import org.dasein.util.uom.time.TimePeriod;
 import org.json.JSONException;
@@ -94,7 +90,6 @@ import com.google.api.services.sqladmin.model.OperationsListResponse;
 import com.google.api.services.sqladmin.model.RestoreBackupContext;
 import com.google.api.services.sqladmin.model.Settings;
 import com.google.api.services.sqladmin.model.Tier;
-import com.google.api.services.sqladmin.model.TiersListResponse;
 import com.google.api.services.sqladmin.model.User;
 /*
  * https://developers.google.com/cloud-sql/faq#data_location
@@ -103,13 +98,10 @@ import com.google.api.services.sqladmin.model.User;
 public class RDS extends AbstractRelationalDatabaseSupport<Google> {
     static private final Logger logger = Logger.getLogger(RDS.class);
 
-    private Cache<JSONObject> jsonPriceList = null;
     private Cache<DatabaseInstance> listDatabasesInstanceCache = null;
     private Cache<Database> listDatabasesCache = null;
     private Cache<DatabaseEngine> databaseEngines = null;
 
-    private Cache<Tier> tiersList = null;
-    final static private String jsonPriceUrl = "http://cloudpricingcalculator.appspot.com/static/data/pricelist.json";
     static private Long gigabyte = 1073741824L;
     static private Long megabyte = 1048576L;
     private Google provider;
@@ -117,13 +109,19 @@ public class RDS extends AbstractRelationalDatabaseSupport<Google> {
     RDS(Google provider) {
         super(provider);
         this.provider = provider;
-        jsonPriceList = Cache.getInstance(provider, "jsonPriceList", JSONObject.class, CacheLevel.CLOUD, new TimePeriod<Hour>(1, TimePeriod.HOUR));
         databaseEngines = Cache.getInstance(provider, "databaseEngineList", DatabaseEngine.class, CacheLevel.CLOUD, new TimePeriod<Day>(1, TimePeriod.DAY));
-        tiersList = Cache.getInstance(provider, "tierList", Tier.class, CacheLevel.CLOUD, new TimePeriod<Day>(1, TimePeriod.DAY));
         listDatabasesInstanceCache = Cache.getInstance(provider, "listDatabasesInstanceCache", DatabaseInstance.class, CacheLevel.CLOUD_ACCOUNT, new TimePeriod<Second>(60, TimePeriod.SECOND)); // disable for testing
         listDatabasesCache = Cache.getInstance(provider, "listDatabasesCache", Database.class, CacheLevel.CLOUD_ACCOUNT, new TimePeriod<Second>(30, TimePeriod.SECOND)); // disable for testing
     }
 
+    /**
+     * Drops the cached instance and database lists, so that the next listing goes back to the API.
+     */
+    void clearListCaches() {
+        listDatabasesInstanceCache.clear();
+        listDatabasesCache.clear();
+    }
+
     public void handleGoogleException(Exception e) throws CloudException, InternalException  {
         if (e.getClass() == GoogleJsonResponseException.class) {
             GoogleJsonResponseException gjre = (GoogleJsonResponseException)e;
@@ -590,24 +588,6 @@ public class RDS extends AbstractRelationalDatabaseSupport<Google> {
         return versions.keySet();
     }
 
-    private static String readUrl(String urlString) throws Exception {
-        BufferedReader reader = null;
-        try {
-            URL url = new URL(urlString);
-            reader = new BufferedReader(new InputStreamReader(url.openStream()));
-            StringBuffer buffer = new StringBuffer();
-            int read;
-            char[] chars = new char[1024];
-            while ((read = reader.read(chars)) != -1)
-                buffer.append(chars, 0, read); 
-
-            return buffer.toString();
-        } finally {
-            if (reader != null)
-                reader.close();
-        }
-    }
-
     @Override
     public @Nonnull Iterable<DatabaseProduct> listDatabaseProducts(@Nonnull DatabaseEngine forEngine) throws CloudException, InternalException {
         ArrayList<DatabaseProduct> products = new ArrayList<DatabaseProduct>();
@@ -626,27 +606,8 @@ public class RDS extends AbstractRelationalDatabaseSupport<Google> {
             return products;
 
         ProviderContext ctx = provider.getContext();
-        Collection<JSONObject> cachedJsonPriceList = (Collection<JSONObject>)jsonPriceList.get(ctx);
-
-        JSONObject json = null;
-        if (cachedJsonPriceList != null)
-            json = cachedJsonPriceList.iterator().next();
-        else {
-            String jsonString = null;
-            try {
-                jsonString = readUrl(jsonPriceUrl);
-                jsonString = jsonString.replaceFirst("CP-APP-ENGINE-CLOUD-STORAGE", "CP-APP-ENGINE-CLOUD-STORAGE-DUP"); // fix a dup error
-                jsonString = jsonString.replaceFirst("CP-APP-ENGINE-MEMCACHE", "CP-APP-ENGINE-MEMCACHE-DUP"); // fix a dup error
-                json = new JSONObject(jsonString);
-            } catch ( JSONException e ) {
-                throw new InternalException("Problem obtaining pricing from " + jsonPriceUrl + " : " + e);
-            } catch ( Exception e ) {
-                throw new InternalException("Problem obtaining pricing from " + jsonPriceUrl + " : " + e);
-            }
-            Collection<JSONObject> jsonCachList = new ArrayList<JSONObject>();
-            jsonCachList.add(json);
-            jsonPriceList.put(ctx, jsonCachList);
-        }
+        // the price list and tiers come from a process-wide catalog, loaded on first use and refreshed in the background
+        JSONObject json = ProductCatalog.getPriceList(provider);
 
         Map<String, Float> hourly = new HashMap<String, Float>();
         Map<String, Float> daily = new HashMap<String, Float>();
@@ -691,28 +652,17 @@ public class RDS extends AbstractRelationalDatabaseSupport<Google> {
                 }
             }
         } catch ( Exception e ) {
-            throw new InternalException("Problem obtaining pricing from " + jsonPriceUrl);
+            throw new InternalException("Problem obtaining pricing from " + ProductCatalog.getPriceListUrl(provider));
         }
 
-        SQLAdmin sqlAdmin = provider.getGoogleSQLAdmin();
-
         Map<String, Float> hourlyRate = Collections.unmodifiableMap(hourly);
         Map<String, Float> dailyRate = Collections.unmodifiableMap(daily);
 
-        Collection<Tier> tierList = (Collection<Tier>)tiersList.get(ctx);
-        List<Tier> tiers = null;
-        if (tierList != null)
-            tiers = (List<Tier>) tierList;
-        else {
-            try {
-                TiersListResponse tierListResponse = sqlAdmin.tiers().list(ctx.getAccountNumber()).execute();  // 401 unauthorized. 7 min run time
-                tiers = tierListResponse.getItems();
-                tiersList.put(ctx, tiers);
-            } catch( Exception e ) {
-                handleGoogleException(e);
-            }
-        }
+        List<Tier> tiers = ProductCatalog.getTiers(provider);
         try {
+            if (dailyRate.isEmpty()) {
+                return products; // the price list is still loading, so there is nothing to price the tiers with
+            }
             DatabaseProduct product = null;
             for (Tier t : tiers) {
                 int sizeInGB = (int) ( t.getDiskQuota() / gigabyte );
@@ -851,92 +801,7 @@ public class RDS extends AbstractRelationalDatabaseSupport<Google> {
                 list = new ArrayList<Database>();
                 if (null != databaseInstances) {
                     for (DatabaseInstance d : databaseInstances) {
-                        Settings s = d.getSettings();
-                        if (null == s)
-                            throw new CloudException("getSettings() returned null!");
-                        BackupConfiguration backupConfig = s.getBackupConfiguration();
-
-                        Database database = new Database();
-                        database.setAdminUser("root");
-                        database.setAllocatedStorageInGb((int)(d.getMaxDiskSize() / gigabyte));
-                        if (null == backupConfig) {
-                            backupConfig = new BackupConfiguration();
-                        }
-                        database.setConfiguration("unknown-1");
-
-                        OperationsListResponse operations = sqlAdmin.operations().list(d.getProject(), d.getName()).execute(); // .getInstance()
-                        for (Operation operation: operations.getItems())
-                            if ((operation.getOperationType().equals("CREATE")) && (operation.getEndTime() != null))
-                                database.setCreationTimestamp(operation.getEndTime().getValue());
-
-                        String googleDBState = d.getState();
-                        if (googleDBState.equals("RUNNABLE")) {
-                            database.setCurrentState(DatabaseState.AVAILABLE);
-                        } else if (googleDBState.equals("SUSPENDED")) {
-                            database.setCurrentState(DatabaseState.SUSPENDED);
-                        } else if (googleDBState.equals("PENDING_CREATE")) {
-                            database.setCurrentState(DatabaseState.PENDING);
-                        } else if (googleDBState.equals("MAINTENANCE")) {
-                            database.setCurrentState(DatabaseState.MAINTENANCE);
-                        } else if (googleDBState.equals("UNKNOWN_STATE")) {
-                            database.setCurrentState(DatabaseState.UNKNOWN);
-                        }
-
-                        if ((d.getDatabaseVersion().equals("MYSQL_5_5")) || (d.getDatabaseVersion().equals("MYSQL_5_6")))
-                            database.setEngine(DatabaseEngine.MYSQL); 
-
-                        database.setHighAvailability(true);  // GCE is always high availability
-                        database.setHostPort(3306);          // Default mysql port
-
-                        if ((null != d) && (null != d.getIpAddresses()) && (null != d.getIpAddresses().get(0)))
-                            database.setHostName(d.getIpAddresses().get(0).getIpAddress());
-
-                        if ((null != backupConfig) && (backupConfig.getStartTime() != null)) {  // Start time for the daily backup configuration in UTC timezone in the 24 hour format - HH:MM.
-                            String[] backupWindowStartTimeComponents = backupConfig.getStartTime().split(":");
-                            if ((null != backupWindowStartTimeComponents) 
-                                && (null != backupWindowStartTimeComponents[0]) 
-                                && (null != backupWindowStartTimeComponents[1])) {
-                                int startHour = Integer.parseInt(backupWindowStartTimeComponents[0]);
-                                TimeWindow backupTimeWindow = new TimeWindow();
-                                backupTimeWindow.setStartHour(startHour);
-                                backupTimeWindow.setStartMinute(Integer.parseInt(backupWindowStartTimeComponents[1]));
-                                backupTimeWindow.setEndHour((startHour + 4) % 24);
-                                backupTimeWindow.setEndMinute(Integer.parseInt(backupWindowStartTimeComponents[1]));
-                                backupTimeWindow.setStartDayOfWeek(DayOfWeek.MONDAY);
-                                backupTimeWindow.setEndDayOfWeek(DayOfWeek.SUNDAY);
-                                database.setBackupWindow(backupTimeWindow);
-                                database.setMaintenanceWindow(backupTimeWindow);    // I think the maintenance window is same as backup window.
-                            }
-                        }
-
-                        database.setName(d.getName());
-                        database.setProductSize(s.getTier());
-                        database.setProviderDatabaseId(d.getName());
-                        database.setProviderOwnerId(d.getProject());
-                        String regionId = d.getRegion();
-                        if (regionId.equals("us-central")) {
-                            regionId = "us-central1";  // fix for google inconsistency 
-                        }
-                        database.setProviderRegionId(regionId);
-                        if ((null != d) 
-                            && (null != d.getSettings()) 
-                            && (null != d.getSettings().getLocationPreference())) {
-                            database.setProviderDataCenterId(d.getSettings().getLocationPreference().getZone());
-                        }
-
-                        if (d.getDatabaseVersion().startsWith("MYSQL_")) {
-                            database.setEngineVersion(d.getDatabaseVersion().replace("MYSQL_", "").replace("_", "."));
-                        }
-                        //backupConfigItem.getBinaryLogEnabled()
-                        //database.setRecoveryPointTimestamp(recoveryPointTimestamp);
-                        //database.setSnapshotWindow(snapshotWindow);
-                        //database.setSnapshotRetentionInDays(snapshotRetentionInDays);
-                        //d.getServerCaCert();
-                        //s.getAuthorizedGaeApplications();
-                        if( d.getDatabaseVersion() != null ) {
-                            database.setEngineVersion(d.getDatabaseVersion().trim().toLowerCase());
-                        }
-                        list.add(database);
+                        list.add(toDatabase(sqlAdmin, d));
                     }
                     listDatabasesCache.put(ctx, list);
                 }
@@ -947,6 +812,95 @@ public class RDS extends AbstractRelationalDatabaseSupport<Google> {
         return list;
     }
 
+    Database toDatabase(@Nonnull SQLAdmin sqlAdmin, @Nonnull DatabaseInstance d) throws CloudException, IOException {
+        Settings s = d.getSettings();
+        if (null == s)
+            throw new CloudException("getSettings() returned null!");
+        BackupConfiguration backupConfig = s.getBackupConfiguration();
+
+        Database database = new Database();
+        database.setAdminUser("root");
+        database.setAllocatedStorageInGb((int)(d.getMaxDiskSize() / gigabyte));
+        if (null == backupConfig) {
+            backupConfig = new BackupConfiguration();
+        }
+        database.setConfiguration("unknown-1");
+
+        OperationsListResponse operations = sqlAdmin.operations().list(d.getProject(), d.getName()).execute(); // .getInstance()
+        for (Operation operation: operations.getItems())
+            if ((operation.getOperationType().equals("CREATE")) && (operation.getEndTime() != null))
+                database.setCreationTimestamp(operation.getEndTime().getValue());
+
+        String googleDBState = d.getState();
+        if (googleDBState.equals("RUNNABLE")) {
+            database.setCurrentState(DatabaseState.AVAILABLE);
+        } else if (googleDBState.equals("SUSPENDED")) {
+            database.setCurrentState(DatabaseState.SUSPENDED);
+        } else if (googleDBState.equals("PENDING_CREATE")) {
+            database.setCurrentState(DatabaseState.PENDING);
+        } else if (googleDBState.equals("MAINTENANCE")) {
+            database.setCurrentState(DatabaseState.MAINTENANCE);
+        } else if (googleDBState.equals("UNKNOWN_STATE")) {
+            database.setCurrentState(DatabaseState.UNKNOWN);
+        }
+
+        if ((d.getDatabaseVersion().equals("MYSQL_5_5")) || (d.getDatabaseVersion().equals("MYSQL_5_6")))
+            database.setEngine(DatabaseEngine.MYSQL); 
+
+        database.setHighAvailability(true);  // GCE is always high availability
+        database.setHostPort(3306);          // Default mysql port
+
+        if ((null != d) && (null != d.getIpAddresses()) && (null != d.getIpAddresses().get(0)))
+            database.setHostName(d.getIpAddresses().get(0).getIpAddress());
+
+        if ((null != backupConfig) && (backupConfig.getStartTime() != null)) {  // Start time for the daily backup configuration in UTC timezone in the 24 hour format - HH:MM.
+            String[] backupWindowStartTimeComponents = backupConfig.getStartTime().split(":");
+            if ((null != backupWindowStartTimeComponents) 
+                && (null != backupWindowStartTimeComponents[0]) 
+                && (null != backupWindowStartTimeComponents[1])) {
+                int startHour = Integer.parseInt(backupWindowStartTimeComponents[0]);
+                TimeWindow backupTimeWindow = new TimeWindow();
+                backupTimeWindow.setStartHour(startHour);
+                backupTimeWindow.setStartMinute(Integer.parseInt(backupWindowStartTimeComponents[1]));
+                backupTimeWindow.setEndHour((startHour + 4) % 24);
+                backupTimeWindow.setEndMinute(Integer.parseInt(backupWindowStartTimeComponents[1]));
+                backupTimeWindow.setStartDayOfWeek(DayOfWeek.MONDAY);
+                backupTimeWindow.setEndDayOfWeek(DayOfWeek.SUNDAY);
+                database.setBackupWindow(backupTimeWindow);
+                database.setMaintenanceWindow(backupTimeWindow);    // I think the maintenance window is same as backup window.
+            }
+        }
+
+        database.setName(d.getName());
+        database.setProductSize(s.getTier());
+        database.setProviderDatabaseId(d.getName());
+        database.setProviderOwnerId(d.getProject());
+        String regionId = d.getRegion();
+        if (regionId.equals("us-central")) {
+            regionId = "us-central1";  // fix for google inconsistency 
+        }
+        database.setProviderRegionId(regionId);
+        if ((null != d) 
+            && (null != d.getSettings()) 
+            && (null != d.getSettings().getLocationPreference())) {
+            database.setProviderDataCenterId(d.getSettings().getLocationPreference().getZone());
+        }
+
+        if (d.getDatabaseVersion().startsWith("MYSQL_")) {
+            database.setEngineVersion(d.getDatabaseVersion().replace("MYSQL_", "").replace("_", "."));
+        }
+        //backupConfigItem.getBinaryLogEnabled()
+        //database.setRecoveryPointTimestamp(recoveryPointTimestamp);
+        //database.setSnapshotWindow(snapshotWindow);
+        //database.setSnapshotRetentionInDays(snapshotRetentionInDays);
+        //d.getServerCaCert();
+        //s.getAuthorizedGaeApplications();
+        if( d.getDatabaseVersion() != null ) {
+            database.setEngineVersion(d.getDatabaseVersion().trim().toLowerCase());
+        }
+        return database;
+    }
+
     @Override
     public Collection<ConfigurationParameter> listParameters(String forProviderConfigurationId) throws CloudException, InternalException {
         throw new OperationNotSupportedException("GCE Cloud SQL does not support database backup configurations.");
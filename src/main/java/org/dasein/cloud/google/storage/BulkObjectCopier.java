@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.storage.model.Objects;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Copies objects between buckets with the storage <code>objects().copy</code> call, so the data stays
+ * inside Google rather than being downloaded and re-uploaded. Whole-bucket copies page through the
+ * source listing and run the copies on a small bounded pool.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class BulkObjectCopier {
+    static private final Logger logger = Google.getLogger(BulkObjectCopier.class);
+
+    static private final long PAGE_SIZE        = 1000L;
+    static private final int  MAX_ATTEMPTS     = 5;
+    static private final int  MAX_COPIES_IN_FLIGHT = 16;
+
+    static private final ExecutorService threadPool = Executors.newFixedThreadPool(MAX_COPIES_IN_FLIGHT,
+            new ThreadFactoryBuilder().setNameFormat("gcs-bulk-copy-%d").setDaemon(true).build());
+
+    private final Google provider;
+
+    public BulkObjectCopier(@Nonnull Google provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Copies a single object server-side, retrying on 429 and 5xx responses.
+     */
+    public void copyObject(@Nonnull String fromBucket, @Nonnull String fromObject, @Nonnull String toBucket, @Nonnull String toObject) throws CloudException, InternalException {
+        com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
+        long backoff = 500L;
+
+        for( int attempt = 1; ; attempt++ ) {
+            try {
+                storage.objects().copy(fromBucket, fromObject, toBucket, toObject, null).setFields("name").execute();
+                return;
+            }
+            catch( IOException ex ) {
+                if( ex.getClass() == GoogleJsonResponseException.class ) {
+                    GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                    int code = gjre.getStatusCode();
+
+                    if( (code == 429 || code >= 500) && attempt < MAX_ATTEMPTS ) {
+                        sleep(backoff);
+                        backoff *= 2;
+                        continue;
+                    }
+                    logger.error(ex.getMessage());
+                    throw new GoogleException(CloudErrorType.GENERAL, code, gjre.getContent(), gjre.getDetails().getMessage());
+                }
+                if( attempt < MAX_ATTEMPTS ) {
+                    sleep(backoff);
+                    backoff *= 2;
+                    continue;
+                }
+                logger.error(ex.getMessage());
+                throw new CloudException("An error occurred copying " + fromBucket + "/" + fromObject + " to " + toBucket + "/" + toObject + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copies every object in one bucket into another bucket under the same names.
+     * @return the number of objects copied
+     */
+    public long copyAll(@Nonnull final String fromBucket, @Nonnull final String toBucket) throws CloudException, InternalException {
+        com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
+        List<Future<Void>> copies = new ArrayList<Future<Void>>();
+        CloudException listingFailure = null;
+        String pageToken = null;
+
+        try {
+            do {
+                Objects page = storage.objects().list(fromBucket).setFields("items(name),nextPageToken").setMaxResults(PAGE_SIZE).setPageToken(pageToken).execute();
+
+                if( page.getItems() != null ) {
+                    for( StorageObject object : page.getItems() ) {
+                        final String name = object.getName();
+
+                        copies.add(threadPool.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                copyObject(fromBucket, name, toBucket, name);
+                                return null;
+                            }
+                        }));
+                    }
+                }
+                pageToken = page.getNextPageToken();
+            } while( pageToken != null );
+        }
+        catch( IOException ex ) {
+            // reported once the copies already submitted have finished, so none lands after the caller sees it
+            logger.error(ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                listingFailure = new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            else
+                listingFailure = new CloudException("An error occurred listing objects in bucket " + fromBucket + ": " + ex.getMessage());
+        }
+
+        CloudException firstFailure = null;
+        int failures = 0;
+
+        for( int i = 0; i < copies.size(); i++ ) {
+            try {
+                copies.get(i).get();
+            }
+            catch( InterruptedException e ) {
+                for( int j = i; j < copies.size(); j++ ) {
+                    copies.get(j).cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new InternalException(e);
+            }
+            catch( ExecutionException e ) {
+                failures++;
+                if( firstFailure == null ) {
+                    Throwable cause = e.getCause();
+                    firstFailure = (cause instanceof CloudException ? (CloudException)cause : new CloudException(cause));
+                }
+            }
+        }
+        if( listingFailure != null ) {
+            throw listingFailure;
+        }
+        if( firstFailure != null ) {
+            logger.error("Failed to copy " + failures + " of " + copies.size() + " objects from " + fromBucket + " to " + toBucket);
+            throw firstFailure;
+        }
+        return copies.size();
+    }
+
+    private void sleep(long millis) throws InternalException {
+        try {
+            Thread.sleep(millis);
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.storage.model.Objects;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Empties a bucket by paging through its objects and deleting them through HTTP batch requests.
+ * Batches run on a small shared pool so the number of in-flight requests stays bounded; objects
+ * that fail with a retryable status (429 or 5xx) are re-queued with exponential back-off.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class BulkObjectDeleter {
+    static private final Logger logger = Google.getLogger(BulkObjectDeleter.class);
+
+    static private final int  BATCH_SIZE   = 100;   // storage batch endpoint limit
+    static private final long PAGE_SIZE    = 1000L;
+    static private final int  MAX_ATTEMPTS = 5;
+    static private final int  MAX_BATCHES_IN_FLIGHT = 8;
+
+    static private final ExecutorService threadPool = Executors.newFixedThreadPool(MAX_BATCHES_IN_FLIGHT,
+            new ThreadFactoryBuilder().setNameFormat("gcs-bulk-delete-%d").setDaemon(true).build());
+
+    private final Google     provider;
+    private final String     bucket;
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong failed  = new AtomicLong();
+
+    public BulkObjectDeleter(@Nonnull Google provider, @Nonnull String bucket) {
+        this.provider = provider;
+        this.bucket = bucket;
+    }
+
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Deletes every object in the bucket.
+     * @return the number of objects deleted
+     * @throws CloudException if any object could not be deleted after all retries
+     * @throws InternalException if the deletion was interrupted or the provider is misconfigured
+     */
+    public long deleteAll() throws CloudException, InternalException {
+        com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
+        List<Future<List<String>>> batches = new ArrayList<Future<List<String>>>();
+        CloudException listingFailure = null;
+        String pageToken = null;
+
+        try {
+            do {
+                Objects page = storage.objects().list(bucket).setFields("items(name),nextPageToken").setMaxResults(PAGE_SIZE).setPageToken(pageToken).execute();
+
+                if( page.getItems() != null ) {
+                    List<String> names = new ArrayList<String>(BATCH_SIZE);
+
+                    for( StorageObject object : page.getItems() ) {
+                        names.add(object.getName());
+                        if( names.size() == BATCH_SIZE ) {
+                            batches.add(threadPool.submit(new DeleteBatch(names)));
+                            names = new ArrayList<String>(BATCH_SIZE);
+                        }
+                    }
+                    if( !names.isEmpty() ) {
+                        batches.add(threadPool.submit(new DeleteBatch(names)));
+                    }
+                }
+                pageToken = page.getNextPageToken();
+                if( logger.isDebugEnabled() ) {
+                    logger.debug("Emptying bucket " + bucket + ": " + deleted.get() + " deleted, " + failed.get() + " failed so far");
+                }
+            } while( pageToken != null );
+        }
+        catch( IOException ex ) {
+            // reported once the batches already submitted have finished, so none is left running against the bucket
+            logger.error(ex.getMessage());
+            if( ex.getClass() == GoogleJsonResponseException.class ) {
+                GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+                listingFailure = new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+            else
+                listingFailure = new CloudException("An error occurred listing objects in bucket " + bucket + ": " + ex.getMessage());
+        }
+
+        List<String> leftOver = new ArrayList<String>();
+        Throwable batchFailure = null;
+
+        for( int i = 0; i < batches.size(); i++ ) {
+            try {
+                leftOver.addAll(batches.get(i).get());
+            }
+            catch( InterruptedException e ) {
+                for( int j = i; j < batches.size(); j++ ) {
+                    batches.get(j).cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new InternalException(e);
+            }
+            catch( ExecutionException e ) {
+                if( batchFailure == null ) {
+                    batchFailure = e.getCause();
+                }
+            }
+        }
+        if( listingFailure != null ) {
+            throw listingFailure;
+        }
+        if( batchFailure != null ) {
+            if( batchFailure instanceof CloudException ) {
+                throw (CloudException)batchFailure;
+            }
+            throw new InternalException(batchFailure);
+        }
+        logger.info("Emptied bucket " + bucket + ": " + deleted.get() + " deleted, " + failed.get() + " failed");
+        if( !leftOver.isEmpty() ) {
+            throw new CloudException("Unable to delete " + leftOver.size() + " objects from bucket " + bucket + ", e.g. " + leftOver.get(0));
+        }
+        return deleted.get();
+    }
+
+    private class DeleteBatch implements Callable<List<String>> {
+        private List<String> names;
+
+        DeleteBatch(@Nonnull List<String> names) {
+            this.names = names;
+        }
+
+        @Override
+        public List<String> call() throws Exception {
+            // re-fetching the client binds this worker thread to the caller's credentials
+            com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
+            final List<String> permanent = new ArrayList<String>();
+            long backoff = 500L;
+
+            for( int attempt = 1; !names.isEmpty(); attempt++ ) {
+                final List<String> retry = new ArrayList<String>();
+                final List<String> done = new ArrayList<String>();
+                BatchRequest batch = storage.batch();
+                if( provider.getApiRootUrl() != null ) {
+                    batch.setBatchUrl(new GenericUrl(provider.getApiRootUrl() + "batch"));
+                }
+
+                for( final String name : names ) {
+                    storage.objects().delete(bucket, name).queue(batch, new JsonBatchCallback<Void>() {
+                        @Override
+                        public void onSuccess(Void nothing, HttpHeaders responseHeaders) {
+                            done.add(name);
+                            deleted.incrementAndGet();
+                        }
+
+                        @Override
+                        public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+                            if( e.getCode() == 404 ) {
+                                done.add(name);
+                                deleted.incrementAndGet(); // already gone
+                            }
+                            else if( e.getCode() == 429 || e.getCode() >= 500 ) {
+                                retry.add(name);
+                            }
+                            else {
+                                logger.warn("Unable to delete " + bucket + "/" + name + ": " + e.getMessage());
+                                permanent.add(name);
+                            }
+                        }
+                    });
+                }
+                try {
+                    batch.execute();
+                }
+                catch( IOException ex ) {
+                    // the batch failed in transit, so anything without a recorded outcome is retried
+                    logger.warn("Batch delete in " + bucket + " failed: " + ex.getMessage());
+                    retry.clear();
+                    for( String name : names ) {
+                        if( !done.contains(name) && !permanent.contains(name) ) {
+                            retry.add(name);
+                        }
+                    }
+                }
+                if( !retry.isEmpty() && attempt >= MAX_ATTEMPTS ) {
+                    permanent.addAll(retry);
+                    break;
+                }
+                names = retry;
+                if( !names.isEmpty() ) {
+                    Thread.sleep(backoff);
+                    backoff *= 2;
+                }
+            }
+            failed.addAndGet(permanent.size());
+            return permanent;
+        }
+    }
+}
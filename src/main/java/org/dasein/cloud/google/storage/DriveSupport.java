@@ -66,11 +66,13 @@ import java.util.Locale;
 
 public class DriveSupport extends AbstractBlobStoreSupport<Google> {
     private Google provider;
+    private ObjectMetadataCache metadata;
     static private final Logger logger = Google.getLogger(DriveSupport.class);
 
     public DriveSupport(Google provider) {
         super(provider);
         this.provider = provider;
+        this.metadata = new ObjectMetadataCache(provider);
     }
 
     @Override protected void get(@Nullable String bucket, @Nonnull String object, @Nonnull File toFile, @Nullable FileTransfer transfer) throws InternalException, CloudException{
@@ -149,6 +151,7 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                 }
 
                 insertObject.execute();
+                metadata.invalidate(bucket, objectName);
     		} catch (IOException ex) {
 				logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -223,6 +226,7 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                 String projectId = ctx.getAccountNumber();
                 com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
                 Bucket newBucket = storage.buckets().insert(projectId, new Bucket().setName(bucket)).execute();
+                metadata.invalidateBucket(bucket);
                 return toBucket(newBucket);
     		} catch (IOException ex) {
     			logger.error(ex.getMessage());
@@ -242,12 +246,7 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
         APITrace.begin(provider, "Blob.exists");
         try {
             try {
-                com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
-                Bucket myBucket = storage.buckets().get(bucket).execute();
-                if (myBucket != null) {
-                    return true;
-                }
-                return false;
+                return (metadata.getBucket(bucket) != null);
             }
             catch (Throwable ignore) {
                 return false;
@@ -296,22 +295,11 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                 logger.error("No bucket was specified for get object request");
                 throw new OperationNotSupportedException("No bucket was specified for get object request");
             }
-            try{
-                com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
-                StorageObject myObject = storage.objects().get(bucketName, objectName).execute();
-                Blob blob = toObject(myObject);
-                return blob;
-    		} catch (IOException ex) {
-    			if (ex.getMessage().contains("404 Not Found"))  {
-                    return null;
-                }
-    			logger.error(ex.getMessage());
-    			if (ex.getClass() == GoogleJsonResponseException.class) {
-    				GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
-    				throw new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
-    			} else
-    				throw new CloudException("An error occurred when getting bucket: " + bucketName + ": " + ex.getMessage());
-    		}
+            StorageObject myObject = metadata.getObject(bucketName, objectName);
+            if (myObject == null) {
+                return null;
+            }
+            return toObject(myObject);
         }
         finally {
             APITrace.end();
@@ -387,6 +375,15 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                     }
                 }
                 else {
+                    StorageObject cached = metadata.getObject(bucket, object);
+                    if (cached != null && cached.getAcl() != null) {
+                        for (ObjectAccessControl acl : cached.getAcl()) {
+                            if ("allusers".equalsIgnoreCase(acl.getEntity())) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
                     ObjectAccessControls acls = storage.objectAccessControls().list(bucket, object).execute();
                     for (int i = 0; i<acls.size(); i++) {
                         ObjectAccessControl acl = (ObjectAccessControl)acls.getItems().get(i);
@@ -493,6 +490,7 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
                 }
                 com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
                 storage.objectAccessControls().insert(bucket, object, new ObjectAccessControl().setEntity("allUsers").setRole("READER"));
+                metadata.invalidate(bucket, object);
     		} catch (IOException ex) {
     			logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -516,7 +514,8 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
             if (objectName == null)  {
                 throw new InternalException("Object name is not specified");
             }
-            copyFile(fromBucket, objectName, toBucket, objectName);
+            new BulkObjectCopier(provider).copyObject(fromBucket, objectName, toBucket, objectName);
+            metadata.invalidate(toBucket, objectName);
             removeObject(fromBucket, objectName);
         }
         finally {
@@ -528,13 +527,18 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
         APITrace.begin(provider, "blob.removeBucket");
         try {
             //first of all we need to remove the objects
-            for (Blob blob : list(bucket)) {
-                removeObject(bucket, blob.getObjectName());
+            BulkObjectDeleter deleter = new BulkObjectDeleter(provider, bucket);
+            try {
+                deleter.deleteAll();
+            }
+            finally {
+                logger.info("Emptied bucket " + bucket + ": " + deleter.getDeleted() + " objects deleted, " + deleter.getFailed() + " failed");
             }
 
             try {
                 com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
                 storage.buckets().delete(bucket).execute();
+                metadata.invalidateBucket(bucket);
     		} catch (IOException ex) {
     			logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -558,6 +562,7 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
             try {
                 com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
                 storage.objects().delete(bucket, object).execute();
+                metadata.invalidate(bucket, object);
     		} catch (IOException ex) {
     			logger.error(ex.getMessage());
     			if (ex.getClass() == GoogleJsonResponseException.class) {
@@ -575,7 +580,12 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
     @Nonnull @Override public String renameBucket(@Nonnull String oldName, @Nonnull String newName, boolean findFreeName) throws CloudException, InternalException{
         APITrace.begin(provider, "Blob.renameBucket");
         try {
-            copy(oldName, null, newName, null);
+            // buckets cannot be renamed in place, so copy everything server-side into a new bucket
+            if( !exists(newName) ) {
+                createBucket(newName, false);
+            }
+            new BulkObjectCopier(provider).copyAll(oldName, newName);
+            metadata.invalidateBucket(newName);
             removeBucket(oldName);
             return newName;
         }
@@ -590,7 +600,8 @@ public class DriveSupport extends AbstractBlobStoreSupport<Google> {
             if( bucket == null ) {
                 throw new CloudException("No bucket was specified");
             }
-            copy(bucket, oldName, bucket, newName);
+            new BulkObjectCopier(provider).copyObject(bucket, oldName, bucket, newName);
+            metadata.invalidate(bucket, newName);
             removeObject(bucket, oldName);
         }
         finally {
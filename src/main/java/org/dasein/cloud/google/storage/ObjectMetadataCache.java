@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.storage;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.storage.model.Bucket;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudErrorType;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.google.Google;
+import org.dasein.cloud.google.GoogleException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived, process-wide cache of object and bucket metadata. Hits are served for a few seconds;
+ * after that a stale object entry is revalidated with a conditional GET (same generation, different
+ * metageneration), so an unchanged object costs a bodiless 304 rather than a full metadata fetch.
+ * Misses are cached too, for a shorter period, so polling for an object that does not exist yet
+ * stays cheap.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class ObjectMetadataCache {
+    static private final Logger logger = Google.getLogger(ObjectMetadataCache.class);
+
+    static private final long FRESH_MILLIS    = 15000L;
+    static private final long NEGATIVE_MILLIS = 5000L;
+
+    static private final Cache<String, Entry> entries = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    static private class Entry {
+        final Object value;
+        final long   freshUntil;
+
+        Entry(@Nullable Object value, long ttl) {
+            this.value = value;
+            this.freshUntil = System.currentTimeMillis() + ttl;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < freshUntil;
+        }
+    }
+
+    private final Google provider;
+
+    public ObjectMetadataCache(@Nonnull Google provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Returns the full-projection metadata (including ACLs where the caller may read them) of an object.
+     * @return the object metadata or <code>null</code> if no such object exists
+     */
+    public @Nullable StorageObject getObject(@Nonnull String bucket, @Nonnull String object) throws CloudException, InternalException {
+        String key = key(bucket) + "/" + object;
+        Entry entry = entries.getIfPresent(key);
+
+        if( entry != null && entry.isFresh() ) {
+            return (StorageObject)entry.value;
+        }
+        com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
+        StorageObject cached = (entry == null ? null : (StorageObject)entry.value);
+
+        try {
+            com.google.api.services.storage.Storage.Objects.Get get = storage.objects().get(bucket, object).setProjection("full");
+
+            if( cached != null && cached.getGeneration() != null && cached.getMetageneration() != null ) {
+                // 304 if nothing changed, 412 if the object was overwritten since we last saw it
+                get.setIfGenerationMatch(cached.getGeneration()).setIfMetagenerationNotMatch(cached.getMetageneration());
+            }
+            StorageObject current = get.execute();
+
+            entries.put(key, new Entry(current, FRESH_MILLIS));
+            return current;
+        }
+        catch( HttpResponseException ex ) {
+            switch( ex.getStatusCode() ) {
+                case 304:
+                    entries.put(key, new Entry(cached, FRESH_MILLIS));
+                    return cached;
+                case 412:
+                    entries.invalidate(key);
+                    return getObject(bucket, object);
+                case 404:
+                    entries.put(key, new Entry(null, NEGATIVE_MILLIS));
+                    return null;
+            }
+            throw toCloudException(ex, bucket + "/" + object);
+        }
+        catch( IOException ex ) {
+            throw toCloudException(ex, bucket + "/" + object);
+        }
+    }
+
+    /**
+     * Returns the metadata of a bucket, caching both hits and misses briefly.
+     * @return the bucket or <code>null</code> if no such bucket exists
+     */
+    public @Nullable Bucket getBucket(@Nonnull String bucket) throws CloudException, InternalException {
+        String key = key(bucket);
+        Entry entry = entries.getIfPresent(key);
+
+        if( entry != null && entry.isFresh() ) {
+            return (Bucket)entry.value;
+        }
+        com.google.api.services.storage.Storage storage = provider.getGoogleStorage();
+
+        try {
+            Bucket current = storage.buckets().get(bucket).execute();
+
+            entries.put(key, new Entry(current, FRESH_MILLIS));
+            return current;
+        }
+        catch( HttpResponseException ex ) {
+            if( ex.getStatusCode() == 404 ) {
+                entries.put(key, new Entry(null, NEGATIVE_MILLIS));
+                return null;
+            }
+            throw toCloudException(ex, bucket);
+        }
+        catch( IOException ex ) {
+            throw toCloudException(ex, bucket);
+        }
+    }
+
+    public void invalidate(@Nonnull String bucket, @Nonnull String object) throws InternalException {
+        entries.invalidate(key(bucket) + "/" + object);
+    }
+
+    /**
+     * Drops the bucket entry and every object entry under it.
+     */
+    public void invalidateBucket(@Nonnull String bucket) throws InternalException {
+        String prefix = key(bucket);
+
+        for( String key : entries.asMap().keySet() ) {
+            if( key.equals(prefix) || key.startsWith(prefix + "/") ) {
+                entries.invalidate(key);
+            }
+        }
+    }
+
+    private @Nonnull String key(@Nonnull String bucket) throws InternalException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new InternalException("Context is null");
+        }
+        return ctx.getAccountNumber() + ":" + bucket;
+    }
+
+    private @Nonnull CloudException toCloudException(@Nonnull IOException ex, @Nonnull String resource) {
+        logger.error(ex.getMessage());
+        if( ex.getClass() == GoogleJsonResponseException.class ) {
+            GoogleJsonResponseException gjre = (GoogleJsonResponseException)ex;
+
+            if( gjre.getDetails() != null ) {
+                return new GoogleException(CloudErrorType.GENERAL, gjre.getStatusCode(), gjre.getContent(), gjre.getDetails().getMessage());
+            }
+        }
+        return new CloudException("An error occurred when getting " + resource + ": " + ex.getMessage());
+    }
+}
@@ -0,0 +1,731 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process stand-in for the compute, storage, sqladmin and replicapool endpoints, for load and latency
+ * testing without Google credentials. Give the context {@link #getEndpoint()} as its <code>apiRootUrl</code> configuration value
+ * (see {@link StubProviders}) and every client the provider builds, as well as the OAuth token exchange, talks
+ * to this server instead.
+ * <p>Resources live in a {@link StubStore}; lists are paginated, mutations answer with operations that
+ * complete after a configurable number of polls, and every request can be delayed and failed with a 429 or a
+ * 503 to exercise the provider's waits and error handling.</p>
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class GoogleStubServer {
+    static public final int DEFAULT_PAGE_SIZE = 500;
+
+    static private final JsonFactory jsonFactory = JacksonFactory.getDefaultInstance();
+
+    /**
+     * One HTTP answer.
+     */
+    static public class Response {
+        final int status;
+        final String contentType;
+        final byte[] body;
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+
+        Response(int status, @Nullable String contentType, @Nullable byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = (body == null ? new byte[0] : body);
+        }
+
+        static @Nonnull Response json(int status, @Nonnull Object value) {
+            try {
+                return new Response(status, "application/json; charset=UTF-8", jsonFactory.toString(value).getBytes("UTF-8"));
+            }
+            catch( IOException e ) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        static @Nonnull Response error(int status, @Nonnull String reason, @Nonnull String message) {
+            Map<String, Object> detail = new LinkedHashMap<String, Object>();
+            detail.put("domain", "global");
+            detail.put("reason", reason);
+            detail.put("message", message);
+            Map<String, Object> error = new LinkedHashMap<String, Object>();
+            error.put("errors", Arrays.asList(detail));
+            error.put("code", status);
+            error.put("message", message);
+            Map<String, Object> envelope = new LinkedHashMap<String, Object>();
+            envelope.put("error", error);
+            return json(status, envelope);
+        }
+
+        static @Nonnull Response empty(int status) {
+            return new Response(status, null, null);
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String endpoint;
+    private final StubStore store;
+    private final Random random = new Random();
+
+    private final Map<String, byte[]> uploads = new ConcurrentHashMap<String, byte[]>();
+    private final Map<String, Map<String, Object>> uploadMetadata = new ConcurrentHashMap<String, Map<String, Object>>();
+
+    private volatile long latency = 0L;
+    private volatile long jitter = 0L;
+    private volatile double faultRate = 0.0;
+    private volatile int faultStatus = 503;
+    private final AtomicInteger failNext = new AtomicInteger();
+    private volatile int failNextStatus = 503;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong faults = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final ConcurrentHashMap<String, AtomicLong> requestsByType = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Creates a server on a free local port. Call {@link #start()} before use.
+     */
+    public GoogleStubServer() throws IOException {
+        this(0);
+    }
+
+    public GoogleStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("gce-stub-%d").setDaemon(true).build());
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+        store = new StubStore(endpoint + "/");
+    }
+
+    public @Nonnull GoogleStubServer start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the endpoint to register the cloud with, e.g. <code>http://127.0.0.1:40123</code>
+     */
+    public @Nonnull String getEndpoint() {
+        return endpoint;
+    }
+
+    public @Nonnull StubStore getStore() {
+        return store;
+    }
+
+    /**
+     * Delays every request by <code>latency</code> plus a random amount up to <code>jitter</code>.
+     */
+    public @Nonnull GoogleStubServer setLatency(@Nonnegative long latency, @Nonnegative long jitter, @Nonnull TimeUnit unit) {
+        this.latency = unit.toMillis(latency);
+        this.jitter = unit.toMillis(jitter);
+        return this;
+    }
+
+    /**
+     * Fails a random fraction of the requests with the given status, typically 429 or 503.
+     */
+    public @Nonnull GoogleStubServer setFaultRate(double rate, int status) {
+        this.faultRate = rate;
+        this.faultStatus = status;
+        return this;
+    }
+
+    /**
+     * Fails the next <code>count</code> requests with the given status.
+     */
+    public @Nonnull GoogleStubServer failNext(@Nonnegative int count, int status) {
+        this.failNextStatus = status;
+        this.failNext.set(count);
+        return this;
+    }
+
+    public @Nonnull GoogleStubServer setPollsToDone(@Nonnegative int polls) {
+        store.setPollsToDone(polls);
+        return this;
+    }
+
+    public @Nonnull GoogleStubServer setOperationFailureRate(double rate) {
+        store.setOperationFailureRate(rate);
+        return this;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @param type the method and the last resource collection of the path, e.g. <code>GET instances</code> or
+     *             <code>GET operations</code>
+     */
+    public long getRequestCount(@Nonnull String type) {
+        AtomicLong count = requestsByType.get(type);
+        return (count == null ? 0L : count.get());
+    }
+
+    public @Nonnull Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for( Map.Entry<String, AtomicLong> entry : requestsByType.entrySet() ) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public long getFaultCount() {
+        return faults.get();
+    }
+
+    /**
+     * @return the most requests the server has been serving at once
+     */
+    public int getMaxConcurrentRequests() {
+        return maxInFlight.get();
+    }
+
+    public void resetCounters() {
+        requests.set(0L);
+        faults.set(0L);
+        maxInFlight.set(inFlight.get());
+        requestsByType.clear();
+    }
+
+    /**
+     * Seeds a project with one region, its zones and the default network.
+     */
+    public @Nonnull GoogleStubServer addProject(@Nonnull String project, @Nonnull String region, @Nonnull String ... zones) {
+        String base = "compute/v1/projects/" + project;
+        List<Object> zoneLinks = new ArrayList<Object>();
+
+        for( String zone : zones ) {
+            Map<String, Object> z = new LinkedHashMap<String, Object>();
+            z.put("name", zone);
+            z.put("region", endpoint + "/" + base + "/regions/" + region);
+            zoneLinks.add(store.put(base + "/zones", z).get("selfLink"));
+        }
+        Map<String, Object> r = new LinkedHashMap<String, Object>();
+        r.put("name", region);
+        r.put("zones", zoneLinks);
+        store.put(base + "/regions", r);
+
+        Map<String, Object> network = new LinkedHashMap<String, Object>();
+        network.put("name", "default");
+        network.put("IPv4Range", "10.240.0.0/16");
+        store.put(base + "/global/networks", network);
+        return this;
+    }
+
+    private void serve(@Nonnull HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        int max;
+
+        while( current > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, current) ) {
+            // retry until the high-water mark is at least current
+        }
+        requests.incrementAndGet();
+        try {
+            delay();
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath().replaceFirst("^/+", "");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            byte[] body = read(exchange.getRequestBody());
+            Response response = inject();
+
+            if( response == null ) {
+                Headers headers = exchange.getRequestHeaders();
+                response = dispatch(method, path, query, headers.getFirst("Content-Type"), headers.getFirst("Content-Range"), body);
+            }
+            write(exchange, response);
+        }
+        catch( RuntimeException e ) {
+            write(exchange, Response.error(500, "backendError", String.valueOf(e)));
+        }
+        finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private @Nonnull Response dispatch(@Nonnull String method, @Nonnull String rawPath, @Nonnull Map<String, String> query, @Nullable String contentType, @Nullable String contentRange, @Nonnull byte[] body) throws IOException {
+        count(method, rawPath);
+        if( "token".equals(rawPath) ) {
+            Map<String, Object> token = new LinkedHashMap<String, Object>();
+            token.put("access_token", "stub-" + UUID.randomUUID());
+            token.put("token_type", "Bearer");
+            token.put("expires_in", 3600);
+            return Response.json(200, token);
+        }
+        if( "batch".equals(rawPath) || rawPath.endsWith("/batch") ) {
+            return batch(contentType, body);
+        }
+        if( rawPath.startsWith("upload/storage/") ) {
+            return upload(rawPath, query, contentType, contentRange, body);
+        }
+        if( rawPath.startsWith("storage/") ) {
+            return storage(method, rawPath, query, body);
+        }
+        return store.handle(method, decode(rawPath), query, parseJson(body));
+    }
+
+    /*
+     * Buckets live in the storage/v1/b collection and objects in storage/v1/b/{bucket}/o; object names are
+     * taken from the raw path so that encoded slashes stay part of the name.
+     */
+    private @Nonnull Response storage(@Nonnull String method, @Nonnull String rawPath, @Nonnull Map<String, String> query, @Nonnull byte[] body) throws IOException {
+        String[] parts = rawPath.split("/", 6); // storage, v1, b, {bucket}, o, {object...}
+
+        if( parts.length <= 3 ) {
+            if( "POST".equals(method) ) {
+                Map<String, Object> bucket = parseJson(body);
+                if( bucket == null || bucket.get("name") == null ) {
+                    return Response.error(400, "required", "Required field 'resource.name' not specified");
+                }
+                if( store.get("storage/v1/b", (String)bucket.get("name")) != null ) {
+                    return Response.error(409, "conflict", "You already own this bucket. Please select another name.");
+                }
+                bucket.put("projectNumber", query.get("project"));
+                return Response.json(200, store.put("storage/v1/b", bucket));
+            }
+            return page(store.list("storage/v1/b"), query, "storage#buckets");
+        }
+        String bucket = decode(parts[3]);
+
+        if( store.get("storage/v1/b", bucket) == null ) {
+            return Response.error(404, "notFound", "Not Found");
+        }
+        String objects = "storage/v1/b/" + bucket + "/o";
+        if( parts.length == 4 ) {
+            if( "DELETE".equals(method) ) {
+                if( store.count(objects) > 0 ) {
+                    return Response.error(409, "conflict", "The bucket you tried to delete was not empty.");
+                }
+                store.remove("storage/v1/b", bucket);
+                return Response.empty(204);
+            }
+            return Response.json(200, store.get("storage/v1/b", bucket));
+        }
+        if( parts.length == 5 ) {
+            List<Map<String, Object>> items = new ArrayList<Map<String, Object>>();
+            for( Map<String, Object> item : store.list(objects) ) {
+                if( query.get("prefix") == null || ((String)item.get("name")).startsWith(query.get("prefix")) ) {
+                    items.add(item);
+                }
+            }
+            return page(items, query, "storage#objects");
+        }
+        String rest = parts[5];
+        int copy = rest.indexOf("/copyTo/b/");
+
+        if( copy > -1 && "POST".equals(method) ) {
+            Map<String, Object> source = store.get(objects, decode(rest.substring(0, copy)));
+            String[] target = rest.substring(copy + "/copyTo/b/".length()).split("/o/", 2);
+            if( source == null || target.length < 2 || store.get("storage/v1/b", decode(target[0])) == null ) {
+                return Response.error(404, "notFound", "Not Found");
+            }
+            byte[] content = store.getMedia(bucket, (String)source.get("name"));
+            return Response.json(200, putObject(decode(target[0]), decode(target[1]), (String)source.get("contentType"), content == null ? new byte[0] : content));
+        }
+        String name = decode(rest);
+        Map<String, Object> object = store.get(objects, name);
+
+        if( object == null ) {
+            return Response.error(404, "notFound", "Not Found");
+        }
+        if( "DELETE".equals(method) ) {
+            store.remove(objects, name);
+            store.removeMedia(bucket, name);
+            return Response.empty(204);
+        }
+        if( "media".equals(query.get("alt")) ) {
+            byte[] content = store.getMedia(bucket, name);
+            return new Response(200, (String)object.get("contentType"), content);
+        }
+        return Response.json(200, object);
+    }
+
+    /*
+     * Simple (uploadType=media), multipart and resumable object uploads.
+     */
+    private @Nonnull Response upload(@Nonnull String rawPath, @Nonnull Map<String, String> query, @Nullable String contentType, @Nullable String contentRange, @Nonnull byte[] body) throws IOException {
+        String[] parts = rawPath.split("/");
+        String bucket = (parts.length > 4 ? decode(parts[4]) : "");
+        String uploadType = query.get("uploadType");
+
+        if( store.get("storage/v1/b", bucket) == null ) {
+            return Response.error(404, "notFound", "Not Found");
+        }
+        if( "resumable".equals(uploadType) && query.get("upload_id") == null ) {
+            String id = UUID.randomUUID().toString();
+            Map<String, Object> metadata = parseJson(body);
+            if( metadata == null ) {
+                metadata = new LinkedHashMap<String, Object>();
+            }
+            if( query.get("name") != null ) {
+                metadata.put("name", query.get("name"));
+            }
+            uploadMetadata.put(id, metadata);
+            uploads.put(id, new byte[0]);
+            Response response = Response.empty(200);
+            response.headers.put("Location", endpoint + "/" + rawPath + "?uploadType=resumable&upload_id=" + id);
+            return response;
+        }
+        if( "resumable".equals(uploadType) ) {
+            String id = query.get("upload_id");
+            byte[] sofar = uploads.get(id);
+            if( sofar == null ) {
+                return Response.error(404, "notFound", "No such upload");
+            }
+            byte[] combined = new byte[sofar.length + body.length];
+            System.arraycopy(sofar, 0, combined, 0, sofar.length);
+            System.arraycopy(body, 0, combined, sofar.length, body.length);
+            uploads.put(id, combined);
+            if( contentRange != null && contentRange.endsWith("/*") ) {
+                Response incomplete = Response.empty(308);
+                incomplete.headers.put("Range", "bytes=0-" + (combined.length - 1));
+                return incomplete;
+            }
+            Map<String, Object> metadata = uploadMetadata.remove(id);
+            uploads.remove(id);
+            return Response.json(200, putObject(bucket, (String)metadata.get("name"), (String)metadata.get("contentType"), combined));
+        }
+        if( "multipart".equals(uploadType) && contentType != null && contentType.contains("boundary=") ) {
+            List<byte[][]> bodyParts = multipart(contentType, body);
+            if( bodyParts.size() < 2 ) {
+                return Response.error(400, "badContent", "Expected metadata and media parts");
+            }
+            Map<String, Object> metadata = parseJson(bodyParts.get(0)[1]);
+            String name = (query.get("name") != null ? query.get("name") : (String)metadata.get("name"));
+            return Response.json(200, putObject(bucket, name, (String)metadata.get("contentType"), bodyParts.get(1)[1]));
+        }
+        if( query.get("name") == null ) {
+            return Response.error(400, "required", "Required parameter 'name' not specified");
+        }
+        return Response.json(200, putObject(bucket, query.get("name"), contentType, body));
+    }
+
+    private @Nonnull Map<String, Object> putObject(@Nonnull String bucket, @Nonnull String name, @Nullable String contentType, @Nonnull byte[] content) {
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+
+        object.put("name", name);
+        object.put("bucket", bucket);
+        object.put("size", String.valueOf(content.length));
+        object.put("contentType", contentType == null ? "application/octet-stream" : contentType);
+        object.put("updated", StubStore.now());
+        store.putMedia(bucket, name, content);
+        object = store.put("storage/v1/b/" + bucket + "/o", object);
+        try {
+            String encoded = URLEncoder.encode(name, "UTF-8");
+            object.put("selfLink", endpoint + "/storage/v1/b/" + bucket + "/o/" + encoded);
+            object.put("mediaLink", endpoint + "/download/storage/v1/b/" + bucket + "/o/" + encoded + "?alt=media");
+        }
+        catch( UnsupportedEncodingException e ) {
+            throw new IllegalStateException(e);
+        }
+        return object;
+    }
+
+    /*
+     * A multipart/mixed batch of HTTP requests, each answered as though it had been sent on its own.
+     */
+    private @Nonnull Response batch(@Nullable String contentType, @Nonnull byte[] body) throws IOException {
+        if( contentType == null || !contentType.contains("boundary=") ) {
+            return Response.error(400, "badContent", "Batch requests must be multipart/mixed");
+        }
+        String boundary = "batch_" + UUID.randomUUID().toString().replace("-", "");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int index = 0;
+
+        for( byte[][] part : multipart(contentType, body) ) {
+            String text = new String(part[1], "ISO-8859-1");
+            int headerEnd = text.indexOf("\r\n\r\n");
+            String head = (headerEnd < 0 ? text : text.substring(0, headerEnd));
+            String[] lines = head.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            String url = requestLine[1].replaceFirst("^https?://[^/]+", "");
+            String rawPath = url.replaceFirst("^/+", "");
+            String rawQuery = null;
+            String partType = null;
+
+            if( rawPath.contains("?") ) {
+                rawQuery = rawPath.substring(rawPath.indexOf('?') + 1);
+                rawPath = rawPath.substring(0, rawPath.indexOf('?'));
+            }
+            for( int i = 1; i < lines.length; i++ ) {
+                if( lines[i].toLowerCase().startsWith("content-type:") ) {
+                    partType = lines[i].substring("content-type:".length()).trim();
+                }
+            }
+            byte[] partBody = (headerEnd < 0 ? new byte[0] : Arrays.copyOfRange(part[1], headerEnd + 4, part[1].length));
+            requests.incrementAndGet();
+            Response inner = dispatch(requestLine[0], rawPath, parseQuery(rawQuery), partType, null, partBody);
+
+            StringBuilder envelope = new StringBuilder();
+            envelope.append("--").append(boundary).append("\r\n");
+            envelope.append("Content-Type: application/http\r\n");
+            envelope.append("Content-ID: <response-").append(++index).append(">\r\n\r\n");
+            envelope.append("HTTP/1.1 ").append(inner.status).append(" ").append(inner.status < 300 ? "OK" : "Error").append("\r\n");
+            if( inner.contentType != null ) {
+                envelope.append("Content-Type: ").append(inner.contentType).append("\r\n");
+            }
+            envelope.append("Content-Length: ").append(inner.body.length).append("\r\n\r\n");
+            out.write(envelope.toString().getBytes("ISO-8859-1"));
+            out.write(inner.body);
+            out.write("\r\n".getBytes("ISO-8859-1"));
+        }
+        out.write(("--" + boundary + "--\r\n").getBytes("ISO-8859-1"));
+        return new Response(200, "multipart/mixed; boundary=" + boundary, out.toByteArray());
+    }
+
+    private @Nonnull Response page(@Nonnull List<Map<String, Object>> items, @Nonnull Map<String, String> query, @Nonnull String kind) {
+        int offset = (query.get("pageToken") == null ? 0 : Integer.parseInt(query.get("pageToken")));
+        int size = (query.get("maxResults") == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(query.get("maxResults")));
+        int end = Math.min(items.size(), offset + size);
+        Map<String, Object> page = new LinkedHashMap<String, Object>();
+
+        page.put("kind", kind);
+        if( end > offset ) {
+            page.put("items", new ArrayList<Map<String, Object>>(items.subList(offset, end)));
+        }
+        if( end < items.size() ) {
+            page.put("nextPageToken", String.valueOf(end));
+        }
+        return Response.json(200, page);
+    }
+
+    private void delay() {
+        long wait = latency + (jitter > 0 ? (long)(random.nextDouble() * jitter) : 0L);
+
+        if( wait > 0 ) {
+            try {
+                Thread.sleep(wait);
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private @Nullable Response inject() {
+        int remaining = failNext.get();
+
+        while( remaining > 0 ) {
+            if( failNext.compareAndSet(remaining, remaining - 1) ) {
+                faults.incrementAndGet();
+                return fault(failNextStatus);
+            }
+            remaining = failNext.get();
+        }
+        if( faultRate > 0.0 && random.nextDouble() < faultRate ) {
+            faults.incrementAndGet();
+            return fault(faultStatus);
+        }
+        return null;
+    }
+
+    static private @Nonnull Response fault(int status) {
+        Response response = (status == 429 ?
+                Response.error(429, "rateLimitExceeded", "Rate Limit Exceeded") :
+                Response.error(status, "backendError", "Backend Error"));
+        response.headers.put("Retry-After", "1");
+        return response;
+    }
+
+    /*
+     * Counts requests by method and resource type, e.g. "GET instances", "POST instances.reset",
+     * "GET aggregated/instances", "GET operations" or "POST objects".
+     */
+    private void count(@Nonnull String method, @Nonnull String rawPath) {
+        String type;
+
+        if( rawPath.startsWith("upload/storage/") || rawPath.matches("^storage/[^/]+/b/[^/]+/o.*") ) {
+            type = "objects";
+        }
+        else if( rawPath.startsWith("storage/") ) {
+            type = "buckets";
+        }
+        else {
+            String rest = rawPath.replaceFirst("^[^/]+/[^/]+/projects/[^/]+/?", "").replaceFirst("^(zones|regions)/[^/]+/|^global/", "");
+            String[] segments = rest.split("/");
+
+            if( rest.length() == 0 ) {
+                type = "project";
+            }
+            else if( "aggregated".equals(segments[0]) && segments.length > 1 ) {
+                type = "aggregated/" + segments[1];
+            }
+            else {
+                type = segments[0] + (segments.length == 3 ? "." + segments[2] : "");
+            }
+        }
+        type = method + " " + type;
+
+        AtomicLong count = requestsByType.get(type);
+        if( count == null ) {
+            AtomicLong fresh = new AtomicLong();
+            count = requestsByType.putIfAbsent(type, fresh);
+            if( count == null ) {
+                count = fresh;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private void write(@Nonnull HttpExchange exchange, @Nonnull Response response) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+
+        if( response.contentType != null ) {
+            headers.set("Content-Type", response.contentType);
+        }
+        for( Map.Entry<String, String> header : response.headers.entrySet() ) {
+            headers.set(header.getKey(), header.getValue());
+        }
+        if( response.status == 204 || response.body.length == 0 ) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(response.status, response.body.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(response.body);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /*
+     * Splits a multipart body into its parts as {headers, content}.
+     */
+    static private @Nonnull List<byte[][]> multipart(@Nonnull String contentType, @Nonnull byte[] body) throws UnsupportedEncodingException {
+        String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length()).replaceAll("[\";].*$|\"", "");
+        String text = new String(body, "ISO-8859-1");
+        List<byte[][]> parts = new ArrayList<byte[][]>();
+        String delimiter = "--" + boundary;
+        int start = text.indexOf(delimiter);
+
+        while( start > -1 ) {
+            int contentStart = start + delimiter.length();
+            if( text.startsWith("--", contentStart) ) {
+                break;
+            }
+            int next = text.indexOf("\r\n" + delimiter, contentStart);
+            if( next < 0 ) {
+                break;
+            }
+            String part = text.substring(contentStart, next).replaceFirst("^\r\n", "");
+            int split = part.indexOf("\r\n\r\n");
+            String headers = (split < 0 ? "" : part.substring(0, split));
+            String content = (split < 0 ? part : part.substring(split + 4));
+            parts.add(new byte[][] { headers.getBytes("ISO-8859-1"), content.getBytes("ISO-8859-1") });
+            start = next + 2;
+        }
+        return parts;
+    }
+
+    static private @Nullable Map<String, Object> parseJson(@Nonnull byte[] body) throws IOException {
+        if( body.length == 0 ) {
+            return null;
+        }
+        String text = new String(body, "UTF-8").trim();
+        if( !text.startsWith("{") ) {
+            return null;
+        }
+        return new LinkedHashMap<String, Object>(jsonFactory.fromString(text, GenericJson.class));
+    }
+
+    static private @Nonnull Map<String, String> parseQuery(@Nullable String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new LinkedHashMap<String, String>();
+
+        if( rawQuery == null ) {
+            return query;
+        }
+        for( String pair : rawQuery.split("&") ) {
+            int eq = pair.indexOf('=');
+            if( eq > 0 ) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+            else if( pair.length() > 0 ) {
+                query.put(URLDecoder.decode(pair, "UTF-8"), "");
+            }
+        }
+        return query;
+    }
+
+    static private @Nonnull String decode(@Nonnull String raw) throws UnsupportedEncodingException {
+        return URLDecoder.decode(raw.replace("+", "%2B"), "UTF-8");
+    }
+
+    static private @Nonnull byte[] read(@Nonnull InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+
+        while( (read = in.read(buffer)) != -1 ) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.stub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dasein.cloud.ResourceStatus;
+import org.dasein.cloud.google.Google;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the stub server's own behavior and that a provider connected to it works end to end.
+ */
+public class GoogleStubServerTest {
+    private GoogleStubServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = StubProviders.startServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void operationsCompleteAfterTheConfiguredPolls() throws Exception {
+        server.setPollsToDone(3);
+        String op = call("POST", StubProviders.global("firewalls"), "{\"name\":\"fw-1\",\"network\":\"global/networks/default\"}");
+        String name = op.replaceAll("(?s).*\"name\":\"(operation-[^\"]+)\".*", "$1");
+
+        assertTrue(op.contains("\"status\":\"PENDING\""));
+        assertTrue(call("GET", StubProviders.global("operations/" + name), null).contains("\"status\":\"RUNNING\""));
+        assertTrue(call("GET", StubProviders.global("operations/" + name), null).contains("\"status\":\"RUNNING\""));
+        assertTrue(call("GET", StubProviders.global("operations/" + name), null).contains("\"status\":\"DONE\""));
+        assertEquals(1, server.getStore().count(StubProviders.global("firewalls")));
+    }
+
+    @Test
+    public void listsArePaginated() throws Exception {
+        seedInstances(StubProviders.ZONES[0], 5);
+
+        String first = call("GET", StubProviders.instances(StubProviders.ZONES[0]) + "?maxResults=2", null);
+        String last = call("GET", StubProviders.instances(StubProviders.ZONES[0]) + "?maxResults=2&pageToken=4", null);
+
+        assertTrue(first.contains("\"nextPageToken\":\"2\""));
+        assertTrue(!last.contains("nextPageToken"));
+        assertTrue(last.contains("vm-a-4"));
+    }
+
+    @Test
+    public void faultsAreInjected() throws Exception {
+        server.failNext(1, 429);
+
+        assertEquals(429, status("GET", StubProviders.global("networks")));
+        assertEquals(200, status("GET", StubProviders.global("networks")));
+        assertEquals(1L, server.getFaultCount());
+    }
+
+    @Test
+    public void latencyIsInjected() throws Exception {
+        server.setLatency(50, 0, TimeUnit.MILLISECONDS);
+        long start = System.currentTimeMillis();
+
+        status("GET", StubProviders.global("networks"));
+        assertTrue(System.currentTimeMillis() - start >= 50);
+    }
+
+    @Test
+    public void providerStreamsEveryPage() throws Exception {
+        seedInstances(StubProviders.ZONES[0], 700);
+        seedInstances(StubProviders.ZONES[1], 500);
+        Google provider = StubProviders.connect(server);
+
+        try {
+            int count = 0;
+            for( ResourceStatus vm : provider.getComputeServices().getVirtualMachineSupport().listVirtualMachineStatus() ) {
+                count++;
+            }
+            assertEquals(1200, count);
+            assertEquals(3L, server.getRequestCount("GET aggregated/instances"));
+        }
+        finally {
+            provider.close();
+        }
+    }
+
+    private void seedInstances(String zone, int count) {
+        for( int i = 0; i < count; i++ ) {
+            Map<String, Object> instance = new LinkedHashMap<String, Object>();
+            instance.put("name", "vm-" + zone.substring(zone.length() - 1) + "-" + i);
+            server.getStore().put(StubProviders.instances(zone), instance);
+        }
+    }
+
+    private int status(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL(server.getEndpoint() + "/" + path).openConnection();
+
+        connection.setRequestMethod(method);
+        try {
+            return connection.getResponseCode();
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+
+    private String call(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL(server.getEndpoint() + "/" + path).openConnection();
+
+        connection.setRequestMethod(method);
+        if( body != null ) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.getOutputStream().write(body.getBytes("UTF-8"));
+        }
+        InputStream in = (connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+
+        try {
+            while( in != null && (read = in.read(buffer)) != -1 ) {
+                out.write(buffer, 0, read);
+            }
+        }
+        finally {
+            if( in != null ) {
+                in.close();
+            }
+            connection.disconnect();
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.Cloud;
+import org.dasein.cloud.ProviderContext;
+import org.dasein.cloud.google.Google;
+
+/**
+ * Starts stub servers and connects {@link Google} providers to them. The provider authenticates with a
+ * throwaway service account key bundled with the tests; the stub accepts any token it issues.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public final class StubProviders {
+    static public final String PROJECT = "stub-project";
+    static public final String REGION = "us-central1";
+    static public final String[] ZONES = { "us-central1-a", "us-central1-b", "us-central1-f" };
+
+    static private final String KEY_STORE = "/stub/stub.p12";
+    static private final String KEY_STORE_PASSWORD = "notasecret";
+    static private final String SERVICE_ACCOUNT = "stub@stub-project.iam.gserviceaccount.com";
+
+    private StubProviders() { }
+
+    /**
+     * @return a running server seeded with {@link #PROJECT}, {@link #REGION} and its {@link #ZONES}
+     */
+    static public @Nonnull GoogleStubServer startServer() throws IOException {
+        return new GoogleStubServer().start().addProject(PROJECT, REGION, ZONES);
+    }
+
+    static public @Nonnull Google connect(@Nonnull GoogleStubServer server) throws Exception {
+        Cloud cloud = Cloud.register("Google", "Google Stub", server.getEndpoint(), Google.class);
+        @SuppressWarnings("unchecked")
+        ProviderContext ctx = cloud.createContext(PROJECT, REGION,
+                new ProviderContext.Value<byte[][]>("p12Certificate", new byte[][] { readKeyStore(), KEY_STORE_PASSWORD.getBytes("utf-8") }),
+                new ProviderContext.Value<String>("serviceAccount", SERVICE_ACCOUNT),
+                new ProviderContext.Value<String>("apiRootUrl", server.getEndpoint()));
+
+        return (Google)ctx.connect();
+    }
+
+    /**
+     * @return the collection path of instances in a zone of the stub project
+     */
+    static public @Nonnull String instances(@Nonnull String zone) {
+        return "compute/v1/projects/" + PROJECT + "/zones/" + zone + "/instances";
+    }
+
+    static public @Nonnull String disks(@Nonnull String zone) {
+        return "compute/v1/projects/" + PROJECT + "/zones/" + zone + "/disks";
+    }
+
+    static public @Nonnull String global(@Nonnull String collection) {
+        return "compute/v1/projects/" + PROJECT + "/global/" + collection;
+    }
+
+    static private @Nonnull byte[] readKeyStore() throws IOException {
+        InputStream in = StubProviders.class.getResourceAsStream(KEY_STORE);
+
+        if( in == null ) {
+            throw new IOException("Missing test resource " + KEY_STORE);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+
+            while( (read = in.read(buffer)) != -1 ) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
+}
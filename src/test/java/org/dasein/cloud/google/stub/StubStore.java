@@ -0,0 +1,640 @@
+/**
+ * Copyright (C) 2012-2015 Dell, Inc
+ * See annotations for authorship information
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.google.stub;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The in-memory resources behind {@link GoogleStubServer}, addressed by their REST collection path, e.g.
+ * <code>compute/v1/projects/p/zones/us-central1-a/instances</code>. Mutations take effect as soon as they are
+ * submitted and answer with an operation that moves from PENDING through RUNNING to DONE as it is polled.
+ * @version 2015.10
+ * @since 2015.10
+ */
+public class StubStore {
+    static private final Pattern FILTER = Pattern.compile("^\\s*(\\S+)\\s+(eq|ne)\\s+(.+?)\\s*$");
+
+    private final String rootUrl;
+    private final Map<String, LinkedHashMap<String, Map<String, Object>>> collections = new HashMap<String, LinkedHashMap<String, Map<String, Object>>>();
+    private final Map<String, Integer> operationPolls = new HashMap<String, Integer>();
+    private final Map<String, Boolean> operationFailures = new HashMap<String, Boolean>();
+    private final Map<String, byte[]> media = new HashMap<String, byte[]>();
+    private final AtomicLong ids = new AtomicLong(1000000000000L);
+    private final AtomicLong addresses = new AtomicLong();
+    private final AtomicLong hosts = new AtomicLong(1);
+    private final Random random = new Random();
+
+    private volatile int pollsToDone = 2;
+    private volatile double operationFailureRate = 0.0;
+
+    StubStore(@Nonnull String rootUrl) {
+        this.rootUrl = rootUrl;
+    }
+
+    /**
+     * @param polls the number of polls after which an operation reports DONE; 0 makes every operation DONE at once
+     */
+    public void setPollsToDone(int polls) {
+        pollsToDone = Math.max(0, polls);
+    }
+
+    /**
+     * @param rate the fraction of operations, between 0 and 1, that end DONE with an error
+     */
+    public void setOperationFailureRate(double rate) {
+        operationFailureRate = rate;
+    }
+
+    /**
+     * Adds a resource as though it had been created through the API and returns the stored copy.
+     */
+    public synchronized @Nonnull Map<String, Object> put(@Nonnull String collection, @Nonnull Map<String, Object> resource) {
+        Map<String, Object> item = new LinkedHashMap<String, Object>(resource);
+
+        complete(collection, item, null);
+        collection(collection).put((String)item.get("name"), item);
+        return item;
+    }
+
+    public synchronized @Nullable Map<String, Object> get(@Nonnull String collection, @Nonnull String name) {
+        LinkedHashMap<String, Map<String, Object>> items = collections.get(collection);
+        return (items == null ? null : items.get(name));
+    }
+
+    public synchronized @Nullable Map<String, Object> remove(@Nonnull String collection, @Nonnull String name) {
+        LinkedHashMap<String, Map<String, Object>> items = collections.get(collection);
+        return (items == null ? null : items.remove(name));
+    }
+
+    public synchronized @Nonnull List<Map<String, Object>> list(@Nonnull String collection) {
+        LinkedHashMap<String, Map<String, Object>> items = collections.get(collection);
+        return (items == null ? new ArrayList<Map<String, Object>>() : new ArrayList<Map<String, Object>>(items.values()));
+    }
+
+    public synchronized int count(@Nonnull String collection) {
+        LinkedHashMap<String, Map<String, Object>> items = collections.get(collection);
+        return (items == null ? 0 : items.size());
+    }
+
+    synchronized boolean hasCollection(@Nonnull String collection) {
+        return collections.containsKey(collection);
+    }
+
+    synchronized void putMedia(@Nonnull String bucket, @Nonnull String object, @Nonnull byte[] content) {
+        media.put(bucket + "/" + object, content);
+    }
+
+    synchronized @Nullable byte[] getMedia(@Nonnull String bucket, @Nonnull String object) {
+        return media.get(bucket + "/" + object);
+    }
+
+    synchronized void removeMedia(@Nonnull String bucket, @Nonnull String object) {
+        media.remove(bucket + "/" + object);
+    }
+
+    /**
+     * Answers a REST call on one of the JSON services that report mutations as operations (compute, sqladmin,
+     * replicapool and resourceviews).
+     */
+    synchronized @Nonnull GoogleStubServer.Response handle(@Nonnull String method, @Nonnull String path, @Nonnull Map<String, String> query, @Nullable Map<String, Object> body) {
+        String[] segments = path.split("/");
+        int n = segments.length;
+
+        if( n < 2 ) {
+            return notFound(path);
+        }
+        if( "GET".equals(method) ) {
+            if( n >= 2 && "aggregated".equals(segments[n - 2]) ) {
+                return aggregatedList(parent(parent(path)), segments[n - 1], query);
+            }
+            if( collections.containsKey(path) ) {
+                return list(path, query);
+            }
+            Map<String, Object> item = get(parent(path), segments[n - 1]);
+            if( item == null ) {
+                return notFound(path);
+            }
+            if( "operations".equals(segments[n - 2]) ) {
+                return GoogleStubServer.Response.json(200, poll(path, item));
+            }
+            return GoogleStubServer.Response.json(200, item);
+        }
+        if( "POST".equals(method) ) {
+            if( n >= 3 && !isScope(segments, n - 3) && get(parent(parent(path)), segments[n - 2]) != null ) {
+                return action(parent(parent(path)), segments[n - 2], segments[n - 1], query, body);
+            }
+            return insert(path, query, body);
+        }
+        if( "PUT".equals(method) || "PATCH".equals(method) ) {
+            Map<String, Object> item = get(parent(path), segments[n - 1]);
+            if( item == null ) {
+                return notFound(path);
+            }
+            if( body != null ) {
+                if( "PUT".equals(method) ) {
+                    Map<String, Object> kept = new HashMap<String, Object>(item);
+                    item.clear();
+                    item.putAll(body);
+                    for( String key : new String[] { "id", "selfLink", "creationTimestamp", "zone", "region" } ) {
+                        if( kept.containsKey(key) ) {
+                            item.put(key, kept.get(key));
+                        }
+                    }
+                }
+                else {
+                    item.putAll(body);
+                }
+            }
+            return operation(parent(path), (String)item.get("selfLink"), "PUT".equals(method) ? "update" : "patch");
+        }
+        if( "DELETE".equals(method) ) {
+            Map<String, Object> item = remove(parent(path), segments[n - 1]);
+            if( item == null ) {
+                return notFound(path);
+            }
+            deleteAutoDeleteDisks(item);
+            return operation(parent(path), (String)item.get("selfLink"), "delete");
+        }
+        return GoogleStubServer.Response.error(405, "methodNotAllowed", method + " is not supported on " + path);
+    }
+
+    private @Nonnull GoogleStubServer.Response insert(@Nonnull String collection, @Nonnull Map<String, String> query, @Nullable Map<String, Object> body) {
+        if( body == null || body.get("name") == null ) {
+            return GoogleStubServer.Response.error(400, "required", "Required field 'resource.name' not specified");
+        }
+        String name = (String)body.get("name");
+
+        if( get(collection, name) != null ) {
+            return GoogleStubServer.Response.error(409, "alreadyExists", "The resource '" + collection + "/" + name + "' already exists");
+        }
+        Map<String, Object> item = new LinkedHashMap<String, Object>(body);
+
+        complete(collection, item, query);
+        collection(collection).put(name, item);
+        return operation(collection, (String)item.get("selfLink"), "insert");
+    }
+
+    /*
+     * Custom methods on a resource, e.g. instances/x/setMetadata or targetPools/p/addInstance.
+     */
+    @SuppressWarnings("unchecked")
+    private @Nonnull GoogleStubServer.Response action(@Nonnull String collection, @Nonnull String name, @Nonnull String action, @Nonnull Map<String, String> query, @Nullable Map<String, Object> body) {
+        Map<String, Object> item = get(collection, name);
+
+        if( "stop".equals(action) ) {
+            item.put("status", "TERMINATED");
+        }
+        else if( "start".equals(action) ) {
+            item.put("status", "RUNNING");
+        }
+        else if( "setMetadata".equals(action) ) {
+            item.put("metadata", body);
+        }
+        else if( "setTags".equals(action) ) {
+            item.put("tags", body);
+        }
+        else if( "attachDisk".equals(action) && body != null ) {
+            listField(item, "disks").add(body);
+        }
+        else if( "detachDisk".equals(action) ) {
+            for( Iterator<Object> it = listField(item, "disks").iterator(); it.hasNext(); ) {
+                if( String.valueOf(((Map<String, Object>)it.next()).get("deviceName")).equals(query.get("deviceName")) ) {
+                    it.remove();
+                }
+            }
+        }
+        else if( "addAccessConfig".equals(action) && body != null ) {
+            Map<String, Object> nic = networkInterface(item, query.get("networkInterface"));
+            if( nic != null ) {
+                if( body.get("natIP") == null ) {
+                    body.put("natIP", nextAddress());
+                }
+                listField(nic, "accessConfigs").add(body);
+            }
+        }
+        else if( "deleteAccessConfig".equals(action) ) {
+            Map<String, Object> nic = networkInterface(item, query.get("networkInterface"));
+            if( nic != null ) {
+                for( Iterator<Object> it = listField(nic, "accessConfigs").iterator(); it.hasNext(); ) {
+                    if( String.valueOf(((Map<String, Object>)it.next()).get("name")).equals(query.get("accessConfig")) ) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+        else if( (action.startsWith("add") || action.startsWith("remove")) && body != null ) {
+            // e.g. addInstance {"instances":[{"instance":"..."}]} keeps the links in the pool's "instances"
+            for( Map.Entry<String, Object> entry : body.entrySet() ) {
+                if( !(entry.getValue() instanceof List) ) {
+                    continue;
+                }
+                List<Object> target = listField(item, entry.getKey());
+                for( Object element : (List<Object>)entry.getValue() ) {
+                    Object link = (element instanceof Map && ((Map<String, Object>)element).size() == 1 ? ((Map<String, Object>)element).values().iterator().next() : element);
+                    if( action.startsWith("add") ) {
+                        if( !target.contains(link) ) {
+                            target.add(link);
+                        }
+                    }
+                    else {
+                        target.remove(link);
+                    }
+                }
+            }
+        }
+        else if( action.startsWith("set") && body != null ) {
+            item.putAll(body);
+        }
+        return operation(collection, (String)item.get("selfLink"), action);
+    }
+
+    private @Nonnull GoogleStubServer.Response list(@Nonnull String collection, @Nonnull Map<String, String> query) {
+        List<Map<String, Object>> items = filter(list(collection), query.get("filter"));
+
+        if( query.get("instance") != null ) {
+            // sqladmin scopes operations.list to one instance
+            items = filter(items, "targetId eq " + Pattern.quote(query.get("instance")));
+        }
+        int offset = offset(query);
+        int end = Math.min(items.size(), offset + pageSize(query));
+        Map<String, Object> page = new LinkedHashMap<String, Object>();
+
+        page.put("kind", kind(collection) + "List");
+        page.put("selfLink", rootUrl + collection);
+        if( end > offset ) {
+            page.put("items", new ArrayList<Map<String, Object>>(items.subList(offset, end)));
+        }
+        if( end < items.size() ) {
+            page.put("nextPageToken", String.valueOf(end));
+        }
+        return GoogleStubServer.Response.json(200, page);
+    }
+
+    /*
+     * Pages over the flattened items of every zone and region, keeping the pages grouped by scope as the API does.
+     */
+    private @Nonnull GoogleStubServer.Response aggregatedList(@Nonnull String project, @Nonnull String kind, @Nonnull Map<String, String> query) {
+        List<String> scopes = new ArrayList<String>();
+        List<Map<String, Object>> items = new ArrayList<Map<String, Object>>();
+
+        for( String collection : collections.keySet() ) {
+            String[] segments = collection.substring(project.length()).split("/");
+            if( collection.startsWith(project + "/") && segments.length == 4 && kind.equals(segments[3]) && ("zones".equals(segments[1]) || "regions".equals(segments[1])) ) {
+                for( Map<String, Object> item : filter(list(collection), query.get("filter")) ) {
+                    scopes.add(segments[1] + "/" + segments[2]);
+                    items.add(item);
+                }
+            }
+        }
+        int offset = offset(query);
+        int end = Math.min(items.size(), offset + pageSize(query));
+        Map<String, Object> grouped = new LinkedHashMap<String, Object>();
+
+        for( int i = offset; i < end; i++ ) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> scoped = (Map<String, Object>)grouped.get(scopes.get(i));
+            if( scoped == null ) {
+                scoped = new LinkedHashMap<String, Object>();
+                scoped.put(kind, new ArrayList<Object>());
+                grouped.put(scopes.get(i), scoped);
+            }
+            listField(scoped, kind).add(items.get(i));
+        }
+        Map<String, Object> page = new LinkedHashMap<String, Object>();
+
+        page.put("kind", "compute#" + kind + "AggregatedList");
+        page.put("selfLink", rootUrl + project + "/aggregated/" + kind);
+        page.put("items", grouped);
+        if( end < items.size() ) {
+            page.put("nextPageToken", String.valueOf(end));
+        }
+        return GoogleStubServer.Response.json(200, page);
+    }
+
+    private @Nonnull GoogleStubServer.Response operation(@Nonnull String collection, @Nullable String targetLink, @Nonnull String operationType) {
+        String scope = scope(collection);
+        String name = "operation-" + System.currentTimeMillis() + "-" + ids.incrementAndGet();
+        Map<String, Object> op = new LinkedHashMap<String, Object>();
+
+        op.put("kind", kind(scope + "/operations"));
+        op.put("name", name);
+        op.put("id", String.valueOf(ids.incrementAndGet()));
+        op.put("operationType", operationType);
+        op.put("targetLink", targetLink);
+        if( collection.startsWith("sql/") && targetLink != null ) {
+            op.put("targetId", targetLink.substring(targetLink.lastIndexOf('/') + 1));
+        }
+        op.put("status", "PENDING");
+        op.put("progress", 0);
+        op.put("insertTime", now());
+        op.put("selfLink", rootUrl + scope + "/operations/" + name);
+        if( scope.contains("/zones/") ) {
+            op.put("zone", rootUrl + scope);
+        }
+        else if( scope.contains("/regions/") ) {
+            op.put("region", rootUrl + scope);
+        }
+        collection(scope + "/operations").put(name, op);
+        operationPolls.put(scope + "/operations/" + name, 0);
+        operationFailures.put(scope + "/operations/" + name, random.nextDouble() < operationFailureRate);
+        if( pollsToDone == 0 ) {
+            poll(scope + "/operations/" + name, op);
+        }
+        return GoogleStubServer.Response.json(200, op);
+    }
+
+    private @Nonnull Map<String, Object> poll(@Nonnull String path, @Nonnull Map<String, Object> op) {
+        Integer polls = operationPolls.get(path);
+
+        if( polls == null || "DONE".equals(op.get("status")) ) {
+            return op;
+        }
+        polls = polls + 1;
+        operationPolls.put(path, polls);
+        if( polls >= pollsToDone ) {
+            op.put("status", "DONE");
+            op.put("progress", 100);
+            op.put("endTime", now());
+            if( Boolean.TRUE.equals(operationFailures.get(path)) ) {
+                Map<String, Object> error = new LinkedHashMap<String, Object>();
+                Map<String, Object> detail = new LinkedHashMap<String, Object>();
+                detail.put("code", "STUB_INJECTED_FAILURE");
+                detail.put("message", "Operation failure injected by the stub server");
+                List<Object> errors = new ArrayList<Object>();
+                errors.add(detail);
+                error.put("errors", errors);
+                op.put("error", error);
+            }
+        }
+        else {
+            op.put("status", "RUNNING");
+            op.put("progress", 100 * polls / Math.max(1, pollsToDone));
+        }
+        return op;
+    }
+
+    /*
+     * Fills in what the API would: id, selfLink, creation time, scope links and a plausible status.
+     */
+    @SuppressWarnings("unchecked")
+    private void complete(@Nonnull String collection, @Nonnull Map<String, Object> item, @Nullable Map<String, String> query) {
+        String kind = collection.substring(collection.lastIndexOf('/') + 1);
+        String scope = scope(collection);
+
+        if( item.get("id") == null ) {
+            item.put("id", String.valueOf(ids.incrementAndGet()));
+        }
+        item.put("selfLink", rootUrl + collection + "/" + item.get("name"));
+        if( item.get("creationTimestamp") == null ) {
+            item.put("creationTimestamp", now());
+        }
+        if( scope.contains("/zones/") && item.get("zone") == null ) {
+            item.put("zone", rootUrl + scope);
+        }
+        else if( scope.contains("/regions/") && item.get("region") == null && !"regions".equals(kind) ) {
+            item.put("region", rootUrl + scope);
+        }
+        if( query != null && query.get("sourceImage") != null ) {
+            item.put("sourceImage", query.get("sourceImage"));
+        }
+        if( item.get("status") == null ) {
+            if( "instances".equals(kind) && collection.startsWith("compute/") ) {
+                item.put("status", "RUNNING");
+            }
+            else if( "addresses".equals(kind) ) {
+                item.put("status", "RESERVED");
+            }
+            else if( "disks".equals(kind) || "images".equals(kind) || "snapshots".equals(kind) ) {
+                item.put("status", "READY");
+            }
+            else if( "zones".equals(kind) || "regions".equals(kind) ) {
+                item.put("status", "UP");
+            }
+        }
+        if( "instances".equals(kind) && collection.startsWith("sql/") && item.get("state") == null ) {
+            item.put("state", "RUNNABLE");
+        }
+        if( "addresses".equals(kind) && item.get("address") == null ) {
+            item.put("address", nextAddress());
+        }
+        if( "instances".equals(kind) && collection.startsWith("compute/") ) {
+            for( Object o : listField(item, "networkInterfaces") ) {
+                Map<String, Object> nic = (Map<String, Object>)o;
+                if( nic.get("networkIP") == null ) {
+                    long host = hosts.incrementAndGet();
+                    nic.put("networkIP", "10.240." + ((host >> 8) & 0xff) + "." + (host & 0xff));
+                }
+                for( Object c : listField(nic, "accessConfigs") ) {
+                    Map<String, Object> accessConfig = (Map<String, Object>)c;
+                    if( accessConfig.get("natIP") == null ) {
+                        accessConfig.put("natIP", nextAddress());
+                    }
+                }
+            }
+            for( Object o : listField(item, "disks") ) {
+                Map<String, Object> disk = (Map<String, Object>)o;
+                Map<String, Object> params = (Map<String, Object>)disk.get("initializeParams");
+                if( disk.get("source") == null && params != null ) {
+                    // the API creates the boot disk from initializeParams
+                    Map<String, Object> created = new LinkedHashMap<String, Object>();
+                    created.put("name", params.get("diskName") != null ? params.get("diskName") : item.get("name"));
+                    created.put("sizeGb", params.get("diskSizeGb") != null ? String.valueOf(params.get("diskSizeGb")) : "10");
+                    created.put("sourceImage", params.get("sourceImage"));
+                    Map<String, Object> stored = put(scope + "/disks", created);
+                    disk.put("source", stored.get("selfLink"));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deleteAutoDeleteDisks(@Nonnull Map<String, Object> instance) {
+        if( !instance.containsKey("networkInterfaces") ) {
+            return;
+        }
+        for( Object o : listField(instance, "disks") ) {
+            Map<String, Object> disk = (Map<String, Object>)o;
+            Object source = disk.get("source");
+            if( Boolean.TRUE.equals(disk.get("autoDelete")) && source instanceof String && ((String)source).startsWith(rootUrl) ) {
+                String path = ((String)source).substring(rootUrl.length());
+                remove(parent(path), path.substring(path.lastIndexOf('/') + 1));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nullable Map<String, Object> networkInterface(@Nonnull Map<String, Object> instance, @Nullable String name) {
+        List<Object> nics = listField(instance, "networkInterfaces");
+
+        for( Object o : nics ) {
+            Map<String, Object> nic = (Map<String, Object>)o;
+            if( name == null || name.equals(nic.get("name")) ) {
+                return nic;
+            }
+        }
+        return (nics.isEmpty() ? null : (Map<String, Object>)nics.get(0));
+    }
+
+    /*
+     * Supports the "field eq|ne regex" filters the provider sends, on top-level string fields.
+     */
+    private @Nonnull List<Map<String, Object>> filter(@Nonnull List<Map<String, Object>> items, @Nullable String filter) {
+        if( filter == null || filter.trim().length() == 0 ) {
+            return items;
+        }
+        Matcher m = FILTER.matcher(filter);
+
+        if( !m.matches() ) {
+            return items;
+        }
+        String field = m.group(1);
+        boolean eq = "eq".equals(m.group(2));
+        Pattern value = Pattern.compile(m.group(3).replaceAll("^['\"]|['\"]$", ""));
+        List<Map<String, Object>> matching = new ArrayList<Map<String, Object>>();
+
+        for( Map<String, Object> item : items ) {
+            Object v = item.get(field);
+            boolean matches = (v != null && value.matcher(String.valueOf(v)).matches());
+            if( matches == eq ) {
+                matching.add(item);
+            }
+        }
+        return matching;
+    }
+
+    private @Nonnull LinkedHashMap<String, Map<String, Object>> collection(@Nonnull String collection) {
+        LinkedHashMap<String, Map<String, Object>> items = collections.get(collection);
+
+        if( items == null ) {
+            items = new LinkedHashMap<String, Map<String, Object>>();
+            collections.put(collection, items);
+        }
+        return items;
+    }
+
+    @SuppressWarnings("unchecked")
+    static @Nonnull List<Object> listField(@Nonnull Map<String, Object> item, @Nonnull String field) {
+        Object value = item.get(field);
+
+        if( !(value instanceof List) ) {
+            value = new ArrayList<Object>();
+            item.put(field, value);
+        }
+        return (List<Object>)value;
+    }
+
+    /*
+     * The path that holds a collection's operations: the zone, the region, global, or the project itself.
+     */
+    static @Nonnull String scope(@Nonnull String collection) {
+        String[] segments = collection.split("/");
+        StringBuilder scope = new StringBuilder();
+
+        for( int i = 0; i < segments.length; i++ ) {
+            if( scope.length() > 0 ) {
+                scope.append('/');
+            }
+            scope.append(segments[i]);
+            if( i > 0 && "projects".equals(segments[i - 1]) ) {
+                if( i + 2 < segments.length && ("zones".equals(segments[i + 1]) || "regions".equals(segments[i + 1])) ) {
+                    return scope.append('/').append(segments[i + 1]).append('/').append(segments[i + 2]).toString();
+                }
+                if( collection.startsWith("compute/") ) {
+                    return scope.append("/global").toString();
+                }
+                return scope.toString();
+            }
+        }
+        return parent(collection);
+    }
+
+    static private boolean isScope(@Nonnull String[] segments, int index) {
+        return index >= 0 && ("zones".equals(segments[index]) || "regions".equals(segments[index]) || "projects".equals(segments[index]));
+    }
+
+    static @Nonnull String parent(@Nonnull String path) {
+        int i = path.lastIndexOf('/');
+        return (i < 0 ? "" : path.substring(0, i));
+    }
+
+    static private @Nonnull String kind(@Nonnull String collection) {
+        String service = collection.substring(0, Math.max(0, collection.indexOf('/')));
+        String kind = collection.substring(collection.lastIndexOf('/') + 1);
+
+        if( kind.endsWith("ies") ) {
+            kind = kind.substring(0, kind.length() - 3) + "y";
+        }
+        else if( kind.endsWith("sses") ) {
+            kind = kind.substring(0, kind.length() - 2);
+        }
+        else if( kind.endsWith("s") ) {
+            kind = kind.substring(0, kind.length() - 1);
+        }
+        return ("sql".equals(service) ? "sql" : service) + "#" + kind;
+    }
+
+    private int offset(@Nonnull Map<String, String> query) {
+        try {
+            return (query.get("pageToken") == null ? 0 : Integer.parseInt(query.get("pageToken")));
+        }
+        catch( NumberFormatException e ) {
+            return 0;
+        }
+    }
+
+    private int pageSize(@Nonnull Map<String, String> query) {
+        try {
+            return (query.get("maxResults") == null ? GoogleStubServer.DEFAULT_PAGE_SIZE : Math.max(1, Integer.parseInt(query.get("maxResults"))));
+        }
+        catch( NumberFormatException e ) {
+            return GoogleStubServer.DEFAULT_PAGE_SIZE;
+        }
+    }
+
+    private @Nonnull String nextAddress() {
+        long n = addresses.incrementAndGet();
+        return "203.0." + (113 + (n >> 8) % 100) + "." + (n & 0xff);
+    }
+
+    static private @Nonnull GoogleStubServer.Response notFound(@Nonnull String path) {
+        return GoogleStubServer.Response.error(404, "notFound", "The resource '" + path + "' was not found");
+    }
+
+    static @Nonnull String now() {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return fmt.format(new Date());
+    }
+}